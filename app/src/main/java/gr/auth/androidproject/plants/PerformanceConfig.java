@@ -0,0 +1,144 @@
+package gr.auth.androidproject.plants;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+/**
+ * <p>
+ * Immutable snapshot of the performance related settings.<br>
+ * </p>
+ * <p>
+ * The current snapshot is read with {@link PerformanceSettings#get()}, which never touches
+ * storage. Changes create a new snapshot with one of the {@code with} methods
+ * </p>
+ */
+public final class PerformanceConfig {
+
+    /**
+     * Formats new photos can be stored in
+     */
+    public enum PhotoFormat {
+        PNG,
+        JPEG,
+        WEBP
+    }
+
+    public static final int MIN_PHOTO_QUALITY = 10;
+    public static final int MAX_PHOTO_QUALITY = 100;
+    public static final int MAX_CACHE_HEAP_PERCENT = 50;
+
+    public static final PerformanceConfig DEFAULT =
+            new PerformanceConfig(PhotoFormat.PNG, MAX_PHOTO_QUALITY, 256, 12);
+
+    private final PhotoFormat photoFormat;
+    private final int photoQuality;
+    private final int thumbnailSize;
+    private final int cacheHeapPercent;
+
+    /**
+     * @param photoFormat      format new photos are stored in
+     * @param photoQuality     compression quality of new photos, ignored by lossless formats
+     * @param thumbnailSize    largest dimension of the photos in the home list, in pixels
+     * @param cacheHeapPercent part of the heap given to the in-memory caches
+     */
+    public PerformanceConfig(PhotoFormat photoFormat, int photoQuality, int thumbnailSize,
+                             int cacheHeapPercent) {
+        if (photoQuality < MIN_PHOTO_QUALITY || photoQuality > MAX_PHOTO_QUALITY) {
+            throw new IllegalArgumentException("photo quality out of range: " + photoQuality);
+        }
+        if (thumbnailSize <= 0) {
+            throw new IllegalArgumentException("thumbnail size must be positive: " + thumbnailSize);
+        }
+        if (cacheHeapPercent <= 0 || cacheHeapPercent > MAX_CACHE_HEAP_PERCENT) {
+            throw new IllegalArgumentException("cache heap percent out of range: " + cacheHeapPercent);
+        }
+        this.photoFormat = Objects.requireNonNull(photoFormat);
+        this.photoQuality = photoQuality;
+        this.thumbnailSize = thumbnailSize;
+        this.cacheHeapPercent = cacheHeapPercent;
+    }
+
+    public PhotoFormat getPhotoFormat() {
+        return photoFormat;
+    }
+
+    public int getPhotoQuality() {
+        return photoQuality;
+    }
+
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    public int getCacheHeapPercent() {
+        return cacheHeapPercent;
+    }
+
+    /**
+     * @return the format new photos are compressed with. WebP at full quality is lossless, the
+     * way the single WebP format behaved before API 30
+     */
+    public Bitmap.CompressFormat getCompressFormat() {
+        switch (photoFormat) {
+            case JPEG:
+                return Bitmap.CompressFormat.JPEG;
+            case WEBP:
+                return webpFormat(photoQuality);
+            default:
+                return Bitmap.CompressFormat.PNG;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat(int quality) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP;
+        }
+        return quality == MAX_PHOTO_QUALITY
+                ? Bitmap.CompressFormat.WEBP_LOSSLESS
+                : Bitmap.CompressFormat.WEBP_LOSSY;
+    }
+
+    public PerformanceConfig withPhotoFormat(PhotoFormat photoFormat) {
+        return new PerformanceConfig(photoFormat, photoQuality, thumbnailSize, cacheHeapPercent);
+    }
+
+    public PerformanceConfig withPhotoQuality(int photoQuality) {
+        return new PerformanceConfig(photoFormat, photoQuality, thumbnailSize, cacheHeapPercent);
+    }
+
+    public PerformanceConfig withThumbnailSize(int thumbnailSize) {
+        return new PerformanceConfig(photoFormat, photoQuality, thumbnailSize, cacheHeapPercent);
+    }
+
+    public PerformanceConfig withCacheHeapPercent(int cacheHeapPercent) {
+        return new PerformanceConfig(photoFormat, photoQuality, thumbnailSize, cacheHeapPercent);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PerformanceConfig that = (PerformanceConfig) o;
+        return photoQuality == that.photoQuality &&
+                thumbnailSize == that.thumbnailSize &&
+                cacheHeapPercent == that.cacheHeapPercent &&
+                photoFormat == that.photoFormat;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(photoFormat, photoQuality, thumbnailSize, cacheHeapPercent);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "format=" + photoFormat + " quality=" + photoQuality +
+                " thumbnail=" + thumbnailSize + "px cache=" + cacheHeapPercent + "%";
+    }
+}
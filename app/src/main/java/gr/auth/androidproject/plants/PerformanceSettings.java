@@ -0,0 +1,149 @@
+package gr.auth.androidproject.plants;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>
+ * Holds the current {@link PerformanceConfig} and publishes changes to it.<br>
+ * </p>
+ * <p>
+ * The preferences are read once by {@link #load(Context)}, after that {@link #get()} is a single
+ * volatile read that is safe on any hot path. A change replaces the whole snapshot at once, so a
+ * reader never sees half of it, and is then handed to the listeners of the subsystems that need
+ * to react to it
+ * </p>
+ */
+public final class PerformanceSettings {
+
+    private static final String PREFERENCES = "performance";
+    private static final String KEY_PHOTO_FORMAT = "photo_format";
+    private static final String KEY_PHOTO_QUALITY = "photo_quality";
+    private static final String KEY_THUMBNAIL_SIZE = "thumbnail_size";
+    private static final String KEY_CACHE_HEAP_PERCENT = "cache_heap_percent";
+
+    private static final AtomicReference<PerformanceConfig> CONFIG =
+            new AtomicReference<>(PerformanceConfig.DEFAULT);
+    private static final List<Consumer<PerformanceConfig>> LISTENERS =
+            new CopyOnWriteArrayList<>();
+
+    private PerformanceSettings() {
+    }
+
+    /**
+     * @return the current settings, the defaults until {@link #load(Context)} has run
+     */
+    public static PerformanceConfig get() {
+        return CONFIG.get();
+    }
+
+    /**
+     * Reads the stored settings and publishes them, see {@link #load(Context)}, on a background
+     * thread, so starting the app does not wait for the preferences file. {@link #get()} returns
+     * the defaults until then
+     *
+     * @param context any context
+     */
+    public static void loadInBackground(Context context) {
+        Context appContext = context.getApplicationContext();
+        new Thread(() -> load(appContext), "PerformanceSettingsLoad").start();
+    }
+
+    /**
+     * Reads the stored settings and publishes them. Settings that cannot be read keep their
+     * default value and settings out of range are clamped to it. Reads the preferences file, so
+     * it should not be called on the main thread
+     *
+     * @param context any context
+     */
+    public static synchronized void load(Context context) {
+        publish(read(preferences(context)));
+    }
+
+    /**
+     * @return the settings stored in the argument preferences, each one that is missing or cannot
+     * be read replaced by its default
+     */
+    static PerformanceConfig read(SharedPreferences preferences) {
+        PerformanceConfig defaults = PerformanceConfig.DEFAULT;
+
+        PerformanceConfig.PhotoFormat photoFormat = defaults.getPhotoFormat();
+        try {
+            String name = preferences.getString(KEY_PHOTO_FORMAT, photoFormat.name());
+            if (name != null) photoFormat = PerformanceConfig.PhotoFormat.valueOf(name);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            e.printStackTrace();
+        }
+
+        int photoQuality = clamp(readInt(preferences, KEY_PHOTO_QUALITY,
+                defaults.getPhotoQuality()),
+                PerformanceConfig.MIN_PHOTO_QUALITY, PerformanceConfig.MAX_PHOTO_QUALITY);
+        int thumbnailSize = readInt(preferences, KEY_THUMBNAIL_SIZE, defaults.getThumbnailSize());
+        if (thumbnailSize <= 0) thumbnailSize = defaults.getThumbnailSize();
+        int cacheHeapPercent = clamp(readInt(preferences, KEY_CACHE_HEAP_PERCENT,
+                defaults.getCacheHeapPercent()), 1, PerformanceConfig.MAX_CACHE_HEAP_PERCENT);
+
+        return new PerformanceConfig(photoFormat, photoQuality, thumbnailSize, cacheHeapPercent);
+    }
+
+    private static int readInt(SharedPreferences preferences, String key, int defaultValue) {
+        try {
+            return preferences.getInt(key, defaultValue);
+        } catch (ClassCastException e) {
+            e.printStackTrace();
+            return defaultValue;
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Applies a change to the current settings, stores it and publishes it to the listeners on
+     * the calling thread
+     *
+     * @param context any context
+     * @param change  creates the new settings from the current ones
+     */
+    public static synchronized void update(Context context, UnaryOperator<PerformanceConfig> change) {
+        PerformanceConfig config = change.apply(CONFIG.get());
+        if (config.equals(CONFIG.get())) return;
+
+        preferences(context).edit()
+                .putString(KEY_PHOTO_FORMAT, config.getPhotoFormat().name())
+                .putInt(KEY_PHOTO_QUALITY, config.getPhotoQuality())
+                .putInt(KEY_THUMBNAIL_SIZE, config.getThumbnailSize())
+                .putInt(KEY_CACHE_HEAP_PERCENT, config.getCacheHeapPercent())
+                .apply();
+        publish(config);
+    }
+
+    /**
+     * Registers a listener that is called with every new snapshot of the settings
+     *
+     * @param listener the listener
+     */
+    public static void addListener(Consumer<PerformanceConfig> listener) {
+        LISTENERS.add(listener);
+    }
+
+    private static void publish(PerformanceConfig config) {
+        if (config.equals(CONFIG.getAndSet(config))) return;
+
+        for (Consumer<PerformanceConfig> listener : LISTENERS) {
+            listener.accept(config);
+        }
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,110 @@
+package gr.auth.androidproject.plants;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import gr.auth.androidproject.plants.cache.CacheRegistry;
+import gr.auth.androidproject.plants.cache.MemoryCache;
+
+/**
+ * <p>
+ * The in-memory caches of the app, sharing one budget sized from the device's memory class and
+ * the part of it set in the {@link PerformanceSettings}.<br>
+ * </p>
+ * <p>
+ * Once {@link #install(Context)} has run, the caches shrink or are cleared whenever the system
+ * asks the app to trim its memory, instead of the process being killed or spending its time in
+ * garbage collection. Until then they use a budget based on the maximum heap size
+ * </p>
+ */
+public final class PlantCaches implements ComponentCallbacks2 {
+
+    private static final CacheRegistry REGISTRY = new CacheRegistry(
+            budget(Runtime.getRuntime().maxMemory(), false, PerformanceSettings.get()));
+
+    /**
+     * Decoded plant photos by content hash
+     */
+    public static final MemoryCache<String, Bitmap> PHOTOS =
+            REGISTRY.create("photos", 7, Bitmap::getAllocationByteCount);
+    /**
+     * Decoded drawable resources by resource id, like the default plant photo
+     */
+    public static final MemoryCache<Integer, Bitmap> RESOURCE_BITMAPS =
+            REGISTRY.create("resource bitmaps", 1, Bitmap::getAllocationByteCount);
+
+    private static volatile boolean installed = false;
+
+    private PlantCaches() {
+    }
+
+    /**
+     * Sizes the caches from the device's memory class, resizes them whenever the settings change
+     * and starts trimming them when the system runs low on memory. Calls after the first have no
+     * effect
+     *
+     * @param context any context
+     */
+    public static synchronized void install(Context context) {
+        if (installed) return;
+
+        Context appContext = context.getApplicationContext();
+        ActivityManager activityManager = appContext.getSystemService(ActivityManager.class);
+        long heapSize = activityManager.getMemoryClass() * 1024L * 1024L;
+        boolean lowRamDevice = activityManager.isLowRamDevice();
+        REGISTRY.setBudget(budget(heapSize, lowRamDevice, PerformanceSettings.get()));
+        PerformanceSettings.addListener(config ->
+                REGISTRY.setBudget(budget(heapSize, lowRamDevice, config)));
+        appContext.registerComponentCallbacks(new PlantCaches());
+        installed = true;
+    }
+
+    public static CacheRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Keeps less of the caches the more memory the system needs. While the app is visible the
+     * caches hold what is on screen, so they are only cleared when memory is critically low
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            REGISTRY.trim(0); // next in line to be killed
+        } else if (level >= TRIM_MEMORY_MODERATE) {
+            REGISTRY.trim(0.25);
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            REGISTRY.trim(0.5);
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            REGISTRY.trim(0.75);
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            REGISTRY.trim(0);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            REGISTRY.trim(0.5);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            REGISTRY.trim(0.75);
+        }
+    }
+
+    /**
+     * The set part of the heap, halved on low RAM devices
+     */
+    private static long budget(long heapSize, boolean lowRamDevice, PerformanceConfig config) {
+        long budget = heapSize * config.getCacheHeapPercent() / 100;
+        return lowRamDevice ? budget / 2 : budget;
+    }
+
+    @Override
+    public void onLowMemory() {
+        REGISTRY.trim(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -0,0 +1,22 @@
+package gr.auth.androidproject.plants;
+
+import android.app.Application;
+
+import gr.auth.androidproject.plants.domain.PlantMaintenanceWorker;
+
+/**
+ * Sets up what every start of the process needs. The work only the first screen depends on is
+ * started by {@link gr.auth.androidproject.plants.ui.MainActivity}, so a process started for a
+ * background job does not pay for it
+ */
+public class PlantsApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // the caches listen for the stored settings before they are loaded
+        PlantCaches.install(this);
+        PerformanceSettings.loadInBackground(this);
+        PlantMaintenanceWorker.schedule(this);
+    }
+}
@@ -0,0 +1,76 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
+
+import gr.auth.androidproject.plants.species.Species;
+import gr.auth.androidproject.plants.species.SpeciesCatalog;
+
+/**
+ * <p>
+ * The species catalog bundled with the app.<br>
+ * </p>
+ * <p>
+ * The catalog is stored uncompressed in the APK and memory mapped in place, so opening it does
+ * not read or parse the file and searching it only pages in the parts it touches. The mapping
+ * outlives the file descriptor and is kept for the life of the process
+ * </p>
+ */
+public final class BundledSpeciesCatalog {
+
+    private static final String ASSET = "species.catalog";
+
+    private static volatile SpeciesCatalog catalog;
+
+    private BundledSpeciesCatalog() {
+    }
+
+    /**
+     * Maps the catalog, if it is not mapped yet
+     *
+     * @param context any context
+     * @return the catalog, or null if it cannot be opened
+     */
+    public static SpeciesCatalog get(Context context) {
+        SpeciesCatalog result = catalog;
+        if (result == null) {
+            synchronized (BundledSpeciesCatalog.class) {
+                result = catalog;
+                if (result == null) {
+                    result = open(context.getApplicationContext());
+                    catalog = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the species with a name that starts with the argument text. Can page in parts of the
+     * catalog, so it should not be called on the main thread
+     *
+     * @see SpeciesCatalog#search(String, int)
+     */
+    public static List<Species> search(Context context, String prefix, int limit) {
+        SpeciesCatalog result = get(context);
+        return result == null ? Collections.emptyList() : result.search(prefix, limit);
+    }
+
+    private static SpeciesCatalog open(Context context) {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(ASSET);
+             FileInputStream in = descriptor.createInputStream()) {
+            FileChannel channel = in.getChannel();
+            return new SpeciesCatalog(channel.map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getLength()));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>
+ * The last loaded home list, kept in a file so that it can be shown right away after a restart
+ * while the real query runs.<br>
+ * </p>
+ * <p>
+ * The file is replaced atomically, so a crash while writing leaves the previous list, and it is
+ * only rewritten when the encoded list differs from the file, byte for byte. It is read through a
+ * memory map to avoid copying it.
+ * </p>
+ */
+class HomeListSnapshot {
+
+    private static final String FILE_NAME = "home_list.snapshot";
+
+    private final AtomicFile file;
+    private final PhotoSource photoSource;
+    /**
+     * Contents of the file, the memory map it was read through or the bytes last written, null if
+     * they are not known
+     */
+    private volatile ByteBuffer fileContent;
+
+    HomeListSnapshot(Context context, PhotoSource photoSource) {
+        this.file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+        this.photoSource = photoSource;
+    }
+
+    /**
+     * Reads the last written list
+     *
+     * @return the list or empty if there is none or it cannot be read
+     */
+    Optional<List<Plant>> read() {
+        try (FileInputStream in = file.openRead(); FileChannel channel = in.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            List<Plant> plants = PlantListCodec.decode(buffer.duplicate(), photoSource);
+            fileContent = buffer;
+            return Optional.of(plants);
+        } catch (FileNotFoundException e) {
+            return Optional.empty(); // nothing written yet
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the list in the file with the argument one, if they differ
+     *
+     * @param plants the list, as loaded from the database
+     */
+    void write(List<Plant> plants) {
+        FileOutputStream out = null;
+        try {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            PlantListCodec.encode(plants, encoded);
+            ByteBuffer content = ByteBuffer.wrap(encoded.toByteArray());
+            if (content.equals(fileContent)) return;
+
+            out = file.startWrite();
+            out.write(content.array());
+            file.finishWrite(out);
+            fileContent = content;
+        } catch (IOException e) {
+            if (out != null) {
+                file.failWrite(out);
+            }
+            e.printStackTrace();
+        }
+    }
+}
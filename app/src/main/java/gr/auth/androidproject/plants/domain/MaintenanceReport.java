@@ -0,0 +1,95 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What a {@link PlantDBHandler#maintain(long)} run did
+ */
+public final class MaintenanceReport {
+
+    long millis;
+    long sizeBefore;
+    long sizeAfter;
+    long freeBefore;
+    long reclaimed;
+    long photosReclaimed;
+    boolean analyzed;
+    boolean checked;
+    final List<String> integrityProblems = new ArrayList<>();
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return size of the database file in bytes before the run
+     */
+    public long getSizeBefore() {
+        return sizeBefore;
+    }
+
+    public long getSizeAfter() {
+        return sizeAfter;
+    }
+
+    /**
+     * @return bytes of unused pages in the file before the run
+     */
+    public long getFreeBefore() {
+        return freeBefore;
+    }
+
+    /**
+     * @return bytes returned to the file system
+     */
+    public long getReclaimed() {
+        return reclaimed;
+    }
+
+    /**
+     * @return bytes of photo files deleted because nothing referred to them any more
+     */
+    public long getPhotosReclaimed() {
+        return photosReclaimed;
+    }
+
+    /**
+     * @return false if the planner statistics were not refreshed for lack of time
+     */
+    public boolean isAnalyzed() {
+        return analyzed;
+    }
+
+    /**
+     * @return false if the integrity check was skipped for lack of time
+     */
+    public boolean isChecked() {
+        return checked;
+    }
+
+    /**
+     * @return true unless the integrity check found problems
+     */
+    public boolean isIntact() {
+        return integrityProblems.isEmpty();
+    }
+
+    /**
+     * @return problems found by the integrity check, at most the first few
+     */
+    public List<String> getIntegrityProblems() {
+        return integrityProblems;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d ms, %d KiB -> %d KiB, %d KiB free, %d KiB reclaimed, %d KiB of photos "
+                        + "reclaimed, analyzed %b, %s",
+                millis, sizeBefore / 1024, sizeAfter / 1024, freeBefore / 1024, reclaimed / 1024,
+                photosReclaimed / 1024, analyzed, !checked ? "not checked" : isIntact() ? "intact" :
+                        "corrupt: " + String.join("; ", integrityProblems));
+    }
+}
@@ -0,0 +1,147 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.database.Cursor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_BIRTHDAY;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_ID;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_LAST_WATERED;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_NAME;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_PHOTO_HASH;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_PHOTO_SIZE;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_SPECIES_ID;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_WATERING_INTERVAL;
+
+/**
+ * <p>
+ * Maps the rows of a plants table {@link Cursor} to {@link Plant} objects.<br>
+ * </p>
+ * <p>
+ * Column indices are resolved by name once, when the mapper is created, so the query does not
+ * have to select the columns in table order. The cursor is not closed by the mapper.
+ * </p>
+ * <p>
+ * Photos are not read from the cursor. Each plant gets a {@link PlantPhoto} handle built from the
+ * photo's hash and size columns (see {@link PlantDBHandler#PLANT_PROJECTION}) that reads the photo
+ * from the {@link PhotoSource} when opened.
+ * </p>
+ */
+public class PlantCursorMapper {
+
+    private final Cursor cursor;
+    private final PhotoSource photoSource;
+
+    private final int idIndex;
+    private final int nameIndex;
+    private final int birthdayIndex;
+    private final int lastWateredIndex;
+    private final int wateringIntervalIndex;
+    private final int photoHashIndex;
+    private final int photoSizeIndex;
+    private final int speciesIdIndex;
+
+    public PlantCursorMapper(Cursor cursor, PhotoSource photoSource) {
+        this.cursor = Objects.requireNonNull(cursor);
+        this.photoSource = Objects.requireNonNull(photoSource);
+
+        idIndex = cursor.getColumnIndexOrThrow(COLUMN_ID.name);
+        nameIndex = cursor.getColumnIndexOrThrow(COLUMN_NAME.name);
+        birthdayIndex = cursor.getColumnIndexOrThrow(COLUMN_BIRTHDAY.name);
+        lastWateredIndex = cursor.getColumnIndexOrThrow(COLUMN_LAST_WATERED.name);
+        wateringIntervalIndex = cursor.getColumnIndexOrThrow(COLUMN_WATERING_INTERVAL.name);
+        photoHashIndex = cursor.getColumnIndexOrThrow(COLUMN_PHOTO_HASH.name);
+        photoSizeIndex = cursor.getColumnIndexOrThrow(COLUMN_PHOTO_SIZE.name);
+        speciesIdIndex = cursor.getColumnIndexOrThrow(COLUMN_SPECIES_ID.name);
+    }
+
+    /**
+     * Maps the row the cursor is currently on
+     *
+     * @return new plant holding the row's values
+     */
+    public Plant map() {
+        long id = cursor.getLong(idIndex);
+        Plant plant = new Plant(
+                id,
+                cursor.getString(nameIndex),
+                birthday(),
+                LocalDateTime.parse(cursor.getString(lastWateredIndex)),
+                Duration.parse(cursor.getString(wateringIntervalIndex)),
+                photo(id)
+        );
+        plant.setSpeciesId(speciesId());
+        return plant;
+    }
+
+    /**
+     * Maps all the rows after the cursor's current position
+     *
+     * @return list of all the remaining plants (could be empty)
+     */
+    public List<Plant> mapAll() {
+        int remaining = cursor.getCount() - cursor.getPosition() - 1;
+        List<Plant> result = new ArrayList<>(Math.max(remaining, 0));
+        while (cursor.moveToNext()) {
+            result.add(map());
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Maps the next rows of the cursor into the argument buffer, at most as many as the buffer can
+     * hold.<br>
+     * </p>
+     * <p>
+     * Plants already in the buffer are overwritten in place instead of allocating new ones, so a
+     * consumer that processes the result before the next call can scan any number of rows with a
+     * fixed number of objects.
+     * </p>
+     *
+     * @param buffer array to put the plants in, may contain nulls
+     * @return number of plants put in the buffer, 0 if the cursor is exhausted
+     */
+    public int fill(Plant[] buffer) {
+        int count = 0;
+        while (count < buffer.length && cursor.moveToNext()) {
+            Plant current = buffer[count];
+            if (Objects.isNull(current)) {
+                buffer[count] = map();
+            } else {
+                long id = cursor.getLong(idIndex);
+                current.setId(id);
+                current.setName(cursor.getString(nameIndex));
+                current.setBirthday(birthday());
+                current.setLastWatered(LocalDateTime.parse(cursor.getString(lastWateredIndex)));
+                current.setWateringInterval(Duration.parse(cursor.getString(wateringIntervalIndex)));
+                current.setPhoto(photo(id));
+                current.setSpeciesId(speciesId());
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private PlantPhoto photo(long id) {
+        if (cursor.isNull(photoSizeIndex)) {
+            return null;
+        }
+        return PlantPhoto.stored(id, cursor.getString(photoHashIndex),
+                cursor.getLong(photoSizeIndex), photoSource);
+    }
+
+    private Integer speciesId() {
+        return cursor.isNull(speciesIdIndex) ? null : cursor.getInt(speciesIdIndex);
+    }
+
+    private LocalDateTime birthday() {
+        return cursor.isNull(birthdayIndex)
+                ? null
+                : LocalDateTime.parse(cursor.getString(birthdayIndex));
+    }
+}
@@ -3,25 +3,51 @@ package gr.auth.androidproject.plants.domain;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 
 import androidx.annotation.Nullable;
 
-import java.time.Duration;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
-public class PlantDBHandler extends SQLiteOpenHelper {
+import gr.auth.androidproject.plants.archive.PlantArchive;
+import gr.auth.androidproject.plants.archive.PlantArchiveReader;
+import gr.auth.androidproject.plants.archive.PlantArchiveWriter;
+import gr.auth.androidproject.plants.metrics.DataLayerMetrics;
+import gr.auth.androidproject.plants.metrics.DataLayerMetrics.Operation;
+import gr.auth.androidproject.plants.sync.SyncEngine;
+import gr.auth.androidproject.plants.sync.SyncReport;
+import gr.auth.androidproject.plants.sync.SyncServer;
+
+public class PlantDBHandler extends SQLiteOpenHelper implements PlantStore {
     /**
      * Represents a column in an SQL table with its name and index
      */
-    private static class TableColumn {
+    static class TableColumn {
         public final int index;
         public final String name;
 
@@ -31,43 +57,208 @@ public class PlantDBHandler extends SQLiteOpenHelper {
         }
     }
 
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 8;
     public static final String DATABASE_NAME;
     public static final String TABLE_PLANTS;
+    public static final String INDEX_PLANT_NAME;
+    public static final String INDEX_PLANT_SYNC_ID;
+    public static final String INDEX_PLANT_PHOTO_HASH;
+    /**
+     * Removed plants that the sync server has seen, kept until the removal is pushed
+     */
+    public static final String TABLE_TOMBSTONES;
+    /**
+     * Single row holding the device id and the sync token
+     */
+    public static final String TABLE_SYNC_STATE;
+    /**
+     * Photos of the plants' galleries with their thumbnails, deleted together with their plant.
+     * Like the plants' photos, the photos themselves are kept in the {@link PhotoFileStore}
+     */
+    public static final String TABLE_GALLERY;
+    public static final String INDEX_GALLERY_PLANT;
 
     public static final TableColumn COLUMN_ID;
     public static final TableColumn COLUMN_NAME;
     public static final TableColumn COLUMN_BIRTHDAY;
     public static final TableColumn COLUMN_LAST_WATERED;
     public static final TableColumn COLUMN_WATERING_INTERVAL;
-    public static final TableColumn COLUMN_PHOTO;
+    /**
+     * Size of the photo in bytes. The photo itself is kept in the {@link PhotoFileStore} and
+     * found there by its hash
+     */
+    public static final TableColumn COLUMN_PHOTO_SIZE;
+    public static final TableColumn COLUMN_PHOTO_HASH;
+    /**
+     * Change log columns, see {@link gr.auth.androidproject.plants.sync.SyncLocalStore}. The
+     * tombstones table has the same sync id, modified at, local and server version columns
+     */
+    public static final TableColumn COLUMN_SYNC_ID;
+    public static final TableColumn COLUMN_MODIFIED_AT;
+    public static final TableColumn COLUMN_LOCAL_VERSION;
+    public static final TableColumn COLUMN_SYNCED_VERSION;
+    public static final TableColumn COLUMN_SERVER_VERSION;
+    /**
+     * Epoch millisecond the plant was removed at, null for plants that are not removed. Removed
+     * plants are left out of every query until they are purged or restored
+     */
+    public static final TableColumn COLUMN_REMOVED_AT;
+    /**
+     * Id of the plant's species in the bundled species catalog, null if it was not picked from it
+     */
+    public static final TableColumn COLUMN_SPECIES_ID;
+    public static final String COLUMN_PLANT_ID;
+    /**
+     * Epoch millisecond a gallery photo was taken at, of the local time as if it was UTC
+     */
+    public static final String COLUMN_TAKEN_AT;
+    public static final String COLUMN_THUMBNAIL;
+    public static final String COLUMN_DEVICE_ID;
+    public static final String COLUMN_SYNC_TOKEN;
+    /**
+     * Columns selected by plant queries. The photo itself is opened on demand through
+     * {@link #openPhoto(String)}
+     */
+    public static final String PLANT_PROJECTION;
+    /**
+     * Condition that leaves out removed plants
+     */
+    public static final String NOT_REMOVED;
+    /**
+     * Photo BLOB column of databases before version 8, which kept the photos in the tables
+     */
+    private static final String LEGACY_PHOTO = "photo";
+    /**
+     * Size of the pieces legacy photo BLOBs are read in, well under the cursor window limit
+     */
+    private static final int LEGACY_PHOTO_CHUNK_SIZE = 256 * 1024;
+    /**
+     * Age after which a photo file no row refers to is deleted. Photos are written before the
+     * rows that refer to them are committed, so this is far longer than any write
+     */
+    private static final long UNUSED_PHOTO_GRACE_MILLIS = 60 * 60 * 1000;
+    /**
+     * Limits of an import transaction, whichever is reached first
+     */
+    private static final int IMPORT_BATCH_PLANTS = 200;
+    private static final long IMPORT_BATCH_BYTES = 16 * 1024 * 1024;
+    /**
+     * Plants read from the table at a time by an export
+     */
+    private static final int EXPORT_PAGE_PLANTS = 200;
+    /**
+     * Pages freed per incremental vacuum step, between steps the time budget is checked
+     */
+    private static final int VACUUM_STEP_PAGES = 256;
+    /**
+     * Most integrity problems kept in a maintenance report
+     */
+    private static final int MAX_INTEGRITY_MESSAGES = 10;
+    private static final String LEGACY_PLANT_PHOTO_CHUNK_QUERY;
+    private static final String LEGACY_GALLERY_PHOTO_CHUNK_QUERY;
     public static final HashMap<String, TableColumn> columns = new HashMap<>();
 
     static {
         DATABASE_NAME = "plantDB";
         TABLE_PLANTS = "Plant";
+        INDEX_PLANT_NAME = "plant_name_index";
+        INDEX_PLANT_SYNC_ID = "plant_sync_id_index";
+        INDEX_PLANT_PHOTO_HASH = "plant_photo_hash_index";
+        TABLE_TOMBSTONES = "PlantTombstone";
+        TABLE_SYNC_STATE = "SyncState";
+        TABLE_GALLERY = "PlantGalleryPhoto";
+        INDEX_GALLERY_PLANT = "gallery_plant_index";
 
         COLUMN_ID = new TableColumn(0, "_id");
         COLUMN_NAME = new TableColumn(1, "name");
         COLUMN_BIRTHDAY = new TableColumn(2, "birthday");
         COLUMN_LAST_WATERED = new TableColumn(3, "last_watered");
         COLUMN_WATERING_INTERVAL = new TableColumn(4, "watering_interval");
-        COLUMN_PHOTO = new TableColumn(5, "photo");
+        COLUMN_PHOTO_SIZE = new TableColumn(5, "photo_size");
+        COLUMN_PHOTO_HASH = new TableColumn(6, "photo_hash");
+        COLUMN_SYNC_ID = new TableColumn(7, "sync_id");
+        COLUMN_MODIFIED_AT = new TableColumn(8, "modified_at");
+        COLUMN_LOCAL_VERSION = new TableColumn(9, "local_version");
+        COLUMN_SYNCED_VERSION = new TableColumn(10, "synced_version");
+        COLUMN_SERVER_VERSION = new TableColumn(11, "server_version");
+        COLUMN_REMOVED_AT = new TableColumn(12, "removed_at");
+        COLUMN_SPECIES_ID = new TableColumn(13, "species_id");
+        COLUMN_PLANT_ID = "plant_id";
+        COLUMN_TAKEN_AT = "taken_at";
+        COLUMN_THUMBNAIL = "thumbnail";
+        COLUMN_DEVICE_ID = "device_id";
+        COLUMN_SYNC_TOKEN = "sync_token";
+
+        PLANT_PROJECTION = COLUMN_ID.name + ", " + COLUMN_NAME.name + ", " +
+                COLUMN_BIRTHDAY.name + ", " + COLUMN_LAST_WATERED.name + ", " +
+                COLUMN_WATERING_INTERVAL.name + ", " + COLUMN_PHOTO_HASH.name + ", " +
+                COLUMN_SPECIES_ID.name + ", " + COLUMN_PHOTO_SIZE.name;
+        NOT_REMOVED = COLUMN_REMOVED_AT.name + " IS NULL";
+        LEGACY_PLANT_PHOTO_CHUNK_QUERY = "SELECT substr(" + LEGACY_PHOTO + ", ?, ?)\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + COLUMN_ID.name + " = ?";
+        LEGACY_GALLERY_PHOTO_CHUNK_QUERY = "SELECT substr(" + LEGACY_PHOTO + ", ?, ?)\n" +
+                "FROM " + TABLE_GALLERY + "\n" +
+                "WHERE " + COLUMN_ID.name + " = ?";
 
         columns.put(COLUMN_ID.name, COLUMN_ID);
         columns.put(COLUMN_NAME.name, COLUMN_NAME);
         columns.put(COLUMN_BIRTHDAY.name, COLUMN_BIRTHDAY);
         columns.put(COLUMN_LAST_WATERED.name, COLUMN_LAST_WATERED);
         columns.put(COLUMN_WATERING_INTERVAL.name, COLUMN_WATERING_INTERVAL);
-        columns.put(COLUMN_PHOTO.name, COLUMN_PHOTO);
+        columns.put(COLUMN_PHOTO_SIZE.name, COLUMN_PHOTO_SIZE);
+        columns.put(COLUMN_PHOTO_HASH.name, COLUMN_PHOTO_HASH);
+        columns.put(COLUMN_SYNC_ID.name, COLUMN_SYNC_ID);
+        columns.put(COLUMN_MODIFIED_AT.name, COLUMN_MODIFIED_AT);
+        columns.put(COLUMN_LOCAL_VERSION.name, COLUMN_LOCAL_VERSION);
+        columns.put(COLUMN_SYNCED_VERSION.name, COLUMN_SYNCED_VERSION);
+        columns.put(COLUMN_SERVER_VERSION.name, COLUMN_SERVER_VERSION);
+        columns.put(COLUMN_REMOVED_AT.name, COLUMN_REMOVED_AT);
+        columns.put(COLUMN_SPECIES_ID.name, COLUMN_SPECIES_ID);
+    }
+
+    private final DataLayerMetrics metrics = new DataLayerMetrics();
+    private final PhotoFileStore photoStore;
+
+    public PlantDBHandler(Context context) {
+        this(context, DATABASE_NAME);
     }
 
-    public PlantDBHandler(@Nullable Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    /**
+     * Opens a database with another name, so that tests can act as several devices. Each
+     * database has its own photos
+     */
+    PlantDBHandler(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        photoStore = new PhotoFileStore(new File(context.getFilesDir(), name + "-photos"));
+    }
+
+    /**
+     * @return counts and latencies of the operations run by this handler
+     */
+    public DataLayerMetrics getMetrics() {
+        return metrics;
     }
 
     /**
-     * Creates the plants table
+     * @return the files the photos of this database are kept in
+     */
+    PhotoFileStore getPhotoStore() {
+        return photoStore;
+    }
+
+    /**
+     * Lets the pages freed by purges be returned to the file system with an incremental vacuum.
+     * This only takes effect when the database is created, older ones are converted by the first
+     * {@link #incrementalVacuum()}
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+    }
+
+    /**
+     * Creates the plants table and its indices
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
@@ -80,39 +271,286 @@ public class PlantDBHandler extends SQLiteOpenHelper {
                         COLUMN_BIRTHDAY.name + " TEXT    ,\n" +
                         COLUMN_LAST_WATERED.name + " TEXT  NOT NULL  ,\n" +
                         COLUMN_WATERING_INTERVAL.name + " INTEGER  NOT NULL  ,\n" +
-                        COLUMN_PHOTO.name + " BLOB      ,\n" +
+                        COLUMN_PHOTO_SIZE.name + " INTEGER      ,\n" +
+                        COLUMN_PHOTO_HASH.name + " TEXT      ,\n" +
+                        COLUMN_SYNC_ID.name + " TEXT  NOT NULL  ,\n" +
+                        COLUMN_MODIFIED_AT.name + " INTEGER  NOT NULL  ,\n" +
+                        COLUMN_LOCAL_VERSION.name + " INTEGER  NOT NULL  DEFAULT 1,\n" +
+                        COLUMN_SYNCED_VERSION.name + " INTEGER  NOT NULL  DEFAULT 0,\n" +
+                        COLUMN_SERVER_VERSION.name + " INTEGER  NOT NULL  DEFAULT 0,\n" +
+                        COLUMN_REMOVED_AT.name + " INTEGER      ,\n" +
+                        COLUMN_SPECIES_ID.name + " INTEGER      ,\n" +
                         "PRIMARY KEY(" + COLUMN_ID.name + "));";
 
         db.execSQL(createPlantTableQuery);
+        createNameIndex(db);
+        createSyncTables(db);
+        createGalleryTable(db);
     }
 
+    /**
+     * Migrates the existing tables one version at a time, keeping the user's plants
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PLANTS);
-        onCreate(db);
+        if (oldVersion < 2) {
+            createNameIndex(db);
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_PHOTO_HASH.name + " TEXT");
+            backfillPhotoHashes(db);
+        }
+        if (oldVersion < 4) {
+            // existing plants are pending, so the first sync pushes them
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_SYNC_ID.name + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_MODIFIED_AT.name + " INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_LOCAL_VERSION.name + " INTEGER NOT NULL DEFAULT 1");
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_SYNCED_VERSION.name + " INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_SERVER_VERSION.name + " INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE " + TABLE_PLANTS + " SET " +
+                    COLUMN_MODIFIED_AT.name + " = ?", new Object[]{System.currentTimeMillis()});
+            backfillSyncIds(db);
+            createSyncTables(db);
+        }
+        if (oldVersion < 5) {
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_REMOVED_AT.name + " INTEGER");
+        }
+        if (oldVersion < 6) {
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_SPECIES_ID.name + " INTEGER");
+        }
+        if (oldVersion < 7) {
+            createGalleryTable(db);
+        }
+        if (oldVersion < 8) {
+            db.execSQL("ALTER TABLE " + TABLE_PLANTS + " ADD COLUMN " +
+                    COLUMN_PHOTO_SIZE.name + " INTEGER");
+            movePhotosToFiles(db, TABLE_PLANTS, LEGACY_PLANT_PHOTO_CHUNK_QUERY);
+            // the column cannot be dropped, but its pages are freed for the next vacuum
+            db.execSQL("UPDATE " + TABLE_PLANTS + " SET " + LEGACY_PHOTO + " = NULL");
+            if (oldVersion == 7) {
+                moveGalleryPhotosToFiles(db);
+            }
+        }
+    }
+
+    /**
+     * Writes every photo BLOB of the argument table to the {@link PhotoFileStore} and stores its
+     * size and hash, as computed from the written file. The BLOBs are left in place
+     */
+    private void movePhotosToFiles(SQLiteDatabase db, String table, String chunkQuery) {
+        String query = "SELECT " + COLUMN_ID.name + "\n" +
+                "FROM " + table + "\n" +
+                "WHERE " + LEGACY_PHOTO + " IS NOT NULL";
+
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            ContentValues contentValues = new ContentValues();
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                try (InputStream in = new LegacyPhotoInputStream(db, chunkQuery, id)) {
+                    String hash = photoStore.write(in, -1, null);
+                    contentValues.put(COLUMN_PHOTO_HASH.name, hash);
+                    contentValues.put(COLUMN_PHOTO_SIZE.name, photoStore.size(hash));
+                    db.update(table, contentValues,
+                            COLUMN_ID.name + " = ?", new String[]{Long.toString(id)});
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the photos of a version 7 gallery to files. Its photo column is not null, so the table
+     * is rebuilt without it
+     */
+    private void moveGalleryPhotosToFiles(SQLiteDatabase db) {
+        String legacyTable = TABLE_GALLERY + "_v7";
+        db.execSQL("ALTER TABLE " + TABLE_GALLERY + " ADD COLUMN " +
+                COLUMN_PHOTO_SIZE.name + " INTEGER");
+        movePhotosToFiles(db, TABLE_GALLERY, LEGACY_GALLERY_PHOTO_CHUNK_QUERY);
+        db.execSQL("DROP INDEX " + INDEX_GALLERY_PLANT);
+        db.execSQL("ALTER TABLE " + TABLE_GALLERY + " RENAME TO " + legacyTable);
+        createGalleryTable(db);
+        String columns = COLUMN_ID.name + ", " + COLUMN_PLANT_ID + ", " + COLUMN_TAKEN_AT + ", " +
+                COLUMN_PHOTO_SIZE.name + ", " + COLUMN_PHOTO_HASH.name + ", " + COLUMN_THUMBNAIL;
+        db.execSQL("INSERT INTO " + TABLE_GALLERY + " (" + columns + ")\n" +
+                "SELECT " + columns + " FROM " + legacyTable + "\n" +
+                "WHERE " + COLUMN_PHOTO_SIZE.name + " IS NOT NULL");
+        db.execSQL("DROP TABLE " + legacyTable);
+    }
+
+    /**
+     * Computes the hash of every stored photo that does not have one, one photo at a time
+     */
+    private void backfillPhotoHashes(SQLiteDatabase db) {
+        String query = "SELECT " + COLUMN_ID.name + "\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + LEGACY_PHOTO + " IS NOT NULL AND " +
+                COLUMN_PHOTO_HASH.name + " IS NULL";
+
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                try (InputStream in =
+                             new LegacyPhotoInputStream(db, LEGACY_PLANT_PHOTO_CHUNK_QUERY, id)) {
+                    ContentValues contentValues = new ContentValues();
+                    contentValues.put(COLUMN_PHOTO_HASH.name, PlantPhoto.hashOf(in));
+                    db.update(TABLE_PLANTS, contentValues,
+                            COLUMN_ID.name + " = ?", new String[]{Long.toString(id)});
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
     }
 
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        onUpgrade(db, oldVersion, newVersion);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PLANTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TOMBSTONES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_STATE);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GALLERY);
+        onCreate(db);
+    }
+
+    /**
+     * Case insensitive index on the plant name, used for both prefix search and sorting by name
+     */
+    private void createNameIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PLANT_NAME + " ON " + TABLE_PLANTS +
+                " (" + COLUMN_NAME.name + " COLLATE NOCASE)");
+    }
+
+    /**
+     * Gives every plant a random sync id, in the same format as the ids of new plants
+     */
+    private static void backfillSyncIds(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_ID.name + " FROM " + TABLE_PLANTS,
+                null)) {
+            while (cursor.moveToNext()) {
+                db.execSQL("UPDATE " + TABLE_PLANTS + " SET " + COLUMN_SYNC_ID.name + " = ?\n" +
+                                "WHERE " + COLUMN_ID.name + " = ?",
+                        new Object[]{UUID.randomUUID().toString(), cursor.getLong(0)});
+            }
+        }
+    }
+
+    /**
+     * Creates the tombstones and sync state tables, the indices sync looks plants up by and a new
+     * device id
+     */
+    private void createSyncTables(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_PLANT_SYNC_ID + " ON " +
+                TABLE_PLANTS + " (" + COLUMN_SYNC_ID.name + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PLANT_PHOTO_HASH + " ON " +
+                TABLE_PLANTS + " (" + COLUMN_PHOTO_HASH.name + ")");
+        db.execSQL("CREATE TABLE " + TABLE_TOMBSTONES + " (\n" +
+                COLUMN_SYNC_ID.name + " TEXT  NOT NULL  ,\n" +
+                COLUMN_MODIFIED_AT.name + " INTEGER  NOT NULL  ,\n" +
+                COLUMN_LOCAL_VERSION.name + " INTEGER  NOT NULL  ,\n" +
+                COLUMN_SERVER_VERSION.name + " INTEGER  NOT NULL  ,\n" +
+                "PRIMARY KEY(" + COLUMN_SYNC_ID.name + "));");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " (\n" +
+                COLUMN_DEVICE_ID + " TEXT  NOT NULL  ,\n" +
+                COLUMN_SYNC_TOKEN + " INTEGER  NOT NULL  );");
+
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(COLUMN_DEVICE_ID, UUID.randomUUID().toString());
+        contentValues.put(COLUMN_SYNC_TOKEN, 0);
+        db.insert(TABLE_SYNC_STATE, null, contentValues);
+    }
+
+    /**
+     * Creates the gallery table and the index its pages are read in order with
+     */
+    private void createGalleryTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_GALLERY + " (\n" +
+                COLUMN_ID.name + " INTEGER  NOT NULL  ,\n" +
+                COLUMN_PLANT_ID + " INTEGER  NOT NULL  ,\n" +
+                COLUMN_TAKEN_AT + " INTEGER  NOT NULL  ,\n" +
+                COLUMN_PHOTO_SIZE.name + " INTEGER  NOT NULL  ,\n" +
+                COLUMN_PHOTO_HASH.name + " TEXT  NOT NULL  ,\n" +
+                COLUMN_THUMBNAIL + " BLOB  NOT NULL  ,\n" +
+                "PRIMARY KEY(" + COLUMN_ID.name + "));");
+        db.execSQL("CREATE INDEX " + INDEX_GALLERY_PLANT + " ON " + TABLE_GALLERY + " (" +
+                COLUMN_PLANT_ID + ", " + COLUMN_TAKEN_AT + ", " + COLUMN_ID.name + ")");
     }
 
     /**
      * Adds the argument plant to the plants table
      *
      * @param plant the plant to be added
+     * @return the id assigned to the new plant or -1 if it could not be added
      */
-    public void addPlant(Plant plant) {
-        try (SQLiteDatabase db = this.getWritableDatabase()) {
+    @Override
+    public long addPlant(Plant plant) {
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
             ContentValues contentValues = new ContentValues();
 
             // Add the plant's values (ID is auto incremented)
-            putNonIds(plant, contentValues);
+            long blobBytes = putNonIds(plant, contentValues);
+            putNewSyncState(contentValues, System.currentTimeMillis());
+
+            long id = db.insert(TABLE_PLANTS, null, contentValues);
+            metrics.record(Operation.ADD, start, id == -1 ? 0 : 1, blobBytes);
+            return id;
+        } catch (Exception e) {
+            metrics.recordError(Operation.ADD);
+            e.printStackTrace();
+        }
+        return -1;
+    }
 
-            db.insert(TABLE_PLANTS, null, contentValues);
+    /**
+     * Adds all the argument plants to the plants table in one transaction, which is much faster
+     * than adding them one by one
+     *
+     * @param plants the plants to be added, each one gets its new id
+     * @return the number of plants that were added
+     */
+    @Override
+    public int addPlants(List<Plant> plants) {
+        long start = metrics.start();
+        long blobBytes = 0;
+        int added = 0;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            ContentValues contentValues = new ContentValues();
+            long now = System.currentTimeMillis();
+            db.beginTransaction();
+            try {
+                for (Plant plant : plants) {
+                    contentValues.clear();
+                    blobBytes += putNonIds(plant, contentValues);
+                    putNewSyncState(contentValues, now);
+
+                    long id = db.insert(TABLE_PLANTS, null, contentValues);
+                    if (id != -1) {
+                        plant.setId(id);
+                        added++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            metrics.record(Operation.ADD_BATCH, start, added, blobBytes);
         } catch (Exception e) {
+            metrics.recordError(Operation.ADD_BATCH);
             e.printStackTrace();
+            added = 0;
         }
+        return added;
     }
 
 
@@ -121,25 +559,164 @@ public class PlantDBHandler extends SQLiteOpenHelper {
      *
      * @return list of all {@link Plant} objects in the db
      */
+    @Override
     public List<Plant> getAllPlants() {
-        String query = "SELECT * " +
-                "FROM " + TABLE_PLANTS;
+        String query = "SELECT " + PLANT_PROJECTION + "\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + NOT_REMOVED;
+
+        return getPlants(Operation.GET_ALL, query, null);
+    }
+
+    /**
+     * <p>
+     * Returns the plants whose name starts with the argument prefix (ignoring case) in the
+     * argument order.
+     * </p>
+     * <p>
+     * The prefix is matched as a range on the name index so the search does not scan the table.
+     * Name and age orders are applied by SQLite; urgency depends on the watering interval which is
+     * not stored in a sortable form, so that order is applied to the (already filtered) result.
+     * </p>
+     *
+     * @param namePrefix         prefix of the plant name, empty for all plants
+     * @param sortOrder          order of the result
+     * @param cancellationSignal signal to abort the query with, may be null
+     * @return list of the matching {@link Plant} objects, empty if there are none or the query
+     * was cancelled
+     */
+    public List<Plant> searchPlants(String namePrefix, PlantSortOrder sortOrder,
+                                    CancellationSignal cancellationSignal) {
+        StringBuilder query = new StringBuilder("SELECT " + PLANT_PROJECTION + "\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + NOT_REMOVED);
+        List<String> args = new ArrayList<>(2);
+
+        if (!namePrefix.isEmpty()) {
+            namePrefix = asciiLowerCase(namePrefix); // NOCASE only folds ASCII letters
+            query.append(" AND ").append(COLUMN_NAME.name).append(" >= ? COLLATE NOCASE");
+            args.add(namePrefix);
+            String upperBound = prefixUpperBound(namePrefix);
+            if (Objects.nonNull(upperBound)) {
+                query.append(" AND ").append(COLUMN_NAME.name).append(" < ? COLLATE NOCASE");
+                args.add(upperBound);
+            }
+        }
+        query.append('\n');
+
+        switch (sortOrder) {
+            case NAME:
+                query.append("ORDER BY ").append(COLUMN_NAME.name).append(" COLLATE NOCASE");
+                break;
+            case AGE:
+                // ISO-8601 date/times sort chronologically as text
+                query.append("ORDER BY ").append(COLUMN_BIRTHDAY.name).append(" IS NULL, ")
+                        .append(COLUMN_BIRTHDAY.name);
+                break;
+            case MOST_URGENT:
+                break;
+        }
+
+        List<Plant> result = getPlants(Operation.SEARCH, query.toString(),
+                args.toArray(new String[0]), cancellationSignal);
+
+        if (sortOrder == PlantSortOrder.MOST_URGENT) {
+            result = new ArrayList<>(result);
+            result.sort(Comparator.comparing(PlantUtils::nextWatering));
+        }
+        return result;
+    }
 
-        return getPlants(query);
+    @Override
+    public List<Plant> searchPlants(String namePrefix, PlantSortOrder sortOrder) {
+        return searchPlants(namePrefix, sortOrder, null);
+    }
+
+    /**
+     * Lower cases only the ASCII letters of the string, the same way the NOCASE collation does
+     */
+    private static String asciiLowerCase(String string) {
+        char[] chars = string.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the smallest string that NOCASE orders after every string that starts with the
+     * argument lower cased prefix, or null if there is no such string
+     */
+    private static String prefixUpperBound(String prefix) {
+        int lastIndex = prefix.length() - 1;
+        char last = prefix.charAt(lastIndex);
+        if (last == Character.MAX_VALUE || Character.isSurrogate(last)) {
+            return null; // no upper bound, the lower bound alone is still correct but slower
+        }
+        char next = (char) (last + 1);
+        if (next >= 'A' && next <= 'Z') {
+            // NOCASE compares upper case letters as lower case ones, the next character after
+            // the '@' that it does not fold is '['
+            next = '[';
+        }
+        return prefix.substring(0, lastIndex) + next;
     }
 
     /**
-     * Finds a specific plant by its id in the plants table
+     * <p>
+     * Streams all the plants of the table through the argument buffer.<br>
+     * </p>
+     * <p>
+     * The buffer is filled with the next rows and handed to the consumer until the table is
+     * exhausted. The plant objects in the buffer are reused between batches, so the consumer must
+     * copy anything it wants to keep.
+     * </p>
+     *
+     * @param buffer   reusable buffer, its length is the batch size
+     * @param consumer receives each batch and the number of plants in it
+     */
+    @Override
+    public void scanAllPlants(Plant[] buffer, PlantBatchConsumer consumer) {
+        String query = "SELECT " + PLANT_PROJECTION + "\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + NOT_REMOVED;
+
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            try (Cursor cursor = db.rawQuery(query, null)) {
+                PlantCursorMapper mapper = new PlantCursorMapper(cursor, this);
+                int count;
+                long rows = 0;
+                while ((count = mapper.fill(buffer)) > 0) {
+                    consumer.accept(buffer, count);
+                    rows += count;
+                }
+                metrics.record(Operation.SCAN, start, rows, 0);
+            }
+        } catch (Exception e) {
+            metrics.recordError(Operation.SCAN);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finds a specific plant by its id in the plants table. The id is the table's primary key so
+     * this is a single indexed lookup
      *
      * @param id the id of the plant
      * @return optional containing the plant or empty
      */
+    @Override
     public Optional<Plant> getPlantById(long id) {
-        String query = "SELECT *\n" +
+        String query = "SELECT " + PLANT_PROJECTION + "\n" +
                 "FROM " + TABLE_PLANTS + "\n" +
-                "WHERE _id = " + id + "\n";
+                "WHERE " + COLUMN_ID.name + " = ? AND " + NOT_REMOVED + "\n";
 
-        List<Plant> result = getPlants(query);
+        List<Plant> result = getPlants(Operation.GET_BY_ID, query,
+                new String[]{Long.toString(id)});
         if (!result.isEmpty()) {
             return Optional.of(result.get(0));
         }
@@ -151,95 +728,929 @@ public class PlantDBHandler extends SQLiteOpenHelper {
      *
      * @param plant the new plant to be placed in place of the previous one in the table
      */
+    @Override
     public void updatePlant(Plant plant) {
-        try (SQLiteDatabase db = this.getWritableDatabase()) {
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
             ContentValues contentValues = new ContentValues();
 
             // Add the plant's values (ID is auto incremented)
-            putNonIds(plant, contentValues);
+            long blobBytes = putNonIds(plant, contentValues);
+            contentValues.put(COLUMN_MODIFIED_AT.name, System.currentTimeMillis());
 
-            db.update(TABLE_PLANTS, contentValues,
-                    COLUMN_ID.name + " = ?", new String[]{Long.toString(plant.getId())});
+            int rows;
+            db.beginTransaction();
+            try {
+                String[] idArgs = {Long.toString(plant.getId())};
+                rows = db.update(TABLE_PLANTS, contentValues, COLUMN_ID.name + " = ?", idArgs);
+                db.execSQL("UPDATE " + TABLE_PLANTS + " SET " + COLUMN_LOCAL_VERSION.name +
+                        " = " + COLUMN_LOCAL_VERSION.name + " + 1\n" +
+                        "WHERE " + COLUMN_ID.name + " = ?", idArgs);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            metrics.record(Operation.UPDATE, start, rows, blobBytes);
         } catch (Exception e) {
+            metrics.recordError(Operation.UPDATE);
             e.printStackTrace();
         }
     }
 
     /**
-     * Removes a plant in the table by its id
+     * Removes a plant in the table by its id. If the sync server has seen the plant, a tombstone
+     * is left for the next sync to push
      *
      * @param id the id of the plant to be removed
      * @return success/failure of the remove operation
      */
+    @Override
     public boolean removePlant(long id) {
-        try (SQLiteDatabase db = this.getWritableDatabase()) {
-            return db.delete(TABLE_PLANTS, COLUMN_ID.name + " = ?",
-                    new String[]{Long.toString(id)}) > 0;
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            int rows;
+            db.beginTransaction();
+            try {
+                rows = deleteWithTombstones(db, COLUMN_ID.name + " = ?",
+                        new Object[]{id}, System.currentTimeMillis());
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            metrics.record(Operation.REMOVE, start, rows, 0);
+            return rows > 0;
 
         } catch (Exception e) {
+            metrics.recordError(Operation.REMOVE);
             e.printStackTrace();
         }
         return false;
     }
 
+    /**
+     * Marks a plant as removed, which hides it from every query but keeps its row until it is
+     * purged, so that the removal can be undone with {@link #restorePlant(long)}. The next sync
+     * pushes the removal as a deletion
+     *
+     * @param id the id of the plant to be removed
+     * @return true if the plant was found and was not already removed
+     */
+    public boolean markRemoved(long id) {
+        return setRemovedAt(Operation.REMOVE, id, System.currentTimeMillis(), NOT_REMOVED);
+    }
+
+    /**
+     * Undoes {@link #markRemoved(long)} if the plant has not been purged yet. The next sync pushes
+     * the plant again
+     *
+     * @param id the id of the removed plant
+     * @return true if the plant was restored
+     */
+    public boolean restorePlant(long id) {
+        return setRemovedAt(Operation.RESTORE, id, null, COLUMN_REMOVED_AT.name + " IS NOT NULL");
+    }
+
+    private boolean setRemovedAt(Operation operation, long id, Long removedAt, String condition) {
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(COLUMN_REMOVED_AT.name, removedAt);
+            contentValues.put(COLUMN_MODIFIED_AT.name, System.currentTimeMillis());
+
+            int rows;
+            db.beginTransaction();
+            try {
+                String[] idArgs = {Long.toString(id)};
+                rows = db.update(TABLE_PLANTS, contentValues,
+                        COLUMN_ID.name + " = ? AND " + condition, idArgs);
+                if (rows > 0) {
+                    db.execSQL("UPDATE " + TABLE_PLANTS + " SET " + COLUMN_LOCAL_VERSION.name +
+                            " = " + COLUMN_LOCAL_VERSION.name + " + 1\n" +
+                            "WHERE " + COLUMN_ID.name + " = ?", idArgs);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            metrics.record(operation, start, rows, 0);
+            return rows > 0;
+        } catch (Exception e) {
+            metrics.recordError(operation);
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the plants removed up to the argument time with their galleries in one transaction,
+     * then deletes the photo files no row refers to any more once it is committed
+     *
+     * @param removedBefore epoch millisecond, plants removed later are kept so they can still be
+     *                      restored
+     * @return the number of plants deleted
+     */
+    public int purgeRemoved(long removedBefore) {
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            // photos stored again after this may be about to be referenced
+            long now = System.currentTimeMillis();
+            Set<String> orphaned = new HashSet<>();
+            int rows;
+            String removed = COLUMN_REMOVED_AT.name + " <= ?";
+            String[] removedArgs = {Long.toString(removedBefore)};
+            db.beginTransaction();
+            try {
+                try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_PHOTO_HASH.name + "\n" +
+                        "FROM " + TABLE_PLANTS + "\n" +
+                        "WHERE " + removed + " AND " + COLUMN_PHOTO_HASH.name + " IS NOT NULL\n" +
+                        "UNION SELECT " + COLUMN_PHOTO_HASH.name + " FROM " + TABLE_GALLERY + "\n" +
+                        "WHERE " + COLUMN_PLANT_ID + " IN (\n" +
+                        "    SELECT " + COLUMN_ID.name + " FROM " + TABLE_PLANTS +
+                        " WHERE " + removed + ")", new String[]{removedArgs[0], removedArgs[0]})) {
+                    while (cursor.moveToNext()) {
+                        orphaned.add(cursor.getString(0));
+                    }
+                }
+                rows = deleteWithTombstones(db, removed, new Object[]{removedBefore}, now);
+                if (!orphaned.isEmpty()) {
+                    orphaned.removeAll(referencedPhotos(db));
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            long photoBytes = 0;
+            for (String hash : orphaned) {
+                photoBytes += photoStore.delete(hash, now);
+            }
+            metrics.record(Operation.PURGE, start, rows, photoBytes);
+            return rows;
+        } catch (Exception e) {
+            metrics.recordError(Operation.PURGE);
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if there are removed plants waiting to be purged
+     */
+    public boolean hasRemovedPlants() {
+        return DatabaseUtils.queryNumEntries(this.getReadableDatabase(), TABLE_PLANTS,
+                COLUMN_REMOVED_AT.name + " IS NOT NULL") > 0;
+    }
+
+    /**
+     * <p>
+     * Returns the free pages of the database file to the file system.<br>
+     * </p>
+     * <p>
+     * Databases created before incremental vacuum was enabled are converted with a full VACUUM
+     * the first time, which rewrites the whole file, so this must not run on the main thread.
+     * </p>
+     *
+     * @return the number of bytes the file shrank by
+     */
+    public long incrementalVacuum() {
+        return incrementalVacuum(Long.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #incrementalVacuum()} but stops freeing pages at the argument time. The
+     * conversion of an old database is done in full regardless
+     *
+     * @param deadlineNanos {@link System#nanoTime()} to stop at
+     * @return the number of bytes the file shrank by
+     */
+    private long incrementalVacuum(long deadlineNanos) {
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+            long pagesBefore = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+            if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != 2) {
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                db.execSQL("VACUUM");
+            } else {
+                while (DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) > 0
+                        && System.nanoTime() - deadlineNanos < 0) {
+                    step(db, "PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")");
+                }
+            }
+            long pagesAfter = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+            long reclaimed = (pagesBefore - pagesAfter) * pageSize;
+            metrics.record(Operation.VACUUM, start, pagesBefore - pagesAfter, 0);
+            return reclaimed;
+        } catch (Exception e) {
+            metrics.recordError(Operation.VACUUM);
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * <p>
+     * Keeps the database small and its queries fast over months of use.<br>
+     * </p>
+     * <p>
+     * Deletes the photo files no plant or gallery refers to any more, returns the free pages left
+     * by purges to the file system, refreshes the statistics the query planner picks indices with
+     * and checks the file for corruption. Steps
+     * that do not fit in the time budget are skipped until the next run. The database is busy for
+     * the whole time, so this should only run when the app is not in use.
+     * </p>
+     *
+     * @param budgetMillis time after which no more work is started
+     * @return what was done
+     */
+    public MaintenanceReport maintain(long budgetMillis) {
+        long start = metrics.start();
+        long deadline = start + budgetMillis * 1_000_000;
+        MaintenanceReport report = new MaintenanceReport();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+            report.sizeBefore = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null) * pageSize;
+            report.freeBefore =
+                    DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) * pageSize;
+
+            report.photosReclaimed = deleteUnusedPhotos(db);
+            report.reclaimed = incrementalVacuum(deadline);
+
+            if (System.nanoTime() - deadline < 0) {
+                // the first time there are no statistics and optimize would skip the analysis
+                boolean hasStatistics = DatabaseUtils.longForQuery(db,
+                        "SELECT count(*) FROM sqlite_master WHERE name = 'sqlite_stat1'", null) > 0;
+                step(db, hasStatistics ? "PRAGMA optimize" : "ANALYZE");
+                report.analyzed = true;
+            }
+
+            if (System.nanoTime() - deadline < 0) {
+                try (Cursor cursor = db.rawQuery(
+                        "PRAGMA quick_check(" + MAX_INTEGRITY_MESSAGES + ")", null)) {
+                    while (cursor.moveToNext()) {
+                        String message = cursor.getString(0);
+                        if (!"ok".equals(message)) report.integrityProblems.add(message);
+                    }
+                }
+                report.checked = true;
+            }
+
+            report.sizeAfter = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null) * pageSize;
+            report.millis = (System.nanoTime() - start) / 1_000_000;
+            if (report.isIntact()) {
+                metrics.record(Operation.MAINTENANCE, start, 0, report.reclaimed);
+            } else {
+                metrics.recordError(Operation.MAINTENANCE);
+            }
+        } catch (Exception e) {
+            metrics.recordError(Operation.MAINTENANCE);
+            e.printStackTrace();
+        }
+        return report;
+    }
+
+    /**
+     * Deletes the photo files that were written a while ago and that no plant or gallery entry
+     * refers to, such as replaced photos and photos a purge could not delete
+     *
+     * @return bytes deleted
+     */
+    private long deleteUnusedPhotos(SQLiteDatabase db) {
+        // read before the files are listed, so a photo stored in between is young enough to stay
+        long modifiedBefore = System.currentTimeMillis() - UNUSED_PHOTO_GRACE_MILLIS;
+        return photoStore.deleteUnreferenced(referencedPhotos(db), modifiedBefore);
+    }
+
+    /**
+     * @return hashes of the photos some plant or gallery entry refers to
+     */
+    private static Set<String> referencedPhotos(SQLiteDatabase db) {
+        Set<String> referenced = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_PHOTO_HASH.name + " FROM " +
+                TABLE_PLANTS + " WHERE " + COLUMN_PHOTO_HASH.name + " IS NOT NULL\n" +
+                "UNION SELECT " + COLUMN_PHOTO_HASH.name + " FROM " + TABLE_GALLERY, null)) {
+            while (cursor.moveToNext()) {
+                referenced.add(cursor.getString(0));
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Runs a statement that may return rows, stepping it to the end
+     */
+    private static void step(SQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            while (cursor.moveToNext()) {
+                // nothing to read
+            }
+        }
+    }
+
+    /**
+     * Deletes the matching plants. The ones the sync server has seen leave a tombstone, so that
+     * the next sync pushes the removal, unless they were removed and that removal is pushed
+     * already. Must be called inside a transaction
+     *
+     * @return the number of plants deleted
+     */
+    private static int deleteWithTombstones(SQLiteDatabase db, String where, Object[] args,
+                                            long now) {
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_TOMBSTONES + "\n" +
+                "SELECT " + COLUMN_SYNC_ID.name + ", " + now + ", " +
+                COLUMN_LOCAL_VERSION.name + " + 1, " + COLUMN_SERVER_VERSION.name + "\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + where + " AND " + COLUMN_SERVER_VERSION.name + " > 0\n" +
+                "AND NOT (" + COLUMN_REMOVED_AT.name + " IS NOT NULL AND " +
+                COLUMN_SYNCED_VERSION.name + " = " + COLUMN_LOCAL_VERSION.name + ")", args);
+        deleteGalleries(db, where, args);
+        String[] whereArgs = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            whereArgs[i] = args[i].toString();
+        }
+        return db.delete(TABLE_PLANTS, where, whereArgs);
+    }
+
+    /**
+     * Deletes the galleries of the plants matching the argument condition, before the plants
+     * themselves are deleted. Must be called inside a transaction
+     */
+    static void deleteGalleries(SQLiteDatabase db, String where, Object[] args) {
+        db.execSQL("DELETE FROM " + TABLE_GALLERY + "\n" +
+                "WHERE " + COLUMN_PLANT_ID + " IN (\n" +
+                "    SELECT " + COLUMN_ID.name + " FROM " + TABLE_PLANTS + " WHERE " + where + ")",
+                args);
+    }
+
+    /**
+     * Writes all the plants, their sync ids and their photos to the argument stream as a
+     * {@link PlantArchive}. Plants are read a page at a time and photos are copied in pieces, so
+     * memory use does not depend on the size of the collection. The gallery photos of the plants
+     * are not part of the archive
+     *
+     * @param out      the stream to write to, it is not closed
+     * @param listener receives the number of plants written after each one
+     * @return the number of plants written
+     * @throws IOException if writing fails or a photo cannot be read
+     */
+    public long exportArchive(OutputStream out, PlantArchive.ProgressListener listener)
+            throws IOException {
+        return exportArchive(out, listener, null);
+    }
+
+    /**
+     * Like {@link #exportArchive(OutputStream, PlantArchive.ProgressListener)}, but reads the
+     * pages of plants on the argument executor and writes the archive on the calling thread
+     *
+     * @param databaseExecutor the thread the database is used on, null for the calling thread
+     */
+    public long exportArchive(OutputStream out, PlantArchive.ProgressListener listener,
+                              @Nullable ExecutorService databaseExecutor) throws IOException {
+        long start = metrics.start();
+        long done = 0;
+        long blobBytes = 0;
+        try {
+            long total = onDatabase(databaseExecutor, () -> DatabaseUtils.queryNumEntries(
+                    this.getReadableDatabase(), TABLE_PLANTS, NOT_REMOVED));
+            PlantArchiveWriter writer = new PlantArchiveWriter(out, total);
+
+            List<Plant> plants = new ArrayList<>(EXPORT_PAGE_PLANTS);
+            List<String> syncIds = new ArrayList<>(EXPORT_PAGE_PLANTS);
+            long afterId = -1;
+            do {
+                long after = afterId;
+                plants.clear();
+                syncIds.clear();
+                onDatabase(databaseExecutor, () -> readArchivePage(after, plants, syncIds));
+                for (int i = 0; i < plants.size(); i++) {
+                    Plant plant = plants.get(i);
+                    writer.write(plant, syncIds.get(i));
+                    blobBytes += plant.getPhoto().map(PlantPhoto::getSize).orElse(0L);
+                    listener.onProgress(++done, total);
+                    afterId = plant.getId();
+                }
+            } while (plants.size() == EXPORT_PAGE_PLANTS);
+            writer.finish();
+            metrics.record(Operation.EXPORT, start, done, blobBytes);
+            return done;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(Operation.EXPORT);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next page of plants to export, in the order of their ids
+     *
+     * @return the number of plants read
+     */
+    private int readArchivePage(long afterId, List<Plant> plants, List<String> syncIds) {
+        String query = "SELECT " + PLANT_PROJECTION + ", " + COLUMN_SYNC_ID.name + "\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + NOT_REMOVED + " AND " + COLUMN_ID.name + " > ?\n" +
+                "ORDER BY " + COLUMN_ID.name + "\n" +
+                "LIMIT " + EXPORT_PAGE_PLANTS;
+        try (Cursor cursor = this.getReadableDatabase().rawQuery(query,
+                new String[]{Long.toString(afterId)})) {
+            PlantCursorMapper mapper = new PlantCursorMapper(cursor, this);
+            int syncIdIndex = cursor.getColumnIndexOrThrow(COLUMN_SYNC_ID.name);
+            while (cursor.moveToNext()) {
+                plants.add(mapper.map());
+                syncIds.add(cursor.getString(syncIdIndex));
+            }
+            return cursor.getCount();
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the plants of a {@link PlantArchive} into the plants table.<br>
+     * </p>
+     * <p>
+     * A plant replaces the stored plant with the same sync id, which is then pending for sync as
+     * if it had been edited. Any other plant is added with a new id, keeping the sync id it was
+     * exported with if it has one, so importing an archive twice does not add its plants twice.
+     * Photos are streamed into the photo files while the archive is read and plants are written
+     * in transactions of up to {@value #IMPORT_BATCH_PLANTS} plants or
+     * {@value #IMPORT_BATCH_BYTES} bytes of photos, so only one batch is lost if the import fails
+     * part way and no photo is held in memory.
+     * </p>
+     *
+     * @param in       the stream to read from, it is not closed
+     * @param listener receives the number of plants stored after each batch
+     * @return the number of plants stored
+     * @throws IOException if the archive cannot be read or a plant cannot be stored
+     */
+    public long importArchive(InputStream in, PlantArchive.ProgressListener listener)
+            throws IOException {
+        return importArchive(in, listener, null);
+    }
+
+    /**
+     * Like {@link #importArchive(InputStream, PlantArchive.ProgressListener)}, but reads the
+     * archive and its photos on the calling thread and writes the batches of plants on the
+     * argument executor
+     *
+     * @param databaseExecutor the thread the database is used on, null for the calling thread
+     */
+    public long importArchive(InputStream in, PlantArchive.ProgressListener listener,
+                              @Nullable ExecutorService databaseExecutor) throws IOException {
+        long start = metrics.start();
+        long done = 0;
+        long blobBytes = 0;
+        try {
+            PlantArchiveReader reader = new PlantArchiveReader(in, photoStore);
+            long now = System.currentTimeMillis();
+            List<Plant> plants = new ArrayList<>(IMPORT_BATCH_PLANTS);
+            List<String> syncIds = new ArrayList<>(IMPORT_BATCH_PLANTS);
+
+            Plant plant = reader.next();
+            while (plant != null) {
+                plants.clear();
+                syncIds.clear();
+                long batchBytes = 0;
+                while (plant != null && plants.size() < IMPORT_BATCH_PLANTS
+                        && batchBytes < IMPORT_BATCH_BYTES) {
+                    plants.add(plant);
+                    syncIds.add(reader.getSyncId());
+                    batchBytes += plant.getPhoto().map(PlantPhoto::getSize).orElse(0L);
+                    plant = reader.next();
+                }
+                blobBytes += onDatabase(databaseExecutor,
+                        () -> importBatch(plants, syncIds, now));
+                done += plants.size();
+                listener.onProgress(done, reader.getCount());
+            }
+            metrics.record(Operation.IMPORT, start, done, blobBytes);
+            return done;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(Operation.IMPORT);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a batch of imported plants in one transaction
+     *
+     * @return the number of photo bytes written
+     */
+    private long importBatch(List<Plant> plants, List<String> syncIds, long now)
+            throws IOException {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues contentValues = new ContentValues();
+        long bytes = 0;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < plants.size(); i++) {
+                Plant plant = plants.get(i);
+                contentValues.clear();
+                bytes += putNonIds(plant, contentValues);
+                long id = putImportSyncState(db, syncIds.get(i), contentValues, now);
+                if (id != -1) {
+                    contentValues.putNull(COLUMN_REMOVED_AT.name); // restored
+                    db.update(TABLE_PLANTS, contentValues, COLUMN_ID.name + " = ?",
+                            new String[]{Long.toString(id)});
+                } else if (db.insert(TABLE_PLANTS, null, contentValues) == -1) {
+                    throw new IOException("Could not store plant " + plant.getName());
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return bytes;
+    }
+
+    /**
+     * Runs the argument call on the database executor and waits for it, or runs it on the
+     * calling thread if there is no executor
+     */
+    private static <T> T onDatabase(@Nullable ExecutorService executor, DatabaseCall<T> call)
+            throws IOException {
+        if (executor == null) {
+            return call.run();
+        }
+        try {
+            return executor.submit(call::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the database");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private interface DatabaseCall<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Exchanges the changes made since the last sync with the argument server, see
+     * {@link SyncEngine}. The bytes recorded for the operation are the bytes sent and received
+     *
+     * @param server the sync server
+     * @return what the sync did
+     * @throws IOException if a request fails, the batches exchanged before it are kept
+     */
+    public SyncReport sync(SyncServer server) throws IOException {
+        return sync(server, null);
+    }
+
+    /**
+     * Exchanges the changes made since the last sync with the argument server, making the
+     * requests on the calling thread and the reads and writes of the database on the argument
+     * executor
+     *
+     * @param server           the sync server
+     * @param databaseExecutor the thread the database is used on, null for the calling thread
+     * @return what the sync did
+     * @throws IOException if a request fails, the batches exchanged before it are kept
+     */
+    public SyncReport sync(SyncServer server, @Nullable ExecutorService databaseExecutor)
+            throws IOException {
+        long start = metrics.start();
+        try {
+            SyncEngine engine = new SyncEngine(new PlantSyncStore(this), server);
+            engine.setLocalExecutor(databaseExecutor);
+            SyncReport report = engine.sync();
+            metrics.record(Operation.SYNC, start, report.getPushed() + report.getPulled(),
+                    report.getBytesSent() + report.getBytesReceived());
+            return report;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(Operation.SYNC);
+            throw e;
+        }
+    }
+
+    /**
+     * Puts the change log columns of a plant that was just created on this device
+     */
+    private static void putNewSyncState(ContentValues contentValues, long now) {
+        contentValues.put(COLUMN_SYNC_ID.name, UUID.randomUUID().toString());
+        contentValues.put(COLUMN_MODIFIED_AT.name, now);
+        contentValues.put(COLUMN_LOCAL_VERSION.name, 1);
+        contentValues.put(COLUMN_SYNCED_VERSION.name, 0);
+        contentValues.put(COLUMN_SERVER_VERSION.name, 0);
+    }
+
+    /**
+     * Puts the change log columns of an imported plant. A plant with the sync id of a stored one
+     * replaces it and becomes pending, like an edit. Any other plant keeps its sync id and takes
+     * over the versions of its tombstone, if it was deleted here, so every device sees it as the
+     * same plant
+     *
+     * @param syncId the sync id the plant was exported with, or null to give it a new one
+     * @return id of the stored plant with the sync id, -1 if the plant is new
+     */
+    private static long putImportSyncState(SQLiteDatabase db, String syncId,
+                                           ContentValues contentValues, long now) {
+        putNewSyncState(contentValues, now);
+        if (syncId == null) return -1;
+        contentValues.put(COLUMN_SYNC_ID.name, syncId);
+
+        String[] args = {syncId};
+        String query = "SELECT " + COLUMN_ID.name + ", " + COLUMN_LOCAL_VERSION.name + ", " +
+                COLUMN_SYNCED_VERSION.name + ", " + COLUMN_SERVER_VERSION.name + "\n" +
+                "FROM " + TABLE_PLANTS + "\n" +
+                "WHERE " + COLUMN_SYNC_ID.name + " = ?";
+        try (Cursor cursor = db.rawQuery(query, args)) {
+            if (cursor.moveToFirst()) {
+                contentValues.put(COLUMN_LOCAL_VERSION.name, cursor.getLong(1) + 1);
+                contentValues.put(COLUMN_SYNCED_VERSION.name, cursor.getLong(2));
+                contentValues.put(COLUMN_SERVER_VERSION.name, cursor.getLong(3));
+                return cursor.getLong(0);
+            }
+        }
+
+        String tombstoneQuery = "SELECT " + COLUMN_LOCAL_VERSION.name + ", " +
+                COLUMN_SERVER_VERSION.name + "\n" +
+                "FROM " + TABLE_TOMBSTONES + "\n" +
+                "WHERE " + COLUMN_SYNC_ID.name + " = ?";
+        try (Cursor cursor = db.rawQuery(tombstoneQuery, args)) {
+            if (cursor.moveToFirst()) {
+                contentValues.put(COLUMN_LOCAL_VERSION.name, cursor.getLong(0) + 1);
+                contentValues.put(COLUMN_SERVER_VERSION.name, cursor.getLong(1));
+            }
+        }
+        db.delete(TABLE_TOMBSTONES, COLUMN_SYNC_ID.name + " = ?", args);
+        return -1;
+    }
+
     /**
      * Puts all non-id attributes of a {@link Plant} into the argument {@link ContentValues}
      *
      * @param plant         the plant
      * @param contentValues the contentValues
+     * @return number of photo bytes put, 0 if the photo is not written
+     * @throws IOException if the photo of the plant cannot be read or written
      */
-    private void putNonIds(Plant plant, ContentValues contentValues) {
+    private long putNonIds(Plant plant, ContentValues contentValues) throws IOException {
         contentValues.put(COLUMN_NAME.name, Objects.requireNonNull(plant.getName()));
         contentValues.put(COLUMN_LAST_WATERED.name, plant.getLastWatered().toString());
         contentValues.put(COLUMN_WATERING_INTERVAL.name, plant.getWateringInterval().toString());
         contentValues.put(COLUMN_BIRTHDAY.name, plant.getBirthday().map(Object::toString).orElse(null));
-        contentValues.put(COLUMN_PHOTO.name, plant.getPhoto().orElse(null));
+        contentValues.put(COLUMN_SPECIES_ID.name, plant.getSpeciesId().orElse(null));
+
+        // a photo that is already stored for this plant is left untouched, any other is written
+        // to the photo files unless a photo with the same hash is there already
+        Optional<PlantPhoto> photo = plant.getPhoto();
+        if (!photo.isPresent()) {
+            contentValues.putNull(COLUMN_PHOTO_SIZE.name);
+            contentValues.putNull(COLUMN_PHOTO_HASH.name);
+        } else if (!photo.get().isStoredFor(plant.getId())) {
+            contentValues.put(COLUMN_PHOTO_HASH.name, photoStore.put(photo.get()));
+            contentValues.put(COLUMN_PHOTO_SIZE.name, photo.get().getSize());
+            return photo.get().getSize();
+        }
+        return 0;
+    }
+
+    /**
+     * Adds a photo to the gallery of a plant
+     *
+     * @param plantId   id of the plant
+     * @param takenAt   when the photo was taken
+     * @param photo     the encoded photo
+     * @param thumbnail the encoded thumbnail of the photo
+     * @return the new gallery entry, or null if it could not be added
+     */
+    @Nullable
+    public GalleryPhoto addGalleryPhoto(long plantId, LocalDateTime takenAt, byte[] photo,
+                                        byte[] thumbnail) {
+        long start = metrics.start();
+        try {
+            String hash = photoStore.write(new ByteArrayInputStream(photo), -1, null);
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(COLUMN_PLANT_ID, plantId);
+            contentValues.put(COLUMN_TAKEN_AT, toEpochMilli(takenAt));
+            contentValues.put(COLUMN_PHOTO_SIZE.name, photo.length);
+            contentValues.put(COLUMN_PHOTO_HASH.name, hash);
+            contentValues.put(COLUMN_THUMBNAIL, thumbnail);
+            long id = this.getWritableDatabase().insertOrThrow(TABLE_GALLERY, null, contentValues);
+            metrics.record(Operation.GALLERY_ADD, start, 1, photo.length + thumbnail.length);
+            return new GalleryPhoto(id, plantId, takenAt, hash, photo.length, thumbnail);
+        } catch (Exception e) {
+            metrics.recordError(Operation.GALLERY_ADD);
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Reads a page of a plant's gallery, newest first. Pages are found through the gallery index
+     * from where the previous one ended, so a page costs the same however deep into the gallery
+     * it is. Only the thumbnails are read
+     *
+     * @param plantId id of the plant
+     * @param after   last photo of the previous page, null for the first page
+     * @param limit   most photos in the page
+     * @return the page, shorter than the limit if it is the last one
+     */
+    public List<GalleryPhoto> getGalleryPage(long plantId, @Nullable GalleryPhoto after,
+                                             int limit) {
+        StringBuilder query = new StringBuilder("SELECT " + COLUMN_ID.name + ", " +
+                COLUMN_TAKEN_AT + ", " + COLUMN_PHOTO_HASH.name + ", " +
+                COLUMN_PHOTO_SIZE.name + ", " + COLUMN_THUMBNAIL + "\n" +
+                "FROM " + TABLE_GALLERY + "\n" +
+                "WHERE " + COLUMN_PLANT_ID + " = ?");
+        List<String> args = new ArrayList<>(4);
+        args.add(Long.toString(plantId));
+        if (after != null) {
+            query.append(" AND (" + COLUMN_TAKEN_AT + ", " + COLUMN_ID.name + ") < (?, ?)");
+            args.add(Long.toString(toEpochMilli(after.getTakenAt())));
+            args.add(Long.toString(after.getId()));
+        }
+        query.append("\nORDER BY " + COLUMN_TAKEN_AT + " DESC, " + COLUMN_ID.name + " DESC\n" +
+                "LIMIT " + limit);
+
+        long start = metrics.start();
+        List<GalleryPhoto> page = new ArrayList<>(limit);
+        try (Cursor cursor = this.getReadableDatabase()
+                .rawQuery(query.toString(), args.toArray(new String[0]))) {
+            long blobBytes = 0;
+            while (cursor.moveToNext()) {
+                byte[] thumbnail = cursor.getBlob(4);
+                blobBytes += thumbnail.length;
+                page.add(new GalleryPhoto(cursor.getLong(0), plantId,
+                        fromEpochMilli(cursor.getLong(1)), cursor.getString(2),
+                        cursor.getLong(3), thumbnail));
+            }
+            metrics.record(Operation.GALLERY_PAGE, start, page.size(), blobBytes);
+        } catch (Exception e) {
+            metrics.recordError(Operation.GALLERY_PAGE);
+            e.printStackTrace();
+        }
+        return page;
+    }
+
+    /**
+     * Opens the full photo of a gallery entry, like {@link #openPhoto(String)}
+     *
+     * @param galleryPhotoId id of the gallery entry
+     * @return stream of the encoded photo
+     * @throws IOException if there is no such entry or its photo file cannot be opened
+     */
+    public InputStream openGalleryPhoto(long galleryPhotoId) throws IOException {
+        long start = metrics.start();
+        try (Cursor cursor = this.getReadableDatabase().rawQuery(
+                "SELECT " + COLUMN_PHOTO_HASH.name + " FROM " + TABLE_GALLERY + "\n" +
+                        "WHERE " + COLUMN_ID.name + " = ?",
+                new String[]{Long.toString(galleryPhotoId)})) {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                throw new FileNotFoundException("No gallery photo " + galleryPhotoId);
+            }
+            InputStream in = photoStore.open(cursor.getString(0));
+            metrics.record(Operation.OPEN_PHOTO, start, 1, 0);
+            return in;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(Operation.OPEN_PHOTO);
+            throw e;
+        }
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromEpochMilli(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneOffset.UTC);
+    }
+
+    /**
+     * Opens a plant photo by its content hash. The photo is streamed from its file without
+     * querying the database
+     *
+     * @param hash content hash of the photo
+     * @return stream of the encoded photo
+     * @throws IOException if the photo file does not exist or cannot be opened
+     */
+    @Override
+    public InputStream openPhoto(String hash) throws IOException {
+        long start = metrics.start();
+        try {
+            InputStream in = photoStore.open(hash);
+            metrics.record(Operation.OPEN_PHOTO, start, 1, 0);
+            return in;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(Operation.OPEN_PHOTO);
+            throw e;
+        }
+    }
+
+    /**
+     * <p>
+     * Reads a photo BLOB of a database before version 8 in {@link #LEGACY_PHOTO_CHUNK_SIZE}
+     * pieces with substr() queries, so that BLOBs larger than a cursor window can be read.<br>
+     * </p>
+     * <p>
+     * SQLite reads a BLOB from its start up to the requested piece, so a photo costs more than one
+     * read of it. This is only used by the migrations, once per photo.
+     * </p>
+     */
+    private static class LegacyPhotoInputStream extends InputStream {
+        private final SQLiteDatabase db;
+        /**
+         * Selects a piece of one row's photo, given its 1-based offset, length and row id
+         */
+        private final String chunkQuery;
+        private final String rowId;
+        private byte[] chunk = new byte[0];
+        private int chunkPosition = 0;
+        /**
+         * 1-based offset in the BLOB of the next chunk, as used by substr()
+         */
+        private long nextOffset = 1;
+        private boolean exhausted = false;
+
+        LegacyPhotoInputStream(SQLiteDatabase db, String chunkQuery, long rowId) {
+            this.db = db;
+            this.chunkQuery = chunkQuery;
+            this.rowId = Long.toString(rowId);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fillChunk()) return -1;
+            return chunk[chunkPosition++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fillChunk()) return -1;
+            int count = Math.min(len, chunk.length - chunkPosition);
+            System.arraycopy(chunk, chunkPosition, b, off, count);
+            chunkPosition += count;
+            return count;
+        }
+
+        /**
+         * Loads the next chunk if the current one has been consumed
+         *
+         * @return false if there are no more bytes
+         */
+        private boolean fillChunk() throws IOException {
+            if (chunkPosition < chunk.length) return true;
+            if (exhausted) return false;
+
+            String[] args = {Long.toString(nextOffset), Integer.toString(LEGACY_PHOTO_CHUNK_SIZE),
+                    rowId};
+            try (Cursor cursor = db.rawQuery(chunkQuery, args)) {
+                if (!cursor.moveToFirst() || (cursor.isNull(0) && nextOffset == 1)) {
+                    throw new IOException("No photo for row " + rowId);
+                }
+                chunk = cursor.isNull(0) ? new byte[0] : cursor.getBlob(0);
+            } catch (RuntimeException e) {
+                throw new IOException(e);
+            }
+            chunkPosition = 0;
+            nextOffset += chunk.length;
+            exhausted = chunk.length < LEGACY_PHOTO_CHUNK_SIZE;
+            return chunk.length > 0;
+        }
     }
 
     /**
      * General SELECT method that returns all its {@link Plant} results based on the query
      *
-     * @param query select query that may contain a where clause and more
+     * @param operation     the operation the query is recorded as
+     * @param query         select query that may contain a where clause and more
+     * @param selectionArgs values of the query's ? placeholders, may be null
      * @return {@link List} of all plants returned by the query
      */
-    private List<Plant> getPlants(String query) {
-        try (SQLiteDatabase db = this.getReadableDatabase()) {
-            try (Cursor cursor = db.rawQuery(query, null)) {
-                if (!cursor.moveToFirst()) {
-                    return Collections.emptyList();
-                }
-                List<Plant> result = new ArrayList<>(cursor.getCount() + 1);
-                for (; !cursor.isAfterLast(); cursor.moveToNext()) {
-                    // create the new object
-                    Plant current = new Plant();
-                    // id
-                    current.setId(cursor.getLong(COLUMN_ID.index));
-                    // name
-                    current.setName(cursor.getString(COLUMN_NAME.index));
-                    // birthday
-                    current.setBirthday(
-                            Optional.ofNullable(cursor.getString(COLUMN_BIRTHDAY.index))
-                                    .map(LocalDateTime::parse)
-                                    .orElse(null)
-                    );
-                    // last watered
-                    current.setLastWatered(
-                            LocalDateTime.parse(cursor.getString(COLUMN_LAST_WATERED.index))
-                    );
-                    // watering interval
-                    current.setWateringInterval(
-                            Duration.parse(cursor.getString(COLUMN_WATERING_INTERVAL.index))
-                    );
-                    // photo
-                    current.setPhoto(
-                            Optional.ofNullable(cursor.getBlob(COLUMN_PHOTO.index))
-                                    .orElse(null)
-                    );
-                    result.add(current); // and add it to the result
-                }
-                return result;
+    private List<Plant> getPlants(Operation operation, String query, String[] selectionArgs) {
+        return getPlants(operation, query, selectionArgs, null);
+    }
+
+    /**
+     * Cancellable version of {@link #getPlants(Operation, String, String[])}
+     *
+     * @param cancellationSignal signal to abort the query with, may be null
+     */
+    private List<Plant> getPlants(Operation operation, String query, String[] selectionArgs,
+                                  CancellationSignal cancellationSignal) {
+        long start = metrics.start();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            try (Cursor cursor = db.rawQuery(query, selectionArgs, cancellationSignal)) {
+                List<Plant> plants = new PlantCursorMapper(cursor, this).mapAll();
+                metrics.record(operation, start, plants.size(), 0);
+                return plants;
             }
+        } catch (OperationCanceledException e) {
+            metrics.recordCancellation(operation);
         } catch (Exception e) {
+            metrics.recordError(operation);
             e.printStackTrace();
         }
         return Collections.emptyList();
@@ -0,0 +1,73 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link PlantDBHandler#maintain(long)} once a day while the device is idle and charging, and
+ * keeps the report of the last run for the debug panel
+ */
+public class PlantMaintenanceWorker extends Worker {
+
+    private static final String WORK_NAME = "database_maintenance";
+    private static final String PREFERENCES = "maintenance";
+    private static final String KEY_LAST_REPORT = "last_report";
+    /**
+     * Well under the 10 minutes a job is allowed, the database is busy while it runs
+     */
+    private static final long BUDGET_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    public PlantMaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the daily maintenance, unless it is already scheduled
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                PlantMaintenanceWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * @return the report of the last run, null if it has not run yet
+     */
+    public static String getLastReport(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+                .getString(KEY_LAST_REPORT, null);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            MaintenanceReport report = PlantRepository.getInstance(getApplicationContext())
+                    .maintain(BUDGET_MILLIS);
+            getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+                    .edit()
+                    .putString(KEY_LAST_REPORT, LocalDateTime.now().withNano(0) + ": " + report)
+                    .apply();
+            return Result.success();
+        } catch (InterruptedException e) {
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Deletes removed plants and their photo files in the background.<br>
+ * </p>
+ * <p>
+ * Removing a plant only hides it (see {@link PlantRepository#removePlant(long)}), which is instant
+ * and can be undone. Deleting the rows, their galleries and the photo files only they referred to
+ * is left to this job: it runs a while after the first removal, so every removal made until then
+ * is purged in the same transaction, followed by one incremental vacuum for the freed rows.
+ * </p>
+ */
+public class PlantPurgeWorker extends Worker {
+
+    private static final String WORK_NAME = "purge_removed_plants";
+    /**
+     * Time from the first removal to the purge
+     */
+    private static final long PURGE_DELAY_MINUTES = 15;
+    /**
+     * Plants removed more recently than this are left for the next run, their undo may still
+     * be on screen
+     */
+    private static final long UNDO_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    public PlantPurgeWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules a purge unless one is already scheduled, in which case the new removals join it
+     */
+    static void schedule(Context context) {
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP,
+                request());
+    }
+
+    private static OneTimeWorkRequest request() {
+        return new OneTimeWorkRequest.Builder(PlantPurgeWorker.class)
+                .setInitialDelay(PURGE_DELAY_MINUTES, TimeUnit.MINUTES)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        PlantRepository repository = PlantRepository.getInstance(getApplicationContext());
+        try {
+            repository.purgeRemoved(System.currentTimeMillis() - UNDO_WINDOW_MILLIS);
+            if (repository.hasRemovedPlants()) {
+                // removed during the undo window, a new request runs after this one
+                WorkManager.getInstance(getApplicationContext()).enqueueUniqueWork(WORK_NAME,
+                        ExistingWorkPolicy.APPEND_OR_REPLACE, request());
+            }
+            return Result.success();
+        } catch (InterruptedException e) {
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,679 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.CancellationSignal;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import gr.auth.androidproject.plants.archive.ArchiveProgress;
+import gr.auth.androidproject.plants.metrics.DataLayerMetrics;
+import gr.auth.androidproject.plants.sync.SyncReport;
+import gr.auth.androidproject.plants.sync.SyncServer;
+
+/**
+ * <p>
+ * Observable access point to the plants table.<br>
+ * </p>
+ * <p>
+ * Queries are exposed as {@link LiveData} that cache their last result. Every write bumps the
+ * version of the table and, once the write has committed, the queries that are currently observed
+ * are re-run exactly once for all the writes queued up to that point. Queries without observers
+ * are re-run lazily when they become active again.
+ * </p>
+ * <p>
+ * All database work happens on a single background thread, so writes are applied in the order they
+ * were issued and never block the caller. Sync talks to the server on a thread of its own and
+ * only hands its reads and writes of the database to the database thread, so queries and writes
+ * are not held up by the network.
+ * </p>
+ */
+public class PlantRepository {
+
+    /**
+     * Number of plants read at a time when streaming the whole table
+     */
+    private static final int SCAN_BATCH_SIZE = 256;
+
+    /**
+     * Search of the home list when the app starts
+     */
+    private static final String DEFAULT_SEARCH_PREFIX = "";
+    private static final PlantSortOrder DEFAULT_SEARCH_ORDER = PlantSortOrder.NAME;
+
+    private static volatile PlantRepository instance;
+
+    private final Context context;
+    private final ContentResolver contentResolver;
+    private final PlantDBHandler dbHandler;
+    private final HomeListSnapshot homeListSnapshot;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    /**
+     * Runs syncs one at a time, off the database thread
+     */
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor();
+    /**
+     * Runs exports and imports one at a time, off the database thread
+     */
+    private final ExecutorService archiveExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Incremented after every write to the plants table
+     */
+    private final AtomicLong tableVersion = new AtomicLong();
+    /**
+     * Set while a refresh of the active queries is queued and has not started yet
+     */
+    private final AtomicBoolean invalidationPending = new AtomicBoolean(false);
+    /**
+     * All the queries handed out, weakly referenced so that unused ones can be collected
+     */
+    private final Set<PlantQuery<?>> queries = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * Plants of the most recently loaded list query by id, used to serve single plant lookups
+     */
+    private volatile Loaded<Map<Long, Plant>> plantCache;
+
+    /**
+     * Search started by {@link #warmUp()} before anyone asked for it, handed out by the first
+     * matching {@link #searchPlants(String, PlantSortOrder)} call. Only accessed on the main thread
+     */
+    private PlantQuery<List<Plant>> prefetchedSearch;
+    private String prefetchedPrefix;
+    private PlantSortOrder prefetchedOrder;
+
+    /**
+     * Columnar copy of the whole table, kept up to date by the writes once it has been loaded.
+     * Only accessed on the database thread
+     */
+    private PlantSnapshot snapshot;
+    private final MutableLiveData<PlantSnapshot> snapshotData = new MutableLiveData<>();
+
+    private PlantRepository(Context context) {
+        this.context = context;
+        contentResolver = context.getContentResolver();
+        dbHandler = new PlantDBHandler(context);
+        homeListSnapshot = new HomeListSnapshot(context, dbHandler);
+    }
+
+    public static PlantRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PlantRepository.class) {
+                if (instance == null) {
+                    instance = new PlantRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Opens the database and runs the default home list search in the background, so that both
+     * are done or under way by the time the first screen asks for them. Until the search
+     * completes it holds the list of the last run, if any. Must be called on the main thread
+     */
+    public void warmUp() {
+        if (prefetchedSearch != null) return;
+
+        prefetchedPrefix = DEFAULT_SEARCH_PREFIX;
+        prefetchedOrder = DEFAULT_SEARCH_ORDER;
+        PlantQuery<List<Plant>> search = searchQuery(prefetchedPrefix, prefetchedOrder);
+        prefetchedSearch = search;
+        executor.execute(() -> {
+            homeListSnapshot.read().ifPresent(search::setStale);
+            try {
+                dbHandler.getWritableDatabase(); // creates or migrates the database
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            search.load();
+        });
+    }
+
+    /**
+     * Returns the plants whose name starts with the argument prefix in the argument order. The
+     * query is cancelled if it loses all its observers while running
+     *
+     * @param namePrefix prefix of the plant name (case insensitive), empty for all plants
+     * @param sortOrder  order of the result
+     * @return observable list of the matching plants
+     */
+    public LiveData<List<Plant>> searchPlants(String namePrefix, PlantSortOrder sortOrder) {
+        PlantQuery<List<Plant>> prefetched = prefetchedSearch;
+        if (prefetched != null && namePrefix.equals(prefetchedPrefix)
+                && sortOrder == prefetchedOrder) {
+            prefetchedSearch = null;
+            return prefetched;
+        }
+        return searchQuery(namePrefix, sortOrder);
+    }
+
+    private PlantQuery<List<Plant>> searchQuery(String namePrefix, PlantSortOrder sortOrder) {
+        boolean defaultSearch = namePrefix.equals(DEFAULT_SEARCH_PREFIX)
+                && sortOrder == DEFAULT_SEARCH_ORDER;
+        return register(new PlantQuery<>(signal -> {
+            List<Plant> plants = cachePlants(
+                    dbHandler.searchPlants(namePrefix, sortOrder, signal), signal);
+            if (defaultSearch && !signal.isCanceled()) {
+                homeListSnapshot.write(plants); // shown on the next start
+            }
+            return plants;
+        }));
+    }
+
+    /**
+     * Returns the plant with the argument id. If the plant is already in the last loaded list of
+     * plants it is served from there, otherwise it is loaded with a single row lookup. Must be
+     * called on the main thread
+     *
+     * @param id the id of the plant
+     * @return observable optional containing the plant or empty if it does not exist
+     */
+    public LiveData<Optional<Plant>> getPlantById(long id) {
+        PlantQuery<Optional<Plant>> query = new PlantQuery<>(signal -> dbHandler.getPlantById(id));
+
+        Loaded<Map<Long, Plant>> cached = plantCache;
+        if (cached != null && cached.value.containsKey(id)) {
+            query.setLoaded(cached.version, Optional.of(cached.value.get(id)));
+        }
+        return register(query);
+    }
+
+    /**
+     * Returns a columnar snapshot of the whole table for computations over all the plants. The
+     * snapshot is built once by streaming the table and then updated incrementally by every write
+     *
+     * @return observable snapshot of all the plants
+     */
+    public LiveData<PlantSnapshot> getSnapshot() {
+        executor.execute(this::loadSnapshot);
+        return snapshotData;
+    }
+
+    /**
+     * Returns the counts and latencies of the database operations run so far
+     *
+     * @return live metrics of the data layer
+     */
+    public DataLayerMetrics getMetrics() {
+        return dbHandler.getMetrics();
+    }
+
+    /**
+     * Adds the argument plant in the background. The argument plant is not changed, it must not
+     * be changed by the caller either until it is stored
+     *
+     * @param plant the plant to be added
+     * @return observable id of the stored plant, -1 if it could not be added
+     */
+    public LiveData<Long> addPlant(Plant plant) {
+        MutableLiveData<Long> added = new MutableLiveData<>();
+        write(() -> {
+            long id = dbHandler.addPlant(plant);
+            if (id != -1) {
+                Plant stored = plant.withId(id);
+                updateSnapshot(s -> s.withPlant(stored));
+            }
+            added.postValue(id);
+        });
+        return added;
+    }
+
+    /**
+     * Replaces the plant with the same id as the argument in the background
+     *
+     * @param plant the new version of the plant
+     */
+    public void updatePlant(Plant plant) {
+        write(() -> {
+            dbHandler.updatePlant(plant);
+            updateSnapshot(s -> s.withPlant(plant));
+        });
+    }
+
+    /**
+     * Removes the plant with the argument id in the background. The plant disappears right away
+     * but is only deleted with its photo by the next {@link PlantPurgeWorker} run, until then the
+     * removal can be undone with {@link #restorePlant(long)}
+     *
+     * @param id the id of the plant to be removed
+     */
+    public void removePlant(long id) {
+        write(() -> {
+            if (dbHandler.markRemoved(id)) {
+                updateSnapshot(s -> s.withoutPlant(id));
+                PlantPurgeWorker.schedule(context);
+            }
+        });
+    }
+
+    /**
+     * Brings back a removed plant in the background, if it has not been purged yet
+     *
+     * @param id the id of the removed plant
+     */
+    public void restorePlant(long id) {
+        write(() -> {
+            if (dbHandler.restorePlant(id)) {
+                dbHandler.getPlantById(id).ifPresent(plant ->
+                        updateSnapshot(s -> s.withPlant(plant)));
+            }
+        });
+    }
+
+    /**
+     * Deletes the plants removed up to the argument time with the photo files only they referred
+     * to, see {@link PlantDBHandler#purgeRemoved(long)}, and then returns the pages of the freed
+     * rows to the file system. Blocks until done, so it must not be called on the main
+     * thread
+     *
+     * @param removedBefore epoch millisecond, plants removed later are kept
+     * @return the number of plants deleted
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int purgeRemoved(long removedBefore) throws InterruptedException {
+        // removed plants are already hidden, so no query needs to be refreshed
+        return await(() -> {
+            int purged = dbHandler.purgeRemoved(removedBefore);
+            if (purged > 0) {
+                dbHandler.incrementalVacuum();
+            }
+            return purged;
+        }, 0);
+    }
+
+    /**
+     * @return true if there are removed plants waiting to be purged. Blocks like
+     * {@link #purgeRemoved(long)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean hasRemovedPlants() throws InterruptedException {
+        return await(dbHandler::hasRemovedPlants, false);
+    }
+
+    /**
+     * Runs the database maintenance, see {@link PlantDBHandler#maintain(long)}. Blocks like
+     * {@link #purgeRemoved(long)}
+     *
+     * @param budgetMillis time after which no more work is started
+     * @return what was done
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public MaintenanceReport maintain(long budgetMillis) throws InterruptedException {
+        return await(() -> dbHandler.maintain(budgetMillis), new MaintenanceReport());
+    }
+
+    /**
+     * Runs the task on the database thread and waits for its result
+     *
+     * @param failed result if the task throws
+     */
+    private <T> T await(Callable<T> task, T failed) throws InterruptedException {
+        try {
+            return executor.submit(task).get();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return failed;
+        }
+    }
+
+    /**
+     * Sets the last watered time of the plant with the argument id to now
+     *
+     * @param id the id of the plant that was watered
+     */
+    public void waterPlant(long id) {
+        LocalDateTime now = LocalDateTime.now();
+        write(() -> dbHandler.getPlantById(id).ifPresent(plant -> {
+            plant.setLastWatered(now);
+            dbHandler.updatePlant(plant);
+            updateSnapshot(s -> s.withPlant(plant));
+        }));
+    }
+
+    /**
+     * Adds a photo to the gallery of a plant in the background. Galleries are not part of the
+     * plant queries, so they are not refreshed
+     *
+     * @param plantId   id of the plant
+     * @param photo     the encoded photo
+     * @param thumbnail the encoded thumbnail of the photo
+     * @return observable new gallery entry, it stays null if the photo cannot be added
+     */
+    public LiveData<GalleryPhoto> addGalleryPhoto(long plantId, byte[] photo, byte[] thumbnail) {
+        MutableLiveData<GalleryPhoto> added = new MutableLiveData<>();
+        LocalDateTime now = LocalDateTime.now();
+        executor.execute(() -> {
+            GalleryPhoto galleryPhoto = dbHandler.addGalleryPhoto(plantId, now, photo, thumbnail);
+            if (galleryPhoto != null) {
+                added.postValue(galleryPhoto);
+            }
+        });
+        return added;
+    }
+
+    /**
+     * Reads a page of a plant's gallery in the background
+     *
+     * @return observable page, see {@link PlantDBHandler#getGalleryPage(long, GalleryPhoto, int)}
+     */
+    public LiveData<List<GalleryPhoto>> getGalleryPage(long plantId, GalleryPhoto after,
+                                                       int limit) {
+        MutableLiveData<List<GalleryPhoto>> page = new MutableLiveData<>();
+        executor.execute(() -> page.postValue(dbHandler.getGalleryPage(plantId, after, limit)));
+        return page;
+    }
+
+    /**
+     * Opens the full photo of a gallery entry. The photo is read as the stream is consumed, so it
+     * should not be opened or consumed on the main thread
+     *
+     * @throws IOException if the entry or its photo does not exist
+     */
+    public InputStream openGalleryPhoto(long galleryPhotoId) throws IOException {
+        return dbHandler.openGalleryPhoto(galleryPhotoId);
+    }
+
+    /**
+     * @return the storage stored plant photos are read from, for plants rebuilt from a compact
+     * form such as a parcel
+     */
+    public PhotoSource getPhotoSource() {
+        return dbHandler;
+    }
+
+    /**
+     * Writes all the plants with their photos to the argument document in the background. The
+     * gallery photos are not exported
+     *
+     * @param destination document to write the archive to, as returned by the system file picker
+     * @return observable progress of the export
+     */
+    public LiveData<ArchiveProgress> exportArchive(Uri destination) {
+        MutableLiveData<ArchiveProgress> progress =
+                new MutableLiveData<>(ArchiveProgress.running(0, -1));
+        archiveExecutor.execute(() -> {
+            long[] done = {0};
+            try (OutputStream out = contentResolver.openOutputStream(destination, "w")) {
+                if (out == null) throw new IOException("Cannot open " + destination);
+                long exported = dbHandler.exportArchive(out, (count, total) -> {
+                    done[0] = count;
+                    progress.postValue(ArchiveProgress.running(count, total));
+                }, executor);
+                progress.postValue(ArchiveProgress.done(exported));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                progress.postValue(ArchiveProgress.failed(done[0], -1));
+            }
+        });
+        return progress;
+    }
+
+    /**
+     * Adds the plants of an archive in the background, replacing the ones with the same sync ids
+     *
+     * @param source document to read the archive from, as returned by the system file picker
+     * @return observable progress of the import
+     */
+    public LiveData<ArchiveProgress> importArchive(Uri source) {
+        MutableLiveData<ArchiveProgress> progress =
+                new MutableLiveData<>(ArchiveProgress.running(0, -1));
+        archiveExecutor.execute(() -> {
+            long[] done = {0};
+            try (InputStream in = contentResolver.openInputStream(source)) {
+                if (in == null) throw new IOException("Cannot open " + source);
+                long imported = dbHandler.importArchive(in, (count, total) -> {
+                    done[0] = count;
+                    progress.postValue(ArchiveProgress.running(count, total));
+                }, executor);
+                progress.postValue(ArchiveProgress.done(imported));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                progress.postValue(ArchiveProgress.failed(done[0], -1));
+            }
+            // batches before a failure are kept, so the snapshot is rebuilt in any case
+            write(() -> {
+                if (snapshot != null) {
+                    snapshot = null;
+                    loadSnapshot();
+                }
+            });
+        });
+        return progress;
+    }
+
+    /**
+     * Exchanges the changes made since the last sync with the argument server in the background
+     *
+     * @param server the sync server
+     * @return observable report of the sync, it stays null if the sync fails
+     */
+    public LiveData<SyncReport> sync(SyncServer server) {
+        MutableLiveData<SyncReport> report = new MutableLiveData<>();
+        syncExecutor.execute(() -> {
+            try {
+                report.postValue(dbHandler.sync(server, executor));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+            // batches before a failure are kept, so the snapshot is rebuilt in any case
+            write(() -> {
+                if (snapshot != null) {
+                    snapshot = null;
+                    loadSnapshot();
+                }
+            });
+        });
+        return report;
+    }
+
+    /**
+     * Streams the table into the snapshot if it has not been loaded yet. Must be called on the
+     * database thread
+     */
+    private void loadSnapshot() {
+        if (snapshot != null) return;
+
+        PlantSnapshot.Builder builder = new PlantSnapshot.Builder();
+        dbHandler.scanAllPlants(new Plant[SCAN_BATCH_SIZE], (batch, count) -> {
+            for (int i = 0; i < count; i++) {
+                builder.add(batch[i]);
+            }
+        });
+        snapshot = builder.build();
+        snapshotData.postValue(snapshot);
+    }
+
+    /**
+     * Applies a write to the snapshot, if it has been loaded. Must be called on the database thread
+     */
+    private void updateSnapshot(UnaryOperator<PlantSnapshot> change) {
+        if (snapshot == null) return;
+
+        snapshot = change.apply(snapshot);
+        snapshotData.postValue(snapshot);
+    }
+
+    /**
+     * Remembers the plants of a completed list query for single plant lookups. Must be called on
+     * the database thread
+     */
+    private List<Plant> cachePlants(List<Plant> plants, CancellationSignal signal) {
+        if (!signal.isCanceled()) {
+            Map<Long, Plant> byId = new HashMap<>(plants.size() * 2);
+            for (Plant plant : plants) {
+                byId.put(plant.getId(), plant);
+            }
+            plantCache = new Loaded<>(tableVersion.get(), byId);
+        }
+        return plants;
+    }
+
+    private <T> PlantQuery<T> register(PlantQuery<T> query) {
+        synchronized (queries) {
+            queries.add(query);
+        }
+        return query;
+    }
+
+    /**
+     * Runs the write on the database thread and invalidates the queries after it
+     */
+    private void write(Runnable write) {
+        executor.execute(() -> {
+            write.run();
+            tableVersion.incrementAndGet();
+            scheduleInvalidation();
+        });
+    }
+
+    /**
+     * Queues a single refresh of the active queries. Writes that are already queued run before it,
+     * so a burst of writes results in one refresh
+     */
+    private void scheduleInvalidation() {
+        if (invalidationPending.compareAndSet(false, true)) {
+            executor.execute(this::refreshActiveQueries);
+        }
+    }
+
+    private void refreshActiveQueries() {
+        invalidationPending.set(false);
+
+        List<PlantQuery<?>> active = new ArrayList<>();
+        synchronized (queries) {
+            for (PlantQuery<?> query : queries) {
+                if (query.active) active.add(query);
+            }
+        }
+        for (PlantQuery<?> query : active) {
+            query.refresh();
+        }
+    }
+
+    /**
+     * A query result together with the table version it was loaded at
+     */
+    private static class Loaded<T> {
+        final long version;
+        final T value;
+
+        Loaded(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    /**
+     * {@link LiveData} holding the result of a query against the plants table. It re-runs its query
+     * only if the table has changed since it was last loaded and cancels a running query when it
+     * loses its last observer
+     *
+     * @param <T> type of the query result
+     */
+    private class PlantQuery<T> extends LiveData<T> {
+        private final Function<CancellationSignal, T> query;
+        /**
+         * Last loaded result, written on the database thread
+         */
+        private volatile Loaded<T> loaded;
+        /**
+         * Signal of the query currently running, if any
+         */
+        private volatile CancellationSignal running;
+        private volatile boolean active;
+
+        PlantQuery(Function<CancellationSignal, T> query) {
+            this.query = query;
+        }
+
+        /**
+         * Shows a possibly outdated result until the query has loaded. Must be called on the
+         * database thread, before the query loads
+         */
+        void setStale(T value) {
+            if (loaded == null) {
+                postValue(value);
+            }
+        }
+
+        /**
+         * Seeds the query with an already known result, before it is handed out
+         */
+        void setLoaded(long version, T value) {
+            loaded = new Loaded<>(version, value);
+            setValue(value);
+        }
+
+        @Override
+        protected void onActive() {
+            active = true;
+            executor.execute(this::refresh);
+        }
+
+        @Override
+        protected void onInactive() {
+            active = false;
+            CancellationSignal signal = running;
+            if (signal != null) {
+                signal.cancel();
+            }
+        }
+
+        /**
+         * Runs the query if the current value is stale and the query is observed. Must be called
+         * on the database thread
+         */
+        void refresh() {
+            if (active) {
+                load();
+            }
+        }
+
+        /**
+         * Runs the query if the current value is stale, even if nobody observes it yet. Must be
+         * called on the database thread
+         */
+        void load() {
+            long version = tableVersion.get();
+            if (loaded != null && loaded.version == version) {
+                return; // the cached result is still valid
+            }
+
+            CancellationSignal signal = new CancellationSignal();
+            running = signal;
+            T result = query.apply(signal);
+            running = null;
+
+            if (signal.isCanceled()) {
+                return; // partial result, the query runs again when it becomes active
+            }
+            loaded = new Loaded<>(version, result);
+            postValue(result);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gr.auth.androidproject.plants.sync.SyncChange;
+import gr.auth.androidproject.plants.sync.SyncLocalStore;
+
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_BIRTHDAY;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_DEVICE_ID;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_LAST_WATERED;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_LOCAL_VERSION;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_MODIFIED_AT;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_NAME;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_PHOTO_HASH;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_PHOTO_SIZE;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_REMOVED_AT;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_SERVER_VERSION;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_SYNCED_VERSION;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_SYNC_ID;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_SYNC_TOKEN;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.COLUMN_WATERING_INTERVAL;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.PLANT_PROJECTION;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.TABLE_PLANTS;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.TABLE_SYNC_STATE;
+import static gr.auth.androidproject.plants.domain.PlantDBHandler.TABLE_TOMBSTONES;
+
+/**
+ * <p>
+ * The change log of the plants database, read and updated by the
+ * {@link gr.auth.androidproject.plants.sync.SyncEngine}.<br>
+ * </p>
+ * <p>
+ * The plants table records a local version that {@link PlantDBHandler} increases on every write
+ * and the local version that was last synced. Removing a plant the server has seen moves its sync
+ * id to the tombstones table. A plant that is only marked removed is pushed as a deletion, and
+ * comes back if a later remote update of it wins. Remote changes are written with both versions
+ * equal, so they are not pushed back.
+ * </p>
+ * <p>
+ * Like the handler it is synchronous and must be used from one thread at a time, except for the
+ * photo methods, which only touch the photo files.
+ * </p>
+ */
+class PlantSyncStore implements SyncLocalStore {
+
+    /**
+     * Bound on the ? placeholders of one query, well under SQLite's limit
+     */
+    private static final int MAX_QUERY_ARGS = 500;
+
+    private static final String PENDING_PLANTS =
+            "SELECT " + PLANT_PROJECTION + ", " + COLUMN_SYNC_ID.name + ", " +
+                    COLUMN_MODIFIED_AT.name + ", " + COLUMN_LOCAL_VERSION.name + ", " +
+                    COLUMN_SERVER_VERSION.name + ", " + COLUMN_REMOVED_AT.name + "\n" +
+                    "FROM " + TABLE_PLANTS + "\n" +
+                    "WHERE " + COLUMN_LOCAL_VERSION.name + " != " + COLUMN_SYNCED_VERSION.name +
+                    // the server never saw a removed plant that was not pushed yet
+                    " AND NOT (" + COLUMN_REMOVED_AT.name + " IS NOT NULL AND " +
+                    COLUMN_SERVER_VERSION.name + " = 0)";
+    private static final String TOMBSTONES =
+            "SELECT " + COLUMN_SYNC_ID.name + ", " + COLUMN_MODIFIED_AT.name + ", " +
+                    COLUMN_LOCAL_VERSION.name + ", " + COLUMN_SERVER_VERSION.name + "\n" +
+                    "FROM " + TABLE_TOMBSTONES;
+
+    private final PlantDBHandler dbHandler;
+    private String deviceId;
+
+    PlantSyncStore(PlantDBHandler dbHandler) {
+        this.dbHandler = dbHandler;
+    }
+
+    @Override
+    public String getDeviceId() {
+        if (deviceId == null) {
+            try (Cursor cursor = dbHandler.getReadableDatabase().rawQuery(
+                    "SELECT " + COLUMN_DEVICE_ID + " FROM " + TABLE_SYNC_STATE, null)) {
+                cursor.moveToFirst();
+                deviceId = cursor.getString(0);
+            }
+        }
+        return deviceId;
+    }
+
+    @Override
+    public long getSyncToken() {
+        try (Cursor cursor = dbHandler.getReadableDatabase().rawQuery(
+                "SELECT " + COLUMN_SYNC_TOKEN + " FROM " + TABLE_SYNC_STATE, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    @Override
+    public List<SyncChange> getPendingChanges(String afterSyncId, int limit) {
+        String[] args = {afterSyncId == null ? "" : afterSyncId};
+        String range = " " + COLUMN_SYNC_ID.name + " > ?\n" +
+                "ORDER BY " + COLUMN_SYNC_ID.name + "\n" +
+                "LIMIT " + limit;
+        List<SyncChange> plants = readPendingPlants(PENDING_PLANTS + " AND" + range, args);
+        List<SyncChange> tombstones = readTombstones(TOMBSTONES + "\nWHERE" + range, args);
+
+        // merge the two ordered lists
+        List<SyncChange> changes = new ArrayList<>(Math.min(limit, plants.size() + tombstones.size()));
+        int p = 0;
+        int t = 0;
+        while (changes.size() < limit && (p < plants.size() || t < tombstones.size())) {
+            if (t == tombstones.size() || (p < plants.size()
+                    && plants.get(p).getSyncId().compareTo(tombstones.get(t).getSyncId()) < 0)) {
+                changes.add(plants.get(p++));
+            } else {
+                changes.add(tombstones.get(t++));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public Map<String, SyncChange> getPendingChanges(Collection<String> syncIds) {
+        Map<String, SyncChange> pending = new HashMap<>();
+        List<String> ids = new ArrayList<>(syncIds);
+        for (int from = 0; from < ids.size(); from += MAX_QUERY_ARGS) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_QUERY_ARGS));
+            String[] args = chunk.toArray(new String[0]);
+            String in = " " + COLUMN_SYNC_ID.name + " IN (" +
+                    String.join(", ", Collections.nCopies(args.length, "?")) + ")";
+            for (SyncChange change : readPendingPlants(PENDING_PLANTS + " AND" + in, args)) {
+                pending.put(change.getSyncId(), change);
+            }
+            for (SyncChange change : readTombstones(TOMBSTONES + "\nWHERE" + in, args)) {
+                pending.put(change.getSyncId(), change);
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public void markPushed(List<SyncChange> changes, long[] serverVersions) {
+        SQLiteDatabase db = dbHandler.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < changes.size(); i++) {
+                if (serverVersions[i] == 0) continue;
+                SyncChange change = changes.get(i);
+                Object[] args = {serverVersions[i], change.getSyncId()};
+                if (change.isDeleted()) {
+                    db.execSQL("DELETE FROM " + TABLE_TOMBSTONES + "\n" +
+                                    "WHERE " + COLUMN_SYNC_ID.name + " = ? AND " +
+                                    COLUMN_LOCAL_VERSION.name + " = ?",
+                            new Object[]{change.getSyncId(), change.getLocalVersion()});
+                }
+                // deletions of plants that are only marked removed still have their row
+                db.execSQL("UPDATE " + TABLE_PLANTS + " SET " +
+                                COLUMN_SYNCED_VERSION.name + " = ?, " +
+                                COLUMN_SERVER_VERSION.name + " = ?\n" +
+                                "WHERE " + COLUMN_SYNC_ID.name + " = ?",
+                        new Object[]{change.getLocalVersion(), serverVersions[i],
+                                change.getSyncId()});
+                // a plant removed after it was read is now based on the pushed version
+                db.execSQL("UPDATE " + TABLE_TOMBSTONES + " SET " +
+                        COLUMN_SERVER_VERSION.name + " = ?\n" +
+                        "WHERE " + COLUMN_SYNC_ID.name + " = ?", args);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void applyRemoteChanges(List<SyncChange> changes, Map<String, Long> rebased,
+                                   long syncToken) throws IOException {
+        SQLiteDatabase db = dbHandler.getWritableDatabase();
+        ContentValues contentValues = new ContentValues();
+        db.beginTransaction();
+        try {
+            for (SyncChange change : changes) {
+                String[] syncIdArgs = {change.getSyncId()};
+                if (localServerVersion(db, change.getSyncId()) >= change.getServerVersion()) {
+                    continue;
+                }
+
+                db.delete(TABLE_TOMBSTONES, COLUMN_SYNC_ID.name + " = ?", syncIdArgs);
+                if (change.isDeleted()) {
+                    PlantDBHandler.deleteGalleries(db, COLUMN_SYNC_ID.name + " = ?", syncIdArgs);
+                    db.delete(TABLE_PLANTS, COLUMN_SYNC_ID.name + " = ?", syncIdArgs);
+                    continue;
+                }
+
+                contentValues.clear();
+                putChange(change, contentValues);
+                // a later remote update brings back a plant that is only marked removed
+                contentValues.putNull(COLUMN_REMOVED_AT.name);
+                if (db.update(TABLE_PLANTS, contentValues,
+                        COLUMN_SYNC_ID.name + " = ?", syncIdArgs) > 0) {
+                    db.execSQL("UPDATE " + TABLE_PLANTS + " SET " +
+                            COLUMN_SYNCED_VERSION.name + " = " + COLUMN_LOCAL_VERSION.name + "\n" +
+                            "WHERE " + COLUMN_SYNC_ID.name + " = ?", syncIdArgs);
+                } else {
+                    contentValues.put(COLUMN_SYNC_ID.name, change.getSyncId());
+                    contentValues.put(COLUMN_LOCAL_VERSION.name, 1);
+                    contentValues.put(COLUMN_SYNCED_VERSION.name, 1);
+                    if (db.insert(TABLE_PLANTS, null, contentValues) == -1) {
+                        throw new IOException("Could not store plant " + change.getSyncId());
+                    }
+                }
+            }
+
+            for (Map.Entry<String, Long> rebase : rebased.entrySet()) {
+                Object[] args = {rebase.getValue(), rebase.getKey()};
+                for (String table : new String[]{TABLE_PLANTS, TABLE_TOMBSTONES}) {
+                    db.execSQL("UPDATE " + table + " SET " + COLUMN_SERVER_VERSION.name + " = ?\n" +
+                            "WHERE " + COLUMN_SYNC_ID.name + " = ?", args);
+                }
+            }
+
+            ContentValues state = new ContentValues();
+            state.put(COLUMN_SYNC_TOKEN, syncToken);
+            db.update(TABLE_SYNC_STATE, state, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public boolean hasPhoto(String hash) {
+        return dbHandler.getPhotoStore().contains(hash);
+    }
+
+    @Override
+    public void storePhoto(String hash, byte[] photo) throws IOException {
+        dbHandler.getPhotoStore().write(new ByteArrayInputStream(photo), -1, hash);
+    }
+
+    @Override
+    public InputStream openPhoto(String hash) throws IOException {
+        return dbHandler.getPhotoStore().open(hash);
+    }
+
+    /**
+     * Puts the values of a remote change, whose photo is in the photo files already
+     */
+    private void putChange(SyncChange change, ContentValues contentValues) throws IOException {
+        contentValues.put(COLUMN_NAME.name, change.getName());
+        contentValues.put(COLUMN_LAST_WATERED.name, change.getLastWatered().toString());
+        contentValues.put(COLUMN_WATERING_INTERVAL.name, change.getWateringInterval().toString());
+        contentValues.put(COLUMN_BIRTHDAY.name,
+                change.getBirthday().map(Object::toString).orElse(null));
+        contentValues.put(COLUMN_MODIFIED_AT.name, change.getModifiedAt());
+        contentValues.put(COLUMN_SERVER_VERSION.name, change.getServerVersion());
+
+        String hash = change.getPhotoHash().orElse(null);
+        if (hash == null) {
+            contentValues.putNull(COLUMN_PHOTO_SIZE.name);
+            contentValues.putNull(COLUMN_PHOTO_HASH.name);
+            return;
+        }
+        long size = dbHandler.getPhotoStore().size(hash);
+        if (size < 0) {
+            throw new IOException("Photo " + hash + " of " + change.getSyncId() + " is not stored");
+        }
+        contentValues.put(COLUMN_PHOTO_HASH.name, hash);
+        contentValues.put(COLUMN_PHOTO_SIZE.name, size);
+    }
+
+    /**
+     * @return the server version of the plant or its tombstone, 0 if there is neither
+     */
+    private static long localServerVersion(SQLiteDatabase db, String syncId) {
+        String[] args = {syncId};
+        for (String table : new String[]{TABLE_PLANTS, TABLE_TOMBSTONES}) {
+            try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_SERVER_VERSION.name + " FROM " +
+                    table + " WHERE " + COLUMN_SYNC_ID.name + " = ?", args)) {
+                if (cursor.moveToFirst()) {
+                    return cursor.getLong(0);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private List<SyncChange> readPendingPlants(String query, String[] args) {
+        try (Cursor cursor = dbHandler.getReadableDatabase().rawQuery(query, args)) {
+            PlantCursorMapper mapper = new PlantCursorMapper(cursor, dbHandler);
+            int syncIdIndex = cursor.getColumnIndexOrThrow(COLUMN_SYNC_ID.name);
+            int modifiedAtIndex = cursor.getColumnIndexOrThrow(COLUMN_MODIFIED_AT.name);
+            int localVersionIndex = cursor.getColumnIndexOrThrow(COLUMN_LOCAL_VERSION.name);
+            int serverVersionIndex = cursor.getColumnIndexOrThrow(COLUMN_SERVER_VERSION.name);
+            int removedAtIndex = cursor.getColumnIndexOrThrow(COLUMN_REMOVED_AT.name);
+
+            List<SyncChange> changes = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                String syncId = cursor.getString(syncIdIndex);
+                long modifiedAt = cursor.getLong(modifiedAtIndex);
+                long serverVersion = cursor.getLong(serverVersionIndex);
+                long localVersion = cursor.getLong(localVersionIndex);
+                changes.add(cursor.isNull(removedAtIndex)
+                        ? SyncChange.upsert(syncId, mapper.map(), modifiedAt, getDeviceId(),
+                        serverVersion, localVersion)
+                        : SyncChange.tombstone(syncId, modifiedAt, getDeviceId(), serverVersion,
+                        localVersion));
+            }
+            return changes;
+        }
+    }
+
+    private List<SyncChange> readTombstones(String query, String[] args) {
+        try (Cursor cursor = dbHandler.getReadableDatabase().rawQuery(query, args)) {
+            List<SyncChange> changes = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                changes.add(SyncChange.tombstone(cursor.getString(0), cursor.getLong(1),
+                        getDeviceId(), cursor.getLong(3), cursor.getLong(2)));
+            }
+            return changes;
+        }
+    }
+}
@@ -1,46 +1,112 @@
 package gr.auth.androidproject.plants.ui;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import gr.auth.androidproject.plants.domain.Plant;
-import gr.auth.androidproject.plants.domain.PlantDBHandler;
+import gr.auth.androidproject.plants.domain.PlantRepository;
+import gr.auth.androidproject.plants.domain.PlantSortOrder;
 
 public class HomeDetailsSharedViewModel extends ViewModel {
-    MutableLiveData<List<Plant>> plants;
+    /**
+     * Time to wait for the user to stop typing before running a search
+     */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 250;
 
-    public LiveData<List<Plant>> getPlants(Context context) {
-        if (plants == null) {
-            plants = new MutableLiveData<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<PlantSearch> search =
+            new MutableLiveData<>(new PlantSearch("", PlantSortOrder.NAME));
+    private LiveData<List<Plant>> searchResults;
+    private Runnable pendingSearch;
+
+    /**
+     * Returns the plants matching the current search text in the current sort order. Changing the
+     * search cancels the query of the previous one
+     */
+    public LiveData<List<Plant>> getSearchResults(Context context) {
+        if (searchResults == null) {
+            PlantRepository repository = PlantRepository.getInstance(context);
+            searchResults = Transformations.switchMap(search,
+                    s -> repository.searchPlants(s.namePrefix, s.sortOrder));
         }
-        loadPlants(context);
-        return plants;
+        return searchResults;
+    }
+
+    /**
+     * Searches for plants whose name starts with the argument text once the user stops typing
+     */
+    public void setSearchText(String text) {
+        handler.removeCallbacks(pendingSearch);
+        pendingSearch = () -> {
+            PlantSearch current = Objects.requireNonNull(search.getValue());
+            String prefix = text.trim();
+            if (!prefix.equals(current.namePrefix)) {
+                search.setValue(new PlantSearch(prefix, current.sortOrder));
+            }
+        };
+        handler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MILLIS);
+    }
+
+    public void setSortOrder(PlantSortOrder sortOrder) {
+        PlantSearch current = Objects.requireNonNull(search.getValue());
+        if (sortOrder != current.sortOrder) {
+            search.setValue(new PlantSearch(current.namePrefix, sortOrder));
+        }
+    }
+
+    public PlantSortOrder getSortOrder() {
+        return Objects.requireNonNull(search.getValue()).sortOrder;
     }
 
-    private void loadPlants(Context context) {
-        PlantDBHandler plantDBHandler = new PlantDBHandler(context);
-        plants.setValue(plantDBHandler.getAllPlants());
+    /**
+     * Returns the observable plant with the argument id, loaded with a single row lookup if it is
+     * not already cached
+     */
+    public LiveData<Optional<Plant>> getPlant(long id, Context context) {
+        return PlantRepository.getInstance(context).getPlantById(id);
     }
 
-    public void deletePlant(int position, Context context) {
-        long id = Objects.requireNonNull(plants.getValue()).get(position).getId();
-        PlantDBHandler plantDBHandler = new PlantDBHandler(context);
-        plantDBHandler.removePlant(id);
+    /**
+     * Removes the plant right away, it can be brought back with {@link #restorePlant(long, Context)}
+     * for a while
+     */
+    public void deletePlant(long id, Context context) {
+        PlantRepository.getInstance(context).removePlant(id);
     }
 
-    public void waterPlant(int position, Context context) {
-        PlantDBHandler plantDBHandler = new PlantDBHandler(context);
+    public void restorePlant(long id, Context context) {
+        PlantRepository.getInstance(context).restorePlant(id);
+    }
 
-        Plant p = plants.getValue().get(position);
-        p.setLastWatered(LocalDateTime.now());
-        plantDBHandler.updatePlant(p);
+    public void waterPlant(long id, Context context) {
+        PlantRepository.getInstance(context).waterPlant(id);
+    }
 
+    @Override
+    protected void onCleared() {
+        handler.removeCallbacks(pendingSearch);
+    }
+
+    /**
+     * Parameters of the home list search
+     */
+    private static class PlantSearch {
+        final String namePrefix;
+        final PlantSortOrder sortOrder;
+
+        PlantSearch(String namePrefix, PlantSortOrder sortOrder) {
+            this.namePrefix = namePrefix;
+            this.sortOrder = sortOrder;
+        }
     }
 }
@@ -18,6 +18,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import gr.auth.androidproject.plants.R;
+import gr.auth.androidproject.plants.domain.PlantRepository;
+import gr.auth.androidproject.plants.ui.home.PlantPhotoLoader;
 
 
 public class MainActivity extends AppCompatActivity {
@@ -29,6 +31,11 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (savedInstanceState == null) {
+            // only a start of the UI needs the first screen ready, not a worker waking the app
+            PlantRepository.getInstance(this).warmUp();
+            PlantPhotoLoader.preloadDefaultPhoto(this);
+        }
         setContentView(R.layout.activity_main);
 
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -0,0 +1,136 @@
+package gr.auth.androidproject.plants.ui;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+import gr.auth.androidproject.plants.domain.PhotoSource;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+/**
+ * <p>
+ * Compact {@link Parcelable} form of a stored {@link Plant}, passed to the screens that show a
+ * plant and kept in their saved state.<br>
+ * </p>
+ * <p>
+ * Only primitive fields are written. The photo is referenced by its hash and size and read from
+ * the database when it is shown, so a parcel stays a few dozen bytes however large the photo is,
+ * far below the Binder transaction limit. Photos that are not stored yet are left out
+ * </p>
+ */
+public final class ParcelablePlant implements Parcelable {
+
+    private final long id;
+    private final String name;
+    private final LocalDateTime birthday;
+    private final LocalDateTime lastWatered;
+    private final Duration wateringInterval;
+    private final String photoHash;
+    private final long photoSize;
+    private final Integer speciesId;
+
+    private ParcelablePlant(long id, String name, LocalDateTime birthday,
+                            LocalDateTime lastWatered, Duration wateringInterval,
+                            String photoHash, long photoSize, Integer speciesId) {
+        this.id = id;
+        this.name = name;
+        this.birthday = birthday;
+        this.lastWatered = lastWatered;
+        this.wateringInterval = wateringInterval;
+        this.photoHash = photoHash;
+        this.photoSize = photoSize;
+        this.speciesId = speciesId;
+    }
+
+    public static ParcelablePlant of(Plant plant) {
+        PlantPhoto photo = plant.getPhoto()
+                .filter(p -> p.isStoredFor(plant.getId()))
+                .orElse(null);
+        return new ParcelablePlant(plant.getId(), plant.getName(),
+                plant.getBirthday().orElse(null), plant.getLastWatered(),
+                plant.getWateringInterval(),
+                Objects.nonNull(photo) ? photo.getHash() : null,
+                Objects.nonNull(photo) ? photo.getSize() : -1,
+                plant.getSpeciesId().orElse(null));
+    }
+
+    /**
+     * @param photoSource storage the plant's photo is read from
+     * @return the plant, with the same {@link Plant#contentHash()} as the one parceled
+     */
+    public Plant toPlant(PhotoSource photoSource) {
+        PlantPhoto photo = photoSize >= 0
+                ? PlantPhoto.stored(id, photoHash, photoSize, photoSource)
+                : null;
+        Plant plant = new Plant(id, name, birthday, lastWatered, wateringInterval, photo);
+        plant.setSpeciesId(speciesId);
+        return plant;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(id);
+        dest.writeString(name);
+        writeDateTime(dest, birthday);
+        writeDateTime(dest, lastWatered);
+        dest.writeLong(wateringInterval.getSeconds());
+        dest.writeInt(wateringInterval.getNano());
+        dest.writeLong(photoSize);
+        dest.writeString(photoHash);
+        dest.writeInt(Objects.nonNull(speciesId) ? 1 : 0);
+        dest.writeInt(Objects.nonNull(speciesId) ? speciesId : 0);
+    }
+
+    public static final Creator<ParcelablePlant> CREATOR = new Creator<ParcelablePlant>() {
+        @Override
+        public ParcelablePlant createFromParcel(Parcel in) {
+            long id = in.readLong();
+            String name = in.readString();
+            LocalDateTime birthday = readDateTime(in);
+            LocalDateTime lastWatered = readDateTime(in);
+            Duration wateringInterval = Duration.ofSeconds(in.readLong(), in.readInt());
+            long photoSize = in.readLong();
+            String photoHash = in.readString();
+            boolean hasSpecies = in.readInt() != 0;
+            int speciesId = in.readInt();
+            return new ParcelablePlant(id, name, birthday, lastWatered, wateringInterval,
+                    photoHash, photoSize, hasSpecies ? speciesId : null);
+        }
+
+        @Override
+        public ParcelablePlant[] newArray(int size) {
+            return new ParcelablePlant[size];
+        }
+    };
+
+    /**
+     * Writes the date time as a flag, epoch second and nano, like {@link
+     * gr.auth.androidproject.plants.domain.PlantListCodec}
+     */
+    private static void writeDateTime(Parcel dest, LocalDateTime dateTime) {
+        dest.writeInt(Objects.nonNull(dateTime) ? 1 : 0);
+        if (Objects.nonNull(dateTime)) {
+            dest.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+            dest.writeInt(dateTime.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(Parcel in) {
+        if (in.readInt() == 0) return null;
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
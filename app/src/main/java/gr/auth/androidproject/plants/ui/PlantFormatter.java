@@ -4,23 +4,26 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.os.LocaleList;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
+import gr.auth.androidproject.plants.PlantCaches;
 import gr.auth.androidproject.plants.R;
 import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
 import gr.auth.androidproject.plants.domain.PlantUtils;
+import gr.auth.androidproject.plants.format.DurationFormatter;
+import gr.auth.androidproject.plants.format.TimespanUnits;
 
 /**
  * <p>
@@ -33,25 +36,71 @@ import gr.auth.androidproject.plants.domain.PlantUtils;
  */
 public class PlantFormatter {
 
-    private static Bitmap DEFAULT_PHOTO_BITMAP = null;
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter
             .ofLocalizedDateTime(FormatStyle.SHORT); // 5/14/21, 5:59 PM
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter
             .ofLocalizedDate(FormatStyle.SHORT); // 5/14/21
+    private static final long MILLIS_PER_MINUTE = Duration.ofMinutes(1).toMillis();
+    private static final long MILLIS_PER_DAY = Duration.ofDays(1).toMillis();
+    /**
+     * Duration formatter with the labels of the last locales one was asked for, shared by all the
+     * formatters until the locales change
+     */
+    private static volatile LocalizedDurations localizedDurations;
 
+    private final Context context;
     private final Resources resources;
+    private final DurationFormatter durationFormatter;
     /**
      * The {@link Plant} object being wrapped
      */
     private final Plant plant;
 
     public PlantFormatter(Context context, Plant plant) {
-        this.resources = Objects.requireNonNull(context).getResources();
+        this.context = Objects.requireNonNull(context);
+        this.resources = context.getResources();
+        this.durationFormatter = durationFormatter(resources);
         this.plant = plant;
+    }
+
+    /**
+     * @return the duration formatter with the labels of the resources' locales
+     */
+    private static DurationFormatter durationFormatter(Resources resources) {
+        LocaleList locales = resources.getConfiguration().getLocales();
+        LocalizedDurations current = localizedDurations;
+        if (Objects.isNull(current) || !current.locales.equals(locales)) {
+            current = new LocalizedDurations(locales, new DurationFormatter(
+                    resources.getStringArray(R.array.duration_formatter_YMDhm_labels_singular),
+                    resources.getStringArray(R.array.duration_formatter_YMDhm_labels_plural)));
+            localizedDurations = current;
+        }
+        return current.formatter;
+    }
 
-        if (Objects.isNull(DEFAULT_PHOTO_BITMAP)) {
-            DEFAULT_PHOTO_BITMAP = BitmapFactory.decodeResource(resources, R.drawable.default_plant_image);
+    /**
+     * Decodes the image shown for plants without a photo, if it is not cached. Meant to be called
+     * on a background thread early, so that the main thread rarely has to decode it
+     *
+     * @param context any context
+     * @return the default photo
+     */
+    public static Bitmap defaultPhoto(Context context) {
+        Bitmap bitmap = defaultPhotoIfDecoded();
+        if (Objects.isNull(bitmap)) {
+            bitmap = BitmapFactory.decodeResource(context.getResources(),
+                    R.drawable.default_plant_image);
+            PlantCaches.RESOURCE_BITMAPS.put(R.drawable.default_plant_image, bitmap);
         }
+        return bitmap;
+    }
+
+    /**
+     * @return the default photo or null if it is not cached
+     */
+    @Nullable
+    public static Bitmap defaultPhotoIfDecoded() {
+        return PlantCaches.RESOURCE_BITMAPS.get(R.drawable.default_plant_image);
     }
 
     /**
@@ -95,6 +144,26 @@ public class PlantFormatter {
         return formattedDuration(age, TimespanUnits.DAYS);
     }
 
+    /**
+     * {@link #age()} is shown in days and {@link #timeToNextWatering()} in minutes, so they only
+     * change when the age reaches a whole day or the time to the next watering a whole minute
+     *
+     * @return milliseconds from now during which both return the same text
+     */
+    public long textValidMillis() {
+        long valid = Long.MAX_VALUE;
+        long toNext = PlantUtils.timeToNextWatering(plant).toMillis();
+        if (toNext > 0) {
+            valid = toNext % MILLIS_PER_MINUTE;
+        }
+        Duration age = PlantUtils.calculateAge(plant);
+        if (Objects.nonNull(age)) {
+            valid = Math.min(valid,
+                    MILLIS_PER_DAY - Math.floorMod(age.toMillis(), MILLIS_PER_DAY));
+        }
+        return valid;
+    }
+
     public long id() {
         return plant.getId();
     }
@@ -118,138 +187,122 @@ public class PlantFormatter {
         return formattedDuration(plant.getWateringInterval());
     }
 
+    /**
+     * Decodes the plant's photo, reading it from storage if it is not cached
+     *
+     * @return the photo or a default image if the plant has none or it cannot be read
+     */
     public Bitmap photo() {
         if (plant.getPhoto().isPresent()) {
-            byte[] blob = plant.getPhoto().get();
-            Bitmap nullableBitmap = BitmapFactory.decodeByteArray(blob, 0, blob.length);
-            if (Objects.nonNull(nullableBitmap)) { // no parse error
-                return nullableBitmap;
+            PlantPhoto photo = plant.getPhoto().get();
+            Bitmap cached = PlantCaches.PHOTOS.get(photo.getHash());
+            if (Objects.nonNull(cached)) {
+                return cached;
+            }
+            try (InputStream in = photo.openStream()) {
+                Bitmap nullableBitmap = BitmapFactory.decodeStream(in);
+                if (Objects.nonNull(nullableBitmap)) { // no parse error
+                    PlantCaches.PHOTOS.put(photo.getHash(), nullableBitmap);
+                    return nullableBitmap;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-        return PlantFormatter.DEFAULT_PHOTO_BITMAP;
+        return defaultPhoto(context);
     }
 
-    private String formattedDateTime(LocalDateTime dateTime) {
-        return dateTime.format(DATE_TIME_FORMATTER);
-    }
-
-    private String formattedDate(LocalDateTime date) {
-        return date.format(DATE_FORMATTER);
+    /**
+     * @return the plant's {@link #photo()} if it is cached, the default photo if the plant has
+     * none and that is cached, or null
+     */
+    @Nullable
+    public Bitmap photoIfCached() {
+        if (plant.getPhoto().isPresent()) {
+            return PlantCaches.PHOTOS.get(plant.getPhoto().get().getHash());
+        }
+        return defaultPhotoIfDecoded();
     }
 
     /**
-     * Formats the Duration object to an app specific standard
+     * Decodes the plant's photo scaled down so that it is not much larger than the argument size,
+     * which takes less memory and time than the whole photo
      *
-     * @param duration the duration to be formatted
-     * @return string formatted representation of the duration
-     * @implSpec This implementation formats the duration as ".. years .. months .. days .. hours .. minutes", omitting
-     * any zeros
+     * @param maxSize the size the photo is shown in, in pixels
+     * @return the scaled photo or a default image if the plant has none or it cannot be read
      */
-    private String formattedDuration(Duration duration, TimespanUnits minUnit) {
-        StringBuilder result = new StringBuilder();
-
-        // sort the time durations in descending order (YEAR, MONTH etc)
-        final List<TimespanUnits> timeUnits = Arrays.stream(TimespanUnits.values())
-                .filter(unit -> unit.minutesInThis >= minUnit.minutesInThis) // discard lower than min
-                .sorted(TimespanUnits.descendingOrder) // sort descending
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        // get their display string resources
-        final String[] labelsSingular = resources.getStringArray(R.array.duration_formatter_YMDhm_labels_singular);
-        final String[] labelsPlural = resources.getStringArray(R.array.duration_formatter_YMDhm_labels_plural);
-
-        if (labelsSingular.length != labelsPlural.length || labelsSingular.length < timeUnits.size()) {
-            // resource singular-plural matching problem or there are not enough labels
-            throw new IllegalStateException("Label/TimespanUnit matching problem");
-        }
-
-        Duration durationLeft = Duration.from(duration);
-        boolean addLeadingSpace = false; // to separate next from previous value
-
-        for (int i = 0; i < timeUnits.size(); i++) {
-            TimespanUnits currentTimespanUnit = timeUnits.get(i);
-            long durationLeftMinutes = durationLeft.toMinutes();
-            long currentUnitsLeft = currentTimespanUnit.fromMinutes(durationLeftMinutes);
-            if (currentUnitsLeft == 0) continue; // nothing to add for this unit, continue
-
-            // add the current time unit number and caption
-            if (addLeadingSpace) result.append(' ');
-            result.append(currentUnitsLeft);
-            result.append(' ');
-            result.append(currentUnitsLeft == 1 ? labelsSingular[i] : labelsPlural[i]);
-
-            // update the duration left
-            durationLeft = durationLeft.minusMinutes(
-                    currentTimespanUnit.toMinutes(currentUnitsLeft));
-
-            if (durationLeft.toMinutes() <= 0) {
-                break;
+    public Bitmap thumbnail(int maxSize) {
+        if (plant.getPhoto().isPresent()) {
+            PlantPhoto photo = plant.getPhoto().get();
+            String key = thumbnailKey(photo, maxSize);
+            Bitmap cached = PlantCaches.PHOTOS.get(key);
+            if (Objects.nonNull(cached)) {
+                return cached;
+            }
+            try {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                try (InputStream in = photo.openStream()) {
+                    BitmapFactory.decodeStream(in, null, options);
+                }
+                options.inSampleSize = sampleSize(options.outWidth, options.outHeight, maxSize);
+                options.inJustDecodeBounds = false;
+                try (InputStream in = photo.openStream()) {
+                    Bitmap nullableBitmap = BitmapFactory.decodeStream(in, null, options);
+                    if (Objects.nonNull(nullableBitmap)) { // no parse error
+                        PlantCaches.PHOTOS.put(key, nullableBitmap);
+                        return nullableBitmap;
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-            addLeadingSpace = true;
         }
-
-        return result.toString();
+        return defaultPhoto(context);
     }
 
     /**
-     * Version of {@link #formattedDuration(Duration, TimespanUnits)} with no lower bound
+     * @param photo   a plant's photo
+     * @param maxSize the size the photo is shown in, in pixels
+     * @return the key the photo's thumbnail is cached with
      */
-    private String formattedDuration(Duration duration) {
-        return formattedDuration(duration, TimespanUnits.MINUTES);
+    public static String thumbnailKey(PlantPhoto photo, int maxSize) {
+        return photo.getHash() + "@" + maxSize;
     }
 
     /**
-     * Handles representation and conversion of time units
-     * <p>
-     * Contains YEARS and MONTHS that are not included in {@link Duration} but not ms, ns etc
+     * Largest power of two that keeps both dimensions at least as large as the argument size
      */
-    private enum TimespanUnits {
-
-        YEARS(525_600), MONTHS(43_805), // assuming 30.42 day months
-        DAYS(1440), HOURS(60), MINUTES(1);
-        static final Comparator<TimespanUnits> descendingOrder = Comparator
-                .comparingLong(TimespanUnits::getMinutesInThis)
-                .reversed();
-
-        /**
-         * Number of minutes in one unit of the respective time unit
-         */
-        private final int minutesInThis;
-
-        TimespanUnits(int numberOfMinutes) {
-            minutesInThis = numberOfMinutes;
+    private static int sampleSize(int width, int height, int maxSize) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= maxSize && height / (sampleSize * 2) >= maxSize) {
+            sampleSize *= 2;
         }
+        return sampleSize;
+    }
 
-        long fromMinutes(long minutes) {
-            return minutes / minutesInThis;
-        }
+    private String formattedDateTime(LocalDateTime dateTime) {
+        return dateTime.format(DATE_TIME_FORMATTER);
+    }
 
-        /**
-         * <p>
-         * Converts a value from the scale of {@code this} to minutes.<br>
-         * </p>
-         * <p>
-         * e.g. YEARS.toMinutes(2) will produce the number of minutes in 2 years
-         * </p>
-         *
-         * @param scaledValue value in the scale of this object
-         * @return equivalent value in minutes
-         */
-        long toMinutes(long scaledValue) {
-            return scaledValue * minutesInThis;
-        }
+    private String formattedDate(LocalDateTime date) {
+        return date.format(DATE_FORMATTER);
+    }
 
-        int getMinutesInThis() {
-            return minutesInThis;
-        }
+    /**
+     * Formats the Duration object to an app specific standard
+     *
+     * @see DurationFormatter#format(Duration, TimespanUnits)
+     */
+    private String formattedDuration(Duration duration, TimespanUnits minUnit) {
+        return durationFormatter.format(duration, minUnit);
     }
 
     /**
-     * Helper class that declares plant bitmap encoding format/quality
+     * Version of {@link #formattedDuration(Duration, TimespanUnits)} with no lower bound
      */
-    public static class BitmapEncoding {
-        public static final Bitmap.CompressFormat format = Bitmap.CompressFormat.PNG;
-        public static final int quality = 100;
+    private String formattedDuration(Duration duration) {
+        return durationFormatter.format(duration);
     }
 
     @NonNull
@@ -282,4 +335,14 @@ public class PlantFormatter {
 
         return builder.toString();
     }
+
+    private static final class LocalizedDurations {
+        final LocaleList locales;
+        final DurationFormatter formatter;
+
+        LocalizedDurations(LocaleList locales, DurationFormatter formatter) {
+            this.locales = locales;
+            this.formatter = formatter;
+        }
+    }
 }
@@ -4,16 +4,21 @@ import android.app.DatePickerDialog;
 import android.content.ActivityNotFoundException;
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -21,18 +26,30 @@ import com.google.android.material.snackbar.Snackbar;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.Calendar;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import gr.auth.androidproject.plants.PerformanceConfig;
+import gr.auth.androidproject.plants.PerformanceSettings;
 import gr.auth.androidproject.plants.R;
 import gr.auth.androidproject.plants.domain.Plant;
-import gr.auth.androidproject.plants.domain.PlantDBHandler;
-import gr.auth.androidproject.plants.ui.PlantFormatter;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+import gr.auth.androidproject.plants.domain.PlantRepository;
+import gr.auth.androidproject.plants.species.Species;
+import gr.auth.androidproject.plants.ui.home.PlantPhotoLoader;
 
 import static android.app.Activity.RESULT_OK;
 
@@ -41,16 +58,31 @@ import static android.app.Activity.RESULT_OK;
  */
 public class AddNewFragment extends Fragment {
 
+    /**
+     * Writes, reads and deletes the photo files in order, off the main thread
+     */
+    private static final ExecutorService PHOTO_FILES = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
 
     private FloatingActionButton takePhotoButton;
     ImageView photoPreview;
-    private EditText nameInput;
+    private View takePhotoCaption;
+    private AutoCompleteTextView nameInput;
     private EditText birthdayInput;
     private EditText wateringIntervalDays, wateringIntervalHours, wateringIntervalMinutes;
     private Button createPlantButton;
 
-    Bitmap photoBitmap = null;
+    /**
+     * The taken photo, encoded and saved in the cache until the plant is saved so that a restored
+     * form only has to keep its path
+     */
+    private File photoFile = null;
     private LocalDateTime birthday = null;
+    /**
+     * Species last picked from the name suggestions, the plant is linked to it if the name is
+     * left as picked
+     */
+    private Species pickedSpecies = null;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM);
 
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -58,10 +90,16 @@ public class AddNewFragment extends Fragment {
 
         View root = saveViews(inflater, container);
         if (Objects.nonNull(savedInstanceState)) {
-            birthday = (LocalDateTime) savedInstanceState.getSerializable("birthday");
+            PlantFormState state = savedInstanceState.getParcelable("form");
+            if (Objects.nonNull(state)) {
+                birthday = state.birthday;
+                pickedSpecies = state.pickedSpecies;
+                if (Objects.nonNull(state.photoPath)) restorePhoto(new File(state.photoPath));
+            }
         }
         createTakePhotoButtonListener();
         createBirthdayInputListener();
+        createSpeciesSuggestions();
         createSavePlantButtonListener();
 
         return root;
@@ -83,6 +121,7 @@ public class AddNewFragment extends Fragment {
         View root = inflater.inflate(R.layout.fragment_add_new, container, false);
         takePhotoButton = root.findViewById(R.id.buttonTakePlantPhoto);
         photoPreview = root.findViewById(R.id.plantPhotoPreview);
+        takePhotoCaption = root.findViewById(R.id.takePhotoCaption);
         nameInput = root.findViewById(R.id.editTextPlantName);
         birthdayInput = root.findViewById(R.id.editTextPlantBirthday);
         wateringIntervalDays = root.findViewById(R.id.editTextWateringIntervalDays);
@@ -111,13 +150,31 @@ public class AddNewFragment extends Fragment {
                 .show());
     }
 
+    /**
+     * Suggests species from the catalog while the name is typed. Picking one fills in its
+     * recommended watering interval
+     */
+    private void createSpeciesSuggestions() {
+        SpeciesAdapter adapter = new SpeciesAdapter(requireContext());
+        nameInput.setAdapter(adapter);
+        nameInput.setOnItemClickListener((parent, view, position, id) -> {
+            pickedSpecies = adapter.getItem(position);
+            Duration interval = pickedSpecies.getWateringInterval();
+            wateringIntervalDays.setText(String.valueOf(interval.toDays()));
+            wateringIntervalHours.setText(interval.toHours() % 24 == 0 ? ""
+                    : String.valueOf(interval.toHours() % 24));
+            wateringIntervalMinutes.setText(interval.toMinutes() % 60 == 0 ? ""
+                    : String.valueOf(interval.toMinutes() % 60));
+        });
+    }
+
     /**
      * <p>
      * Creates the save plant button listener.<br>
      * <p>
      * <p>
      * The listener converts all fields into a {@link Plant} object and issues an insert order to
-     * the database through the {@link PlantDBHandler} object
+     * the database through the {@link PlantRepository}
      * </p>
      */
     private void createSavePlantButtonListener() {
@@ -141,23 +198,29 @@ public class AddNewFragment extends Fragment {
             LocalDateTime birthday = this.birthday;
             // set last watered
             LocalDateTime lastWatered = LocalDateTime.now();
-            // parse photo
-            byte[] photo;
-            if (Objects.nonNull(photoBitmap)) {
-                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-                photoBitmap.compress(
-                        PlantFormatter.BitmapEncoding.format,
-                        PlantFormatter.BitmapEncoding.quality, bytes);
-                photo = bytes.toByteArray();
-            } else {
-                photo = null;
-            }
             // create the plant object
-            Plant theNewPlant = new Plant(name, birthday, lastWatered, wateringInterval, photo);
+            Plant theNewPlant = new Plant(name, birthday, lastWatered, wateringInterval, null);
+            if (Objects.nonNull(pickedSpecies) && pickedSpecies.getName().equals(name)) {
+                theNewPlant.setSpeciesId(pickedSpecies.getId());
+            }
 
-            // insert into the db
-            PlantDBHandler handler = new PlantDBHandler(AddNewFragment.this.getActivity());
-            handler.addPlant(theNewPlant);
+            // read the photo after it is written and insert into the db, the file is no longer
+            // the form's
+            PlantRepository repository =
+                    PlantRepository.getInstance(AddNewFragment.this.requireContext());
+            File file = photoFile;
+            photoFile = null;
+            PHOTO_FILES.execute(() -> {
+                if (Objects.nonNull(file)) {
+                    try {
+                        theNewPlant.setPhoto(PlantPhoto.of(Files.readAllBytes(file.toPath())));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    file.delete();
+                }
+                repository.addPlant(theNewPlant);
+            });
 
             // go back with a success message
             Snackbar.make(AddNewFragment.this.requireView(),
@@ -213,13 +276,100 @@ public class AddNewFragment extends Fragment {
         if (requestCode == REQUEST_IMAGE_CAPTURE && resultCode == RESULT_OK) {
             Bundle extras = data.getExtras();
             Bitmap imageBitmap = (Bitmap) extras.get("data");
-            photoBitmap = imageBitmap;
-            photoPreview.setImageBitmap(imageBitmap);
-            photoPreview.setVisibility(View.VISIBLE);
+            File file = new File(new File(requireContext().getCacheDir(), "new_plant_photos"),
+                    "photo" + UUID.randomUUID());
+            deletePhotoFile();
+            photoFile = file;
+            showPhoto(imageBitmap);
+            savePhoto(imageBitmap, file);
+        }
+    }
+
+    /**
+     * Shows the taken photo in place of the take photo button and its caption
+     *
+     * @param bitmap the photo, or null to decode it from its file in the background
+     */
+    private void showPhoto(@Nullable Bitmap bitmap) {
+        String path = photoFile.getPath();
+        PlantPhotoLoader.load(photoPreview, bitmap, () -> BitmapFactory.decodeFile(path));
+        photoPreview.setVisibility(View.VISIBLE);
+
+        // hide the button and caption
+        takePhotoButton.setVisibility(View.INVISIBLE);
+        takePhotoCaption.setVisibility(View.INVISIBLE);
+    }
+
+    /**
+     * Encodes the photo as the performance settings say into the argument file in the cache, in
+     * the background. If it cannot be written the form goes back to having no photo
+     */
+    private void savePhoto(Bitmap bitmap, File file) {
+        PerformanceConfig config = PerformanceSettings.get();
+        PHOTO_FILES.execute(() -> {
+            try {
+                Files.createDirectories(file.getParentFile().toPath());
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                    bitmap.compress(config.getCompressFormat(),
+                            config.getPhotoQuality(), out);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                file.delete();
+                handler.post(() -> {
+                    if (!file.equals(photoFile)) return;
+                    photoFile = null;
+                    if (Objects.nonNull(getView())) hidePhoto();
+                });
+            }
+        });
+    }
 
-            // hide the button and caption
-            takePhotoButton.setVisibility(View.INVISIBLE);
-            this.requireActivity().findViewById(R.id.takePhotoCaption).setVisibility(View.INVISIBLE);
+    /**
+     * Shows the saved photo once the pending writes are done, the cache may have been cleared
+     * while the app was in the background
+     */
+    private void restorePhoto(File file) {
+        photoFile = file;
+        PHOTO_FILES.execute(() -> {
+            boolean exists = file.exists();
+            handler.post(() -> {
+                if (!file.equals(photoFile)) return;
+                if (!exists) {
+                    photoFile = null;
+                } else if (Objects.nonNull(getView())) {
+                    showPhoto(null);
+                }
+            });
+        });
+    }
+
+    /**
+     * Shows the take photo button and its caption again in place of the photo
+     */
+    private void hidePhoto() {
+        photoPreview.setVisibility(View.INVISIBLE);
+        takePhotoButton.setVisibility(View.VISIBLE);
+        takePhotoCaption.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Deletes the photo file in the background, after it is written
+     */
+    private void deletePhotoFile() {
+        if (Objects.nonNull(photoFile)) {
+            File file = photoFile;
+            PHOTO_FILES.execute(file::delete);
+            photoFile = null;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // the photo is only kept while the form can still be restored
+        if (isRemoving() || (Objects.nonNull(getActivity()) && getActivity().isFinishing())) {
+            deletePhotoFile();
         }
     }
 
@@ -227,9 +377,8 @@ public class AddNewFragment extends Fragment {
     public void onSaveInstanceState(@NonNull @NotNull Bundle outState) {
         super.onSaveInstanceState(outState);
 
-        // save birthday
-        if (Objects.nonNull(birthday)) {
-            outState.putSerializable("birthday", birthday);
-        }
+        // the views keep their own text, the rest of the form is saved here
+        outState.putParcelable("form", new PlantFormState(birthday, pickedSpecies,
+                Objects.nonNull(photoFile) ? photoFile.getPath() : null));
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package gr.auth.androidproject.plants.ui.add_new;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import gr.auth.androidproject.plants.species.Species;
+
+/**
+ * <p>
+ * The parts of an unfinished new plant form its views do not keep themselves.<br>
+ * </p>
+ * <p>
+ * Written as primitive fields, with the photo as the path of the file it was saved to instead of
+ * its pixels, so saving the form stays cheap and far below the Binder transaction limit
+ * </p>
+ */
+final class PlantFormState implements Parcelable {
+
+    final LocalDateTime birthday;
+    final Species pickedSpecies;
+    final String photoPath;
+
+    /**
+     * @param birthday      the picked birthday, or null
+     * @param pickedSpecies the species picked from the suggestions, or null
+     * @param photoPath     the file the taken photo is saved in, or null
+     */
+    PlantFormState(LocalDateTime birthday, Species pickedSpecies, String photoPath) {
+        this.birthday = birthday;
+        this.pickedSpecies = pickedSpecies;
+        this.photoPath = photoPath;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        // birthdays are picked as dates
+        dest.writeLong(Objects.nonNull(birthday) ? birthday.toLocalDate().toEpochDay()
+                : Long.MIN_VALUE);
+        dest.writeInt(Objects.nonNull(pickedSpecies) ? 1 : 0);
+        if (Objects.nonNull(pickedSpecies)) {
+            dest.writeInt(pickedSpecies.getId());
+            dest.writeString(pickedSpecies.getName());
+            dest.writeLong(pickedSpecies.getWateringInterval().toMinutes());
+        }
+        dest.writeString(photoPath);
+    }
+
+    public static final Creator<PlantFormState> CREATOR = new Creator<PlantFormState>() {
+        @Override
+        public PlantFormState createFromParcel(Parcel in) {
+            long epochDay = in.readLong();
+            LocalDateTime birthday = epochDay != Long.MIN_VALUE
+                    ? LocalDate.ofEpochDay(epochDay).atStartOfDay()
+                    : null;
+            Species species = in.readInt() != 0
+                    ? new Species(in.readInt(), in.readString(), Duration.ofMinutes(in.readLong()))
+                    : null;
+            return new PlantFormState(birthday, species, in.readString());
+        }
+
+        @Override
+        public PlantFormState[] newArray(int size) {
+            return new PlantFormState[size];
+        }
+    };
+}
@@ -0,0 +1,106 @@
+package gr.auth.androidproject.plants.ui.add_new;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.Collections;
+import java.util.List;
+
+import gr.auth.androidproject.plants.R;
+import gr.auth.androidproject.plants.domain.BundledSpeciesCatalog;
+import gr.auth.androidproject.plants.format.DurationFormatter;
+import gr.auth.androidproject.plants.format.TimespanUnits;
+import gr.auth.androidproject.plants.species.Species;
+
+/**
+ * Suggestions of the plant name field, searched in the species catalog by the typed prefix. The
+ * search runs on the filter's background thread
+ */
+class SpeciesAdapter extends BaseAdapter implements Filterable {
+
+    /**
+     * Most suggestions shown at once
+     */
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final Context context;
+    private final LayoutInflater inflater;
+    private final DurationFormatter durationFormatter;
+    private final String intervalFormat;
+    private List<Species> species = Collections.emptyList();
+
+    SpeciesAdapter(Context context) {
+        this.context = context.getApplicationContext();
+        this.inflater = LayoutInflater.from(context);
+        Resources resources = context.getResources();
+        this.durationFormatter = new DurationFormatter(
+                resources.getStringArray(R.array.duration_formatter_YMDhm_labels_singular),
+                resources.getStringArray(R.array.duration_formatter_YMDhm_labels_plural));
+        this.intervalFormat = resources.getString(R.string.add_plant_species_interval);
+    }
+
+    @Override
+    public int getCount() {
+        return species.size();
+    }
+
+    @Override
+    public Species getItem(int position) {
+        return species.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return species.get(position).getId();
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView != null ? convertView
+                : inflater.inflate(android.R.layout.simple_list_item_2, parent, false);
+        Species item = species.get(position);
+        ((TextView) view.findViewById(android.R.id.text1)).setText(item.getName());
+        ((TextView) view.findViewById(android.R.id.text2)).setText(String.format(intervalFormat,
+                durationFormatter.format(item.getWateringInterval(), TimespanUnits.DAYS)));
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence constraint) {
+                List<Species> found = constraint == null ? Collections.emptyList()
+                        : BundledSpeciesCatalog.search(context, constraint.toString(),
+                        MAX_SUGGESTIONS);
+                FilterResults results = new FilterResults();
+                results.values = found;
+                results.count = found.size();
+                return results;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void publishResults(CharSequence constraint, FilterResults results) {
+                species = (List<Species>) results.values;
+                if (results.count > 0) {
+                    notifyDataSetChanged();
+                } else {
+                    notifyDataSetInvalidated();
+                }
+            }
+
+            @Override
+            public CharSequence convertResultToString(Object resultValue) {
+                return ((Species) resultValue).getName();
+            }
+        };
+    }
+}
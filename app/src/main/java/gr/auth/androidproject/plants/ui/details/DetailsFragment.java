@@ -1,8 +1,12 @@
 package gr.auth.androidproject.plants.ui.details;
 
-import android.app.AlertDialog;
+import android.content.ActivityNotFoundException;
 import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.os.Bundle;
+import android.provider.MediaStore;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,19 +16,37 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.snackbar.Snackbar;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Objects;
 
 import gr.auth.androidproject.plants.R;
+import gr.auth.androidproject.plants.domain.GalleryPhoto;
 import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantRepository;
+import gr.auth.androidproject.plants.ui.ParcelablePlant;
 import gr.auth.androidproject.plants.ui.PlantFormatter;
 import gr.auth.androidproject.plants.ui.HomeDetailsSharedViewModel;
+import gr.auth.androidproject.plants.ui.home.PlantPhotoLoader;
+
+import static android.app.Activity.RESULT_OK;
 
 public class DetailsFragment extends Fragment {
+    private static final int REQUEST_IMAGE_CAPTURE = 1;
+
+    private DetailsViewModel viewModel;
+    /**
+     * The plant last shown, kept in the saved state so that it is shown again right away
+     */
+    private ParcelablePlant shownPlant;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
@@ -32,23 +54,25 @@ public class DetailsFragment extends Fragment {
         View root = inflater.inflate(R.layout.fragment_details, container, false);
         HomeDetailsSharedViewModel sharedViewModel =
                 new ViewModelProvider(requireActivity()).get(HomeDetailsSharedViewModel.class);
+        viewModel = new ViewModelProvider(this).get(DetailsViewModel.class);
         Context context = getContext();
 
         assert getArguments() != null;
-        int position = getArguments().getInt("position");
-        Plant current_plant =
-                Objects.requireNonNull(sharedViewModel.getPlants(context).getValue()).get(position);
-        PlantFormatter plantFormatter = new PlantFormatter(context, current_plant);
-
-        // setting the views to the according values of the selected plant
-        TextView name = root.findViewById(R.id.textViewDetails2);
-        ImageView plant_image = root.findViewById(R.id.imageViewDetails1);
-        TextView next_watering = root.findViewById(R.id.textViewDetails4);
-        TextView age = root.findViewById(R.id.textViewDetails6);
-        name.setText(plantFormatter.name());
-        plant_image.setImageBitmap(plantFormatter.photo());
-        next_watering.setText(plantFormatter.timeToNextWatering());
-        age.setText(plantFormatter.age());
+        long plantId = getArguments().getLong("plantId");
+
+        // show the plant as it was passed or saved, the query below only refreshes it
+        ParcelablePlant passed = Objects.nonNull(savedInstanceState)
+                ? savedInstanceState.getParcelable("plant")
+                : getArguments().getParcelable("plant");
+        if (Objects.nonNull(passed) && passed.getId() == plantId) {
+            showPlant(root, passed.toPlant(
+                    PlantRepository.getInstance(context).getPhotoSource()));
+        }
+
+        sharedViewModel.getPlant(plantId, context).observe(getViewLifecycleOwner(), plant -> {
+            if (!plant.isPresent()) return; // deleted, keep showing the last values
+            showPlant(root, plant.get());
+        });
 
         // getting the delete button view
         Button delete_button = root.findViewById(R.id.buttonDetails2);
@@ -57,43 +81,134 @@ public class DetailsFragment extends Fragment {
         Button just_watered_button = root.findViewById(R.id.buttonDetails1);
 
         delete_button.setOnClickListener(v ->
-                deleteWithConfirmation(
-                        context, sharedViewModel, position, delete_button, just_watered_button));
+                deleteWithUndo(context, sharedViewModel, plantId, delete_button, just_watered_button));
 
         just_watered_button.setOnClickListener(v -> {
-            sharedViewModel.waterPlant(position, context);
-            next_watering.setText(plantFormatter.timeToNextWatering());
+            sharedViewModel.waterPlant(plantId, context);
             Snackbar.make(this.requireView(), R.string.details_just_watered_response,
                     Snackbar.LENGTH_SHORT).show();
             just_watered_button.setEnabled(false);
         });
 
+        setUpGallery(root, context, plantId);
+
         return root;
     }
 
-    private void deleteWithConfirmation(Context context, HomeDetailsSharedViewModel sharedViewModel,
-                                        int position,
-                                        Button delete_button, Button just_watered_button) {
-        new AlertDialog.Builder(this.requireActivity())
-                .setMessage(R.string.details_delete_plant_dialogue)
-                .setPositiveButton(R.string.yes, (d, w) -> {
-                    // do the delete
-                    sharedViewModel.deletePlant(position, context);
-                    Snackbar.make(this.requireView(), R.string.details_delete_success_response,
-                            Snackbar.LENGTH_SHORT).show();
-                    delete_button.setEnabled(false);
-                    just_watered_button.setEnabled(false);
-                })
-                .setNegativeButton(R.string.no, (d, w) -> { // do not delete
-                })
+    /**
+     * Sets the views to the according values of the argument plant
+     */
+    private void showPlant(View root, Plant plant) {
+        TextView name = root.findViewById(R.id.textViewDetails2);
+        ImageView plant_image = root.findViewById(R.id.imageViewDetails1);
+        TextView next_watering = root.findViewById(R.id.textViewDetails4);
+        TextView age = root.findViewById(R.id.textViewDetails6);
+
+        PlantFormatter plantFormatter = new PlantFormatter(root.getContext(), plant);
+        name.setText(plantFormatter.name());
+        // the full photo may take a while to read and decode
+        PlantPhotoLoader.load(plant_image, plantFormatter.photoIfCached(), plantFormatter::photo);
+        next_watering.setText(plantFormatter.timeToNextWatering());
+        age.setText(plantFormatter.age());
+        shownPlant = ParcelablePlant.of(plant);
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (Objects.nonNull(shownPlant)) {
+            outState.putParcelable("plant", shownPlant);
+        }
+    }
+
+    /**
+     * Shows the plant's photos as a timeline, reading the next page when the user scrolls near
+     * its end
+     */
+    private void setUpGallery(View root, Context context, long plantId) {
+        RecyclerView timeline = root.findViewById(R.id.recyclerViewDetailsGallery);
+        TextView empty = root.findViewById(R.id.textViewDetailsGalleryEmpty);
+        LinearLayoutManager layoutManager =
+                new LinearLayoutManager(context, LinearLayoutManager.HORIZONTAL, false);
+        GalleryAdapter adapter = new GalleryAdapter(photo -> openPhoto(context, photo));
+        timeline.setLayoutManager(layoutManager);
+        timeline.setAdapter(adapter);
+        timeline.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int remaining = adapter.getItemCount()
+                        - layoutManager.findLastVisibleItemPosition() - 1;
+                if (remaining < DetailsViewModel.PAGE_SIZE / 2) {
+                    viewModel.loadMore(context);
+                }
+            }
+        });
+
+        viewModel.getGallery(plantId, context).observe(getViewLifecycleOwner(), photos -> {
+            adapter.submitList(photos);
+            empty.setVisibility(photos.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+
+        root.findViewById(R.id.buttonDetailsAddPhoto).setOnClickListener(v -> {
+            Intent takePictureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
+            try {
+                this.startActivityForResult(takePictureIntent, REQUEST_IMAGE_CAPTURE);
+            } catch (ActivityNotFoundException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Shows the full photo of a gallery entry, read from storage in the background
+     */
+    private void openPhoto(Context context, GalleryPhoto photo) {
+        ImageView view = new ImageView(context);
+        view.setAdjustViewBounds(true);
+        view.setContentDescription(getString(R.string.img_description));
+        PlantRepository repository = PlantRepository.getInstance(context);
+        PlantPhotoLoader.load(view, null, () -> {
+            try (InputStream in = repository.openGalleryPhoto(photo.getId())) {
+                return BitmapFactory.decodeStream(in);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        });
+        new AlertDialog.Builder(context)
+                .setView(view)
+                .setPositiveButton(android.R.string.ok, null)
                 .show();
     }
 
-//    @Override
-//    public void onActivityCreated(@Nullable Bundle savedInstanceState) {
-//        super.onActivityCreated(savedInstanceState);
-//        mViewModel = new ViewModelProvider(this).get(DetailsViewModel.class);
-//        // TODO: Use the ViewModel
-//    }
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_IMAGE_CAPTURE && resultCode == RESULT_OK
+                && data != null && data.getExtras() != null) {
+            Bitmap imageBitmap = (Bitmap) data.getExtras().get("data");
+            if (imageBitmap != null) {
+                viewModel.addPhoto(imageBitmap, requireContext());
+            }
+        }
+    }
 
+    /**
+     * Deletes the plant at once and offers to undo it, the plant is only purged later
+     */
+    private void deleteWithUndo(Context context, HomeDetailsSharedViewModel sharedViewModel,
+                                long plantId, Button delete_button, Button just_watered_button) {
+        boolean couldWater = just_watered_button.isEnabled();
+        sharedViewModel.deletePlant(plantId, context);
+        delete_button.setEnabled(false);
+        just_watered_button.setEnabled(false);
+        Snackbar.make(this.requireView(), R.string.details_delete_success_response,
+                Snackbar.LENGTH_LONG)
+                .setAction(R.string.details_undo, v -> {
+                    sharedViewModel.restorePlant(plantId, context);
+                    delete_button.setEnabled(true);
+                    just_watered_button.setEnabled(couldWater);
+                })
+                .show();
+    }
 }
\ No newline at end of file
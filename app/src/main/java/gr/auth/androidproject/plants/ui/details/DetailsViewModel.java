@@ -1,7 +1,142 @@
 package gr.auth.androidproject.plants.ui.details;
 
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.ViewModel;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import gr.auth.androidproject.plants.PerformanceConfig;
+import gr.auth.androidproject.plants.PerformanceSettings;
+import gr.auth.androidproject.plants.domain.GalleryPhoto;
+import gr.auth.androidproject.plants.domain.PlantRepository;
+
+/**
+ * Holds the photo timeline of the plant shown in the details. The timeline is read a page at a
+ * time, newest first, as the user scrolls to its end
+ */
 public class DetailsViewModel extends ViewModel {
-    // TODO: Implement the ViewModel
-}
\ No newline at end of file
+    /**
+     * Gallery photos read at once, a few screens of thumbnails
+     */
+    static final int PAGE_SIZE = 30;
+
+    /**
+     * Largest dimension of the thumbnails stored with the photos, in pixels
+     */
+    private static final int THUMBNAIL_SIZE = 256;
+    private static final int THUMBNAIL_QUALITY = 80;
+
+    /**
+     * Encodes new photos, so taking a photo does not stall the screen
+     */
+    private static final ExecutorService ENCODER = Executors.newSingleThreadExecutor();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final MediatorLiveData<List<GalleryPhoto>> gallery = new MediatorLiveData<>();
+    private long plantId;
+    private boolean loading;
+    private boolean hasMore = true;
+
+    /**
+     * Returns the observable timeline of the argument plant and starts reading its first page, if
+     * it is not read yet
+     */
+    public LiveData<List<GalleryPhoto>> getGallery(long plantId, Context context) {
+        if (gallery.getValue() == null) {
+            this.plantId = plantId;
+            gallery.setValue(Collections.emptyList());
+            loadMore(context);
+        }
+        return gallery;
+    }
+
+    /**
+     * Reads the next page of the timeline, unless one is being read or the whole timeline is
+     * already read
+     */
+    public void loadMore(Context context) {
+        if (loading || !hasMore) return;
+        loading = true;
+
+        List<GalleryPhoto> current = Objects.requireNonNull(gallery.getValue());
+        GalleryPhoto last = current.isEmpty() ? null : current.get(current.size() - 1);
+        LiveData<List<GalleryPhoto>> page =
+                PlantRepository.getInstance(context).getGalleryPage(plantId, last, PAGE_SIZE);
+        gallery.addSource(page, photos -> {
+            gallery.removeSource(page);
+            loading = false;
+            hasMore = photos.size() == PAGE_SIZE;
+            List<GalleryPhoto> merged = new ArrayList<>(Objects.requireNonNull(gallery.getValue()));
+            for (GalleryPhoto photo : photos) {
+                // a photo added while the page was read may already be shown
+                if (!contains(merged, photo.getId())) merged.add(photo);
+            }
+            gallery.setValue(merged);
+        });
+    }
+
+    /**
+     * Stores the argument photo in the plant's gallery with a thumbnail and shows it first once
+     * it is stored. The photo is encoded in the background as the performance settings say
+     */
+    public void addPhoto(Bitmap bitmap, Context context) {
+        PerformanceConfig config = PerformanceSettings.get();
+        PlantRepository repository = PlantRepository.getInstance(context);
+        long plantId = this.plantId;
+        ENCODER.execute(() -> {
+            ByteArrayOutputStream photo = new ByteArrayOutputStream();
+            bitmap.compress(config.getCompressFormat(), config.getPhotoQuality(), photo);
+            ByteArrayOutputStream thumbnail = new ByteArrayOutputStream();
+            scaleDown(bitmap, THUMBNAIL_SIZE).compress(Bitmap.CompressFormat.JPEG,
+                    THUMBNAIL_QUALITY, thumbnail);
+            handler.post(() -> showAdded(repository.addGalleryPhoto(plantId, photo.toByteArray(),
+                    thumbnail.toByteArray())));
+        });
+    }
+
+    /**
+     * Shows the argument new gallery entry first once it is stored
+     */
+    private void showAdded(LiveData<GalleryPhoto> added) {
+        gallery.addSource(added, galleryPhoto -> {
+            gallery.removeSource(added);
+            List<GalleryPhoto> current = Objects.requireNonNull(gallery.getValue());
+            if (contains(current, galleryPhoto.getId())) return;
+            List<GalleryPhoto> updated = new ArrayList<>(current.size() + 1);
+            updated.add(galleryPhoto);
+            updated.addAll(current);
+            gallery.setValue(updated);
+        });
+    }
+
+    private static boolean contains(List<GalleryPhoto> photos, long id) {
+        for (GalleryPhoto photo : photos) {
+            if (photo.getId() == id) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Scales the bitmap so that its largest dimension is at most the argument size, keeping its
+     * aspect ratio
+     */
+    private static Bitmap scaleDown(Bitmap bitmap, int maxSize) {
+        int largest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (largest <= maxSize) return bitmap;
+        return Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, bitmap.getWidth() * maxSize / largest),
+                Math.max(1, bitmap.getHeight() * maxSize / largest), true);
+    }
+}
@@ -0,0 +1,99 @@
+package gr.auth.androidproject.plants.ui.details;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.function.Consumer;
+
+import gr.auth.androidproject.plants.PlantCaches;
+import gr.auth.androidproject.plants.R;
+import gr.auth.androidproject.plants.domain.GalleryPhoto;
+import gr.auth.androidproject.plants.ui.home.PlantPhotoLoader;
+
+/**
+ * Thumbnails of a plant's photo timeline. Thumbnails are decoded off the main thread as they are
+ * bound and kept in the photo cache, the full photos are only read when one is opened
+ */
+class GalleryAdapter extends ListAdapter<GalleryPhoto, GalleryAdapter.ViewHolder> {
+
+    /**
+     * Gallery photos never change, so entries with the same id look the same
+     */
+    private static final DiffUtil.ItemCallback<GalleryPhoto> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<GalleryPhoto>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull GalleryPhoto oldItem,
+                                               @NonNull GalleryPhoto newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull GalleryPhoto oldItem,
+                                                  @NonNull GalleryPhoto newItem) {
+                    return oldItem.getHash().equals(newItem.getHash());
+                }
+            };
+
+    private final Consumer<GalleryPhoto> onOpen;
+
+    /**
+     * @param onOpen called with the entry the user taps on
+     */
+    GalleryAdapter(Consumer<GalleryPhoto> onOpen) {
+        super(DIFF_CALLBACK);
+        this.onOpen = onOpen;
+        setHasStableIds(true);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        private final ImageView thumbnail;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            thumbnail = itemView.findViewById(R.id.item_image);
+        }
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View v = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.gallery_item, parent, false);
+        ViewHolder holder = new ViewHolder(v);
+        v.setOnClickListener(view -> {
+            int position = holder.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                onOpen.accept(getItem(position));
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        GalleryPhoto photo = getItem(position);
+        String key = "gallery:" + photo.getHash();
+        PlantPhotoLoader.load(holder.thumbnail, PlantCaches.PHOTOS.get(key), () -> {
+            byte[] bytes = photo.getThumbnail();
+            Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+            if (bitmap != null) {
+                PlantCaches.PHOTOS.put(key, bitmap);
+            }
+            return bitmap;
+        });
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+}
@@ -1,12 +1,18 @@
 package gr.auth.androidproject.plants.ui.home;
 
+import android.app.Activity;
 import android.content.Context;
 import android.os.Bundle;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.Window;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.widget.SearchView;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.Navigation;
@@ -15,28 +21,33 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import java.util.List;
-
 import gr.auth.androidproject.plants.R;
-import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantSortOrder;
 import gr.auth.androidproject.plants.ui.HomeDetailsSharedViewModel;
 
 public class HomeFragment extends Fragment {
 
     FloatingActionButton fab;
     RecyclerView recyclerView;
-    RecyclerView.LayoutManager layoutManager;
-    RecyclerView.Adapter<RecyclerAdapter.ViewHolder> adapter;
-
+    LinearLayoutManager layoutManager;
+    RecyclerAdapter adapter;
+    HomeDetailsSharedViewModel sharedViewModel;
+    // set only while it is registered
+    Window.OnFrameMetricsAvailableListener frameMetricsListener;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setHasOptionsMenu(true);
+        sharedViewModel = new ViewModelProvider(requireActivity())
+                .get(HomeDetailsSharedViewModel.class);
+    }
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
 
         View root = inflater.inflate(R.layout.fragment_home, container, false);
 
-        HomeDetailsSharedViewModel sharedViewModel = new ViewModelProvider(requireActivity())
-                .get(HomeDetailsSharedViewModel.class);
-
         Context context = getContext();
 
         recyclerView = root.findViewById(R.id.recyclerView);
@@ -45,15 +56,26 @@ public class HomeFragment extends Fragment {
         layoutManager = new LinearLayoutManager(context);
         recyclerView.setLayoutManager(layoutManager);
 
-        List<Plant> plants = sharedViewModel.getPlants(context).getValue();
         //Set my Adapter for the RecyclerView
-        adapter = new RecyclerAdapter(context, plants);
+        // the adapter outlives the view so that coming back to this fragment only diffs the list
+        if (adapter == null) {
+            adapter = new RecyclerAdapter(context);
+        }
         recyclerView.setAdapter(adapter);
-
-//        sharedViewModel.getPlants(context).
-//                observe(getViewLifecycleOwner(), (Observer) o -> {
-//
-//                });
+        // thumbnails and text of the cards ahead are prepared while scrolling
+        recyclerView.addOnScrollListener(new PlantListPrefetcher(context, layoutManager, adapter));
+
+        // search and sorting run in the background, the list only receives their results
+        View placeholder = root.findViewById(R.id.home_placeholder);
+        sharedViewModel.getSearchResults(context)
+                .observe(getViewLifecycleOwner(), plants -> adapter.submitList(plants, () -> {
+                    placeholder.setVisibility(View.GONE);
+                    // the list has its content, only the first call per launch is reported
+                    Activity activity = getActivity();
+                    if (activity != null) {
+                        activity.reportFullyDrawn();
+                    }
+                }));
 
 
         // setting the floating action button to go to add new page when pressed
@@ -66,4 +88,68 @@ public class HomeFragment extends Fragment {
         return root;
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        // only the frames rendered while the list is shown are recorded
+        if (frameMetricsListener == null) {
+            frameMetricsListener = PlantListTracing.startFrameMetrics(requireActivity());
+        }
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        PlantListTracing.stopFrameMetrics(requireActivity(), frameMetricsListener);
+        frameMetricsListener = null;
+    }
+
+    @Override
+    public void onCreateOptionsMenu(@NonNull Menu menu, @NonNull MenuInflater inflater) {
+        inflater.inflate(R.menu.home, menu);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                sharedViewModel.setSearchText(newText);
+                return true;
+            }
+        });
+
+        // check the current sort order
+        switch (sharedViewModel.getSortOrder()) {
+            case NAME:
+                menu.findItem(R.id.action_sort_name).setChecked(true);
+                break;
+            case MOST_URGENT:
+                menu.findItem(R.id.action_sort_urgency).setChecked(true);
+                break;
+            case AGE:
+                menu.findItem(R.id.action_sort_age).setChecked(true);
+                break;
+        }
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_sort_name) {
+            sharedViewModel.setSortOrder(PlantSortOrder.NAME);
+        } else if (id == R.id.action_sort_urgency) {
+            sharedViewModel.setSortOrder(PlantSortOrder.MOST_URGENT);
+        } else if (id == R.id.action_sort_age) {
+            sharedViewModel.setSortOrder(PlantSortOrder.AGE);
+        } else {
+            return super.onOptionsItemSelected(item);
+        }
+        item.setChecked(true);
+        return true;
+    }
+
 }
\ No newline at end of file
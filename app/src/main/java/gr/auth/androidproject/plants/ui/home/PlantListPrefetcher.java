@@ -0,0 +1,156 @@
+package gr.auth.androidproject.plants.ui.home;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import gr.auth.androidproject.plants.PerformanceSettings;
+import gr.auth.androidproject.plants.PlantCaches;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+import gr.auth.androidproject.plants.ui.PlantFormatter;
+
+/**
+ * <p>
+ * Gets the cards the user is scrolling towards ready before they are bound.<br>
+ * </p>
+ * <p>
+ * The cards ahead in the direction of the scroll have their thumbnails decoded into the photo
+ * cache and their text measured in the background. The faster the scroll, the further ahead this
+ * reaches, so a fling shows filled cards instead of placeholders. Thumbnails are only decoded
+ * ahead up to a share of the photo cache, counted in the bytes the thumbnails ahead take or are
+ * expected to take, so they never push out the cards on screen. The decodes of cards the user has
+ * turned away from are cancelled while they are still queued. Cards prepared by the last call are
+ * not prepared again
+ * </p>
+ */
+final class PlantListPrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * Cards prepared ahead while the list is still or scrolls slowly
+     */
+    private static final int MIN_AHEAD = 4;
+    private static final int MAX_AHEAD = 24;
+    /**
+     * How far ahead in time the cards are prepared at the current scroll speed
+     */
+    private static final long LOOKAHEAD_MILLIS = 500;
+    /**
+     * Share of the photo cache the thumbnails decoded ahead may take
+     */
+    private static final double PHOTO_BUDGET_SHARE = 0.25;
+
+    private final Context context;
+    private final LinearLayoutManager layoutManager;
+    private final RecyclerAdapter adapter;
+    /**
+     * Keys of the thumbnails prefetched by the last call
+     */
+    private Set<String> prefetched = new HashSet<>();
+    /**
+     * List and positions the last call prepared the text of
+     */
+    private List<Plant> handledList;
+    private int handledLow;
+    private int handledHigh = -1;
+    private int direction = 1;
+    private float pixelsPerMilli;
+    private long lastScrollTime;
+
+    PlantListPrefetcher(Context context, LinearLayoutManager layoutManager,
+                        RecyclerAdapter adapter) {
+        this.context = context;
+        this.layoutManager = layoutManager;
+        this.adapter = adapter;
+    }
+
+    /**
+     * Also called with no movement when the list is laid out, which prepares the cards below the
+     * first screen
+     */
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        long now = SystemClock.uptimeMillis();
+        if (dy != 0) {
+            direction = dy > 0 ? 1 : -1;
+            long elapsed = Math.max(1, now - lastScrollTime);
+            // smoothed, the distance of single frames varies a lot
+            pixelsPerMilli = (pixelsPerMilli + Math.abs(dy) / (float) elapsed) / 2;
+        }
+        lastScrollTime = now;
+
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        View card = layoutManager.getChildAt(0);
+        if (first == RecyclerView.NO_POSITION || card == null || card.getHeight() == 0) return;
+
+        int cardsInLookahead = (int) (pixelsPerMilli * LOOKAHEAD_MILLIS / card.getHeight());
+        int ahead = Math.max(MIN_AHEAD, Math.min(MAX_AHEAD, cardsInLookahead));
+        prefetch(direction > 0 ? last + 1 : first - 1, ahead);
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            pixelsPerMilli = 0;
+        }
+    }
+
+    /**
+     * Prepares the argument number of cards from the argument position on, in the direction of
+     * the scroll, and cancels the queued decodes of any other card
+     */
+    private void prefetch(int from, int count) {
+        List<Plant> plants = adapter.getCurrentList();
+        PlantTextPrefetcher textPrefetcher = adapter.getTextPrefetcher();
+        int thumbnailSize = PerformanceSettings.get().getThumbnailSize();
+        long photoBudget = (long) (PlantCaches.PHOTOS.getMaxSize() * PHOTO_BUDGET_SHARE);
+        long photoBytes = 0;
+        boolean sameList = plants == handledList;
+        int low = Integer.MAX_VALUE;
+        int high = -1;
+
+        Set<String> wanted = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            int position = from + i * direction;
+            if (position < 0 || position >= plants.size()) break;
+            low = Math.min(low, position);
+            high = Math.max(high, position);
+
+            Plant plant = plants.get(position);
+            if (!sameList || position < handledLow || position > handledHigh) {
+                textPrefetcher.prefetch(plant);
+            }
+            // plants without a photo share the default one, it takes no room ahead
+            if (photoBytes >= photoBudget || !plant.getPhoto().isPresent()) continue;
+
+            PlantPhoto photo = plant.getPhoto().get();
+            String key = PlantFormatter.thumbnailKey(photo, thumbnailSize);
+            Bitmap cached = PlantCaches.PHOTOS.get(key);
+            if (cached != null) {
+                photoBytes += cached.getAllocationByteCount();
+            } else {
+                if (!prefetched.contains(key)) PlantPhotoLoader.prefetch(context, plant, key);
+                wanted.add(key);
+                photoBytes += PlantPhotoLoader.expectedThumbnailBytes(thumbnailSize);
+            }
+        }
+
+        for (String key : prefetched) {
+            if (!wanted.contains(key)) PlantPhotoLoader.cancelPrefetch(key);
+        }
+        prefetched = wanted;
+        handledList = plants;
+        handledLow = low;
+        handledHigh = high;
+    }
+}
@@ -0,0 +1,79 @@
+package gr.auth.androidproject.plants.ui.home;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import gr.auth.androidproject.plants.metrics.ListRenderMetrics;
+
+/**
+ * <p>
+ * Tracing of the home list.<br>
+ * </p>
+ * <p>
+ * The sections show up in system traces (Perfetto, Android Studio profiler) so a frame can be
+ * split into binding, formatting and layout. Photos are decoded and the text of upcoming cards is
+ * measured on background threads, in their own sections. The same work, together with the frames
+ * rendered while the list is on screen, is summarized in {@link #getSessionMetrics()} for the
+ * whole app session.
+ * </p>
+ */
+public final class PlantListTracing {
+
+    static final String SECTION_BIND = "PlantList.bind";
+    static final String SECTION_FORMAT = "PlantList.format";
+    static final String SECTION_DECODE = "PlantList.decodePhoto";
+    static final String SECTION_PRECOMPUTE = "PlantList.precomputeText";
+
+    private static final ListRenderMetrics SESSION_METRICS = new ListRenderMetrics();
+    private static Handler frameMetricsHandler;
+
+    private PlantListTracing() {
+    }
+
+    /**
+     * @return frame and bind metrics of the home list since the app started
+     */
+    public static ListRenderMetrics getSessionMetrics() {
+        return SESSION_METRICS;
+    }
+
+    /**
+     * Starts recording the frames of the argument activity. Must be called on the main thread
+     *
+     * @param activity the activity showing the list
+     * @return the listener to pass to {@link #stopFrameMetrics(Activity, Window.OnFrameMetricsAvailableListener)}
+     */
+    static Window.OnFrameMetricsAvailableListener startFrameMetrics(Activity activity) {
+        if (frameMetricsHandler == null) {
+            HandlerThread thread = new HandlerThread("PlantListFrameMetrics");
+            thread.start();
+            frameMetricsHandler = new Handler(thread.getLooper());
+        }
+
+        Window.OnFrameMetricsAvailableListener listener = (window, frameMetrics, dropped) -> {
+            if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+                return; // the first frame of a window includes its inflation
+            }
+            SESSION_METRICS.recordFrame(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+        };
+        activity.getWindow().addOnFrameMetricsAvailableListener(listener, frameMetricsHandler);
+        return listener;
+    }
+
+    /**
+     * Stops recording the frames of the argument activity. Must be called on the main thread
+     *
+     * @param activity the activity showing the list
+     * @param listener the listener returned when recording started, or null if it is not
+     *                 registered, which does nothing
+     */
+    static void stopFrameMetrics(Activity activity,
+                                 Window.OnFrameMetricsAvailableListener listener) {
+        if (listener != null) {
+            activity.getWindow().removeOnFrameMetricsAvailableListener(listener);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package gr.auth.androidproject.plants.ui.home;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.widget.ImageView;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import gr.auth.androidproject.plants.PerformanceSettings;
+import gr.auth.androidproject.plants.PlantCaches;
+import gr.auth.androidproject.plants.R;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+import gr.auth.androidproject.plants.ui.PlantFormatter;
+
+/**
+ * <p>
+ * Decodes the photos of the home list off the main thread. A card whose photo is cached shows it
+ * right away, any other shows the default photo (or nothing, if that is not decoded yet either)
+ * until its own photo is ready.<br>
+ * </p>
+ * <p>
+ * A thumbnail is decoded once however many cards and prefetches ask for it. Its decode is
+ * cancelled while it is still queued once no card shows it and it is not prefetched any more
+ * </p>
+ */
+public final class PlantPhotoLoader {
+
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(2);
+    /**
+     * Decodes the photos of cards that are not on screen yet, at a lower priority so that it does
+     * not hold back the cards that are
+     */
+    private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "PlantPhotoPrefetch");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    /**
+     * Thumbnail decodes that have not finished, by thumbnail cache key
+     */
+    private static final Map<String, Decode> IN_FLIGHT = new ConcurrentHashMap<>();
+    /**
+     * Average size of the decoded thumbnails in bytes, 0 until one is decoded
+     */
+    private static volatile long averageThumbnailBytes = 0;
+
+    private PlantPhotoLoader() {
+    }
+
+    /**
+     * Decodes the default photo in the background, so that it is ready for the first cards
+     *
+     * @param context any context
+     */
+    public static void preloadDefaultPhoto(Context context) {
+        Context appContext = context.getApplicationContext();
+        DECODER.execute(() -> PlantFormatter.defaultPhoto(appContext));
+    }
+
+    /**
+     * Shows the plant's cached thumbnail in the argument view, or shows a placeholder and loads
+     * the thumbnail into it in the background. Must be called on the main thread
+     *
+     * @param view    the view to show the photo in
+     * @param context any context
+     * @param plant   the plant whose photo is shown
+     */
+    static void load(ImageView view, Context context, Plant plant) {
+        int thumbnailSize = PerformanceSettings.get().getThumbnailSize();
+        String key = plant.getPhoto()
+                .map(photo -> PlantFormatter.thumbnailKey(photo, thumbnailSize))
+                .orElse(null);
+        Bitmap cached = key != null ? PlantCaches.PHOTOS.get(key)
+                : PlantFormatter.defaultPhotoIfDecoded();
+        if (cached != null || key == null) {
+            load(view, cached, () -> decode(new PlantFormatter(context, plant), thumbnailSize));
+            return;
+        }
+
+        release(view);
+        Decode decode = start(key, context, plant, thumbnailSize, DECODER);
+        decode.views++;
+        view.setTag(R.id.item_image, decode);
+        view.setImageBitmap(PlantFormatter.defaultPhotoIfDecoded());
+        decode.result.thenAccept(bitmap -> MAIN_HANDLER.post(() -> {
+            if (view.getTag(R.id.item_image) == decode) {
+                release(view);
+                view.setImageBitmap(bitmap);
+            }
+        }));
+    }
+
+    /**
+     * Decodes the plant's thumbnail into the photo cache in the background, if it is not cached
+     * or being decoded already. Must be called on the main thread
+     *
+     * @param context any context
+     * @param plant   the plant of a card that is about to be shown
+     * @param key     the {@link PlantFormatter#thumbnailKey(PlantPhoto, int)} of the plant's photo
+     *                at the thumbnail size
+     */
+    static void prefetch(Context context, Plant plant, String key) {
+        int thumbnailSize = PerformanceSettings.get().getThumbnailSize();
+        start(key, context, plant, thumbnailSize, PREFETCHER).prefetched = true;
+    }
+
+    /**
+     * Cancels a decode started by {@link #prefetch(Context, Plant, String)} while it is still queued,
+     * unless a card is waiting for it. Must be called on the main thread
+     *
+     * @param key the key the decode was prefetched with
+     */
+    static void cancelPrefetch(String key) {
+        Decode decode = IN_FLIGHT.get(key);
+        if (decode != null) {
+            decode.prefetched = false;
+            decode.cancelIfUnused();
+        }
+    }
+
+    /**
+     * Stops loading a photo into the argument view, since it is about to show something else.
+     * The decode is cancelled while it is still queued, unless another card or a prefetch wants
+     * it too. Must be called on the main thread
+     *
+     * @param view the view a photo was loaded into
+     */
+    static void release(ImageView view) {
+        Object tag = view.getTag(R.id.item_image);
+        view.setTag(R.id.item_image, null);
+        if (tag instanceof Decode) {
+            Decode decode = (Decode) tag;
+            decode.views--;
+            decode.cancelIfUnused();
+        }
+    }
+
+    /**
+     * @return the expected size of a decoded thumbnail in bytes, the average of those decoded so
+     * far or, before the first one, that of a full size one with 4 bytes a pixel
+     */
+    static long expectedThumbnailBytes(int thumbnailSize) {
+        long average = averageThumbnailBytes;
+        return average > 0 ? average : 4L * thumbnailSize * thumbnailSize;
+    }
+
+    /**
+     * Returns the pending decode of the argument thumbnail, or starts one. A decode started by a
+     * prefetch is queued again on the decoder when a card waits for it, whichever thread gets to
+     * it first decodes it
+     */
+    private static Decode start(String key, Context context, Plant plant, int thumbnailSize,
+                                ExecutorService executor) {
+        Decode decode = IN_FLIGHT.get(key);
+        if (decode == null) {
+            decode = new Decode(key, context, plant, thumbnailSize);
+            IN_FLIGHT.put(key, decode);
+        }
+        if (!decode.executors.contains(executor)) {
+            decode.executors.add(executor);
+            decode.tasks.add(executor.submit(decode));
+        }
+        return decode;
+    }
+
+    private static Bitmap decode(PlantFormatter plant, int thumbnailSize) {
+        long start = System.nanoTime();
+        Trace.beginSection(PlantListTracing.SECTION_DECODE);
+        Bitmap photo;
+        try {
+            photo = plant.thumbnail(thumbnailSize);
+        } finally {
+            Trace.endSection();
+        }
+        PlantListTracing.getSessionMetrics().recordDecode(System.nanoTime() - start);
+        return photo;
+    }
+
+    /**
+     * Shows the argument bitmap in the view if it is already decoded. Otherwise shows the default
+     * photo (or nothing) and decodes the bitmap into the view in the background. The result is
+     * dropped if the view has been loaded again in the meantime
+     *
+     * @param view   the view to show the bitmap in
+     * @param cached the bitmap, or null if it is not decoded yet
+     * @param decode decodes the bitmap on a background thread
+     */
+    public static void load(ImageView view, @Nullable Bitmap cached, Supplier<Bitmap> decode) {
+        release(view);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        Object token = new Object();
+        view.setTag(R.id.item_image, token);
+        view.setImageBitmap(PlantFormatter.defaultPhotoIfDecoded());
+
+        DECODER.execute(() -> {
+            Bitmap bitmap = decode.get();
+            MAIN_HANDLER.post(() -> {
+                if (view.getTag(R.id.item_image) == token) {
+                    view.setImageBitmap(bitmap);
+                }
+            });
+        });
+    }
+
+    /**
+     * A thumbnail decode shared by the cards and the prefetches that want it. Its counts and
+     * tasks are only used on the main thread
+     */
+    private static final class Decode implements Runnable {
+        private final String key;
+        private final Context context;
+        private final Plant plant;
+        private final int thumbnailSize;
+        private final AtomicBoolean started = new AtomicBoolean();
+        final CompletableFuture<Bitmap> result = new CompletableFuture<>();
+        final List<ExecutorService> executors = new ArrayList<>(2);
+        final List<Future<?>> tasks = new ArrayList<>(2);
+        int views;
+        boolean prefetched;
+
+        Decode(String key, Context context, Plant plant, int thumbnailSize) {
+            this.key = key;
+            this.context = context;
+            this.plant = plant;
+            this.thumbnailSize = thumbnailSize;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) return;
+            try {
+                Bitmap bitmap = decode(new PlantFormatter(context, plant), thumbnailSize);
+                if (bitmap != PlantFormatter.defaultPhotoIfDecoded()) {
+                    long bytes = bitmap.getAllocationByteCount();
+                    long average = averageThumbnailBytes;
+                    averageThumbnailBytes = average > 0 ? (average * 7 + bytes) / 8 : bytes;
+                }
+                result.complete(bitmap);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                result.completeExceptionally(e);
+            } finally {
+                IN_FLIGHT.remove(key, this);
+            }
+        }
+
+        void cancelIfUnused() {
+            if (views > 0 || prefetched) return;
+            for (Future<?> task : tasks) {
+                task.cancel(false);
+            }
+            IN_FLIGHT.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package gr.auth.androidproject.plants.ui.home;
+
+import android.content.Context;
+import android.os.Trace;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import gr.auth.androidproject.plants.PlantCaches;
+import gr.auth.androidproject.plants.cache.MemoryCache;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.ui.PlantFormatter;
+
+/**
+ * <p>
+ * Lays out the text of upcoming home list cards on a background thread.<br>
+ * </p>
+ * <p>
+ * Binding a card then only hands the measured text to its views, so neither formatting nor
+ * measuring long names or complex scripts competes with scrolling. The text is measured with the
+ * parameters of the card's own views, taken from the first card created. Measured text is only
+ * used until the plant changes or the age or the countdown it shows would change
+ * </p>
+ */
+final class PlantTextPrefetcher {
+
+    private static final ExecutorService MEASURER = Executors.newSingleThreadExecutor();
+    /**
+     * Measured texts by plant id, sized by their estimated bytes
+     */
+    private static final MemoryCache<Long, CardText> TEXTS =
+            PlantCaches.getRegistry().create("card texts", 1, CardText::estimatedBytes);
+
+    private final Context context;
+    private final Set<Long> pending = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private CardParams params;
+
+    PlantTextPrefetcher(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Takes the text parameters of a card's views, if they are not known yet. Must be called on
+     * the main thread
+     */
+    void setParamsFrom(TextView name, TextView age, TextView nextWatering) {
+        if (params == null) {
+            params = new CardParams(TextViewCompat.getTextMetricsParams(name),
+                    TextViewCompat.getTextMetricsParams(age),
+                    TextViewCompat.getTextMetricsParams(nextWatering));
+        }
+    }
+
+    /**
+     * Measures the text of the argument plant's card in the background, unless it is measured
+     * already or no card has been created yet. Must be called on the main thread
+     */
+    void prefetch(Plant plant) {
+        CardParams cardParams = params;
+        if (cardParams == null || get(plant) != null || !pending.add(plant.getId())) return;
+
+        MEASURER.execute(() -> {
+            Trace.beginSection(PlantListTracing.SECTION_PRECOMPUTE);
+            try {
+                PlantFormatter formatter = new PlantFormatter(context, plant);
+                long validUntil = System.currentTimeMillis() + formatter.textValidMillis();
+                CardText text = new CardText(plant.contentHash(), cardParams, validUntil,
+                        PrecomputedTextCompat.create(formatter.name(), cardParams.name),
+                        PrecomputedTextCompat.create(formatter.age(), cardParams.age),
+                        PrecomputedTextCompat.create(formatter.timeToNextWatering(),
+                                cardParams.nextWatering));
+                TEXTS.put(plant.getId(), text);
+            } finally {
+                pending.remove(plant.getId());
+                Trace.endSection();
+            }
+        });
+    }
+
+    /**
+     * @return the measured text of the argument plant's card, or null if it is not measured for
+     * this list's cards or it is out of date
+     */
+    @Nullable
+    CardText get(Plant plant) {
+        CardText text = TEXTS.get(plant.getId());
+        return text != null && text.params == params && text.contentHash == plant.contentHash()
+                && System.currentTimeMillis() < text.validUntil ? text : null;
+    }
+
+    /**
+     * Shows the measured texts in a card's views, they are measured with the parameters of the
+     * views of the list's cards
+     */
+    static void setTexts(CardText text, TextView name, TextView age, TextView nextWatering) {
+        TextViewCompat.setPrecomputedText(name, text.name);
+        TextViewCompat.setPrecomputedText(age, text.age);
+        TextViewCompat.setPrecomputedText(nextWatering, text.nextWatering);
+    }
+
+    /**
+     * The measured texts of a card
+     */
+    static final class CardText {
+        private final int contentHash;
+        private final CardParams params;
+        private final long validUntil;
+        final PrecomputedTextCompat name;
+        final PrecomputedTextCompat age;
+        final PrecomputedTextCompat nextWatering;
+
+        CardText(int contentHash, CardParams params, long validUntil, PrecomputedTextCompat name,
+                 PrecomputedTextCompat age, PrecomputedTextCompat nextWatering) {
+            this.contentHash = contentHash;
+            this.params = params;
+            this.validUntil = validUntil;
+            this.name = name;
+            this.age = age;
+            this.nextWatering = nextWatering;
+        }
+
+        /**
+         * Rough size, measured text keeps several arrays per character besides the characters
+         */
+        long estimatedBytes() {
+            return 32L * (name.length() + age.length() + nextWatering.length()) + 512;
+        }
+    }
+
+    private static final class CardParams {
+        final PrecomputedTextCompat.Params name;
+        final PrecomputedTextCompat.Params age;
+        final PrecomputedTextCompat.Params nextWatering;
+
+        CardParams(PrecomputedTextCompat.Params name, PrecomputedTextCompat.Params age,
+                   PrecomputedTextCompat.Params nextWatering) {
+            this.name = name;
+            this.age = age;
+            this.nextWatering = nextWatering;
+        }
+    }
+}
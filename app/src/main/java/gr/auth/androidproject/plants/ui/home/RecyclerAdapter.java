@@ -3,6 +3,7 @@ package gr.auth.androidproject.plants.ui.home;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Trace;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,22 +12,45 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.navigation.Navigation;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-
 import gr.auth.androidproject.plants.R;
 import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.metrics.ListRenderMetrics;
+import gr.auth.androidproject.plants.ui.ParcelablePlant;
 import gr.auth.androidproject.plants.ui.PlantFormatter;
 
-public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerAdapter.ViewHolder> {
+public class RecyclerAdapter extends ListAdapter<Plant, RecyclerAdapter.ViewHolder> {
     private final Context context;
-    private final List<Plant> plants;
+    private final PlantTextPrefetcher textPrefetcher;
+
+    /**
+     * Plants are the same item if they have the same id and look the same if their displayed
+     * fields are equal. Their content hashes only rule out equal contents quickly.
+     * {@link ListAdapter} runs these on a background thread
+     */
+    private static final DiffUtil.ItemCallback<Plant> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<Plant>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull Plant oldItem, @NonNull Plant newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull Plant oldItem, @NonNull Plant newItem) {
+                    return oldItem.contentHash() == newItem.contentHash()
+                            && oldItem.hasSameContent(newItem);
+                }
+            };
 
     // RecyclerAdapter constructor to pass the context
-    public RecyclerAdapter(Context context, List<Plant> p) {
+    public RecyclerAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        plants = p;
+        this.textPrefetcher = new PlantTextPrefetcher(context);
+        setHasStableIds(true);
     }
 
     // Class that holds the items to be displayed (Views in card_layout)
@@ -35,7 +59,7 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerAdapter.ViewHo
         private final TextView age;
         private final TextView nextWatering;
         private final ImageView plantImage;
-        private int position;
+        private Plant plant;
 
         public ViewHolder(View itemView) {
 
@@ -47,9 +71,11 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerAdapter.ViewHo
 
             // what to do when an item is clicked
             itemView.setOnClickListener(v -> {
-                position = getAbsoluteAdapterPosition();
+                // pass the stable id, the position may change before details are shown, and
+                // the plant itself so that the details show it before it is read again
                 Bundle bundle = new Bundle();
-                bundle.putInt("position", position);
+                bundle.putLong("plantId", getItemId());
+                bundle.putParcelable("plant", ParcelablePlant.of(plant));
                 Navigation.findNavController(itemView).
                         navigate(R.id.action_nav_home_to_detailsFragment, bundle);
             });
@@ -61,21 +87,62 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerAdapter.ViewHo
     public RecyclerAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View v = LayoutInflater.from(parent.getContext()).
                 inflate(R.layout.card_layout, parent, false);
-        return new ViewHolder(v);
+        ViewHolder holder = new ViewHolder(v);
+        textPrefetcher.setParamsFrom(holder.plantName, holder.age, holder.nextWatering);
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerAdapter.ViewHolder holder, int position) {
-        PlantFormatter plant = new PlantFormatter(context, plants.get(position));
-        holder.plantName.setText(plant.name());
-        holder.plantImage.setImageBitmap(plant.photo());
-        holder.age.setText(plant.age());
-        holder.nextWatering.setText(plant.timeToNextWatering());
+        ListRenderMetrics metrics = PlantListTracing.getSessionMetrics();
+        long bindStart = System.nanoTime();
+        Trace.beginSection(PlantListTracing.SECTION_BIND);
+        try {
+            Plant item = getItem(position);
+            holder.plant = item;
+            Trace.beginSection(PlantListTracing.SECTION_FORMAT);
+            try {
+                PlantTextPrefetcher.CardText text = textPrefetcher.get(item);
+                if (text != null) {
+                    PlantTextPrefetcher.setTexts(text, holder.plantName, holder.age,
+                            holder.nextWatering);
+                } else {
+                    PlantFormatter plant = new PlantFormatter(context, item);
+                    holder.plantName.setText(plant.name());
+                    holder.age.setText(plant.age());
+                    holder.nextWatering.setText(plant.timeToNextWatering());
+                }
+            } finally {
+                Trace.endSection();
+            }
+            metrics.recordFormat(System.nanoTime() - bindStart);
+
+            // decoding is recorded by the loader, on its own thread
+            PlantPhotoLoader.load(holder.plantImage, context, item);
+        } finally {
+            Trace.endSection();
+            metrics.recordBind(System.nanoTime() - bindStart);
+        }
+    }
+
+    /**
+     * Stops the photo decode of a card that is no longer shown, so it does not hold back the
+     * cards that are
+     */
+    @Override
+    public void onViewRecycled(@NonNull RecyclerAdapter.ViewHolder holder) {
+        PlantPhotoLoader.release(holder.plantImage);
+    }
 
+    /**
+     * @return measures the text of the cards before they are bound
+     */
+    PlantTextPrefetcher getTextPrefetcher() {
+        return textPrefetcher;
     }
 
     @Override
-    public int getItemCount() {
-        return plants.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 }
\ No newline at end of file
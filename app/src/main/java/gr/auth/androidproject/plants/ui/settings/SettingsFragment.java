@@ -1,60 +1,66 @@
 package gr.auth.androidproject.plants.ui.settings;
 
+import android.app.Activity;
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.SeekBar;
+import android.widget.Spinner;
+import android.widget.TextView;
 
+import java.util.function.IntConsumer;
+
+import gr.auth.androidproject.plants.PerformanceConfig;
+import gr.auth.androidproject.plants.PerformanceSettings;
+import gr.auth.androidproject.plants.PlantCaches;
 import gr.auth.androidproject.plants.R;
+import gr.auth.androidproject.plants.archive.ArchiveProgress;
+import gr.auth.androidproject.plants.domain.PlantMaintenanceWorker;
+import gr.auth.androidproject.plants.domain.PlantRepository;
+import gr.auth.androidproject.plants.metrics.DataLayerMetrics;
+import gr.auth.androidproject.plants.metrics.ListRenderMetrics;
+import gr.auth.androidproject.plants.ui.home.PlantListTracing;
 
 /**
- * A simple {@link Fragment} subclass.
- * Use the {@link SettingsFragment#newInstance} factory method to
- * create an instance of this fragment.
+ * Performance settings, backups and, after a few taps on the title, the debug metrics panel
  */
 public class SettingsFragment extends Fragment {
 
-    // TODO: Rename parameter arguments, choose names that match
-    // the fragment initialization parameters, e.g. ARG_ITEM_NUMBER
-    private static final String ARG_PARAM1 = "param1";
-    private static final String ARG_PARAM2 = "param2";
+    /**
+     * Taps on the settings text that reveal the debug metrics panel
+     */
+    private static final int DEBUG_PANEL_TAPS = 7;
+
+    private static final int REQUEST_EXPORT = 1;
+    private static final int REQUEST_IMPORT = 2;
+    private static final String BACKUP_MIME_TYPE = "application/octet-stream";
 
-    // TODO: Rename and change types of parameters
-    private String mParam1;
-    private String mParam2;
+    private SettingsViewModel settingsViewModel;
+
+    private int debugPanelTaps = 0;
+    private View debugPanel;
+    private TextView debugMetricsText;
 
     public SettingsFragment() {
         // Required empty public constructor
     }
 
-    /**
-     * Use this factory method to create a new instance of
-     * this fragment using the provided parameters.
-     *
-     * @param param1 Parameter 1.
-     * @param param2 Parameter 2.
-     * @return A new instance of fragment SettingsFragment.
-     */
-    // TODO: Rename and change types and number of parameters
-    public static SettingsFragment newInstance(String param1, String param2) {
-        SettingsFragment fragment = new SettingsFragment();
-        Bundle args = new Bundle();
-        args.putString(ARG_PARAM1, param1);
-        args.putString(ARG_PARAM2, param2);
-        fragment.setArguments(args);
-        return fragment;
-    }
-
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        if (getArguments() != null) {
-            mParam1 = getArguments().getString(ARG_PARAM1);
-            mParam2 = getArguments().getString(ARG_PARAM2);
-        }
+        settingsViewModel = new ViewModelProvider(this).get(SettingsViewModel.class);
     }
 
     @Override
@@ -63,4 +69,212 @@ public class SettingsFragment extends Fragment {
         // Inflate the layout for this fragment
         return inflater.inflate(R.layout.fragment_settings, container, false);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        setUpPerformance(view);
+        setUpBackup(view);
+
+        debugPanel = view.findViewById(R.id.debug_metrics_panel);
+        debugMetricsText = view.findViewById(R.id.debug_metrics_text);
+        DataLayerMetrics metrics = PlantRepository.getInstance(requireContext()).getMetrics();
+        ListRenderMetrics listMetrics = PlantListTracing.getSessionMetrics();
+
+        view.findViewById(R.id.textView2).setOnClickListener(v -> {
+            if (++debugPanelTaps == DEBUG_PANEL_TAPS) {
+                debugPanel.setVisibility(View.VISIBLE);
+                showMetrics();
+            }
+        });
+        view.findViewById(R.id.debug_metrics_refresh).setOnClickListener(v -> showMetrics());
+        view.findViewById(R.id.debug_metrics_reset).setOnClickListener(v -> {
+            metrics.reset();
+            listMetrics.reset();
+            PlantCaches.getRegistry().resetStats();
+            showMetrics();
+        });
+        view.findViewById(R.id.debug_metrics_export).setOnClickListener(v -> {
+            Intent send = new Intent(Intent.ACTION_SEND)
+                    .setType("application/json")
+                    .putExtra(Intent.EXTRA_TEXT, listMetrics.toJson());
+            startActivity(Intent.createChooser(send, getString(R.string.debug_metrics_export)));
+        });
+    }
+
+    /**
+     * Shows the current performance settings, every change is stored and applied right away
+     */
+    private void setUpPerformance(View view) {
+        PerformanceConfig config = PerformanceSettings.get();
+        int[] thumbnailSizes = getResources().getIntArray(R.array.settings_thumbnail_size_values);
+        int[] cacheSizes = getResources().getIntArray(R.array.settings_cache_size_values);
+
+        Spinner photoFormat = view.findViewById(R.id.settings_photo_format);
+        TextView photoQualityLabel = view.findViewById(R.id.settings_photo_quality_label);
+        SeekBar photoQuality = view.findViewById(R.id.settings_photo_quality);
+        Spinner thumbnailSize = view.findViewById(R.id.settings_thumbnail_size);
+        Spinner cacheSize = view.findViewById(R.id.settings_cache_size);
+
+        photoFormat.setSelection(config.getPhotoFormat().ordinal());
+        photoQuality.setProgress(config.getPhotoQuality());
+        thumbnailSize.setSelection(indexOf(thumbnailSizes, config.getThumbnailSize()));
+        cacheSize.setSelection(indexOf(cacheSizes, config.getCacheHeapPercent()));
+        showPhotoQuality(photoQualityLabel, photoQuality, config);
+
+        photoFormat.setOnItemSelectedListener(new OnItemSelected(position -> {
+            PerformanceConfig.PhotoFormat format = PerformanceConfig.PhotoFormat.values()[position];
+            PerformanceSettings.update(requireContext(), c -> c.withPhotoFormat(format));
+            showPhotoQuality(photoQualityLabel, photoQuality, PerformanceSettings.get());
+        }));
+        photoQuality.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                photoQualityLabel.setText(getString(R.string.settings_photo_quality, progress));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                PerformanceSettings.update(requireContext(),
+                        c -> c.withPhotoQuality(seekBar.getProgress()));
+            }
+        });
+        thumbnailSize.setOnItemSelectedListener(new OnItemSelected(position ->
+                PerformanceSettings.update(requireContext(),
+                        c -> c.withThumbnailSize(thumbnailSizes[position]))));
+        cacheSize.setOnItemSelectedListener(new OnItemSelected(position ->
+                PerformanceSettings.update(requireContext(),
+                        c -> c.withCacheHeapPercent(cacheSizes[position]))));
+    }
+
+    /**
+     * Quality only applies to lossy formats, so it cannot be changed for the others
+     */
+    private void showPhotoQuality(TextView label, SeekBar seekBar, PerformanceConfig config) {
+        boolean lossless = config.getPhotoFormat() == PerformanceConfig.PhotoFormat.PNG;
+        seekBar.setEnabled(!lossless);
+        label.setText(lossless ? getString(R.string.settings_photo_quality_lossless)
+                : getString(R.string.settings_photo_quality, config.getPhotoQuality()));
+    }
+
+    /**
+     * @return index of the argument value in the array, or of the middle element if it is not in
+     * there
+     */
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) return i;
+        }
+        return values.length / 2;
+    }
+
+    /**
+     * Export and import go through the system file picker, so the user chooses where backups live
+     */
+    private void setUpBackup(View view) {
+        Button exportButton = view.findViewById(R.id.backup_export);
+        Button importButton = view.findViewById(R.id.backup_import);
+        ProgressBar progressBar = view.findViewById(R.id.backup_progress);
+        TextView status = view.findViewById(R.id.backup_status);
+
+        exportButton.setOnClickListener(v -> startActivityForResult(
+                new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                        .addCategory(Intent.CATEGORY_OPENABLE)
+                        .setType(BACKUP_MIME_TYPE)
+                        .putExtra(Intent.EXTRA_TITLE, getString(R.string.backup_file_name)),
+                REQUEST_EXPORT));
+        importButton.setOnClickListener(v -> startActivityForResult(
+                new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                        .addCategory(Intent.CATEGORY_OPENABLE)
+                        .setType(BACKUP_MIME_TYPE),
+                REQUEST_IMPORT));
+
+        settingsViewModel.getArchiveProgress().observe(getViewLifecycleOwner(), progress -> {
+            boolean running = progress.getState() == ArchiveProgress.State.RUNNING;
+            exportButton.setEnabled(!running);
+            importButton.setEnabled(!running);
+            progressBar.setVisibility(running ? View.VISIBLE : View.GONE);
+            progressBar.setIndeterminate(progress.getTotal() <= 0);
+            if (progress.getTotal() > 0) {
+                progressBar.setMax((int) progress.getTotal());
+                progressBar.setProgress((int) progress.getDone());
+            }
+
+            switch (progress.getState()) {
+                case RUNNING:
+                    status.setText(progress.getTotal() >= 0
+                            ? getString(R.string.backup_progress, progress.getDone(), progress.getTotal())
+                            : getString(R.string.backup_progress_unknown_total, progress.getDone()));
+                    break;
+                case DONE:
+                    status.setText(getString(R.string.backup_done, progress.getDone()));
+                    break;
+                case FAILED:
+                    status.setText(getString(R.string.backup_failed, progress.getDone()));
+                    break;
+            }
+        });
+    }
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (resultCode != Activity.RESULT_OK || data == null || data.getData() == null) return;
+
+        Uri uri = data.getData();
+        if (requestCode == REQUEST_EXPORT) {
+            settingsViewModel.exportArchive(uri, requireContext());
+        } else if (requestCode == REQUEST_IMPORT) {
+            settingsViewModel.importArchive(uri, requireContext());
+        }
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (debugPanel.getVisibility() == View.VISIBLE) {
+            showMetrics();
+        }
+    }
+
+    /**
+     * Shows the current data layer, home list and cache metrics and the last maintenance in the
+     * debug panel
+     */
+    private void showMetrics() {
+        String report = PlantRepository.getInstance(requireContext()).getMetrics().report();
+        String maintenance = PlantMaintenanceWorker.getLastReport(requireContext());
+        debugMetricsText.setText(getString(R.string.debug_metrics_list_title) + "\n" +
+                PlantListTracing.getSessionMetrics().report() + "\n" +
+                (report.isEmpty() ? getString(R.string.debug_metrics_empty) : report) + "\n" +
+                getString(R.string.debug_caches_title) + "\n" +
+                PlantCaches.getRegistry().report() + "\n" +
+                getString(R.string.debug_maintenance_title) + "\n" +
+                (maintenance == null ? getString(R.string.debug_maintenance_never) : maintenance));
+    }
+
+    /**
+     * Item selection listener for a spinner. The spinners also report their initial selection,
+     * which is not a change since updating a setting to its current value does nothing
+     */
+    private static class OnItemSelected implements AdapterView.OnItemSelectedListener {
+        private final IntConsumer onSelected;
+
+        OnItemSelected(IntConsumer onSelected) {
+            this.onSelected = onSelected;
+        }
+
+        @Override
+        public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+            onSelected.accept(position);
+        }
+
+        @Override
+        public void onNothingSelected(AdapterView<?> parent) {
+        }
+    }
+}
@@ -1,7 +1,35 @@
 package gr.auth.androidproject.plants.ui.settings;
 
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
 
+import gr.auth.androidproject.plants.archive.ArchiveProgress;
+import gr.auth.androidproject.plants.domain.PlantRepository;
+
 public class SettingsViewModel extends ViewModel {
-    // TODO: Implement the ViewModel
-}
\ No newline at end of file
+
+    /**
+     * Progress of the last export or import, kept here so that it survives configuration changes
+     */
+    private final MutableLiveData<LiveData<ArchiveProgress>> archiveOperation =
+            new MutableLiveData<>();
+    private final LiveData<ArchiveProgress> archiveProgress =
+            Transformations.switchMap(archiveOperation, progress -> progress);
+
+    public LiveData<ArchiveProgress> getArchiveProgress() {
+        return archiveProgress;
+    }
+
+    public void exportArchive(Uri destination, Context context) {
+        archiveOperation.setValue(PlantRepository.getInstance(context).exportArchive(destination));
+    }
+
+    public void importArchive(Uri source, Context context) {
+        archiveOperation.setValue(PlantRepository.getInstance(context).importArchive(source));
+    }
+}
@@ -0,0 +1,60 @@
+package gr.auth.androidproject.plants;
+
+import org.junit.Test;
+
+import gr.auth.androidproject.plants.PerformanceConfig.PhotoFormat;
+
+import static org.junit.Assert.*;
+
+public class PerformanceConfigTest {
+
+    @Test
+    public void defaultsAreLosslessAndModest() {
+        PerformanceConfig config = PerformanceConfig.DEFAULT;
+
+        assertEquals(PhotoFormat.PNG, config.getPhotoFormat());
+        assertEquals(PerformanceConfig.MAX_PHOTO_QUALITY, config.getPhotoQuality());
+        assertEquals(256, config.getThumbnailSize());
+        assertEquals(12, config.getCacheHeapPercent());
+    }
+
+    @Test
+    public void limitsAreAccepted() {
+        new PerformanceConfig(PhotoFormat.JPEG, PerformanceConfig.MIN_PHOTO_QUALITY, 1, 1);
+        new PerformanceConfig(PhotoFormat.WEBP, PerformanceConfig.MAX_PHOTO_QUALITY, 1,
+                PerformanceConfig.MAX_CACHE_HEAP_PERCENT);
+    }
+
+    @Test
+    public void valuesOutOfRangeAreRejected() {
+        assertRejected(() -> PerformanceConfig.DEFAULT.withPhotoQuality(
+                PerformanceConfig.MIN_PHOTO_QUALITY - 1));
+        assertRejected(() -> PerformanceConfig.DEFAULT.withPhotoQuality(
+                PerformanceConfig.MAX_PHOTO_QUALITY + 1));
+        assertRejected(() -> PerformanceConfig.DEFAULT.withThumbnailSize(0));
+        assertRejected(() -> PerformanceConfig.DEFAULT.withCacheHeapPercent(0));
+        assertRejected(() -> PerformanceConfig.DEFAULT.withCacheHeapPercent(
+                PerformanceConfig.MAX_CACHE_HEAP_PERCENT + 1));
+        assertRejected(() -> PerformanceConfig.DEFAULT.withPhotoFormat(null));
+    }
+
+    @Test
+    public void withChangesOnlyItsSetting() {
+        PerformanceConfig config = PerformanceConfig.DEFAULT.withThumbnailSize(128);
+
+        assertEquals(128, config.getThumbnailSize());
+        assertEquals(PerformanceConfig.DEFAULT.withThumbnailSize(128), config);
+        assertNotEquals(PerformanceConfig.DEFAULT, config);
+        assertEquals(PerformanceConfig.DEFAULT, config.withThumbnailSize(256));
+        assertEquals(PerformanceConfig.DEFAULT.hashCode(), config.withThumbnailSize(256).hashCode());
+    }
+
+    private static void assertRejected(Runnable create) {
+        try {
+            create.run();
+            fail();
+        } catch (IllegalArgumentException | NullPointerException expected) {
+            // out of range
+        }
+    }
+}
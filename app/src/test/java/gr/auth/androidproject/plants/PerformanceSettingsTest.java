@@ -0,0 +1,120 @@
+package gr.auth.androidproject.plants;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import gr.auth.androidproject.plants.PerformanceConfig.PhotoFormat;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PerformanceSettingsTest {
+
+    private Context context;
+    private SharedPreferences preferences;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        preferences = context.getSharedPreferences("performance", Context.MODE_PRIVATE);
+    }
+
+    @After
+    public void tearDown() {
+        // the settings are global, the next test starts from the defaults
+        preferences.edit().clear().commit();
+        PerformanceSettings.load(context);
+    }
+
+    @Test
+    public void missingSettingsAreTheDefaults() {
+        assertEquals(PerformanceConfig.DEFAULT, PerformanceSettings.read(preferences));
+    }
+
+    @Test
+    public void storedSettingsAreRead() {
+        preferences.edit()
+                .putString("photo_format", "JPEG")
+                .putInt("photo_quality", 80)
+                .putInt("thumbnail_size", 128)
+                .putInt("cache_heap_percent", 20)
+                .commit();
+
+        assertEquals(new PerformanceConfig(PhotoFormat.JPEG, 80, 128, 20),
+                PerformanceSettings.read(preferences));
+    }
+
+    @Test
+    public void settingsOutOfRangeAreClamped() {
+        preferences.edit()
+                .putInt("photo_quality", 5)
+                .putInt("cache_heap_percent", 90)
+                .commit();
+        PerformanceConfig config = PerformanceSettings.read(preferences);
+
+        assertEquals(PerformanceConfig.MIN_PHOTO_QUALITY, config.getPhotoQuality());
+        assertEquals(PerformanceConfig.MAX_CACHE_HEAP_PERCENT, config.getCacheHeapPercent());
+
+        preferences.edit()
+                .putInt("photo_quality", 1000)
+                .putInt("cache_heap_percent", -3)
+                .commit();
+        config = PerformanceSettings.read(preferences);
+
+        assertEquals(PerformanceConfig.MAX_PHOTO_QUALITY, config.getPhotoQuality());
+        assertEquals(1, config.getCacheHeapPercent());
+    }
+
+    @Test
+    public void unreadableSettingsKeepOnlyTheirOwnDefault() {
+        preferences.edit()
+                .putString("photo_format", "GIF")
+                .putString("photo_quality", "high")
+                .putInt("thumbnail_size", 0)
+                .putInt("cache_heap_percent", 20)
+                .commit();
+        PerformanceConfig config = PerformanceSettings.read(preferences);
+
+        assertEquals(PerformanceConfig.DEFAULT.withCacheHeapPercent(20), config);
+    }
+
+    @Test
+    public void updatesAreStoredAndLoadedAgain() {
+        PerformanceConfig changed = PerformanceConfig.DEFAULT.withPhotoFormat(PhotoFormat.WEBP);
+        PerformanceSettings.update(context, config -> changed);
+        assertSame(changed, PerformanceSettings.get());
+
+        PerformanceSettings.load(context);
+        assertEquals(changed, PerformanceSettings.get());
+    }
+
+    @Test
+    public void webpIsLosslessOnlyAtFullQuality() {
+        PerformanceConfig webp = PerformanceConfig.DEFAULT.withPhotoFormat(PhotoFormat.WEBP);
+
+        assertEquals(Bitmap.CompressFormat.WEBP_LOSSLESS, webp.getCompressFormat());
+        assertEquals(Bitmap.CompressFormat.WEBP_LOSSY,
+                webp.withPhotoQuality(80).getCompressFormat());
+    }
+
+    @Test
+    @Config(sdk = 29)
+    @SuppressWarnings("deprecation")
+    public void webpBeforeApi30IsTheSingleFormat() {
+        PerformanceConfig webp = PerformanceConfig.DEFAULT.withPhotoFormat(PhotoFormat.WEBP);
+
+        assertEquals(Bitmap.CompressFormat.WEBP, webp.getCompressFormat());
+        assertEquals(Bitmap.CompressFormat.WEBP, webp.withPhotoQuality(80).getCompressFormat());
+    }
+}
@@ -0,0 +1,93 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import gr.auth.androidproject.plants.dataset.PlantDatasetGenerator;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static gr.auth.androidproject.plants.domain.TestPlants.plant;
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PlantArchiveImportTest {
+
+    private static final String OTHER = "other.db";
+
+    private Context context;
+    private PlantDBHandler store;
+    private PlantDBHandler other;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        store = new PlantDBHandler(context);
+        other = new PlantDBHandler(context, OTHER);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        other.close();
+        context.deleteDatabase(PlantDBHandler.DATABASE_NAME);
+        context.deleteDatabase(OTHER);
+    }
+
+    @Test
+    public void importingTwiceReplacesTheImportedPlants() throws IOException {
+        List<Plant> plants = new PlantDatasetGenerator(5, NOW)
+                .setPhotoRatio(0.5)
+                .setPhotoSide(32)
+                .generate(20);
+        store.addPlants(plants);
+        byte[] archive = export(store);
+
+        assertEquals(20, other.importArchive(new ByteArrayInputStream(archive), (done, total) -> {
+        }));
+        assertEquals(20, other.importArchive(new ByteArrayInputStream(archive), (done, total) -> {
+        }));
+
+        List<Plant> imported = other.getAllPlants();
+        assertEquals(20, imported.size());
+        for (Plant plant : plants) {
+            assertTrue(imported.stream().anyMatch(p -> p.getName().equals(plant.getName())
+                    && p.getPhoto().map(PlantPhoto::getHash).equals(
+                    plant.getPhoto().map(PlantPhoto::getHash))));
+        }
+    }
+
+    @Test
+    public void importLeavesPlantsWithTheSameIdsAlone() throws IOException {
+        long exportedId = store.addPlant(plant("Fern", Duration.ofDays(3)));
+        long ownId = other.addPlant(plant("Cactus", Duration.ofDays(20)));
+        assertEquals(exportedId, ownId);
+
+        other.importArchive(new ByteArrayInputStream(export(store)), (done, total) -> {
+        });
+
+        assertEquals("Cactus", other.getPlantById(ownId).get().getName());
+        assertEquals(2, other.getAllPlants().size());
+    }
+
+    private static byte[] export(PlantDBHandler from) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        from.exportArchive(out, (done, total) -> {
+        });
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static gr.auth.androidproject.plants.domain.TestPlants.plant;
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PlantGalleryTest {
+
+    private static final byte[] THUMBNAIL = {7, 7};
+
+    private Context context;
+    private PlantDBHandler store;
+    private long plantId;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        store = new PlantDBHandler(context);
+        plantId = store.addPlant(plant("Fern", Duration.ofDays(3)));
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        context.deleteDatabase(PlantDBHandler.DATABASE_NAME);
+    }
+
+    @Test
+    public void addedPhotosAreStoredWithTheirThumbnail() throws IOException {
+        byte[] photo = {1, 2, 3, 4, 5};
+        GalleryPhoto added = store.addGalleryPhoto(plantId, NOW, photo, THUMBNAIL);
+
+        assertNotNull(added);
+        assertEquals(plantId, added.getPlantId());
+        assertEquals(PlantPhoto.hashOf(photo), added.getHash());
+        assertEquals(photo.length, added.getSize());
+
+        List<GalleryPhoto> page = store.getGalleryPage(plantId, null, 10);
+        assertEquals(1, page.size());
+        assertEquals(added.getId(), page.get(0).getId());
+        assertEquals(NOW, page.get(0).getTakenAt());
+        assertArrayEquals(THUMBNAIL, page.get(0).getThumbnail());
+        try (InputStream in = store.openGalleryPhoto(added.getId())) {
+            byte[] read = new byte[photo.length];
+            assertEquals(photo.length, in.read(read));
+            assertArrayEquals(photo, read);
+        }
+    }
+
+    @Test
+    public void emptyGalleryHasAnEmptyPage() {
+        long otherId = store.addPlant(plant("Cactus", Duration.ofDays(20)));
+        store.addGalleryPhoto(otherId, NOW, new byte[]{1}, THUMBNAIL);
+
+        assertTrue(store.getGalleryPage(plantId, null, 10).isEmpty());
+    }
+
+    @Test
+    public void pagesWalkTheGalleryNewestFirst() {
+        List<Long> added = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            added.add(0, store.addGalleryPhoto(plantId, NOW.plusDays(i), new byte[]{(byte) i},
+                    THUMBNAIL).getId());
+        }
+
+        List<Long> read = readAll(3);
+
+        assertEquals(added, read);
+    }
+
+    @Test
+    public void photosTakenAtTheSameTimeAreNeitherSkippedNorRepeated() {
+        List<Long> added = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            added.add(0, store.addGalleryPhoto(plantId, NOW, new byte[]{(byte) i}, THUMBNAIL)
+                    .getId());
+        }
+        added.add(store.addGalleryPhoto(plantId, NOW.minusDays(1), new byte[]{9}, THUMBNAIL)
+                .getId());
+        added.add(0, store.addGalleryPhoto(plantId, NOW.plusDays(1), new byte[]{8}, THUMBNAIL)
+                .getId());
+
+        // page ends fall between photos taken at the same time
+        assertEquals(added, readAll(2));
+    }
+
+    @Test
+    public void lastPageIsShortAndNothingFollowsIt() {
+        for (int i = 0; i < 4; i++) {
+            store.addGalleryPhoto(plantId, NOW.plusHours(i), new byte[]{(byte) i}, THUMBNAIL);
+        }
+
+        List<GalleryPhoto> first = store.getGalleryPage(plantId, null, 3);
+        List<GalleryPhoto> last = store.getGalleryPage(plantId, first.get(2), 3);
+
+        assertEquals(3, first.size());
+        assertEquals(1, last.size());
+        assertTrue(store.getGalleryPage(plantId, last.get(0), 3).isEmpty());
+    }
+
+    /**
+     * @return ids of the whole gallery, read a page of the argument size at a time
+     */
+    private List<Long> readAll(int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        GalleryPhoto after = null;
+        List<GalleryPhoto> page;
+        do {
+            page = store.getGalleryPage(plantId, after, pageSize);
+            for (GalleryPhoto photo : page) {
+                ids.add(photo.getId());
+            }
+            if (!page.isEmpty()) after = page.get(page.size() - 1);
+        } while (page.size() == pageSize);
+        return ids;
+    }
+}
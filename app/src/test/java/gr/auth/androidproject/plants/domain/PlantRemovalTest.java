@@ -0,0 +1,105 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import gr.auth.androidproject.plants.dataset.PlantDatasetGenerator;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PlantRemovalTest {
+
+    private Context context;
+    private PlantDBHandler store;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        store = new PlantDBHandler(context);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        context.deleteDatabase(PlantDBHandler.DATABASE_NAME);
+    }
+
+    @Test
+    public void removedPlantsAreHiddenUntilRestored() {
+        List<Plant> plants = new PlantDatasetGenerator(7, NOW).generate(10);
+        store.addPlants(plants);
+        long id = plants.get(0).getId();
+
+        assertTrue(store.markRemoved(id));
+        assertFalse(store.markRemoved(id));
+        assertFalse(store.getPlantById(id).isPresent());
+        assertEquals(9, store.getAllPlants().size());
+        assertEquals(9, store.searchPlants("", PlantSortOrder.NAME).size());
+
+        assertTrue(store.restorePlant(id));
+        assertTrue(store.getPlantById(id).isPresent());
+        assertEquals(10, store.getAllPlants().size());
+    }
+
+    @Test
+    public void purgeDeletesOnlyPlantsRemovedBeforeTheCutoff() {
+        List<Plant> plants = new PlantDatasetGenerator(7, NOW)
+                .setPhotoRatio(1)
+                .setPhotoSide(256)
+                .generate(200);
+        store.addPlants(plants);
+        for (int i = 0; i < 150; i++) {
+            store.markRemoved(plants.get(i).getId());
+        }
+        long cutoff = System.currentTimeMillis();
+        assertEquals(0, store.purgeRemoved(cutoff - 60_000));
+
+        assertEquals(150, store.purgeRemoved(cutoff));
+        assertFalse(store.hasRemovedPlants());
+        for (int i = 0; i < plants.size(); i++) {
+            String hash = plants.get(i).getPhoto().get().getHash();
+            assertEquals(i >= 150, store.getPhotoStore().contains(hash));
+        }
+        assertFalse(store.restorePlant(plants.get(0).getId()));
+        assertEquals(50, store.getAllPlants().size());
+        assertTrue(store.incrementalVacuum() > 0);
+    }
+
+    @Test
+    public void maintenanceReclaimsPurgedSpaceAndChecksIntegrity() {
+        List<Plant> plants = new PlantDatasetGenerator(7, NOW)
+                .setPhotoRatio(1)
+                .setPhotoSide(256)
+                .generate(100);
+        store.addPlants(plants);
+        for (Plant plant : plants) {
+            store.markRemoved(plant.getId());
+        }
+        store.purgeRemoved(System.currentTimeMillis());
+
+        MaintenanceReport report = store.maintain(10_000);
+        assertTrue(report.getReclaimed() > 0);
+        assertTrue(report.getSizeAfter() < report.getSizeBefore());
+        assertTrue(report.isAnalyzed());
+        assertTrue(report.isChecked());
+        assertTrue(report.isIntact());
+
+        // without time only the vacuum conversion of old databases is done
+        MaintenanceReport skipped = store.maintain(0);
+        assertFalse(skipped.isAnalyzed());
+        assertFalse(skipped.isChecked());
+    }
+}
@@ -0,0 +1,67 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.plant;
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PlantSearchTest {
+
+    private Context context;
+    private PlantDBHandler store;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        store = new PlantDBHandler(context);
+        List<Plant> plants = new ArrayList<>();
+        for (String name : Arrays.asList("a@1", "A@2", "a[", "a\\", "a_", "a`", "aa", "Ab", "b")) {
+            plants.add(plant(name, Duration.ofDays(1)));
+        }
+        store.addPlants(plants);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        context.deleteDatabase(PlantDBHandler.DATABASE_NAME);
+    }
+
+    @Test
+    public void prefixMatchesIgnoringAsciiCase() {
+        assertEquals(Arrays.asList("a@1", "A@2", "a[", "a\\", "a_", "a`", "aa", "Ab"),
+                names("A"));
+        assertEquals(Arrays.asList("aa"), names("aA"));
+    }
+
+    @Test
+    public void prefixEndingBeforeTheUpperCaseLettersMatchesOnlyItself() {
+        // the characters between 'Z' and 'a' must not match a prefix ending in '@'
+        assertEquals(Arrays.asList("a@1", "A@2"), names("a@"));
+        assertEquals(Arrays.asList("a`"), names("a`"));
+    }
+
+    private List<String> names(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (Plant plant : store.searchPlants(prefix, PlantSortOrder.NAME)) {
+            names.add(plant.getName());
+        }
+        return names;
+    }
+}
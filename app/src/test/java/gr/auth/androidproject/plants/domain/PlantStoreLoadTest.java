@@ -0,0 +1,241 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+
+import gr.auth.androidproject.plants.dataset.PlantDatasetGenerator;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static org.junit.Assert.*;
+
+/**
+ * <p>
+ * Times the plant store operations the app depends on against a table of 100 to 100k generated
+ * plants and fails when one goes over its budget.<br>
+ * </p>
+ * <p>
+ * Every tier is compared with the same operation on a table of {@value #BASELINE_ROWS} plants
+ * timed in the same run, so the budgets hold on slow and fast machines alike: reading all the
+ * plants may grow with the table, the single plant operations may barely grow at all. The
+ * baseline tier itself has absolute budgets.
+ * </p>
+ * <p>
+ * The 10k and 100k tiers take minutes, so they only run when asked for with
+ * {@code ./gradlew :app:testDebugUnitTest -PloadTestMaxRows=100000}.
+ * </p>
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PlantStoreLoadTest {
+
+    private static final long SEED = 42;
+    private static final int INSERT_BATCH = 1000;
+    private static final int LOOKUPS = 200;
+    private static final int WRITES = 50;
+
+    private static final int BASELINE_ROWS = 100;
+    private static final int[] TIERS = {BASELINE_ROWS, 1_000, 10_000, 100_000};
+    // absolute budgets of the baseline tier in milliseconds
+    private static final long GET_ALL_BUDGET = 50;
+    private static final long LOOKUP_BUDGET = 2;
+    private static final long WATER_BUDGET = 5;
+    private static final long DELETE_BUDGET = 5;
+    /**
+     * Slowdown over the baseline allowed per tenfold rows, for operations that read every plant
+     * and for the ones that read or write a single plant through an index
+     */
+    private static final double FULL_SCAN_GROWTH = 15;
+    private static final double INDEXED_GROWTH = 1.5;
+    /**
+     * Baseline times below this are rounded up to it, timer noise dominates them
+     */
+    private static final long MIN_BASELINE_NANOS = 200_000;
+
+    private final int rows;
+
+    private Context context;
+    private PlantDBHandler store;
+    private PlantDBHandler baselineStore;
+    private final List<Long> ids = new ArrayList<>();
+    private final List<Long> baselineIds = new ArrayList<>();
+
+    public PlantStoreLoadTest(int rows) {
+        this.rows = rows;
+    }
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0} rows")
+    public static Collection<Object[]> tiers() {
+        int maxRows = Integer.getInteger("loadTest.maxRows", 1_000);
+        List<Object[]> tiers = new ArrayList<>();
+        for (int tier : TIERS) {
+            if (tier <= maxRows) tiers.add(new Object[]{tier});
+        }
+        return tiers;
+    }
+
+    @Before
+    public void seed() {
+        context = ApplicationProvider.getApplicationContext();
+        store = new PlantDBHandler(context);
+        seed(store, rows, ids);
+        if (rows > BASELINE_ROWS) {
+            baselineStore = new PlantDBHandler(context, "baseline");
+            seed(baselineStore, BASELINE_ROWS, baselineIds);
+        }
+    }
+
+    /**
+     * Fills the store with generated plants. A tenth of them have small photos, and they are
+     * inserted in batches to bound memory
+     */
+    private static void seed(PlantDBHandler store, int rows, List<Long> ids) {
+        PlantDatasetGenerator generator = new PlantDatasetGenerator(SEED, NOW)
+                .setPhotoRatio(0.1)
+                .setPhotoSide(64);
+        for (int seeded = 0; seeded < rows; seeded += INSERT_BATCH) {
+            List<Plant> batch = generator.generate(Math.min(INSERT_BATCH, rows - seeded));
+            assertEquals(batch.size(), store.addPlants(batch));
+            for (Plant plant : batch) {
+                ids.add(plant.getId());
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        context.deleteDatabase(PlantDBHandler.DATABASE_NAME);
+        if (baselineStore != null) {
+            baselineStore.close();
+            context.deleteDatabase("baseline");
+        }
+    }
+
+    @Test
+    public void getAllPlants() {
+        assertWithinBudget("getAllPlants", PlantStoreLoadTest::getAllPlants, GET_ALL_BUDGET,
+                FULL_SCAN_GROWTH);
+    }
+
+    @Test
+    public void getPlantById() {
+        assertWithinBudget("getPlantById", PlantStoreLoadTest::getPlantById, LOOKUP_BUDGET,
+                INDEXED_GROWTH);
+    }
+
+    /**
+     * Same steps as {@link PlantRepository#waterPlant(long)}
+     */
+    @Test
+    public void waterPlant() {
+        assertWithinBudget("waterPlant", PlantStoreLoadTest::waterPlant, WATER_BUDGET,
+                INDEXED_GROWTH);
+    }
+
+    @Test
+    public void removePlant() {
+        assertWithinBudget("removePlant", PlantStoreLoadTest::removePlant, DELETE_BUDGET,
+                INDEXED_GROWTH);
+    }
+
+    /**
+     * @return best time of reading the whole table
+     */
+    private static long getAllPlants(PlantDBHandler store, List<Long> ids) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            List<Plant> plants = store.getAllPlants();
+            best = Math.min(best, System.nanoTime() - start);
+            assertEquals(ids.size(), plants.size());
+        }
+        return best;
+    }
+
+    /**
+     * @return mean time of a lookup by id
+     */
+    private static long getPlantById(PlantDBHandler store, List<Long> ids) {
+        Random random = new Random(SEED);
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            long id = ids.get(random.nextInt(ids.size()));
+            assertTrue(store.getPlantById(id).isPresent());
+        }
+        return (System.nanoTime() - start) / LOOKUPS;
+    }
+
+    /**
+     * @return mean time of reading and updating a plant
+     */
+    private static long waterPlant(PlantDBHandler store, List<Long> ids) {
+        Random random = new Random(SEED);
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITES; i++) {
+            long id = ids.get(random.nextInt(ids.size()));
+            Optional<Plant> plant = store.getPlantById(id);
+            assertTrue(plant.isPresent());
+            plant.get().setLastWatered(NOW.plusMinutes(i));
+            store.updatePlant(plant.get());
+        }
+        return (System.nanoTime() - start) / WRITES;
+    }
+
+    /**
+     * @return mean time of removing a plant
+     */
+    private static long removePlant(PlantDBHandler store, List<Long> ids) {
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITES; i++) {
+            assertTrue(store.removePlant(ids.get(i * (ids.size() / WRITES))));
+        }
+        return (System.nanoTime() - start) / WRITES;
+    }
+
+    /**
+     * Times the operation on this tier's table. The baseline tier must fit in the absolute
+     * budget, larger tiers must not be slower than the baseline by more than the allowed growth
+     * per tenfold rows
+     */
+    private void assertWithinBudget(String operation, TimedOperation timed, long budgetMillis,
+                                    double growth) {
+        double millis = timed.run(store, ids) / 1e6;
+        if (baselineStore == null) {
+            assertTrue(String.format(Locale.US,
+                    "%s at %d rows took %.3f ms, over the budget of %d ms",
+                    operation, rows, millis, budgetMillis), millis <= budgetMillis);
+            return;
+        }
+
+        double baselineMillis =
+                Math.max(timed.run(baselineStore, baselineIds), MIN_BASELINE_NANOS) / 1e6;
+        double tenfolds = Math.log10(rows / (double) BASELINE_ROWS);
+        double allowed = baselineMillis * Math.pow(growth, tenfolds);
+        assertTrue(String.format(Locale.US,
+                "%s at %d rows took %.3f ms, over %.3f ms allowed by the %.3f ms of %d rows",
+                operation, rows, millis, allowed, baselineMillis, BASELINE_ROWS),
+                millis <= allowed);
+    }
+
+    private interface TimedOperation {
+        /**
+         * @return nanoseconds the operation took on the argument store
+         */
+        long run(PlantDBHandler store, List<Long> ids);
+    }
+}
@@ -0,0 +1,199 @@
+package gr.auth.androidproject.plants.domain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+import gr.auth.androidproject.plants.dataset.PlantDatasetGenerator;
+import gr.auth.androidproject.plants.sync.LocalSyncServer;
+import gr.auth.androidproject.plants.sync.SyncReport;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static gr.auth.androidproject.plants.domain.TestPlants.plant;
+import static org.junit.Assert.*;
+
+/**
+ * Syncs two plant databases, a phone and a tablet, through the in-process {@link LocalSyncServer}
+ * and checks that they end up with the same plants
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PlantSyncTest {
+
+    private static final String PHONE = "phone.db";
+    private static final String TABLET = "tablet.db";
+
+    private Context context;
+    private LocalSyncServer server;
+    private PlantDBHandler phone;
+    private PlantDBHandler tablet;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        server = new LocalSyncServer();
+        phone = new PlantDBHandler(context, PHONE);
+        tablet = new PlantDBHandler(context, TABLET);
+    }
+
+    @After
+    public void tearDown() {
+        phone.close();
+        tablet.close();
+        context.deleteDatabase(PHONE);
+        context.deleteDatabase(TABLET);
+    }
+
+    @Test
+    public void thousandsOfChanges() throws IOException {
+        List<Plant> plants = new PlantDatasetGenerator(41, NOW)
+                .setPhotoRatio(0.1)
+                .setPhotoSide(64)
+                .generate(2000);
+        assertEquals(2000, phone.addPlants(plants));
+
+        SyncReport first = phone.sync(server);
+        assertEquals(2000, first.getPushed());
+        assertEquals(server.getPhotoCount(), first.getPhotosUploaded());
+        SyncReport pulled = tablet.sync(server);
+        assertEquals(2000, pulled.getPulled());
+        assertEquals(server.getPhotoCount(), pulled.getPhotosDownloaded());
+        assertSamePlants();
+
+        List<Plant> tabletPlants = tablet.getAllPlants();
+        for (int i = 0; i < 400; i++) {
+            Plant plant = tabletPlants.get(i);
+            plant.setLastWatered(NOW.plusHours(i));
+            tablet.updatePlant(plant);
+        }
+        for (int i = 400; i < 600; i++) {
+            assertTrue(tablet.removePlant(tabletPlants.get(i).getId()));
+        }
+        SyncReport delta = tablet.sync(server);
+        assertEquals(600, delta.getPushed());
+        assertEquals(0, delta.getPhotosUploaded());
+
+        SyncReport received = phone.sync(server);
+        assertEquals(600, received.getPulled());
+        assertEquals(0, received.getPhotosDownloaded());
+        assertEquals(1800, phone.getAllPlants().size());
+        assertSamePlants();
+
+        assertTrue("Delta should be much smaller than the first sync",
+                delta.getBytesSent() * 3 < first.getBytesSent());
+
+        SyncReport idle = phone.sync(server);
+        assertEquals(0, idle.getPushed() + idle.getPulled());
+        assertTrue(idle.getBytesSent() + idle.getBytesReceived() < 200);
+    }
+
+    @Test
+    public void laterChangeWinsConflicts() throws IOException, InterruptedException {
+        long id = phone.addPlant(plant("Fern", Duration.ofDays(3)));
+        phone.sync(server);
+        tablet.sync(server);
+        long tabletId = tablet.getAllPlants().get(0).getId();
+
+        rename(phone, id, "Phone fern");
+        Thread.sleep(5); // changes are ordered by their millisecond
+        rename(tablet, tabletId, "Tablet fern");
+        phone.sync(server);
+        SyncReport report = tablet.sync(server);
+        assertEquals(1, report.getConflicts());
+        assertEquals(1, report.getPushed());
+        phone.sync(server);
+        assertEquals("Tablet fern", phone.getPlantById(id).get().getName());
+        assertSamePlants();
+
+        // a later update brings back a plant removed on the other device
+        assertTrue(phone.removePlant(id));
+        Thread.sleep(5);
+        rename(tablet, tabletId, "Kept fern");
+        phone.sync(server);
+        tablet.sync(server);
+        phone.sync(server);
+        assertEquals(1, phone.getAllPlants().size());
+        assertEquals("Kept fern", phone.getAllPlants().get(0).getName());
+        assertSamePlants();
+    }
+
+    @Test
+    public void softRemovalSyncs() throws IOException, InterruptedException {
+        long id = phone.addPlant(plant("Fern", Duration.ofDays(3)));
+        phone.sync(server);
+        tablet.sync(server);
+
+        // the removal reaches the tablet before the phone purges it
+        assertTrue(phone.markRemoved(id));
+        assertEquals(1, phone.sync(server).getPushed());
+        assertEquals(1, tablet.sync(server).getPulled());
+        assertTrue(tablet.getAllPlants().isEmpty());
+
+        assertTrue(phone.restorePlant(id));
+        assertEquals(1, phone.sync(server).getPushed());
+        assertEquals(1, tablet.sync(server).getPulled());
+        assertSamePlants();
+
+        // a pushed removal leaves no tombstone behind when it is purged
+        assertTrue(phone.markRemoved(id));
+        phone.sync(server);
+        assertEquals(1, phone.purgeRemoved(Long.MAX_VALUE));
+        assertEquals(0, phone.sync(server).getPushed());
+        tablet.sync(server);
+        assertSamePlants();
+
+        // a later remote update brings back a plant in its undo window
+        long kept = phone.addPlant(plant("Ivy", Duration.ofDays(2)));
+        phone.sync(server);
+        tablet.sync(server);
+        long tabletId = tablet.getAllPlants().get(0).getId();
+        assertTrue(phone.markRemoved(kept));
+        Thread.sleep(5);
+        rename(tablet, tabletId, "Kept ivy");
+        tablet.sync(server);
+        phone.sync(server);
+        tablet.sync(server);
+        assertFalse(phone.hasRemovedPlants());
+        assertEquals(0, phone.purgeRemoved(Long.MAX_VALUE));
+        assertEquals("Kept ivy", phone.getPlantById(kept).get().getName());
+        assertSamePlants();
+    }
+
+    private static void rename(PlantDBHandler store, long id, String name) {
+        Plant plant = store.getPlantById(id).get();
+        plant.setName(name);
+        store.updatePlant(plant);
+    }
+
+    private void assertSamePlants() {
+        Comparator<Plant> order = Comparator.comparing(Plant::getName)
+                .thenComparing(Plant::getLastWatered);
+        List<Plant> expected = phone.getAllPlants();
+        List<Plant> actual = tablet.getAllPlants();
+        expected.sort(order);
+        actual.sort(order);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Plant left = expected.get(i);
+            Plant right = actual.get(i);
+            assertEquals(left.getName(), right.getName());
+            assertEquals(left.getBirthday(), right.getBirthday());
+            assertEquals(left.getLastWatered(), right.getLastWatered());
+            assertEquals(left.getWateringInterval(), right.getWateringInterval());
+            assertEquals(left.getPhoto().map(PlantPhoto::getHash),
+                    right.getPhoto().map(PlantPhoto::getHash));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package gr.auth.androidproject.plants.ui;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import gr.auth.androidproject.plants.domain.PhotoSource;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class ParcelablePlantTest {
+
+    private static final byte[] PHOTO = {1, 2, 3, 4};
+    private static final PhotoSource PHOTOS = hash -> new ByteArrayInputStream(PHOTO);
+
+    private static Plant roundTrip(Plant plant) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            ParcelablePlant.of(plant).writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return ParcelablePlant.CREATOR.createFromParcel(parcel).toPlant(PHOTOS);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void roundTrip_keepsContentAndReferencesStoredPhoto() throws IOException {
+        Plant plant = new Plant(7, "Peace lily", LocalDateTime.of(2020, 3, 1, 0, 0),
+                LocalDateTime.of(2021, 5, 14, 17, 59, 3, 120), Duration.ofHours(30),
+                PlantPhoto.stored(7, PlantPhoto.hashOf(PHOTO), PHOTO.length, PHOTOS));
+        plant.setSpeciesId(12);
+
+        Plant restored = roundTrip(plant);
+
+        assertEquals(7, restored.getId());
+        assertTrue(plant.hasSameContent(restored));
+        assertEquals(plant.getPhoto().map(PlantPhoto::getHash),
+                restored.getPhoto().map(PlantPhoto::getHash));
+        assertEquals(plant.getPhoto().map(PlantPhoto::getSize),
+                restored.getPhoto().map(PlantPhoto::getSize));
+        assertEquals(Integer.valueOf(12), restored.getSpeciesId().orElse(null));
+        PlantPhoto photo = restored.getPhoto().get();
+        assertTrue(photo.isStoredFor(7));
+        assertArrayEquals(PHOTO, photo.readBytes());
+    }
+
+    @Test
+    public void roundTrip_leavesOutPhotosNotStoredYet() {
+        Plant plant = new Plant(8, "Monstera", null, NOW,
+                Duration.ofDays(7), PlantPhoto.of(PHOTO));
+
+        Plant restored = roundTrip(plant);
+
+        assertFalse(restored.getBirthday().isPresent());
+        assertFalse(restored.getPhoto().isPresent());
+        assertFalse(restored.getSpeciesId().isPresent());
+    }
+}
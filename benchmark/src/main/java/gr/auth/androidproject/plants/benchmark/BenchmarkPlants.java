@@ -0,0 +1,39 @@
+package gr.auth.androidproject.plants.benchmark;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import gr.auth.androidproject.plants.domain.Plant;
+
+/**
+ * Deterministic plants for the benchmarks, so that runs on different machines see the same data
+ */
+final class BenchmarkPlants {
+
+    static final LocalDateTime NOW = LocalDateTime.of(2021, 5, 14, 17, 59);
+
+    private BenchmarkPlants() {
+    }
+
+    /**
+     * Plants with ascending ids, watered in the last two weeks with intervals up to a week. Every
+     * other plant has a birthday
+     */
+    static List<Plant> plants(int size) {
+        Random random = new Random(42);
+        List<Plant> plants = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LocalDateTime birthday = i % 2 == 0
+                    ? NOW.minusMinutes(random.nextInt(60 * 24 * 365 * 3))
+                    : null;
+            Plant plant = new Plant(i, "plant " + i, birthday,
+                    NOW.minusMinutes(random.nextInt(60 * 24 * 14)),
+                    Duration.ofHours(1 + random.nextInt(24 * 7)), null);
+            plants.add(plant);
+        }
+        return plants;
+    }
+}
@@ -0,0 +1,58 @@
+package gr.auth.androidproject.plants.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import gr.auth.androidproject.plants.format.DurationFormatter;
+import gr.auth.androidproject.plants.format.TimespanUnits;
+
+/**
+ * The duration formatting behind PlantFormatter, with the english labels of the app
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationFormatterBenchmark {
+
+    /**
+     * Durations with one unit (a watering interval) and with all the units (an age)
+     */
+    @Param({"PT2H", "P400DT5H7M"})
+    public String duration;
+
+    private DurationFormatter formatter;
+    private Duration value;
+
+    @Setup
+    public void setUp() {
+        formatter = new DurationFormatter(
+                new String[]{"year", "month", "day", "hour", "minute"},
+                new String[]{"years", "months", "days", "hours", "minutes"});
+        value = Duration.parse(duration);
+    }
+
+    @Benchmark
+    public String format() {
+        return formatter.format(value);
+    }
+
+    @Benchmark
+    public String formatToDays() {
+        return formatter.format(value, TimespanUnits.DAYS);
+    }
+}
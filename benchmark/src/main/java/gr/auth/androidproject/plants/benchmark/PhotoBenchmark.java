@@ -0,0 +1,83 @@
+package gr.auth.androidproject.plants.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+/**
+ * <p>
+ * Encoding and decoding of a plant photo.<br>
+ * </p>
+ * <p>
+ * Bitmap and BitmapFactory are not available on the JVM, so the PNG round trip uses ImageIO. The
+ * absolute numbers differ from a device, but changes in photo size and format show up in the same
+ * way. Hashing is the same code the app runs when storing a photo.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhotoBenchmark {
+
+    /**
+     * Side of the square photo in pixels, a thumbnail and a camera preview
+     */
+    @Param({"128", "512"})
+    public int size;
+
+    private BufferedImage image;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        // smooth gradient with some noise, so that it compresses like a photo and not like a fill
+        Random random = new Random(42);
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int green = (x + y) * 255 / (2 * size) + random.nextInt(16);
+                image.setRGB(x, y, 0xFF000000 | (x * 255 / size) << 16 | Math.min(green, 255) << 8);
+            }
+        }
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encoded));
+    }
+
+    @Benchmark
+    public String hash() {
+        return PlantPhoto.hashOf(encoded);
+    }
+}
@@ -0,0 +1,91 @@
+package gr.auth.androidproject.plants.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantSnapshot;
+import gr.auth.androidproject.plants.domain.PlantUtils;
+
+/**
+ * Whole collection scans over a {@link PlantSnapshot} compared with the same scans over a list of
+ * {@link Plant} objects, and the cost of keeping the snapshot up to date as single plants change
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlantSnapshotBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<Plant> plants;
+    private PlantSnapshot snapshot;
+    private long nowMillis;
+    private Plant watered;
+
+    @Setup
+    public void setUp() {
+        plants = BenchmarkPlants.plants(size);
+        snapshot = PlantSnapshot.of(plants);
+        nowMillis = PlantSnapshot.toEpochMillis(BenchmarkPlants.NOW);
+        watered = plants.get(size / 2);
+    }
+
+    @Benchmark
+    public int[] dueBeforeList() {
+        LocalDateTime now = BenchmarkPlants.NOW;
+        int[] result = new int[plants.size()];
+        int count = 0;
+        for (int i = 0; i < plants.size(); i++) {
+            if (PlantUtils.nextWatering(plants.get(i)).isBefore(now)) {
+                result[count++] = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    @Benchmark
+    public int[] dueBeforeSnapshot() {
+        return snapshot.indicesDueBefore(nowMillis);
+    }
+
+    @Benchmark
+    public List<Plant> byUrgencyList() {
+        List<Plant> sorted = new ArrayList<>(plants);
+        sorted.sort(Comparator.comparing(PlantUtils::nextWatering));
+        return sorted;
+    }
+
+    @Benchmark
+    public int[] byUrgencySnapshot() {
+        return snapshot.indicesByUrgency();
+    }
+
+    /**
+     * Watering a plant, the most frequent write. Copies one block of each column
+     */
+    @Benchmark
+    public PlantSnapshot replacePlant() {
+        return snapshot.withPlant(watered);
+    }
+}
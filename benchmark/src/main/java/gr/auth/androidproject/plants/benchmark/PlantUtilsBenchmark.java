@@ -0,0 +1,68 @@
+package gr.auth.androidproject.plants.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantUtils;
+
+/**
+ * Time math done for every card of the home list, per plant
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlantUtilsBenchmark {
+
+    private Plant[] plants;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        plants = BenchmarkPlants.plants(1024).toArray(new Plant[0]);
+    }
+
+    private Plant nextPlant() {
+        next = (next + 1) & (plants.length - 1);
+        return plants[next];
+    }
+
+    @Benchmark
+    public Object timeToNextWatering() {
+        return PlantUtils.timeToNextWatering(nextPlant());
+    }
+
+    @Benchmark
+    public Object calculateAge() {
+        return PlantUtils.calculateAge(nextPlant());
+    }
+
+    @Benchmark
+    public Object nextWatering() {
+        return PlantUtils.nextWatering(nextPlant());
+    }
+
+    /**
+     * Everything a card needs, as bound by the adapter
+     */
+    @Benchmark
+    public void card(Blackhole blackhole) {
+        Plant plant = nextPlant();
+        blackhole.consume(PlantUtils.calculateAge(plant));
+        blackhole.consume(PlantUtils.timeToNextWatering(plant));
+    }
+}
@@ -0,0 +1,78 @@
+package gr.auth.androidproject.plants.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import gr.auth.androidproject.plants.domain.Plant;
+
+/**
+ * Parsing of the time columns of a plant row. The table stores ISO-8601 strings, which are compared
+ * here with the same values stored as epoch milliseconds
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowParsingBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private final String[] isoLastWatered = new String[ROWS];
+    private final String[] isoInterval = new String[ROWS];
+    private final long[] epochLastWatered = new long[ROWS];
+    private final long[] epochInterval = new long[ROWS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Plant> plants = BenchmarkPlants.plants(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Plant plant = plants.get(i);
+            isoLastWatered[i] = plant.getLastWatered().toString();
+            isoInterval[i] = plant.getWateringInterval().toString();
+            epochLastWatered[i] = plant.getLastWatered().toInstant(ZoneOffset.UTC).toEpochMilli();
+            epochInterval[i] = plant.getWateringInterval().toMillis();
+        }
+    }
+
+    private int nextRow() {
+        next = (next + 1) & (ROWS - 1);
+        return next;
+    }
+
+    /**
+     * What the cursor mapper does today
+     */
+    @Benchmark
+    public void iso(Blackhole blackhole) {
+        int row = nextRow();
+        blackhole.consume(LocalDateTime.parse(isoLastWatered[row]));
+        blackhole.consume(Duration.parse(isoInterval[row]));
+    }
+
+    @Benchmark
+    public void epoch(Blackhole blackhole) {
+        int row = nextRow();
+        long millis = epochLastWatered[row];
+        blackhole.consume(LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC));
+        blackhole.consume(Duration.ofMillis(epochInterval[row]));
+    }
+}
@@ -0,0 +1,53 @@
+package gr.auth.androidproject.plants.archive;
+
+/**
+ * Immutable state of a running or finished export or import
+ */
+public final class ArchiveProgress {
+
+    public enum State {
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private final State state;
+    private final long done;
+    private final long total;
+
+    private ArchiveProgress(State state, long done, long total) {
+        this.state = state;
+        this.done = done;
+        this.total = total;
+    }
+
+    public static ArchiveProgress running(long done, long total) {
+        return new ArchiveProgress(State.RUNNING, done, total);
+    }
+
+    public static ArchiveProgress done(long done) {
+        return new ArchiveProgress(State.DONE, done, done);
+    }
+
+    public static ArchiveProgress failed(long done, long total) {
+        return new ArchiveProgress(State.FAILED, done, total);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of plants processed
+     */
+    public long getDone() {
+        return done;
+    }
+
+    /**
+     * @return number of plants to process, -1 if unknown
+     */
+    public long getTotal() {
+        return total;
+    }
+}
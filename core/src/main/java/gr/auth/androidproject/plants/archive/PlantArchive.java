@@ -0,0 +1,53 @@
+package gr.auth.androidproject.plants.archive;
+
+/**
+ * <p>
+ * Constants of the plant archive, the backup format of the whole collection.<br>
+ * </p>
+ * <p>
+ * An archive is a stream of records written and read one at a time, so that neither side holds
+ * more than one plant and its photo in memory. Layout, big endian:
+ * </p>
+ * <pre>
+ * magic (int) version (int) plant count (long, -1 if unknown)
+ * for every plant:
+ *   PLANT (byte) id (long) sync id (string, empty if unknown) name (string)
+ *   last watered (epoch second long, nano int) watering interval (second long, nano int)
+ *   has birthday (byte) [birthday (epoch second long, nano int)]
+ *   has species (byte) [species id (int)]
+ *   has photo (byte) [photo size (long) photo hash (string) photo (size raw bytes)]
+ * END (byte)
+ * </pre>
+ * <p>
+ * Strings are UTF-8 with a 4 byte length and times are UTC. Archives of version 1 have no sync id
+ * and no species, and are still read. The gallery photos of the plants are not archived.
+ * </p>
+ */
+public final class PlantArchive {
+
+    static final int MAGIC = 0x504C4152; // "PLAR"
+    static final int VERSION = 2;
+    static final int VERSION_WITHOUT_SYNC_IDS = 1;
+
+    static final byte RECORD_PLANT = 1;
+    static final byte RECORD_END = 0;
+
+    /**
+     * Longest string accepted when reading, to fail fast on corrupt archives
+     */
+    static final int MAX_STRING_BYTES = 64 * 1024;
+
+    private PlantArchive() {
+    }
+
+    /**
+     * Receives the progress of an export or import
+     */
+    public interface ProgressListener {
+        /**
+         * @param done  number of plants processed so far
+         * @param total number of plants in the archive, -1 if unknown
+         */
+        void onProgress(long done, long total);
+    }
+}
@@ -0,0 +1,130 @@
+package gr.auth.androidproject.plants.archive;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import gr.auth.androidproject.plants.domain.PhotoFileStore;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+/**
+ * Reads a {@link PlantArchive} one plant at a time. Photos are streamed into a
+ * {@link PhotoFileStore} as they are read, so no photo is held in memory
+ */
+public class PlantArchiveReader {
+
+    private final DataInputStream in;
+    private final PhotoFileStore photos;
+    private final int version;
+    private final long count;
+    private String syncId;
+    private boolean finished = false;
+
+    /**
+     * Reads the archive header
+     *
+     * @param in     the stream to read from, it is not closed
+     * @param photos the store the photos of the plants are written to
+     * @throws IOException if the stream does not start with an archive of a known version
+     */
+    public PlantArchiveReader(InputStream in, PhotoFileStore photos) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        this.photos = photos;
+        if (this.in.readInt() != PlantArchive.MAGIC) {
+            throw new IOException("Not a plant archive");
+        }
+        version = this.in.readInt();
+        if (version != PlantArchive.VERSION && version != PlantArchive.VERSION_WITHOUT_SYNC_IDS) {
+            throw new IOException("Unsupported plant archive version " + version);
+        }
+        this.count = this.in.readLong();
+    }
+
+    /**
+     * @return number of plants in the archive, -1 if unknown
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sync id the plant last returned by {@link #next()} was exported with, or null if
+     * the archive does not have it
+     */
+    public String getSyncId() {
+        return syncId;
+    }
+
+    /**
+     * Reads the next plant. Its id is the one it was exported with and its photo, if any, is
+     * already in the photo store
+     *
+     * @return the next plant or null at the end of the archive
+     * @throws IOException if the archive is truncated or corrupt, or a photo cannot be stored
+     */
+    public Plant next() throws IOException {
+        syncId = null;
+        if (finished) return null;
+
+        byte record = in.readByte();
+        if (record == PlantArchive.RECORD_END) {
+            finished = true;
+            return null;
+        } else if (record != PlantArchive.RECORD_PLANT) {
+            throw new IOException("Unknown archive record " + record);
+        }
+
+        try {
+            long id = in.readLong();
+            String recordSyncId = version != PlantArchive.VERSION_WITHOUT_SYNC_IDS
+                    ? readString() : "";
+            String name = readString();
+            LocalDateTime lastWatered = readDateTime();
+            Duration interval = Duration.ofSeconds(in.readLong(), in.readInt());
+            LocalDateTime birthday = in.readBoolean() ? readDateTime() : null;
+            Integer speciesId = version != PlantArchive.VERSION_WITHOUT_SYNC_IDS
+                    && in.readBoolean() ? in.readInt() : null;
+            PlantPhoto photo = in.readBoolean() ? readPhoto() : null;
+
+            Plant plant = new Plant(id, name, birthday, lastWatered, interval, photo);
+            plant.setSpeciesId(speciesId);
+            syncId = recordSyncId.isEmpty() ? null : recordSyncId;
+            return plant;
+        } catch (DateTimeException | ArithmeticException e) {
+            throw new IOException("Corrupt plant record", e);
+        }
+    }
+
+    private PlantPhoto readPhoto() throws IOException {
+        long size = in.readLong();
+        String hash = readString();
+        if (size < 0) {
+            throw new IOException("Bad photo size " + size);
+        }
+
+        String stored = photos.write(in, size, hash.isEmpty() ? null : hash);
+        // not stored for any plant yet, the plant's row refers to it once it is written
+        return PlantPhoto.stored(-1, stored, size, photos::open);
+    }
+
+    private String readString() throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > PlantArchive.MAX_STRING_BYTES) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private LocalDateTime readDateTime() throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,128 @@
+package gr.auth.androidproject.plants.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+/**
+ * Writes a {@link PlantArchive} one plant at a time. Photos are copied from their streams in small
+ * pieces, so the size of a photo does not affect memory use
+ */
+public class PlantArchiveWriter {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+
+    /**
+     * Writes the archive header
+     *
+     * @param out   the stream to write to, it is not closed
+     * @param count number of plants that will be written, -1 if unknown
+     * @throws IOException if writing fails
+     */
+    public PlantArchiveWriter(OutputStream out, long count) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, COPY_BUFFER_SIZE));
+        this.out.writeInt(PlantArchive.MAGIC);
+        this.out.writeInt(PlantArchive.VERSION);
+        this.out.writeLong(count);
+    }
+
+    /**
+     * Writes a plant that has no sync id and streams its photo, if it has one
+     *
+     * @param plant the plant
+     * @throws IOException if writing fails or the photo cannot be read in full
+     */
+    public void write(Plant plant) throws IOException {
+        write(plant, null);
+    }
+
+    /**
+     * Writes a plant and streams its photo, if it has one
+     *
+     * @param plant  the plant
+     * @param syncId the id the plant is known by on every device, or null
+     * @throws IOException if writing fails or the photo cannot be read in full
+     */
+    public void write(Plant plant, String syncId) throws IOException {
+        out.writeByte(PlantArchive.RECORD_PLANT);
+        out.writeLong(plant.getId());
+        writeString(Objects.toString(syncId, ""));
+        writeString(plant.getName());
+        writeDateTime(plant.getLastWatered());
+        writeDuration(plant.getWateringInterval());
+
+        LocalDateTime birthday = plant.getBirthday().orElse(null);
+        out.writeBoolean(Objects.nonNull(birthday));
+        if (Objects.nonNull(birthday)) {
+            writeDateTime(birthday);
+        }
+
+        Integer speciesId = plant.getSpeciesId().orElse(null);
+        out.writeBoolean(Objects.nonNull(speciesId));
+        if (Objects.nonNull(speciesId)) {
+            out.writeInt(speciesId);
+        }
+
+        PlantPhoto photo = plant.getPhoto().orElse(null);
+        out.writeBoolean(Objects.nonNull(photo));
+        if (Objects.nonNull(photo)) {
+            out.writeLong(photo.getSize());
+            writeString(Objects.toString(photo.getHash(), ""));
+            try (InputStream in = photo.openStream()) {
+                copy(in, photo.getSize());
+            }
+        }
+    }
+
+    /**
+     * Writes the end of the archive and flushes it. The underlying stream is not closed
+     *
+     * @throws IOException if writing fails
+     */
+    public void finish() throws IOException {
+        out.writeByte(PlantArchive.RECORD_END);
+        out.flush();
+    }
+
+    private void copy(InputStream in, long size) throws IOException {
+        long left = size;
+        while (left > 0) {
+            int read = in.read(copyBuffer, 0, (int) Math.min(copyBuffer.length, left));
+            if (read < 0) {
+                throw new EOFException("Photo ended " + left + " bytes early");
+            }
+            out.write(copyBuffer, 0, read);
+            left -= read;
+        }
+    }
+
+    private void writeString(String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeDateTime(LocalDateTime dateTime) throws IOException {
+        out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dateTime.getNano());
+    }
+
+    private void writeDuration(Duration duration) throws IOException {
+        out.writeLong(duration.getSeconds());
+        out.writeInt(duration.getNano());
+    }
+}
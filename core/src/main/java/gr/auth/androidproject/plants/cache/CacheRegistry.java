@@ -0,0 +1,135 @@
+package gr.auth.androidproject.plants.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * Creates the in-memory caches of the app and shares one memory budget between them.<br>
+ * </p>
+ * <p>
+ * Every cache gets a weight on creation and is sized to its share of the budget, so changing the
+ * budget resizes all of them. When memory runs low {@link #trim(double)} shrinks every cache at
+ * once:
+ * </p>
+ * <pre>
+ * CacheRegistry registry = new CacheRegistry(budget);
+ * MemoryCache&lt;String, Bitmap&gt; photos = registry.create("photos", 4, Bitmap::getByteCount);
+ * MemoryCache&lt;Integer, Bitmap&gt; icons = registry.create("icons", 1, Bitmap::getByteCount);
+ * ...
+ * registry.trim(0.5); // the system asked for memory
+ * </pre>
+ * <p>
+ * Safe to use from any thread
+ * </p>
+ */
+public final class CacheRegistry {
+
+    private final List<Registered> caches = new ArrayList<>();
+    private long budget;
+    private long totalWeight;
+
+    /**
+     * @param budget total size of all the caches, in the unit of their sizers
+     */
+    public CacheRegistry(long budget) {
+        this.budget = checkBudget(budget);
+    }
+
+    /**
+     * Creates a cache that gets the argument weight's share of the budget
+     *
+     * @param name   name of the cache in the stats
+     * @param weight relative size of the cache, compared to the other caches
+     * @param sizer  size of a value, in the unit of the budget
+     * @return the new cache
+     */
+    public synchronized <K, V> MemoryCache<K, V> create(String name, int weight,
+                                                       ToLongFunction<? super V> sizer) {
+        if (weight <= 0) throw new IllegalArgumentException("weight must be positive: " + weight);
+
+        MemoryCache<K, V> cache = new MemoryCache<>(name, 0, sizer);
+        caches.add(new Registered(cache, weight));
+        totalWeight += weight;
+        resize();
+        return cache;
+    }
+
+    /**
+     * Changes the total size of the caches, evicting values from the ones that get smaller
+     *
+     * @param budget the new total size
+     */
+    public synchronized void setBudget(long budget) {
+        this.budget = checkBudget(budget);
+        resize();
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Shrinks every cache to the argument fraction of its maximum size
+     *
+     * @param keepFraction fraction of each cache to keep, 0 clears them all
+     * @see MemoryCache#trim(double)
+     */
+    public synchronized void trim(double keepFraction) {
+        for (Registered registered : caches) {
+            registered.cache.trim(keepFraction);
+        }
+    }
+
+    /**
+     * @return the stats of every cache, in the order they were created
+     */
+    public synchronized List<CacheStats> getStats() {
+        List<CacheStats> stats = new ArrayList<>(caches.size());
+        for (Registered registered : caches) {
+            stats.add(registered.cache.getStats());
+        }
+        return stats;
+    }
+
+    public synchronized void resetStats() {
+        for (Registered registered : caches) {
+            registered.cache.resetStats();
+        }
+    }
+
+    /**
+     * Formats the stats of every cache
+     *
+     * @return human readable report, one entry per cache
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (CacheStats stats : getStats()) {
+            report.append(stats).append('\n');
+        }
+        return report.toString();
+    }
+
+    private void resize() {
+        for (Registered registered : caches) {
+            registered.cache.setMaxSize(budget * registered.weight / totalWeight);
+        }
+    }
+
+    private static long checkBudget(long budget) {
+        if (budget < 0) throw new IllegalArgumentException("negative budget: " + budget);
+        return budget;
+    }
+
+    private static final class Registered {
+        final MemoryCache<?, ?> cache;
+        final int weight;
+
+        Registered(MemoryCache<?, ?> cache, int weight) {
+            this.cache = cache;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package gr.auth.androidproject.plants.cache;
+
+import java.util.Locale;
+
+/**
+ * Size and counters of a {@link MemoryCache} at some point in time
+ */
+public final class CacheStats {
+
+    private final String name;
+    private final long size;
+    private final long maxSize;
+    private final int entries;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    CacheStats(String name, long size, long maxSize, int entries,
+               long hits, long misses, long evictions) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.entries = entries;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return fraction of the lookups that found a value, 0 if there were none
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s\n  %d entries %.1f/%.1fKiB hit=%d miss=%d (%.0f%%) evict=%d",
+                name, entries, size / 1024.0, maxSize / 1024.0, hits, misses,
+                getHitRate() * 100, evictions);
+    }
+}
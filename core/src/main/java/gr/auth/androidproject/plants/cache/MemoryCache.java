@@ -0,0 +1,141 @@
+package gr.auth.androidproject.plants.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * Least recently used cache bounded by the total size of its values.<br>
+ * </p>
+ * <p>
+ * Values are sized by the function given on creation, usually in bytes. A value larger than the
+ * whole cache is not kept. Caches are created and sized by a {@link CacheRegistry}, which also
+ * shrinks them when memory runs low. Safe to use from any thread
+ * </p>
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public final class MemoryCache<K, V> {
+
+    private final String name;
+    private final ToLongFunction<? super V> sizer;
+    /**
+     * Entries in access order, the least recently used first
+     */
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maxSize;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    MemoryCache(String name, long maxSize, ToLongFunction<? super V> sizer) {
+        this.name = Objects.requireNonNull(name);
+        this.maxSize = maxSize;
+        this.sizer = Objects.requireNonNull(sizer);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param key the key
+     * @return the cached value, or null if there is none
+     */
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used ones if the cache gets too large
+     *
+     * @param key   the key
+     * @param value the value
+     * @return true if the value was cached, false if it is larger than the whole cache
+     */
+    public synchronized boolean put(K key, V value) {
+        Objects.requireNonNull(value);
+        long valueSize = sizer.applyAsLong(value);
+        if (valueSize > maxSize) {
+            remove(key);
+            return false;
+        }
+
+        V previous = entries.put(key, value);
+        if (previous != null) {
+            size -= sizer.applyAsLong(previous);
+        }
+        size += valueSize;
+        evictTo(maxSize);
+        return true;
+    }
+
+    public synchronized void remove(K key) {
+        V previous = entries.remove(key);
+        if (previous != null) {
+            size -= sizer.applyAsLong(previous);
+        }
+    }
+
+    public synchronized void clear() {
+        evictTo(0);
+    }
+
+    /**
+     * Evicts the least recently used values until the cache holds at most the argument fraction of
+     * its maximum size. The maximum size itself does not change, so the cache fills up again once
+     * memory is available
+     *
+     * @param keepFraction fraction of the maximum size to keep, 0 clears the cache
+     */
+    public synchronized void trim(double keepFraction) {
+        evictTo((long) (maxSize * Math.max(0, Math.min(1, keepFraction))));
+    }
+
+    synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        evictTo(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return copy of the current size and counters of the cache
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(name, size, maxSize, entries.size(), hits, misses, evictions);
+    }
+
+    synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    private void evictTo(long targetSize) {
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while (size > targetSize && iterator.hasNext()) {
+            size -= sizer.applyAsLong(iterator.next().getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
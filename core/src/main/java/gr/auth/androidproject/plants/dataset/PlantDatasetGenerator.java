@@ -0,0 +1,141 @@
+package gr.auth.androidproject.plants.dataset;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+/**
+ * <p>
+ * Generates realistic looking plant collections for load tests and benchmarks.<br>
+ * </p>
+ * <p>
+ * The output only depends on the seed and the settings, so the same collection can be reproduced
+ * on any machine. Plants get mixed watering intervals, around a quarter of them are overdue and
+ * some have no birthday. Photos are synthetic PNG images of the configured size.
+ * </p>
+ */
+public class PlantDatasetGenerator {
+
+    private static final String[] SPECIES = {
+            "Monstera", "Pothos", "Ficus", "Aloe", "Basil", "Cactus", "Fern", "Orchid",
+            "Peace lily", "Snake plant", "Spider plant", "Rubber plant", "Calathea", "Jade",
+            "Lavender", "Mint", "Rosemary", "Begonia", "Philodendron", "Zamioculcas"
+    };
+
+    /**
+     * Common watering intervals in hours and how often each one is picked (out of 100)
+     */
+    private static final int[] INTERVAL_HOURS = {12, 24, 48, 72, 24 * 7, 24 * 14, 24 * 30};
+    private static final int[] INTERVAL_WEIGHTS = {5, 20, 20, 20, 20, 10, 5};
+
+    private final Random random;
+    private final LocalDateTime now;
+
+    private double birthdayRatio = 0.7;
+    private double photoRatio = 0;
+    private int photoSide = 256;
+    private int count = 0;
+
+    /**
+     * @param seed seed of the generator, the same seed gives the same plants
+     * @param now  the time the plants are generated relative to
+     */
+    public PlantDatasetGenerator(long seed, LocalDateTime now) {
+        this.random = new Random(seed);
+        this.now = Objects.requireNonNull(now);
+    }
+
+    /**
+     * @param ratio fraction of the plants that have a birthday, 0.7 by default
+     * @return this generator
+     */
+    public PlantDatasetGenerator setBirthdayRatio(double ratio) {
+        this.birthdayRatio = checkRatio(ratio);
+        return this;
+    }
+
+    /**
+     * @param ratio fraction of the plants that have a photo, none by default
+     * @return this generator
+     */
+    public PlantDatasetGenerator setPhotoRatio(double ratio) {
+        this.photoRatio = checkRatio(ratio);
+        return this;
+    }
+
+    /**
+     * @param side width and height of the generated photos in pixels, 256 by default
+     * @return this generator
+     */
+    public PlantDatasetGenerator setPhotoSide(int side) {
+        if (side <= 0) {
+            throw new IllegalArgumentException("Photo side must be positive: " + side);
+        }
+        this.photoSide = side;
+        return this;
+    }
+
+    /**
+     * Generates the next plant. The plant has no id, as it has not been stored
+     *
+     * @return a new plant
+     */
+    public Plant next() {
+        count++;
+        String name = SPECIES[random.nextInt(SPECIES.length)] + " " + count;
+
+        LocalDateTime birthday = random.nextDouble() < birthdayRatio
+                ? now.minusMinutes(random.nextInt(60 * 24 * 365 * 5))
+                : null;
+
+        // watered up to 1.3 intervals ago, so that some plants are overdue
+        Duration interval = Duration.ofHours(pickInterval());
+        LocalDateTime lastWatered = now.minusMinutes(
+                (long) (random.nextDouble() * 1.3 * interval.toMinutes()));
+        if (birthday != null && lastWatered.isBefore(birthday)) {
+            lastWatered = birthday;
+        }
+
+        PlantPhoto photo = random.nextDouble() < photoRatio
+                ? PlantPhoto.of(SyntheticPhotos.png(photoSide, random))
+                : null;
+
+        return new Plant(name, birthday, lastWatered, interval, photo);
+    }
+
+    /**
+     * Generates the next argument number of plants
+     *
+     * @param size number of plants
+     * @return list of new plants
+     */
+    public List<Plant> generate(int size) {
+        List<Plant> plants = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            plants.add(next());
+        }
+        return plants;
+    }
+
+    private int pickInterval() {
+        int pick = random.nextInt(100);
+        for (int i = 0; i < INTERVAL_WEIGHTS.length; i++) {
+            pick -= INTERVAL_WEIGHTS[i];
+            if (pick < 0) return INTERVAL_HOURS[i];
+        }
+        return INTERVAL_HOURS[INTERVAL_HOURS.length - 1];
+    }
+
+    private static double checkRatio(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("Ratio must be between 0 and 1: " + ratio);
+        }
+        return ratio;
+    }
+}
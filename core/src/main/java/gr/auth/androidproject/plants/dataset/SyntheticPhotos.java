@@ -0,0 +1,89 @@
+package gr.auth.androidproject.plants.dataset;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes synthetic photos as PNG without any imaging library, so that it works both on the JVM
+ * and on a device
+ */
+final class SyntheticPhotos {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private SyntheticPhotos() {
+    }
+
+    /**
+     * Creates a square RGB image of a gradient with noise, which compresses about as well as a
+     * photo does
+     *
+     * @param side   width and height in pixels
+     * @param random source of the noise and the base colour
+     * @return the encoded PNG
+     */
+    static byte[] png(int side, Random random) {
+        int baseRed = random.nextInt(128);
+        int baseBlue = random.nextInt(128);
+
+        // filter type byte followed by the RGB pixels for each row
+        byte[] pixels = new byte[side * (1 + side * 3)];
+        int offset = 0;
+        for (int y = 0; y < side; y++) {
+            pixels[offset++] = 0;
+            for (int x = 0; x < side; x++) {
+                int noise = random.nextInt(24);
+                pixels[offset++] = (byte) (baseRed + x * 127 / side);
+                pixels[offset++] = (byte) (64 + (x + y) * 127 / (2 * side) + noise);
+                pixels[offset++] = (byte) (baseBlue + y * 127 / side);
+            }
+        }
+
+        try {
+            ByteArrayOutputStream png = new ByteArrayOutputStream(pixels.length / 2);
+            png.write(PNG_SIGNATURE);
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+            DataOutputStream headerData = new DataOutputStream(header);
+            headerData.writeInt(side); // width
+            headerData.writeInt(side); // height
+            headerData.writeByte(8); // bit depth
+            headerData.writeByte(2); // colour type RGB
+            headerData.writeByte(0); // compression
+            headerData.writeByte(0); // filter
+            headerData.writeByte(0); // no interlace
+            writeChunk(png, "IHDR", header.toByteArray());
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(pixels.length / 2);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+                deflater.write(pixels);
+            }
+            writeChunk(png, "IDAT", compressed.toByteArray());
+            writeChunk(png, "IEND", new byte[0]);
+            return png.toByteArray();
+        } catch (IOException e) {
+            // in memory streams do not throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data)
+            throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        DataOutputStream chunk = new DataOutputStream(out);
+        chunk.writeInt(data.length);
+        chunk.write(typeBytes);
+        chunk.write(data);
+        chunk.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,69 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * <p>
+ * An entry of a plant's photo gallery.<br>
+ * </p>
+ * <p>
+ * Only the small encoded thumbnail is held in memory, the full photo is read from storage when it
+ * is opened. Galleries are listed newest first, a photo taken at the same time as another comes
+ * before it if its id is larger
+ * </p>
+ */
+public final class GalleryPhoto {
+
+    private final long id;
+    private final long plantId;
+    private final LocalDateTime takenAt;
+    private final String hash;
+    private final long size;
+    private final byte[] thumbnail;
+
+    /**
+     * @param id        id of the entry
+     * @param plantId   id of the plant the photo belongs to
+     * @param takenAt   when the photo was taken
+     * @param hash      content hash of the full photo, as computed by {@link PlantPhoto#hashOf(byte[])}
+     * @param size      size of the full encoded photo in bytes
+     * @param thumbnail the encoded thumbnail, not copied
+     */
+    public GalleryPhoto(long id, long plantId, LocalDateTime takenAt, String hash, long size,
+                        byte[] thumbnail) {
+        this.id = id;
+        this.plantId = plantId;
+        this.takenAt = Objects.requireNonNull(takenAt);
+        this.hash = Objects.requireNonNull(hash);
+        this.size = size;
+        this.thumbnail = Objects.requireNonNull(thumbnail);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getPlantId() {
+        return plantId;
+    }
+
+    public LocalDateTime getTakenAt() {
+        return takenAt;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the encoded thumbnail, must not be modified
+     */
+    public byte[] getThumbnail() {
+        return thumbnail;
+    }
+}
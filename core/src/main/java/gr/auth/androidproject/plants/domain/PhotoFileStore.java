@@ -0,0 +1,202 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Set;
+
+/**
+ * <p>
+ * Content addressed storage of encoded photos, one file per photo named by its hash.<br>
+ * </p>
+ * <p>
+ * Photos are streamed into a temporary file while they are hashed and then renamed to their hash,
+ * so a photo file is always complete and a photo stored twice is kept once. Rows refer to photos
+ * by hash and read them as plain file streams, in pieces of any size.
+ * </p>
+ * <p>
+ * Photos are written before the rows that refer to them, so {@link #deleteUnreferenced} only
+ * deletes files older than the argument time.
+ * </p>
+ */
+public class PhotoFileStore {
+
+    private static final String TEMP_PREFIX = "incoming-";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int HASH_LENGTH = 64;
+
+    private final File directory;
+
+    /**
+     * @param directory the directory photos are kept in, created when the first one is written
+     */
+    public PhotoFileStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return true if the photo with the argument hash is stored
+     */
+    public boolean contains(String hash) {
+        return isHash(hash) && file(hash).isFile();
+    }
+
+    /**
+     * @return size of the photo with the argument hash in bytes, -1 if it is not stored
+     */
+    public long size(String hash) {
+        return contains(hash) ? file(hash).length() : -1;
+    }
+
+    /**
+     * Opens the photo with the argument hash
+     *
+     * @return stream of the encoded photo, to be closed by the caller
+     * @throws FileNotFoundException if the photo is not stored
+     */
+    public InputStream open(String hash) throws FileNotFoundException {
+        if (!isHash(hash)) {
+            throw new FileNotFoundException("Bad photo hash " + hash);
+        }
+        return new FileInputStream(file(hash));
+    }
+
+    /**
+     * Stores the photo of the argument handle, unless a photo with its hash is stored already
+     *
+     * @return the hash of the photo
+     * @throws IOException if the photo cannot be read or written, or does not match its hash
+     */
+    public String put(PlantPhoto photo) throws IOException {
+        if (contains(photo.getHash())) {
+            touch(file(photo.getHash()));
+            return photo.getHash();
+        }
+        try (InputStream in = photo.openStream()) {
+            return write(in, -1, photo.getHash());
+        }
+    }
+
+    /**
+     * Streams a photo into the store. Nothing is stored if this fails
+     *
+     * @param in           the encoded photo, it is not closed
+     * @param size         bytes to read from the stream, -1 to read it to its end
+     * @param expectedHash the hash the photo must have, null to accept any photo
+     * @return the hash of the photo
+     * @throws IOException if reading or writing fails, the stream ends early or the photo does
+     *                     not match the expected hash
+     */
+    public String write(InputStream in, long size, String expectedHash) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File temp = File.createTempFile(TEMP_PREFIX, null, directory);
+        try {
+            MessageDigest digest = PlantPhoto.sha256();
+            try (FileOutputStream file = new FileOutputStream(temp);
+                 DigestOutputStream out = new DigestOutputStream(file, digest)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                long left = size < 0 ? Long.MAX_VALUE : size;
+                while (left > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                    if (read < 0) {
+                        if (size < 0) break;
+                        throw new EOFException("Photo ended " + left + " bytes early");
+                    }
+                    out.write(buffer, 0, read);
+                    left -= read;
+                }
+                out.flush();
+                // the rows that refer to the photo may be committed right after this
+                file.getFD().sync();
+            }
+
+            String hash = PlantPhoto.toHex(digest.digest());
+            if (expectedHash != null && !expectedHash.equals(hash)) {
+                throw new IOException("Photo does not match its hash " + expectedHash);
+            }
+            File target = file(hash);
+            if (target.isFile()) {
+                touch(target);
+            } else if (!temp.renameTo(target) && !target.isFile()) {
+                throw new IOException("Cannot store photo " + hash);
+            }
+            return hash;
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Deletes the photo with the argument hash, unless it has been written or stored again since
+     * the argument time
+     *
+     * @param hash           hash of a photo no row refers to any more
+     * @param modifiedBefore epoch millisecond, a photo written or stored later may be about to
+     *                       be referenced again and is kept
+     * @return bytes deleted
+     */
+    public long delete(String hash, long modifiedBefore) {
+        if (!contains(hash)) return 0;
+        File file = file(hash);
+        long length = file.length();
+        return file.lastModified() < modifiedBefore && file.delete() ? length : 0;
+    }
+
+    /**
+     * Deletes the photos no row refers to and the temporary files left by failed writes
+     *
+     * @param referenced     hashes of the photos that are still used
+     * @param modifiedBefore epoch millisecond, files written later are kept since the rows that
+     *                       will refer to them may not be committed yet
+     * @return bytes deleted
+     */
+    public long deleteUnreferenced(Set<String> referenced, long modifiedBefore) {
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+
+        long deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            boolean unused = name.startsWith(TEMP_PREFIX)
+                    || (isHash(name) && !referenced.contains(name));
+            if (unused && file.lastModified() < modifiedBefore) {
+                long length = file.length();
+                if (file.delete()) deleted += length;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Keeps an unreferenced photo that is about to be referenced again from being deleted
+     */
+    private static void touch(File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    private File file(String hash) {
+        return new File(directory, hash);
+    }
+
+    /**
+     * Hashes name the files directly, so anything else must not reach the file system
+     */
+    private static boolean isHash(String hash) {
+        if (hash == null || hash.length() != HASH_LENGTH) return false;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
+}
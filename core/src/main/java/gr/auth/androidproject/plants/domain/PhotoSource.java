@@ -0,0 +1,20 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage that stored plant photos are read from on demand
+ */
+public interface PhotoSource {
+
+    /**
+     * Opens the stored photo with the argument content hash. Photos are stored by content, so the
+     * stream always has exactly the bytes of that hash, whatever the plant shows by now
+     *
+     * @param hash content hash of the photo, as computed by {@link PlantPhoto#hashOf(byte[])}
+     * @return stream of the encoded photo, to be closed by the caller
+     * @throws IOException if the photo does not exist or cannot be read
+     */
+    InputStream openPhoto(String hash) throws IOException;
+}
@@ -0,0 +1,158 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Represents a plant entry in the database
+ */
+public class Plant {
+
+    private long id;
+    private String name;
+    private LocalDateTime birthday;
+    private LocalDateTime lastWatered;
+    private Duration wateringInterval;
+    private PlantPhoto photo;
+    private Integer speciesId;
+
+    public Plant() {
+        // set the non null fields
+        // set id to some huge value (for this app) to prevent collisions
+        id = ThreadLocalRandom.current()
+                .nextLong(100_000_000L, Long.MAX_VALUE);
+
+        name = "John Doe";
+        lastWatered = LocalDateTime.now();
+        wateringInterval = Duration.ofDays(1);
+    }
+
+    /**
+     * Full constructor, used when reading plants from storage
+     */
+    public Plant(long id, String name, LocalDateTime birthday,
+                 LocalDateTime lastWatered, Duration wateringInterval,
+                 PlantPhoto photo) {
+
+        setId(id);
+        setName(name);
+        setBirthday(birthday);
+        setLastWatered(lastWatered);
+        setWateringInterval(wateringInterval);
+        setPhoto(photo);
+    }
+
+    public Plant(String name, LocalDateTime birthday,
+                 LocalDateTime lastWatered, Duration wateringInterval,
+                 PlantPhoto photo) {
+
+        this(-1, name, birthday, lastWatered, wateringInterval, photo);
+    }
+
+    // getters / setters
+
+    public long getId() {
+        return id;
+    }
+
+    public final void setId(long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public final void setName(String name) {
+        this.name = name;
+    }
+
+    public Optional<LocalDateTime> getBirthday() {
+        return Optional.ofNullable(birthday);
+    }
+
+    public final void setBirthday(LocalDateTime birthday) {
+        this.birthday = birthday;
+    }
+
+    public LocalDateTime getLastWatered() {
+        return lastWatered;
+    }
+
+    public final void setLastWatered(LocalDateTime lastWatered) {
+        this.lastWatered = lastWatered;
+    }
+
+    public Duration getWateringInterval() {
+        return wateringInterval;
+    }
+
+    public final void setWateringInterval(Duration wateringInterval) {
+        this.wateringInterval = wateringInterval;
+    }
+
+    /**
+     * Returns a handle to the plant's photo. The photo itself is only read when the handle is opened
+     */
+    public Optional<PlantPhoto> getPhoto() {
+        return Optional.ofNullable(photo);
+    }
+
+    public final void setPhoto(PlantPhoto photo) {
+        this.photo = photo;
+    }
+
+    /**
+     * Returns the id of the plant's species in the species catalog, if the plant was linked to one
+     */
+    public Optional<Integer> getSpeciesId() {
+        return Optional.ofNullable(speciesId);
+    }
+
+    public final void setSpeciesId(Integer speciesId) {
+        this.speciesId = speciesId;
+    }
+
+    /**
+     * @param id the id of the copy
+     * @return a copy of this plant with the argument id, sharing its photo handle
+     */
+    public Plant withId(long id) {
+        Plant copy = new Plant(id, name, birthday, lastWatered, wateringInterval, photo);
+        copy.setSpeciesId(speciesId);
+        return copy;
+    }
+
+    /**
+     * Cheap hash of all the displayed fields of this plant. Two versions of the same plant (same
+     * id) with equal content hashes are considered to look the same
+     *
+     * @return hash of the plant's content excluding the id
+     */
+    public int contentHash() {
+        return Objects.hash(name, birthday, lastWatered, wateringInterval,
+                Objects.nonNull(photo) ? photo.getHash() : null);
+    }
+
+    /**
+     * Compares all the displayed fields of this plant with the argument one, the fields
+     * {@link #contentHash()} is computed from. Unlike equal content hashes, this never takes two
+     * different plants for the same
+     *
+     * @param other the plant to compare with
+     * @return true if both plants look the same, regardless of their ids
+     */
+    public boolean hasSameContent(Plant other) {
+        return Objects.equals(name, other.name)
+                && Objects.equals(birthday, other.birthday)
+                && Objects.equals(lastWatered, other.lastWatered)
+                && Objects.equals(wateringInterval, other.wateringInterval)
+                && Objects.equals(Objects.nonNull(photo) ? photo.getHash() : null,
+                Objects.nonNull(other.photo) ? other.photo.getHash() : null);
+    }
+
+
+}
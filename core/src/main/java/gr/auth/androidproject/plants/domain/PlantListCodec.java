@@ -0,0 +1,154 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Compact binary form of a list of plants, used to show the last list again right away after a
+ * restart.<br>
+ * </p>
+ * <p>
+ * Times are kept to the nanosecond and photos by their hash and size, so decoded plants have the
+ * same {@link Plant#contentHash()} as the stored ones and a list diff between the two only finds
+ * the plants that actually changed. Photos are not part of the list, decoded plants open them
+ * through the argument {@link PhotoSource}.
+ * </p>
+ * <p>
+ * Layout, big endian: magic, version, count, then per plant the id, last watered (epoch second,
+ * nano), watering interval (second, nano), a birthday flag and birthday, a photo flag with photo
+ * size and hash, a species flag and species id, and the name. Strings are UTF-8 with a 4 byte
+ * length.
+ * </p>
+ */
+public final class PlantListCodec {
+
+    private static final int MAGIC = 0x504C5354; // "PLST"
+    private static final int VERSION = 2;
+
+    private PlantListCodec() {
+    }
+
+    /**
+     * Writes the plants to the stream, in their order
+     *
+     * @param plants the plants, which must have been stored (have ids)
+     * @param out    the stream, it is not closed
+     * @throws IOException if writing fails
+     */
+    public static void encode(List<Plant> plants, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(plants.size());
+        for (Plant plant : plants) {
+            data.writeLong(plant.getId());
+            writeDateTime(data, plant.getLastWatered());
+            data.writeLong(plant.getWateringInterval().getSeconds());
+            data.writeInt(plant.getWateringInterval().getNano());
+
+            LocalDateTime birthday = plant.getBirthday().orElse(null);
+            data.writeBoolean(Objects.nonNull(birthday));
+            if (Objects.nonNull(birthday)) {
+                writeDateTime(data, birthday);
+            }
+
+            PlantPhoto photo = plant.getPhoto().orElse(null);
+            data.writeBoolean(Objects.nonNull(photo));
+            if (Objects.nonNull(photo)) {
+                data.writeLong(photo.getSize());
+                writeString(data, Objects.toString(photo.getHash(), ""));
+            }
+
+            Integer speciesId = plant.getSpeciesId().orElse(null);
+            data.writeBoolean(Objects.nonNull(speciesId));
+            if (Objects.nonNull(speciesId)) {
+                data.writeInt(speciesId);
+            }
+
+            writeString(data, plant.getName());
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads plants written by {@link #encode(List, OutputStream)}
+     *
+     * @param buffer      the encoded list, read from its position
+     * @param photoSource source the photos of the plants are read from
+     * @return the plants, in the order they were written
+     * @throws IOException if the buffer does not hold a list in the current format
+     */
+    public static List<Plant> decode(ByteBuffer buffer, PhotoSource photoSource)
+            throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a plant list of version " + VERSION);
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IOException("Bad plant count " + count);
+            }
+
+            List<Plant> plants = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                LocalDateTime lastWatered = readDateTime(buffer);
+                Duration interval = Duration.ofSeconds(buffer.getLong(), buffer.getInt());
+                LocalDateTime birthday = buffer.get() != 0 ? readDateTime(buffer) : null;
+
+                PlantPhoto photo = null;
+                if (buffer.get() != 0) {
+                    long size = buffer.getLong();
+                    String hash = readString(buffer);
+                    photo = PlantPhoto.stored(id, hash.isEmpty() ? null : hash, size, photoSource);
+                }
+                Integer speciesId = buffer.get() != 0 ? buffer.getInt() : null;
+
+                Plant plant = new Plant(id, readString(buffer), birthday, lastWatered, interval,
+                        photo);
+                plant.setSpeciesId(speciesId);
+                plants.add(plant);
+            }
+            return plants;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt plant list", e);
+        }
+    }
+
+    private static void writeDateTime(DataOutputStream data, LocalDateTime dateTime)
+            throws IOException {
+        data.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        data.writeInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer buffer) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,161 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Lightweight handle to the encoded photo of a plant.<br>
+ * </p>
+ * <p>
+ * A handle only holds the photo's content hash and size. Photos read from the database are opened
+ * by hash through their {@link PhotoSource} when they are actually needed, so loading a plant does
+ * not load its photo, and a handle reads the photo it was created for even if the plant's photo
+ * has changed since. Photos that were just taken hold their bytes until they are stored.
+ * </p>
+ */
+public final class PlantPhoto {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String hash;
+    private final long size;
+
+    // in memory photos
+    private final byte[] bytes;
+
+    // stored photos
+    private final long plantId;
+    private final PhotoSource source;
+
+    private PlantPhoto(String hash, long size, byte[] bytes, long plantId, PhotoSource source) {
+        this.hash = hash;
+        this.size = size;
+        this.bytes = bytes;
+        this.plantId = plantId;
+        this.source = source;
+    }
+
+    /**
+     * Creates a handle for a photo that is not stored yet
+     * <p>
+     * The array is not copied, the handle takes ownership of it
+     *
+     * @param bytes the encoded photo
+     * @return handle holding the photo's bytes
+     */
+    public static PlantPhoto of(byte[] bytes) {
+        Objects.requireNonNull(bytes);
+        return new PlantPhoto(hashOf(bytes), bytes.length, bytes, -1, null);
+    }
+
+    /**
+     * Creates a handle for the stored photo of a plant
+     *
+     * @param plantId id of the plant that owns the photo
+     * @param hash    content hash of the photo, as computed by {@link #hashOf(byte[])}
+     * @param size    size of the encoded photo in bytes
+     * @param source  where to read the photo from
+     * @return handle that reads the photo on demand
+     */
+    public static PlantPhoto stored(long plantId, String hash, long size, PhotoSource source) {
+        return new PlantPhoto(hash, size, null, plantId, Objects.requireNonNull(source));
+    }
+
+    /**
+     * Hex encoded SHA-256 hash of the argument photo
+     */
+    public static String hashOf(byte[] bytes) {
+        MessageDigest digest = sha256();
+        digest.update(bytes);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hex encoded SHA-256 hash of the photo read from the argument stream, equal to
+     * {@link #hashOf(byte[])} of the same bytes. The stream is read to its end but not closed
+     */
+    public static String hashOf(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform has SHA-256
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Checks if this handle refers to the stored photo of the argument plant
+     *
+     * @param plantId id of the plant
+     * @return true if the photo is already stored for this plant
+     */
+    public boolean isStoredFor(long plantId) {
+        return Objects.nonNull(source) && this.plantId == plantId;
+    }
+
+    /**
+     * Opens the encoded photo. In memory photos are streamed without copying
+     *
+     * @return stream of the encoded photo, to be closed by the caller
+     * @throws IOException if a stored photo cannot be read
+     */
+    public InputStream openStream() throws IOException {
+        if (Objects.nonNull(bytes)) {
+            return new ByteArrayInputStream(bytes);
+        }
+        return source.openPhoto(hash);
+    }
+
+    /**
+     * Reads the whole encoded photo in memory
+     *
+     * @return the photo's bytes, must not be modified
+     * @throws IOException if a stored photo cannot be read
+     */
+    public byte[] readBytes() throws IOException {
+        if (Objects.nonNull(bytes)) {
+            return bytes;
+        }
+        try (InputStream in = openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) size);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
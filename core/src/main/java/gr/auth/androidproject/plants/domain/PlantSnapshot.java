@@ -0,0 +1,414 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Read only, column oriented copy of the time related fields of a plant collection.<br>
+ * </p>
+ * <p>
+ * Every plant occupies the same index in a set of parallel primitive columns, sorted by id. Scans
+ * over the whole collection (due counts, calendar, reminders etc) walk these columns in simple
+ * counted loops instead of dereferencing {@link Plant}, {@link LocalDateTime} and
+ * {@link java.time.Duration} objects.
+ * </p>
+ * <p>
+ * Each column is split in blocks of {@value #BLOCK_SIZE} values. Updates return a new snapshot
+ * that shares the blocks they do not change, so changing a plant copies one block of each column
+ * and the block tables, not the whole collection. The same holds for adding a plant with a
+ * greater id than all the others, as new rows get. Adding or removing a plant in the middle copies
+ * the blocks from it to the end. Updates never allocate per plant.
+ * </p>
+ * <p>
+ * Times are epoch milliseconds of the plants' local date/times taken at UTC, see
+ * {@link #toEpochMillis(LocalDateTime)}.
+ * </p>
+ */
+public final class PlantSnapshot {
+
+    /**
+     * Birthday value of plants without a birthday
+     */
+    public static final long NO_BIRTHDAY = Long.MIN_VALUE;
+
+    /**
+     * Values per column block, small enough that copying one is cheap and large enough that the
+     * block tables stay short
+     */
+    static final int BLOCK_SIZE = 256;
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    public static final PlantSnapshot EMPTY = new PlantSnapshot(0,
+            new long[0][], new long[0][], new long[0][], new long[0][], new long[0][]);
+
+    private final int size;
+    private final long[][] ids;
+    private final long[][] lastWatered;
+    private final long[][] wateringIntervals;
+    private final long[][] nextWatering;
+    private final long[][] birthdays;
+
+    private PlantSnapshot(int size, long[][] ids, long[][] lastWatered,
+                          long[][] wateringIntervals, long[][] nextWatering, long[][] birthdays) {
+        this.size = size;
+        this.ids = ids;
+        this.lastWatered = lastWatered;
+        this.wateringIntervals = wateringIntervals;
+        this.nextWatering = nextWatering;
+        this.birthdays = birthdays;
+    }
+
+    /**
+     * Creates a snapshot of the argument plants
+     *
+     * @param plants the plants, with distinct ids
+     * @return snapshot of the plants
+     */
+    public static PlantSnapshot of(Iterable<Plant> plants) {
+        Builder builder = new Builder();
+        for (Plant plant : plants) {
+            builder.add(plant);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Converts a plant date/time to the epoch milliseconds used by snapshots
+     */
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int index) {
+        return get(ids, index);
+    }
+
+    public long lastWatered(int index) {
+        return get(lastWatered, index);
+    }
+
+    public long wateringInterval(int index) {
+        return get(wateringIntervals, index);
+    }
+
+    public long nextWatering(int index) {
+        return get(nextWatering, index);
+    }
+
+    /**
+     * @return the birthday of the plant at the index or {@link #NO_BIRTHDAY}
+     */
+    public long birthday(int index) {
+        return get(birthdays, index);
+    }
+
+    /**
+     * Finds the index of the plant with the argument id
+     *
+     * @param id the id of the plant
+     * @return index of the plant or a negative value if it is not in the snapshot, as
+     * {@link Arrays#binarySearch(long[], long)} returns
+     */
+    public int indexOf(long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = id(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Counts the plants that need to be watered before the argument time
+     *
+     * @param epochMillis the time, see {@link #toEpochMillis(LocalDateTime)}
+     * @return number of plants due before the time
+     */
+    public int countDueBefore(long epochMillis) {
+        int count = 0;
+        for (int b = 0; b < nextWatering.length; b++) {
+            long[] block = nextWatering[b];
+            int length = blockLength(b);
+            for (int i = 0; i < length; i++) {
+                count += block[i] < epochMillis ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the plants that need to be watered before the argument time
+     *
+     * @param epochMillis the time, see {@link #toEpochMillis(LocalDateTime)}
+     * @return indices of the plants due before the time, in ascending order
+     */
+    public int[] indicesDueBefore(long epochMillis) {
+        int[] result = new int[size];
+        int count = 0;
+        for (int b = 0; b < nextWatering.length; b++) {
+            long[] block = nextWatering[b];
+            int length = blockLength(b);
+            int first = b << BLOCK_SHIFT;
+            for (int i = 0; i < length; i++) {
+                // unconditional store, only the count depends on the comparison
+                result[count] = first + i;
+                count += block[i] < epochMillis ? 1 : 0;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Orders the plants by their next watering, soonest first. Ties keep id order
+     *
+     * @return indices of all the plants in order of urgency
+     */
+    public int[] indicesByUrgency() {
+        long[] keys = flatten(nextWatering, size);
+        int[] order = new int[size];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[order.length];
+        mergeSort(keys, order, buffer, 0, order.length);
+        return order;
+    }
+
+    /**
+     * Stable merge sort of the index range [from, to) by the argument keys
+     */
+    private static void mergeSort(long[] keys, int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) return;
+        int middle = (from + to) >>> 1;
+        mergeSort(keys, order, buffer, from, middle);
+        mergeSort(keys, order, buffer, middle, to);
+        if (keys[order[middle - 1]] <= keys[order[middle]]) {
+            return; // already in order
+        }
+
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from, right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && keys[buffer[left]] <= keys[buffer[right]])) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot with the argument plant added, or replaced if a plant with the same id
+     * exists
+     *
+     * @param plant the new or changed plant
+     * @return the updated snapshot
+     */
+    public PlantSnapshot withPlant(Plant plant) {
+        int index = indexOf(plant.getId());
+        if (index >= 0) {
+            // the ids do not change, only the block of the plant is copied in the other columns
+            int block = index >>> BLOCK_SHIFT;
+            PlantSnapshot result = new PlantSnapshot(size, ids,
+                    copyBlock(lastWatered, block), copyBlock(wateringIntervals, block),
+                    copyBlock(nextWatering, block), copyBlock(birthdays, block));
+            result.set(index, plant);
+            return result;
+        }
+
+        int insertion = -index - 1;
+        PlantSnapshot result = new PlantSnapshot(size + 1,
+                insertGap(ids, size, insertion), insertGap(lastWatered, size, insertion),
+                insertGap(wateringIntervals, size, insertion),
+                insertGap(nextWatering, size, insertion), insertGap(birthdays, size, insertion));
+        result.set(insertion, plant);
+        return result;
+    }
+
+    /**
+     * Returns a snapshot without the plant with the argument id
+     *
+     * @param id the id of the removed plant
+     * @return the updated snapshot, or this if the plant is not in it
+     */
+    public PlantSnapshot withoutPlant(long id) {
+        int index = indexOf(id);
+        if (index < 0) return this;
+
+        return new PlantSnapshot(size - 1,
+                removeAt(ids, size, index), removeAt(lastWatered, size, index),
+                removeAt(wateringIntervals, size, index), removeAt(nextWatering, size, index),
+                removeAt(birthdays, size, index));
+    }
+
+    /**
+     * Writes the plant's values at the index. Only used on the blocks a new snapshot owns
+     */
+    private void set(int index, Plant plant) {
+        long watered = toEpochMillis(plant.getLastWatered());
+        long interval = plant.getWateringInterval().toMillis();
+        put(ids, index, plant.getId());
+        put(lastWatered, index, watered);
+        put(wateringIntervals, index, interval);
+        put(nextWatering, index, watered + interval);
+        put(birthdays, index, plant.getBirthday()
+                .map(PlantSnapshot::toEpochMillis)
+                .orElse(NO_BIRTHDAY));
+    }
+
+    /**
+     * @return the number of values used in the argument block
+     */
+    private int blockLength(int block) {
+        return Math.min(BLOCK_SIZE, size - (block << BLOCK_SHIFT));
+    }
+
+    private static long get(long[][] blocks, int index) {
+        return blocks[index >>> BLOCK_SHIFT][index & BLOCK_MASK];
+    }
+
+    private static void put(long[][] blocks, int index, long value) {
+        blocks[index >>> BLOCK_SHIFT][index & BLOCK_MASK] = value;
+    }
+
+    private static int blockCount(int size) {
+        return (size + BLOCK_MASK) >>> BLOCK_SHIFT;
+    }
+
+    /**
+     * @return the blocks with the argument one copied and the rest shared
+     */
+    private static long[][] copyBlock(long[][] blocks, int block) {
+        long[][] result = blocks.clone();
+        result[block] = blocks[block].clone();
+        return result;
+    }
+
+    /**
+     * @return the blocks with a gap at the index, sharing the blocks before it
+     */
+    private static long[][] insertGap(long[][] blocks, int size, int index) {
+        long[][] result = Arrays.copyOf(blocks, blockCount(size + 1));
+        int first = index >>> BLOCK_SHIFT;
+        for (int b = first; b < result.length; b++) {
+            result[b] = new long[BLOCK_SIZE];
+        }
+        for (int i = first << BLOCK_SHIFT; i < index; i++) {
+            put(result, i, get(blocks, i));
+        }
+        for (int i = index; i < size; i++) {
+            put(result, i + 1, get(blocks, i));
+        }
+        return result;
+    }
+
+    /**
+     * @return the blocks without the value at the index, sharing the blocks before it
+     */
+    private static long[][] removeAt(long[][] blocks, int size, int index) {
+        long[][] result = Arrays.copyOf(blocks, blockCount(size - 1));
+        int first = index >>> BLOCK_SHIFT;
+        for (int b = first; b < result.length; b++) {
+            result[b] = new long[BLOCK_SIZE];
+        }
+        for (int i = first << BLOCK_SHIFT; i < index; i++) {
+            put(result, i, get(blocks, i));
+        }
+        for (int i = index + 1; i < size; i++) {
+            put(result, i - 1, get(blocks, i));
+        }
+        return result;
+    }
+
+    private static long[][] toBlocks(long[] values) {
+        long[][] blocks = new long[blockCount(values.length)][];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = new long[BLOCK_SIZE];
+            int from = b << BLOCK_SHIFT;
+            System.arraycopy(values, from, blocks[b], 0, Math.min(BLOCK_SIZE, values.length - from));
+        }
+        return blocks;
+    }
+
+    private static long[] flatten(long[][] blocks, int size) {
+        long[] values = new long[size];
+        for (int b = 0; b < blocks.length; b++) {
+            int from = b << BLOCK_SHIFT;
+            System.arraycopy(blocks[b], 0, values, from, Math.min(BLOCK_SIZE, size - from));
+        }
+        return values;
+    }
+
+    /**
+     * Accumulates plants in any order, for example while streaming a table, and builds a snapshot
+     * from them
+     */
+    public static class Builder {
+        private long[] ids = new long[16];
+        private long[] lastWatered = new long[16];
+        private long[] wateringIntervals = new long[16];
+        private long[] birthdays = new long[16];
+        private int size = 0;
+
+        /**
+         * Copies the plant's values. The plant is not referenced afterwards, so it can be reused
+         *
+         * @param plant the plant, with an id that has not been added before
+         * @return this builder
+         */
+        public Builder add(Plant plant) {
+            Objects.requireNonNull(plant);
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                lastWatered = Arrays.copyOf(lastWatered, capacity);
+                wateringIntervals = Arrays.copyOf(wateringIntervals, capacity);
+                birthdays = Arrays.copyOf(birthdays, capacity);
+            }
+            ids[size] = plant.getId();
+            lastWatered[size] = toEpochMillis(plant.getLastWatered());
+            wateringIntervals[size] = plant.getWateringInterval().toMillis();
+            birthdays[size] = plant.getBirthday()
+                    .map(PlantSnapshot::toEpochMillis)
+                    .orElse(NO_BIRTHDAY);
+            size++;
+            return this;
+        }
+
+        public PlantSnapshot build() {
+            long[] sortedIds = Arrays.copyOf(ids, size);
+            long[] sortedLastWatered = new long[size];
+            long[] sortedIntervals = new long[size];
+            long[] sortedNextWatering = new long[size];
+            long[] sortedBirthdays = new long[size];
+
+            Arrays.sort(sortedIds);
+            for (int i = 0; i < size; i++) {
+                int target = Arrays.binarySearch(sortedIds, ids[i]);
+                sortedLastWatered[target] = lastWatered[i];
+                sortedIntervals[target] = wateringIntervals[i];
+                sortedNextWatering[target] = lastWatered[i] + wateringIntervals[i];
+                sortedBirthdays[target] = birthdays[i];
+            }
+            return new PlantSnapshot(size, toBlocks(sortedIds), toBlocks(sortedLastWatered),
+                    toBlocks(sortedIntervals), toBlocks(sortedNextWatering),
+                    toBlocks(sortedBirthdays));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package gr.auth.androidproject.plants.domain;
+
+/**
+ * Orders in which a list of plants can be requested
+ */
+public enum PlantSortOrder {
+    /**
+     * Alphabetically by name, ignoring case
+     */
+    NAME,
+    /**
+     * Plants that need to be watered the soonest first
+     */
+    MOST_URGENT,
+    /**
+     * Oldest plants first, plants without a birthday last
+     */
+    AGE
+}
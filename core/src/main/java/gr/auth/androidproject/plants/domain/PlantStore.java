@@ -0,0 +1,87 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage of the plant collection. Implementations are synchronous, callers decide which thread
+ * they run on
+ */
+public interface PlantStore extends PhotoSource {
+
+    /**
+     * Adds the argument plant to the store
+     *
+     * @param plant the plant to be added
+     * @return the id assigned to the new plant or -1 if it could not be added
+     */
+    long addPlant(Plant plant);
+
+    /**
+     * Adds all the argument plants to the store in one transaction. Each added plant gets its new
+     * id set
+     *
+     * @param plants the plants to be added
+     * @return the number of plants that were added
+     */
+    int addPlants(List<Plant> plants);
+
+    /**
+     * Returns a list of all the plants in the store (could be empty)
+     *
+     * @return list of all {@link Plant} objects in the store
+     */
+    List<Plant> getAllPlants();
+
+    /**
+     * Returns the plants whose name starts with the argument prefix (ignoring case) in the
+     * argument order
+     *
+     * @param namePrefix prefix of the plant name, empty for all plants
+     * @param sortOrder  order of the result
+     * @return list of the matching {@link Plant} objects
+     */
+    List<Plant> searchPlants(String namePrefix, PlantSortOrder sortOrder);
+
+    /**
+     * Streams all the plants of the store through the argument buffer
+     *
+     * @param buffer   reusable buffer, its length is the batch size
+     * @param consumer receives each batch and the number of plants in it
+     */
+    void scanAllPlants(Plant[] buffer, PlantBatchConsumer consumer);
+
+    /**
+     * Finds a specific plant by its id
+     *
+     * @param id the id of the plant
+     * @return optional containing the plant or empty
+     */
+    Optional<Plant> getPlantById(long id);
+
+    /**
+     * Replaces the plant with the same id as the argument with the latter
+     *
+     * @param plant the new version of the plant
+     */
+    void updatePlant(Plant plant);
+
+    /**
+     * Removes a plant by its id
+     *
+     * @param id the id of the plant to be removed
+     * @return success/failure of the remove operation
+     */
+    boolean removePlant(long id);
+
+    /**
+     * Receives batches of plants from {@link #scanAllPlants(Plant[], PlantBatchConsumer)}
+     */
+    interface PlantBatchConsumer {
+        /**
+         * @param batch buffer holding the plants, only valid until this method returns
+         * @param count number of plants in the buffer
+         */
+        void accept(Plant[] batch, int count);
+    }
+}
@@ -23,6 +23,16 @@ public class PlantUtils {
     }
 
 
+    /**
+     * Calculates the point in time when the plant needs to be watered again
+     *
+     * @param plant the plant
+     * @return date/time of the next watering
+     */
+    public static LocalDateTime nextWatering(Plant plant) {
+        return plant.getLastWatered().plus(plant.getWateringInterval());
+    }
+
     /**
      * Calculates the plant's age using current date/time and the plant's birthday
      *
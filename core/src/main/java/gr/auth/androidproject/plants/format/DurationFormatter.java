@@ -0,0 +1,90 @@
+package gr.auth.androidproject.plants.format;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Formats durations to the app specific standard, ".. years .. months .. days .. hours .. minutes"
+ * omitting any zeros.<br>
+ * </p>
+ * <p>
+ * The unit labels are passed in, so that they can come from localized resources. Both label arrays
+ * are ordered from years to minutes.
+ * </p>
+ */
+public class DurationFormatter {
+
+    /**
+     * All the units in descending order (YEAR, MONTH etc)
+     */
+    private static final TimespanUnits[] UNITS_DESCENDING = Arrays.stream(TimespanUnits.values())
+            .sorted(TimespanUnits.descendingOrder)
+            .toArray(TimespanUnits[]::new);
+
+    private final String[] labelsSingular;
+    private final String[] labelsPlural;
+
+    /**
+     * @param labelsSingular labels for a single unit, from years to minutes
+     * @param labelsPlural   labels for many units, from years to minutes
+     * @throws IllegalArgumentException if there is not a singular and a plural label for each unit
+     */
+    public DurationFormatter(String[] labelsSingular, String[] labelsPlural) {
+        Objects.requireNonNull(labelsSingular);
+        Objects.requireNonNull(labelsPlural);
+        if (labelsSingular.length != labelsPlural.length
+                || labelsSingular.length < UNITS_DESCENDING.length) {
+            // resource singular-plural matching problem or there are not enough labels
+            throw new IllegalArgumentException("Label/TimespanUnit matching problem");
+        }
+        this.labelsSingular = labelsSingular;
+        this.labelsPlural = labelsPlural;
+    }
+
+    /**
+     * Formats the duration with units down to the argument one
+     *
+     * @param duration the duration to be formatted
+     * @param minUnit  the smallest unit to display, anything less is dropped
+     * @return string formatted representation of the duration
+     */
+    public String format(Duration duration, TimespanUnits minUnit) {
+        StringBuilder result = new StringBuilder();
+
+        long minutesLeft = duration.toMinutes();
+        boolean addLeadingSpace = false; // to separate next from previous value
+
+        for (int i = 0; i < UNITS_DESCENDING.length; i++) {
+            TimespanUnits currentTimespanUnit = UNITS_DESCENDING[i];
+            if (currentTimespanUnit.getMinutesInThis() < minUnit.getMinutesInThis()) break;
+
+            long currentUnitsLeft = currentTimespanUnit.fromMinutes(minutesLeft);
+            if (currentUnitsLeft == 0) continue; // nothing to add for this unit, continue
+
+            // add the current time unit number and caption
+            if (addLeadingSpace) result.append(' ');
+            result.append(currentUnitsLeft);
+            result.append(' ');
+            result.append(currentUnitsLeft == 1 ? labelsSingular[i] : labelsPlural[i]);
+
+            // update the duration left
+            minutesLeft -= currentTimespanUnit.toMinutes(currentUnitsLeft);
+
+            if (minutesLeft <= 0) {
+                break;
+            }
+            addLeadingSpace = true;
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Version of {@link #format(Duration, TimespanUnits)} with no lower bound
+     */
+    public String format(Duration duration) {
+        return format(duration, TimespanUnits.MINUTES);
+    }
+}
@@ -0,0 +1,50 @@
+package gr.auth.androidproject.plants.format;
+
+import java.time.Duration;
+import java.util.Comparator;
+
+/**
+ * Handles representation and conversion of time units
+ * <p>
+ * Contains YEARS and MONTHS that are not included in {@link Duration} but not ms, ns etc
+ */
+public enum TimespanUnits {
+
+    YEARS(525_600), MONTHS(43_805), // assuming 30.42 day months
+    DAYS(1440), HOURS(60), MINUTES(1);
+    static final Comparator<TimespanUnits> descendingOrder = Comparator
+            .comparingLong(TimespanUnits::getMinutesInThis)
+            .reversed();
+
+    /**
+     * Number of minutes in one unit of the respective time unit
+     */
+    private final int minutesInThis;
+
+    TimespanUnits(int numberOfMinutes) {
+        minutesInThis = numberOfMinutes;
+    }
+
+    long fromMinutes(long minutes) {
+        return minutes / minutesInThis;
+    }
+
+    /**
+     * <p>
+     * Converts a value from the scale of {@code this} to minutes.<br>
+     * </p>
+     * <p>
+     * e.g. YEARS.toMinutes(2) will produce the number of minutes in 2 years
+     * </p>
+     *
+     * @param scaledValue value in the scale of this object
+     * @return equivalent value in minutes
+     */
+    long toMinutes(long scaledValue) {
+        return scaledValue * minutesInThis;
+    }
+
+    int getMinutesInThis() {
+        return minutesInThis;
+    }
+}
@@ -0,0 +1,131 @@
+package gr.auth.androidproject.plants.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ * Counts, latencies, rows and photo bytes of every operation of the plant store.<br>
+ * </p>
+ * <p>
+ * Operations are timed by the store itself:
+ * </p>
+ * <pre>
+ * long start = metrics.start();
+ * ... // run the query
+ * metrics.record(Operation.GET_ALL, start, rows, 0);
+ * </pre>
+ * <p>
+ * To find out what a screen costs, {@link #reset()} the metrics, use the screen and read the
+ * {@link #report()}.
+ * </p>
+ */
+public final class DataLayerMetrics {
+
+    public enum Operation {
+        ADD,
+        ADD_BATCH,
+        GET_ALL,
+        SEARCH,
+        SCAN,
+        GET_BY_ID,
+        UPDATE,
+        REMOVE,
+        RESTORE,
+        PURGE,
+        VACUUM,
+        MAINTENANCE,
+        OPEN_PHOTO,
+        GALLERY_ADD,
+        GALLERY_PAGE,
+        EXPORT,
+        IMPORT,
+        SYNC
+    }
+
+    /**
+     * Filled once in the constructor, only the stats themselves change afterwards
+     */
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    public DataLayerMetrics() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    /**
+     * @return the start time of an operation, to be passed to
+     * {@link #record(Operation, long, long, long)}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a completed operation
+     *
+     * @param operation  the operation
+     * @param startNanos the value returned by {@link #start()} before the operation
+     * @param rows       rows read or written
+     * @param blobBytes  bytes of photos read, written or deleted
+     */
+    public void record(Operation operation, long startNanos, long rows, long blobBytes) {
+        stats.get(operation).record(System.nanoTime() - startNanos, rows, blobBytes);
+    }
+
+    public void recordError(Operation operation) {
+        stats.get(operation).recordError();
+    }
+
+    public void recordCancellation(Operation operation) {
+        stats.get(operation).recordCancellation();
+    }
+
+    public OperationStats get(Operation operation) {
+        return stats.get(operation);
+    }
+
+    public void reset() {
+        for (OperationStats operationStats : stats.values()) {
+            operationStats.reset();
+        }
+    }
+
+    /**
+     * Formats the stats of the operations that have run, one line per operation
+     *
+     * @return human readable report, empty if nothing has run
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            if (s.getCount() == 0 && s.getErrors() == 0 && s.getCancellations() == 0) continue;
+
+            LatencyHistogram latency = s.getLatency();
+            report.append(String.format(Locale.US,
+                    "%s\n  n=%d err=%d cancel=%d rows=%d blob=%s\n" +
+                            "  p50=%s p95=%s p99=%s max=%s\n",
+                    entry.getKey(), s.getCount(), s.getErrors(), s.getCancellations(),
+                    s.getRows(), formatBytes(s.getBlobBytes()),
+                    formatMicros(latency.getValueAtPercentile(50)),
+                    formatMicros(latency.getValueAtPercentile(95)),
+                    formatMicros(latency.getValueAtPercentile(99)),
+                    formatMicros(latency.getMaxMicros())));
+        }
+        return report.toString();
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 1000) return micros + "us";
+        return String.format(Locale.US, "%.1fms", micros / 1000.0);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        if (bytes < 1024 * 1024) return String.format(Locale.US, "%.1fKiB", bytes / 1024.0);
+        return String.format(Locale.US, "%.1fMiB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,133 @@
+package gr.auth.androidproject.plants.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Histogram of latencies in microseconds with log-linear buckets, in the style of HdrHistogram.<br>
+ * </p>
+ * <p>
+ * Values below {@value #SUB_BUCKETS} us get a bucket each, larger values are split in
+ * {@value #HALF_SUB_BUCKETS} buckets per power of two, so any recorded value is reported within
+ * about 3% of its real value. Recording only touches pre-allocated atomic counters, so it is safe
+ * from any thread and does not allocate.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    /**
+     * Values are clamped to 2^36 us, about 19 hours
+     */
+    private static final int MAX_MAGNITUDE = 36;
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    private static final int BUCKET_COUNT =
+            SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency
+     *
+     * @param nanos the latency in nanoseconds, negative values count as zero
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0)));
+    }
+
+    /**
+     * Records a latency
+     *
+     * @param micros the latency in microseconds, negative values count as zero
+     */
+    public void recordMicros(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(value);
+
+        long max;
+        while (value > (max = maxMicros.get())) {
+            if (maxMicros.compareAndSet(max, value)) break;
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * @return the mean latency in microseconds, 0 if nothing has been recorded
+     */
+    public double getMeanMicros() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalMicros.get() / count;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Returns the latency that the argument percentage of the recorded latencies do not exceed.
+     * The result is the upper end of the bucket holding that latency
+     *
+     * @param percentile percentage from 0 to 100
+     * @return latency in microseconds, 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= target) {
+                return Math.min(highestValueIn(bucket), maxMicros.get());
+            }
+        }
+        // recordings that happened while iterating
+        return maxMicros.get();
+    }
+
+    /**
+     * Forgets all the recorded latencies. Latencies recorded at the same time may be partly kept
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        totalCount.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> shift); // in [HALF_SUB_BUCKETS, SUB_BUCKETS)
+        return SUB_BUCKETS + (magnitude - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS
+                + subBucket - HALF_SUB_BUCKETS;
+    }
+
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        return ((long) (subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,150 @@
+package gr.auth.androidproject.plants.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Rolling summary of how a list renders: frame durations with slow and frozen frame counts, the
+ * time spent binding items and formatting their text, and the time spent decoding their photos,
+ * which may happen on another thread.<br>
+ * </p>
+ * <p>
+ * Frames over {@value #SLOW_FRAME_MILLIS} ms miss a 60Hz refresh and frames over
+ * {@value #FROZEN_FRAME_MILLIS} ms are reported as frozen, the same thresholds Android vitals uses.
+ * Recording does not allocate and is safe from any thread.
+ * </p>
+ */
+public final class ListRenderMetrics {
+
+    public static final long SLOW_FRAME_MILLIS = 16;
+    public static final long FROZEN_FRAME_MILLIS = 700;
+
+    private static final long SLOW_FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(SLOW_FRAME_MILLIS);
+    private static final long FROZEN_FRAME_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(FROZEN_FRAME_MILLIS);
+
+    private final LatencyHistogram frames = new LatencyHistogram();
+    private final AtomicLong slowFrames = new AtomicLong();
+    private final AtomicLong frozenFrames = new AtomicLong();
+    private final LatencyHistogram bind = new LatencyHistogram();
+    private final LatencyHistogram format = new LatencyHistogram();
+    private final LatencyHistogram decode = new LatencyHistogram();
+
+    /**
+     * @param nanos total duration of a rendered frame
+     */
+    public void recordFrame(long nanos) {
+        frames.recordNanos(nanos);
+        if (nanos > FROZEN_FRAME_NANOS) {
+            frozenFrames.incrementAndGet();
+        } else if (nanos > SLOW_FRAME_NANOS) {
+            slowFrames.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param nanos time to bind one item, including formatting
+     */
+    public void recordBind(long nanos) {
+        bind.recordNanos(nanos);
+    }
+
+    /**
+     * @param nanos time to format the text of one item
+     */
+    public void recordFormat(long nanos) {
+        format.recordNanos(nanos);
+    }
+
+    /**
+     * @param nanos time to decode the photo of one item
+     */
+    public void recordDecode(long nanos) {
+        decode.recordNanos(nanos);
+    }
+
+    public LatencyHistogram getFrames() {
+        return frames;
+    }
+
+    public long getSlowFrames() {
+        return slowFrames.get();
+    }
+
+    public long getFrozenFrames() {
+        return frozenFrames.get();
+    }
+
+    public LatencyHistogram getBind() {
+        return bind;
+    }
+
+    public LatencyHistogram getFormat() {
+        return format;
+    }
+
+    public LatencyHistogram getDecode() {
+        return decode;
+    }
+
+    public void reset() {
+        frames.reset();
+        slowFrames.set(0);
+        frozenFrames.set(0);
+        bind.reset();
+        format.reset();
+        decode.reset();
+    }
+
+    /**
+     * Formats the summary as a JSON object. Latencies are in microseconds
+     *
+     * @return the summary as JSON
+     */
+    public String toJson() {
+        return "{" +
+                "\"frames\":{" +
+                "\"total\":" + frames.getCount() +
+                ",\"slow\":" + slowFrames.get() +
+                ",\"frozen\":" + frozenFrames.get() +
+                ",\"slowThresholdMs\":" + SLOW_FRAME_MILLIS +
+                ",\"frozenThresholdMs\":" + FROZEN_FRAME_MILLIS +
+                ",\"durationUs\":" + histogramJson(frames) +
+                "}," +
+                "\"bindUs\":" + histogramJson(bind) + "," +
+                "\"formatUs\":" + histogramJson(format) + "," +
+                "\"decodeUs\":" + histogramJson(decode) +
+                "}";
+    }
+
+    /**
+     * Formats the summary for display, one line per measurement
+     *
+     * @return human readable summary
+     */
+    public String report() {
+        return String.format(Locale.US,
+                "frames n=%d slow=%d frozen=%d p95=%dus\n" +
+                        "bind   n=%d p50=%dus p95=%dus p99=%dus\n" +
+                        "format n=%d p50=%dus p95=%dus p99=%dus\n" +
+                        "decode n=%d p50=%dus p95=%dus p99=%dus\n",
+                frames.getCount(), slowFrames.get(), frozenFrames.get(),
+                frames.getValueAtPercentile(95),
+                bind.getCount(), bind.getValueAtPercentile(50),
+                bind.getValueAtPercentile(95), bind.getValueAtPercentile(99),
+                format.getCount(), format.getValueAtPercentile(50),
+                format.getValueAtPercentile(95), format.getValueAtPercentile(99),
+                decode.getCount(), decode.getValueAtPercentile(50),
+                decode.getValueAtPercentile(95), decode.getValueAtPercentile(99));
+    }
+
+    private static String histogramJson(LatencyHistogram histogram) {
+        return String.format(Locale.US,
+                "{\"count\":%d,\"mean\":%.1f,\"p50\":%d,\"p95\":%d,\"p99\":%d,\"max\":%d}",
+                histogram.getCount(), histogram.getMeanMicros(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(95),
+                histogram.getValueAtPercentile(99), histogram.getMaxMicros());
+    }
+}
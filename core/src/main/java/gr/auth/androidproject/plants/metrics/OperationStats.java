@@ -0,0 +1,77 @@
+package gr.auth.androidproject.plants.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latencies of a single kind of data layer operation. Safe to update from any thread
+ */
+public final class OperationStats {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong blobBytes = new AtomicLong();
+
+    OperationStats() {
+    }
+
+    /**
+     * Records a completed operation
+     *
+     * @param nanos     how long the operation took
+     * @param rows      rows read or written
+     * @param blobBytes bytes of photo BLOBs read or written
+     */
+    public void record(long nanos, long rows, long blobBytes) {
+        latency.recordNanos(nanos);
+        this.rows.addAndGet(rows);
+        this.blobBytes.addAndGet(blobBytes);
+    }
+
+    public void recordError() {
+        errors.incrementAndGet();
+    }
+
+    public void recordCancellation() {
+        cancellations.incrementAndGet();
+    }
+
+    /**
+     * @return latencies of the completed operations
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return number of completed operations
+     */
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getCancellations() {
+        return cancellations.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getBlobBytes() {
+        return blobBytes.get();
+    }
+
+    void reset() {
+        latency.reset();
+        errors.set(0);
+        cancellations.set(0);
+        rows.set(0);
+        blobBytes.set(0);
+    }
+}
@@ -0,0 +1,38 @@
+package gr.auth.androidproject.plants.species;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A plant species of the {@link SpeciesCatalog} with its recommended watering interval. A species
+ * can be listed under several names, which all share its id
+ */
+public final class Species {
+
+    private final int id;
+    private final String name;
+    private final Duration wateringInterval;
+
+    public Species(int id, String name, Duration wateringInterval) {
+        this.id = id;
+        this.name = Objects.requireNonNull(name);
+        this.wateringInterval = Objects.requireNonNull(wateringInterval);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Duration getWateringInterval() {
+        return wateringInterval;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
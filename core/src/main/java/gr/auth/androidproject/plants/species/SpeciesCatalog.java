@@ -0,0 +1,162 @@
+package gr.auth.androidproject.plants.species;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>
+ * Read only catalog of plant species, searched by name prefix directly in its binary form.<br>
+ * </p>
+ * <p>
+ * The catalog is meant to be memory mapped. Opening it only checks the header, and a search
+ * binary searches the sorted entries in place, so the only objects created are the species it
+ * returns. File layout, big endian:
+ * </p>
+ * <pre>
+ * magic (int) version (int) entry count (int)
+ * entries, sorted by key:
+ *   key offset (int) key length (short) name length (short) species id (int) interval minutes (int)
+ * strings: the key of every entry followed by its name, UTF-8
+ * </pre>
+ * <p>
+ * Keys are the {@link #normalize(String) normalized} names and are compared as unsigned bytes,
+ * which for UTF-8 is the order of their code points. Key offsets are relative to the start of the
+ * strings. Files are written by {@link SpeciesCatalogWriter}. Safe to search from any thread
+ * </p>
+ */
+public final class SpeciesCatalog {
+
+    static final int MAGIC = 0x53504543; // SPEC
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int ENTRY_SIZE = 16;
+
+    /**
+     * Only read with absolute gets, which do not change the buffer's position
+     */
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int stringsStart;
+
+    /**
+     * @param buffer the catalog file, usually memory mapped. Its position is ignored
+     * @throws IOException if the buffer does not hold a catalog of the current version
+     */
+    public SpeciesCatalog(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate();
+        if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a species catalog");
+        }
+        int version = this.buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported species catalog version " + version);
+        }
+        count = this.buffer.getInt(8);
+        stringsStart = HEADER_SIZE + count * ENTRY_SIZE;
+        if (count < 0 || stringsStart > this.buffer.capacity()) {
+            throw new IOException("Truncated species catalog");
+        }
+    }
+
+    /**
+     * Key a name is sorted and searched by
+     *
+     * @param name a species name or the start of one
+     * @return the name without surrounding whitespace in lower case
+     */
+    public static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return number of names in the catalog
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Finds the species with a name that starts with the argument text, ignoring case
+     *
+     * @param prefix the start of the name
+     * @param limit  most species to return
+     * @return the matching species in name order, empty if the prefix is blank
+     */
+    public List<Species> search(String prefix, int limit) {
+        byte[] key = normalize(prefix).getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<Species> result = new ArrayList<>(Math.min(limit, 16));
+        for (int entry = lowerBound(key); entry < count && result.size() < limit; entry++) {
+            if (!startsWith(entry, key)) break;
+            result.add(species(entry));
+        }
+        return result;
+    }
+
+    /**
+     * @return index of the first entry whose key is not smaller than the argument key
+     */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareKey(int entry, byte[] key) {
+        int offset = keyOffset(entry);
+        int length = keyLength(entry);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int entry, byte[] prefix) {
+        if (keyLength(entry) < prefix.length) return false;
+
+        int offset = keyOffset(entry);
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private Species species(int entry) {
+        int position = HEADER_SIZE + entry * ENTRY_SIZE;
+        int nameOffset = keyOffset(entry) + keyLength(entry);
+        int nameLength = buffer.getShort(position + 6) & 0xFFFF;
+        byte[] name = new byte[nameLength];
+        ByteBuffer view = buffer.duplicate();
+        view.position(nameOffset);
+        view.get(name);
+        return new Species(buffer.getInt(position + 8), new String(name, StandardCharsets.UTF_8),
+                Duration.ofMinutes(buffer.getInt(position + 12)));
+    }
+
+    private int keyOffset(int entry) {
+        return stringsStart + buffer.getInt(HEADER_SIZE + entry * ENTRY_SIZE);
+    }
+
+    private int keyLength(int entry) {
+        return buffer.getShort(HEADER_SIZE + entry * ENTRY_SIZE + 4) & 0xFFFF;
+    }
+}
@@ -0,0 +1,145 @@
+package gr.auth.androidproject.plants.species;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ * Writes {@link SpeciesCatalog} files.<br>
+ * </p>
+ * <p>
+ * Run as a program it compiles a species list into a catalog, which is how the catalog bundled
+ * with the app is built:
+ * </p>
+ * <pre>
+ * SpeciesCatalogWriter species.csv species.catalog
+ * </pre>
+ * <p>
+ * Every line of the list is {@code id,name,watering interval in days}. The name may contain
+ * commas, blank lines and lines starting with # are skipped
+ * </p>
+ */
+public final class SpeciesCatalogWriter {
+
+    private SpeciesCatalogWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: SpeciesCatalogWriter <species list> <catalog>");
+            System.exit(2);
+        }
+        List<Species> species;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]),
+                StandardCharsets.UTF_8)) {
+            species = read(reader);
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[1])))) {
+            write(species, out);
+        }
+    }
+
+    /**
+     * Parses a species list
+     *
+     * @param reader the list, not closed
+     * @return the species in the list
+     * @throws IOException if the list cannot be read or a line is malformed
+     */
+    public static List<Species> read(BufferedReader reader) throws IOException {
+        List<Species> species = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            int first = line.indexOf(',');
+            int last = line.lastIndexOf(',');
+            if (first < 0 || first == last) {
+                throw new IOException("Malformed species on line " + lineNumber + ": " + line);
+            }
+            try {
+                species.add(new Species(
+                        Integer.parseInt(line.substring(0, first).trim()),
+                        line.substring(first + 1, last).trim(),
+                        Duration.ofDays(Integer.parseInt(line.substring(last + 1).trim()))));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed species on line " + lineNumber + ": " + line, e);
+            }
+        }
+        return species;
+    }
+
+    /**
+     * Writes a catalog of the argument species
+     *
+     * @param species the species, in any order
+     * @param out     where to write the catalog, not closed
+     * @throws IOException if writing fails
+     */
+    public static void write(Collection<Species> species, OutputStream out) throws IOException {
+        List<Entry> entries = new ArrayList<>(species.size());
+        for (Species s : species) {
+            entries.add(new Entry(s));
+        }
+        entries.sort(Entry::compareTo);
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(SpeciesCatalog.MAGIC);
+        data.writeInt(SpeciesCatalog.VERSION);
+        data.writeInt(entries.size());
+        for (Entry entry : entries) {
+            data.writeInt(strings.size());
+            data.writeShort(entry.key.length);
+            data.writeShort(entry.name.length);
+            data.writeInt(entry.species.getId());
+            data.writeInt(Math.toIntExact(entry.species.getWateringInterval().toMinutes()));
+            strings.write(entry.key);
+            strings.write(entry.name);
+        }
+        strings.writeTo(data);
+        data.flush();
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final Species species;
+        final byte[] key;
+        final byte[] name;
+
+        Entry(Species species) {
+            this.species = species;
+            this.key = SpeciesCatalog.normalize(species.getName()).getBytes(StandardCharsets.UTF_8);
+            this.name = species.getName().getBytes(StandardCharsets.UTF_8);
+            if (key.length == 0 || key.length > 0xFFFF || name.length > 0xFFFF) {
+                throw new IllegalArgumentException("Bad species name: " + species.getName());
+            }
+        }
+
+        /**
+         * Unsigned byte order of the keys, the order the catalog is searched in
+         */
+        @Override
+        public int compareTo(Entry other) {
+            int common = Math.min(key.length, other.key.length);
+            for (int i = 0; i < common; i++) {
+                int difference = (key[i] & 0xFF) - (other.key[i] & 0xFF);
+                if (difference != 0) return difference;
+            }
+            return key.length - other.key.length;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package gr.auth.androidproject.plants.sync;
+
+/**
+ * Decides which change of a plant survives when it was changed both locally and on the server
+ */
+public interface ConflictResolver {
+
+    /**
+     * The later change wins, ties are broken by device id so that every device picks the same one
+     */
+    ConflictResolver LAST_WRITER_WINS = (local, remote) -> {
+        if (local.getModifiedAt() != remote.getModifiedAt()) {
+            return local.getModifiedAt() > remote.getModifiedAt();
+        }
+        return local.getDeviceId().compareTo(remote.getDeviceId()) > 0;
+    };
+
+    /**
+     * @param local  the pending change of this device
+     * @param remote the change pulled from the server
+     * @return true to keep the local change and push it over the remote one
+     */
+    boolean keepLocal(SyncChange local, SyncChange remote);
+}
@@ -0,0 +1,104 @@
+package gr.auth.androidproject.plants.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * In-process stand-in for the sync server, holding everything in memory.<br>
+ * </p>
+ * <p>
+ * It keeps the latest change of every plant, tombstones included, under a version that increases
+ * with every accepted change; the sync token of a device is the last version it pulled. A pushed
+ * change is accepted only if it is based on the stored version of its plant, which is all the
+ * server needs to do for devices to resolve conflicts themselves.
+ * </p>
+ */
+public class LocalSyncServer implements SyncServer {
+
+    private final Map<String, SyncChange> latest = new HashMap<>();
+    private final NavigableMap<Long, String> syncIdsByVersion = new TreeMap<>();
+    private final Map<String, byte[]> photos = new HashMap<>();
+    private long version = 0;
+
+    @Override
+    public synchronized byte[] push(byte[] request) throws IOException {
+        List<SyncChange> changes = SyncProtocol.decodePushRequest(request);
+        long[] serverVersions = new long[changes.size()];
+        for (int i = 0; i < changes.size(); i++) {
+            SyncChange change = changes.get(i);
+            SyncChange stored = latest.get(change.getSyncId());
+            long storedVersion = stored == null ? 0 : stored.getServerVersion();
+            if (change.getServerVersion() != storedVersion) continue;
+
+            if (change.getPhotoHash().isPresent()
+                    && !photos.containsKey(change.getPhotoHash().get())) {
+                throw new IOException("Photo " + change.getPhotoHash().get() + " was not uploaded");
+            }
+            serverVersions[i] = ++version;
+            latest.put(change.getSyncId(), change.withServerVersion(version));
+            syncIdsByVersion.remove(storedVersion);
+            syncIdsByVersion.put(version, change.getSyncId());
+        }
+        return SyncProtocol.encodePushResponse(serverVersions);
+    }
+
+    @Override
+    public synchronized byte[] pull(byte[] request) throws IOException {
+        SyncProtocol.PullRequest pull = SyncProtocol.decodePullRequest(request);
+        List<SyncChange> changes = new ArrayList<>(Math.min(pull.limit, latest.size()));
+        long syncToken = pull.syncToken;
+        for (String syncId : syncIdsByVersion.tailMap(pull.syncToken, false).values()) {
+            if (changes.size() == pull.limit) break;
+            SyncChange change = latest.get(syncId);
+            if (!change.getDeviceId().equals(pull.deviceId)) {
+                changes.add(change);
+            }
+            syncToken = change.getServerVersion();
+        }
+        boolean hasMore = syncIdsByVersion.higherKey(syncToken) != null;
+        return SyncProtocol.encodePullResponse(
+                new SyncProtocol.PullResponse(syncToken, hasMore, changes));
+    }
+
+    @Override
+    public synchronized byte[] findMissingPhotos(byte[] request) throws IOException {
+        List<String> missing = new ArrayList<>();
+        for (String hash : SyncProtocol.decodePhotoHashes(request)) {
+            if (!photos.containsKey(hash)) {
+                missing.add(hash);
+            }
+        }
+        return SyncProtocol.encodePhotoHashes(missing);
+    }
+
+    @Override
+    public synchronized void uploadPhoto(String hash, byte[] photo) {
+        photos.put(hash, photo);
+    }
+
+    @Override
+    public synchronized byte[] downloadPhoto(String hash) throws IOException {
+        byte[] photo = photos.get(hash);
+        if (photo == null) {
+            throw new IOException("No photo " + hash);
+        }
+        return photo;
+    }
+
+    /**
+     * @return number of plants the server knows of, tombstones included
+     */
+    public synchronized int getPlantCount() {
+        return latest.size();
+    }
+
+    public synchronized int getPhotoCount() {
+        return photos.size();
+    }
+}
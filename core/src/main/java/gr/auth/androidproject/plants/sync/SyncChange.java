@@ -0,0 +1,147 @@
+package gr.auth.androidproject.plants.sync;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+/**
+ * <p>
+ * One entry of the change log: the latest state of a plant, or a tombstone if it was removed.<br>
+ * </p>
+ * <p>
+ * Plants are identified by their sync id, which is the same on every device, since local ids are
+ * only unique on the device that assigned them. The photo is only referenced by its hash and sent
+ * separately.
+ * </p>
+ */
+public final class SyncChange {
+
+    private final String syncId;
+    private final boolean deleted;
+    private final String name;
+    private final LocalDateTime birthday;
+    private final LocalDateTime lastWatered;
+    private final Duration wateringInterval;
+    private final String photoHash;
+    private final long modifiedAt;
+    private final String deviceId;
+    private final long serverVersion;
+    private final long localVersion;
+
+    SyncChange(String syncId, boolean deleted, String name, LocalDateTime birthday,
+               LocalDateTime lastWatered, Duration wateringInterval, String photoHash,
+               long modifiedAt, String deviceId, long serverVersion, long localVersion) {
+        this.syncId = syncId;
+        this.deleted = deleted;
+        this.name = name;
+        this.birthday = birthday;
+        this.lastWatered = lastWatered;
+        this.wateringInterval = wateringInterval;
+        this.photoHash = photoHash;
+        this.modifiedAt = modifiedAt;
+        this.deviceId = deviceId;
+        this.serverVersion = serverVersion;
+        this.localVersion = localVersion;
+    }
+
+    /**
+     * @param syncId        id of the plant on every device
+     * @param plant         current state of the plant, its photo is referenced by hash
+     * @param modifiedAt    epoch millisecond of the change, used to resolve conflicts
+     * @param deviceId      id of the device that made the change
+     * @param serverVersion server version the change is based on, 0 if never synced
+     * @param localVersion  local version of the change, not sent to the server
+     * @return a change that creates or updates the plant
+     */
+    public static SyncChange upsert(String syncId, Plant plant, long modifiedAt, String deviceId,
+                                    long serverVersion, long localVersion) {
+        return new SyncChange(syncId, false, plant.getName(), plant.getBirthday().orElse(null),
+                plant.getLastWatered(), plant.getWateringInterval(),
+                plant.getPhoto().map(PlantPhoto::getHash).orElse(null),
+                modifiedAt, deviceId, serverVersion, localVersion);
+    }
+
+    /**
+     * @return a change that removes the plant
+     * @see #upsert(String, Plant, long, String, long, long)
+     */
+    public static SyncChange tombstone(String syncId, long modifiedAt, String deviceId,
+                                       long serverVersion, long localVersion) {
+        return new SyncChange(syncId, true, null, null, null, null, null,
+                modifiedAt, deviceId, serverVersion, localVersion);
+    }
+
+    /**
+     * @return a copy of this change with the version the server stored it with
+     */
+    public SyncChange withServerVersion(long serverVersion) {
+        return new SyncChange(syncId, deleted, name, birthday, lastWatered, wateringInterval,
+                photoHash, modifiedAt, deviceId, serverVersion, localVersion);
+    }
+
+    /**
+     * @param id local id of the plant
+     * @return the plant of this change without its photo, which is stored separately
+     * @throws IllegalStateException if this change is a tombstone
+     */
+    public Plant toPlant(long id) {
+        if (deleted) {
+            throw new IllegalStateException("Tombstone of " + syncId + " has no plant");
+        }
+        return new Plant(id, name, birthday, lastWatered, wateringInterval, null);
+    }
+
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Optional<LocalDateTime> getBirthday() {
+        return Optional.ofNullable(birthday);
+    }
+
+    public LocalDateTime getLastWatered() {
+        return lastWatered;
+    }
+
+    public Duration getWateringInterval() {
+        return wateringInterval;
+    }
+
+    public Optional<String> getPhotoHash() {
+        return Optional.ofNullable(photoHash);
+    }
+
+    public long getModifiedAt() {
+        return modifiedAt;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * @return the version the change is based on when pushed, or the version the server stored it
+     * with when pulled
+     */
+    public long getServerVersion() {
+        return serverVersion;
+    }
+
+    /**
+     * @return the local version of a pending change, 0 for changes pulled from the server
+     */
+    public long getLocalVersion() {
+        return localVersion;
+    }
+}
@@ -0,0 +1,272 @@
+package gr.auth.androidproject.plants.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+/**
+ * <p>
+ * Exchanges the changes made since the last sync with a {@link SyncServer}.<br>
+ * </p>
+ * <p>
+ * A run first pulls the changes stored after the local sync token, resolving plants that were also
+ * changed locally with a {@link ConflictResolver}, then pushes the pending local changes in
+ * batches. The server only accepts a change based on its current version of the plant, so a push
+ * that raced with another device is rejected and the run pulls and pushes again, at most
+ * {@value #MAX_ROUNDS} times. Rejected changes stay pending for the next run.
+ * </p>
+ * <p>
+ * Photos are sent by hash before the changes that reference them and only if the server does not
+ * already have them, and pulled photos are downloaded before the changes that reference them are
+ * applied, so no request is made while the store is writing. Runs must not overlap.
+ * </p>
+ * <p>
+ * The requests are made on the calling thread. The reads and writes of the change log can be
+ * handed to another thread with {@link #setLocalExecutor(ExecutorService)}, so a store that is
+ * confined to a database thread is never blocked by the network.
+ * </p>
+ */
+public class SyncEngine {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    static final int MAX_ROUNDS = 3;
+
+    private final SyncLocalStore store;
+    private final SyncServer server;
+    private final ConflictResolver resolver;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private ExecutorService localExecutor;
+
+    public SyncEngine(SyncLocalStore store, SyncServer server) {
+        this(store, server, ConflictResolver.LAST_WRITER_WINS);
+    }
+
+    public SyncEngine(SyncLocalStore store, SyncServer server, ConflictResolver resolver) {
+        this.store = store;
+        this.server = server;
+        this.resolver = resolver;
+    }
+
+    /**
+     * @param batchSize maximum number of changes in a push or pull message
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param localExecutor runs the calls to the change log, except for the photo calls, or null
+     *                      to make them on the calling thread
+     */
+    public void setLocalExecutor(ExecutorService localExecutor) {
+        this.localExecutor = localExecutor;
+    }
+
+    /**
+     * Pulls the remote changes and pushes the local ones
+     *
+     * @return what the run did
+     * @throws IOException if a request fails, the changes of completed batches are kept
+     */
+    public SyncReport sync() throws IOException {
+        SyncReport report = new SyncReport();
+        do {
+            report.rounds++;
+            pull(report);
+            report.rejected = push(report);
+        } while (report.rejected > 0 && report.rounds < MAX_ROUNDS);
+        return report;
+    }
+
+    private void pull(SyncReport report) throws IOException {
+        long syncToken = local(store::getSyncToken);
+        String deviceId = local(store::getDeviceId);
+        SyncProtocol.PullResponse response;
+        do {
+            byte[] request = SyncProtocol.encodePullRequest(
+                    new SyncProtocol.PullRequest(deviceId, syncToken, batchSize));
+            byte[] message = server.pull(request);
+            report.bytesSent += request.length;
+            report.bytesReceived += message.length;
+            response = SyncProtocol.decodePullResponse(message);
+            report.pulled += response.changes.size();
+            downloadMissingPhotos(response.changes, report);
+
+            SyncProtocol.PullResponse pulled = response;
+            local(() -> {
+                apply(pulled, report);
+                return null;
+            });
+            syncToken = response.syncToken;
+        } while (response.hasMore);
+    }
+
+    /**
+     * Resolves the pulled changes against the pending ones and applies them. Runs as one call on
+     * the local executor, so no local change can be made between reading and writing the log
+     */
+    private void apply(SyncProtocol.PullResponse response, SyncReport report) throws IOException {
+        List<String> syncIds = new ArrayList<>(response.changes.size());
+        for (SyncChange change : response.changes) {
+            syncIds.add(change.getSyncId());
+        }
+        Map<String, SyncChange> pending = store.getPendingChanges(syncIds);
+
+        List<SyncChange> changes = new ArrayList<>(response.changes.size());
+        Map<String, Long> rebased = new HashMap<>();
+        for (SyncChange remote : response.changes) {
+            SyncChange local = pending.get(remote.getSyncId());
+            if (local == null) {
+                changes.add(remote);
+            } else if (local.getServerVersion() < remote.getServerVersion()) {
+                // otherwise this is the device's own change coming back
+                report.conflicts++;
+                if (resolver.keepLocal(local, remote)) {
+                    rebased.put(remote.getSyncId(), remote.getServerVersion());
+                } else {
+                    changes.add(remote);
+                }
+            }
+        }
+
+        store.applyRemoteChanges(changes, rebased, response.syncToken);
+    }
+
+    /**
+     * @return number of changes the server rejected
+     */
+    private long push(SyncReport report) throws IOException {
+        long rejected = 0;
+        String after = null;
+        List<SyncChange> changes;
+        while (!(changes = pendingChanges(after)).isEmpty()) {
+            uploadMissingPhotos(changes, report);
+
+            byte[] request = SyncProtocol.encodePushRequest(changes);
+            byte[] message = server.push(request);
+            report.bytesSent += request.length;
+            report.bytesReceived += message.length;
+            long[] serverVersions = SyncProtocol.decodePushResponse(message);
+            if (serverVersions.length != changes.size()) {
+                throw new IOException("Pushed " + changes.size() + " changes but got " +
+                        serverVersions.length + " versions");
+            }
+
+            List<SyncChange> pushed = changes;
+            local(() -> {
+                store.markPushed(pushed, serverVersions);
+                return null;
+            });
+            for (long serverVersion : serverVersions) {
+                if (serverVersion > 0) {
+                    report.pushed++;
+                } else {
+                    rejected++;
+                }
+            }
+            after = changes.get(changes.size() - 1).getSyncId();
+        }
+        return rejected;
+    }
+
+    private void uploadMissingPhotos(List<SyncChange> changes, SyncReport report)
+            throws IOException {
+        Set<String> hashes = new LinkedHashSet<>();
+        for (SyncChange change : changes) {
+            change.getPhotoHash().ifPresent(hashes::add);
+        }
+        if (hashes.isEmpty()) return;
+
+        byte[] request = SyncProtocol.encodePhotoHashes(hashes);
+        byte[] message = server.findMissingPhotos(request);
+        report.bytesSent += request.length;
+        report.bytesReceived += message.length;
+
+        for (String hash : SyncProtocol.decodePhotoHashes(message)) {
+            byte[] photo;
+            try (InputStream in = store.openPhoto(hash)) {
+                photo = readAll(in);
+            }
+            server.uploadPhoto(hash, photo);
+            report.bytesSent += hash.length() + photo.length;
+            report.photosUploaded++;
+        }
+    }
+
+    private List<SyncChange> pendingChanges(String after) throws IOException {
+        return local(() -> store.getPendingChanges(after, batchSize));
+    }
+
+    /**
+     * Downloads the photos of the argument changes that are not stored yet, one at a time
+     */
+    private void downloadMissingPhotos(List<SyncChange> changes, SyncReport report)
+            throws IOException {
+        Set<String> hashes = new LinkedHashSet<>();
+        for (SyncChange change : changes) {
+            change.getPhotoHash().ifPresent(hashes::add);
+        }
+
+        for (String hash : hashes) {
+            if (store.hasPhoto(hash)) continue;
+
+            byte[] photo = server.downloadPhoto(hash);
+            report.bytesSent += hash.length();
+            report.bytesReceived += photo.length;
+            if (!hash.equals(PlantPhoto.hashOf(photo))) {
+                throw new IOException("Downloaded photo does not match hash " + hash);
+            }
+            store.storePhoto(hash, photo);
+            report.photosDownloaded++;
+        }
+    }
+
+    /**
+     * Runs a call to the change log on the local executor and waits for it
+     */
+    private <T> T local(LocalCall<T> call) throws IOException {
+        if (localExecutor == null) {
+            return call.run();
+        }
+        try {
+            return localExecutor.submit(call::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the local store");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private interface LocalCall<T> {
+        T run() throws IOException;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package gr.auth.androidproject.plants.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * The change log of the device, kept by the plant store.<br>
+ * </p>
+ * <p>
+ * Every plant has a local version that is increased on each change and the local version that was
+ * last synced; a plant is pending while the two differ. Removed plants leave a tombstone that is
+ * pending until it is pushed.
+ * </p>
+ * <p>
+ * The photo methods may be called from any thread, the others are called from one thread at a
+ * time.
+ * </p>
+ */
+public interface SyncLocalStore {
+
+    /**
+     * @return id of this device, the same for the lifetime of the store
+     */
+    String getDeviceId();
+
+    /**
+     * @return version of the last change pulled from the server, 0 if never synced
+     */
+    long getSyncToken();
+
+    /**
+     * @param afterSyncId only changes with a greater sync id are returned, null for all
+     * @param limit       maximum number of changes
+     * @return pending changes and tombstones in sync id order
+     */
+    List<SyncChange> getPendingChanges(String afterSyncId, int limit);
+
+    /**
+     * @param syncIds sync ids to look up
+     * @return pending changes of the argument plants by sync id
+     */
+    Map<String, SyncChange> getPendingChanges(Collection<String> syncIds);
+
+    /**
+     * Marks pushed changes as synced. A plant that changed again while it was pushed stays
+     * pending, now based on the new server version
+     *
+     * @param changes        the pushed changes
+     * @param serverVersions version each change was stored with, 0 if it was rejected
+     */
+    void markPushed(List<SyncChange> changes, long[] serverVersions);
+
+    /**
+     * Applies pulled changes and stores the new sync token, all or nothing. Changes that are not
+     * newer than the stored plant are skipped. The photos of the changes are stored before this
+     * is called
+     *
+     * @param changes   changes that replace the local state of their plants
+     * @param rebased   server versions of plants whose pending change won a conflict, by sync id
+     * @param syncToken the new sync token
+     * @throws IOException if a change cannot be stored
+     */
+    void applyRemoteChanges(List<SyncChange> changes, Map<String, Long> rebased, long syncToken)
+            throws IOException;
+
+    /**
+     * @param hash hash of a photo
+     * @return true if the photo is stored
+     */
+    boolean hasPhoto(String hash);
+
+    /**
+     * Stores a downloaded photo, before the changes that reference it are applied
+     *
+     * @param hash  hash of the photo, already checked against it
+     * @param photo the encoded photo
+     * @throws IOException if the photo cannot be stored
+     */
+    void storePhoto(String hash, byte[] photo) throws IOException;
+
+    /**
+     * @param hash hash of a stored photo
+     * @return stream of the encoded photo
+     * @throws IOException if there is no photo with this hash
+     */
+    InputStream openPhoto(String hash) throws IOException;
+}
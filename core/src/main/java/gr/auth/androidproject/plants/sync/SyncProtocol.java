@@ -0,0 +1,269 @@
+package gr.auth.androidproject.plants.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>
+ * Encodes the messages exchanged with a {@link SyncServer}.<br>
+ * </p>
+ * <p>
+ * Every message except photos is a gzip compressed stream of big endian values. Photos are sent as
+ * they are stored, since image formats are already compressed. Layouts:
+ * </p>
+ * <pre>
+ * push request:  version (int) count (int) change...
+ * push response: version (int) count (int) server version (long)... 0 for a rejected change
+ * pull request:  version (int) device id (string) sync token (long) limit (int)
+ * pull response: version (int) sync token (long) has more (byte) count (int) change...
+ * photo hashes:  version (int) count (int) hash (string)...
+ * change:        sync id (string) deleted (byte) modified at (long) device id (string)
+ *                server version (long)
+ *                [name (string) last watered (epoch second long, nano int)
+ *                 watering interval (second long, nano int)
+ *                 has birthday (byte) [birthday (epoch second long, nano int)]
+ *                 has photo (byte) [photo hash (string)]]
+ * </pre>
+ * <p>
+ * Strings are modified UTF-8 with a 2 byte length and times are UTC.
+ * </p>
+ */
+public final class SyncProtocol {
+
+    static final int VERSION = 1;
+
+    private SyncProtocol() {
+    }
+
+    public static byte[] encodePushRequest(List<SyncChange> changes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = compressed(bytes)) {
+            out.writeInt(changes.size());
+            for (SyncChange change : changes) {
+                writeChange(out, change);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<SyncChange> decodePushRequest(byte[] message) throws IOException {
+        try (DataInputStream in = decompressed(message)) {
+            return readChanges(in);
+        }
+    }
+
+    /**
+     * @param serverVersions version each pushed change was stored with, 0 if it was rejected
+     */
+    public static byte[] encodePushResponse(long[] serverVersions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = compressed(bytes)) {
+            out.writeInt(serverVersions.length);
+            for (long serverVersion : serverVersions) {
+                out.writeLong(serverVersion);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static long[] decodePushResponse(byte[] message) throws IOException {
+        try (DataInputStream in = decompressed(message)) {
+            long[] serverVersions = new long[readCount(in)];
+            for (int i = 0; i < serverVersions.length; i++) {
+                serverVersions[i] = in.readLong();
+            }
+            return serverVersions;
+        }
+    }
+
+    public static byte[] encodePullRequest(PullRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = compressed(bytes)) {
+            out.writeUTF(request.deviceId);
+            out.writeLong(request.syncToken);
+            out.writeInt(request.limit);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static PullRequest decodePullRequest(byte[] message) throws IOException {
+        try (DataInputStream in = decompressed(message)) {
+            return new PullRequest(in.readUTF(), in.readLong(), in.readInt());
+        }
+    }
+
+    public static byte[] encodePullResponse(PullResponse response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = compressed(bytes)) {
+            out.writeLong(response.syncToken);
+            out.writeBoolean(response.hasMore);
+            out.writeInt(response.changes.size());
+            for (SyncChange change : response.changes) {
+                writeChange(out, change);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static PullResponse decodePullResponse(byte[] message) throws IOException {
+        try (DataInputStream in = decompressed(message)) {
+            long syncToken = in.readLong();
+            boolean hasMore = in.readBoolean();
+            return new PullResponse(syncToken, hasMore, readChanges(in));
+        }
+    }
+
+    public static byte[] encodePhotoHashes(Collection<String> hashes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = compressed(bytes)) {
+            out.writeInt(hashes.size());
+            for (String hash : hashes) {
+                out.writeUTF(hash);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<String> decodePhotoHashes(byte[] message) throws IOException {
+        try (DataInputStream in = decompressed(message)) {
+            int count = readCount(in);
+            List<String> hashes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                hashes.add(in.readUTF());
+            }
+            return hashes;
+        }
+    }
+
+    private static DataOutputStream compressed(ByteArrayOutputStream bytes) throws IOException {
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+        out.writeInt(VERSION);
+        return out;
+    }
+
+    private static DataInputStream decompressed(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(message)));
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported sync protocol version " + version);
+        }
+        return in;
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative count " + count);
+        }
+        return count;
+    }
+
+    private static void writeChange(DataOutputStream out, SyncChange change) throws IOException {
+        out.writeUTF(change.getSyncId());
+        out.writeBoolean(change.isDeleted());
+        out.writeLong(change.getModifiedAt());
+        out.writeUTF(change.getDeviceId());
+        out.writeLong(change.getServerVersion());
+        if (change.isDeleted()) return;
+
+        out.writeUTF(change.getName());
+        writeDateTime(out, change.getLastWatered());
+        out.writeLong(change.getWateringInterval().getSeconds());
+        out.writeInt(change.getWateringInterval().getNano());
+        out.writeBoolean(change.getBirthday().isPresent());
+        if (change.getBirthday().isPresent()) {
+            writeDateTime(out, change.getBirthday().get());
+        }
+        out.writeBoolean(change.getPhotoHash().isPresent());
+        if (change.getPhotoHash().isPresent()) {
+            out.writeUTF(change.getPhotoHash().get());
+        }
+    }
+
+    private static List<SyncChange> readChanges(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        if (count == 0) return Collections.emptyList();
+
+        List<SyncChange> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changes.add(readChange(in));
+        }
+        return changes;
+    }
+
+    private static SyncChange readChange(DataInputStream in) throws IOException {
+        String syncId = in.readUTF();
+        boolean deleted = in.readBoolean();
+        long modifiedAt = in.readLong();
+        String deviceId = in.readUTF();
+        long serverVersion = in.readLong();
+        if (deleted) {
+            return SyncChange.tombstone(syncId, modifiedAt, deviceId, serverVersion, 0);
+        }
+
+        String name = in.readUTF();
+        LocalDateTime lastWatered = readDateTime(in);
+        Duration wateringInterval = Duration.ofSeconds(in.readLong(), in.readInt());
+        LocalDateTime birthday = in.readBoolean() ? readDateTime(in) : null;
+        String photoHash = in.readBoolean() ? in.readUTF() : null;
+        return new SyncChange(syncId, false, name, birthday, lastWatered, wateringInterval,
+                photoHash, modifiedAt, deviceId, serverVersion, 0);
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime)
+            throws IOException {
+        out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    /**
+     * Asks for at most {@code limit} changes stored after the sync token. Changes made by the
+     * asking device are left out, it already has them
+     */
+    public static final class PullRequest {
+        public final String deviceId;
+        public final long syncToken;
+        public final int limit;
+
+        public PullRequest(String deviceId, long syncToken, int limit) {
+            this.deviceId = deviceId;
+            this.syncToken = syncToken;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Changes stored after the requested sync token, in the order they were stored
+     */
+    public static final class PullResponse {
+        /**
+         * Token to pull from next time, the version of the last change
+         */
+        public final long syncToken;
+        public final boolean hasMore;
+        public final List<SyncChange> changes;
+
+        public PullResponse(long syncToken, boolean hasMore, List<SyncChange> changes) {
+            this.syncToken = syncToken;
+            this.hasMore = hasMore;
+            this.changes = changes;
+        }
+    }
+}
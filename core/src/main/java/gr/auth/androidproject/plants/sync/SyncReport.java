@@ -0,0 +1,79 @@
+package gr.auth.androidproject.plants.sync;
+
+import java.util.Locale;
+
+/**
+ * What a {@link SyncEngine#sync()} run did and how many bytes it sent and received
+ */
+public final class SyncReport {
+
+    int rounds;
+    long pushed;
+    long rejected;
+    long pulled;
+    long conflicts;
+    long photosUploaded;
+    long photosDownloaded;
+    long bytesSent;
+    long bytesReceived;
+
+    /**
+     * @return number of pull and push rounds, more than one if pushes were rejected
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return number of local changes the server accepted
+     */
+    public long getPushed() {
+        return pushed;
+    }
+
+    /**
+     * @return number of local changes still pending because the server kept rejecting them
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return number of changes of other devices pulled from the server
+     */
+    public long getPulled() {
+        return pulled;
+    }
+
+    /**
+     * @return number of plants changed both locally and on the server
+     */
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getPhotosUploaded() {
+        return photosUploaded;
+    }
+
+    public long getPhotosDownloaded() {
+        return photosDownloaded;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d rounds, pushed %d (%d rejected), pulled %d, %d conflicts, " +
+                        "photos %d up %d down, %d bytes sent, %d bytes received",
+                rounds, pushed, rejected, pulled, conflicts, photosUploaded, photosDownloaded,
+                bytesSent, bytesReceived);
+    }
+}
@@ -0,0 +1,47 @@
+package gr.auth.androidproject.plants.sync;
+
+import java.io.IOException;
+
+/**
+ * The remote side of sync. Requests and responses are the encoded {@link SyncProtocol} messages,
+ * so implementations are a thin transport and every byte on the wire can be counted
+ */
+public interface SyncServer {
+
+    /**
+     * Stores changes whose server version is still the one they are based on and rejects the rest
+     *
+     * @param request encoded push request
+     * @return encoded push response
+     * @throws IOException if the request fails
+     */
+    byte[] push(byte[] request) throws IOException;
+
+    /**
+     * @param request encoded pull request
+     * @return encoded pull response
+     * @throws IOException if the request fails
+     */
+    byte[] pull(byte[] request) throws IOException;
+
+    /**
+     * @param request encoded photo hashes
+     * @return encoded hashes of the photos the server does not have
+     * @throws IOException if the request fails
+     */
+    byte[] findMissingPhotos(byte[] request) throws IOException;
+
+    /**
+     * @param hash  hash of the photo
+     * @param photo encoded photo
+     * @throws IOException if the request fails
+     */
+    void uploadPhoto(String hash, byte[] photo) throws IOException;
+
+    /**
+     * @param hash hash of the photo
+     * @return encoded photo
+     * @throws IOException if the request fails or the server does not have the photo
+     */
+    byte[] downloadPhoto(String hash) throws IOException;
+}
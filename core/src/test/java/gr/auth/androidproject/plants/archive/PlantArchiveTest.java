@@ -0,0 +1,202 @@
+package gr.auth.androidproject.plants.archive;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gr.auth.androidproject.plants.dataset.PlantDatasetGenerator;
+import gr.auth.androidproject.plants.domain.PhotoFileStore;
+import gr.auth.androidproject.plants.domain.PhotoSource;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static gr.auth.androidproject.plants.domain.TestPlants.plant;
+import static org.junit.Assert.*;
+
+public class PlantArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PhotoFileStore photos;
+
+    @Before
+    public void setUp() {
+        photos = new PhotoFileStore(new File(folder.getRoot(), "photos"));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        List<Plant> plants = new PlantDatasetGenerator(3, NOW)
+                .setPhotoRatio(0.5)
+                .setPhotoSide(32)
+                .generate(100);
+        for (int i = 0; i < plants.size(); i++) {
+            plants.get(i).setId(i + 1);
+            plants.get(i).setSpeciesId(i % 3 == 0 ? null : i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlantArchiveWriter writer = new PlantArchiveWriter(out, plants.size());
+        for (Plant plant : plants) {
+            writer.write(plant, plant.getId() % 2 == 0 ? "sync-" + plant.getId() : null);
+        }
+        writer.finish();
+
+        PlantArchiveReader reader =
+                new PlantArchiveReader(new ByteArrayInputStream(out.toByteArray()), photos);
+        assertEquals(100, reader.getCount());
+        List<Plant> read = new ArrayList<>();
+        List<String> syncIds = new ArrayList<>();
+        Plant plant;
+        while ((plant = reader.next()) != null) {
+            read.add(plant);
+            syncIds.add(reader.getSyncId());
+        }
+
+        assertEquals(plants.size(), read.size());
+        for (int i = 0; i < plants.size(); i++) {
+            assertEquals(plants.get(i).getId(), read.get(i).getId());
+            assertTrue(plants.get(i).hasSameContent(read.get(i)));
+            assertEquals(plants.get(i).getSpeciesId(), read.get(i).getSpeciesId());
+            assertEquals(plants.get(i).getPhoto().map(PlantPhoto::getHash),
+                    read.get(i).getPhoto().map(PlantPhoto::getHash));
+            assertEquals(plants.get(i).getPhoto().map(PlantPhoto::getSize),
+                    read.get(i).getPhoto().map(PlantPhoto::getSize));
+            assertEquals(plants.get(i).getId() % 2 == 0 ? "sync-" + plants.get(i).getId() : null,
+                    syncIds.get(i));
+            if (plants.get(i).getPhoto().isPresent()) {
+                assertArrayEquals(plants.get(i).getPhoto().get().readBytes(),
+                        read.get(i).getPhoto().get().readBytes());
+            }
+        }
+        assertNull(reader.next());
+    }
+
+    /**
+     * Photos are streamed from their source, a large collection never needs to be in memory
+     */
+    @Test
+    public void write_streamsPhotos() throws IOException {
+        long photoSize = 32L * 1024 * 1024;
+        PhotoSource source = hash -> new PatternStream(photoSize);
+        CountingStream out = new CountingStream();
+
+        PlantArchiveWriter writer = new PlantArchiveWriter(out, 8);
+        for (int i = 0; i < 8; i++) {
+            writer.write(plant(i, "plant " + i, PlantPhoto.stored(i, "", photoSize, source)));
+        }
+        writer.finish();
+
+        assertTrue(out.count > 8 * photoSize);
+    }
+
+    @Test
+    public void read_acceptsArchivesWithoutSyncIds() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(PlantArchive.MAGIC);
+        data.writeInt(PlantArchive.VERSION_WITHOUT_SYNC_IDS);
+        data.writeLong(1);
+        data.writeByte(PlantArchive.RECORD_PLANT);
+        data.writeLong(4);
+        data.writeInt(4);
+        data.writeBytes("Aloe");
+        data.writeLong(NOW.toEpochSecond(ZoneOffset.UTC));
+        data.writeInt(0);
+        data.writeLong(Duration.ofDays(2).getSeconds());
+        data.writeInt(0);
+        data.writeBoolean(false);
+        data.writeBoolean(false);
+        data.writeByte(PlantArchive.RECORD_END);
+
+        PlantArchiveReader reader =
+                new PlantArchiveReader(new ByteArrayInputStream(out.toByteArray()), photos);
+        Plant plant = reader.next();
+
+        assertEquals("Aloe", plant.getName());
+        assertEquals(NOW, plant.getLastWatered());
+        assertNull(reader.getSyncId());
+        assertFalse(plant.getSpeciesId().isPresent());
+        assertNull(reader.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsPhotoWithWrongHash() throws IOException {
+        PhotoSource source = hash -> new ByteArrayInputStream(new byte[]{1, 2, 3});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlantArchiveWriter writer = new PlantArchiveWriter(out, 1);
+        writer.write(plant(1, "Aloe", PlantPhoto.stored(1, "0000", 3, source)));
+        writer.finish();
+
+        try {
+            new PlantArchiveReader(new ByteArrayInputStream(out.toByteArray()), photos).next();
+        } finally {
+            assertFalse(photos.contains(PlantPhoto.hashOf(new byte[]{1, 2, 3})));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsTruncatedArchive() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlantArchiveWriter writer = new PlantArchiveWriter(out, 1);
+        writer.write(plant(1, "Aloe", null));
+        writer.finish();
+        byte[] bytes = out.toByteArray();
+
+        PlantArchiveReader reader = new PlantArchiveReader(
+                new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 10)), photos);
+        reader.next();
+    }
+
+    private static class PatternStream extends InputStream {
+        private long left;
+
+        PatternStream(long size) {
+            this.left = size;
+        }
+
+        @Override
+        public int read() {
+            return left-- > 0 ? (int) (left & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (left <= 0) return -1;
+            int count = (int) Math.min(len, left);
+            Arrays.fill(b, off, off + count, (byte) left);
+            left -= count;
+            return count;
+        }
+    }
+
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package gr.auth.androidproject.plants.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CacheRegistryTest {
+
+    @Test
+    public void budget_isSharedByWeight() {
+        CacheRegistry registry = new CacheRegistry(1000);
+        MemoryCache<Integer, byte[]> large = registry.create("large", 3, b -> b.length);
+        MemoryCache<Integer, byte[]> small = registry.create("small", 1, b -> b.length);
+
+        assertEquals(750, large.getMaxSize());
+        assertEquals(250, small.getMaxSize());
+
+        registry.setBudget(400);
+        assertEquals(300, large.getMaxSize());
+        assertEquals(100, small.getMaxSize());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        MemoryCache<Integer, byte[]> cache = new CacheRegistry(300).create("c", 1, b -> b.length);
+        cache.put(1, new byte[100]);
+        cache.put(2, new byte[100]);
+        cache.put(3, new byte[100]);
+        assertNotNull(cache.get(1)); // 2 is now the least recently used
+
+        cache.put(4, new byte[100]);
+
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(4));
+        assertEquals(300, cache.getSize());
+
+        CacheStats stats = cache.getStats();
+        assertEquals(4, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(0.8, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void put_rejectsValuesLargerThanTheCache() {
+        MemoryCache<Integer, byte[]> cache = new CacheRegistry(100).create("c", 1, b -> b.length);
+        cache.put(1, new byte[50]);
+
+        assertFalse(cache.put(1, new byte[101]));
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void trim_shrinksAndClears() {
+        CacheRegistry registry = new CacheRegistry(1000);
+        MemoryCache<Integer, byte[]> cache = registry.create("c", 1, b -> b.length);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, new byte[100]);
+        }
+
+        registry.trim(0.5);
+        assertEquals(500, cache.getSize());
+        assertEquals(1000, cache.getMaxSize());
+        assertNull(cache.get(0));
+        assertNotNull(cache.get(9));
+
+        registry.trim(0);
+        assertEquals(0, cache.getStats().getEntries());
+        assertEquals(10, cache.getStats().getEvictions());
+    }
+}
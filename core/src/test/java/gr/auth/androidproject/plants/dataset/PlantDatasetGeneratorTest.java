@@ -0,0 +1,60 @@
+package gr.auth.androidproject.plants.dataset;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static org.junit.Assert.*;
+
+public class PlantDatasetGeneratorTest {
+
+    @Test
+    public void generate_sameSeedSamePlants() {
+        List<Plant> first = new PlantDatasetGenerator(7, NOW).setPhotoRatio(0.5)
+                .setPhotoSide(16).generate(200);
+        List<Plant> second = new PlantDatasetGenerator(7, NOW).setPhotoRatio(0.5)
+                .setPhotoSide(16).generate(200);
+
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getId(), second.get(i).getId());
+            assertTrue(first.get(i).hasSameContent(second.get(i)));
+            assertEquals(first.get(i).getSpeciesId(), second.get(i).getSpeciesId());
+            assertEquals(first.get(i).getPhoto().map(PlantPhoto::getHash),
+                    second.get(i).getPhoto().map(PlantPhoto::getHash));
+            assertEquals(first.get(i).getPhoto().map(PlantPhoto::getSize),
+                    second.get(i).getPhoto().map(PlantPhoto::getSize));
+        }
+    }
+
+    @Test
+    public void generate_mixedPlants() {
+        List<Plant> plants = new PlantDatasetGenerator(1, NOW).generate(1000);
+
+        long withBirthday = plants.stream().filter(p -> p.getBirthday().isPresent()).count();
+        long overdue = plants.stream()
+                .filter(p -> p.getLastWatered().plus(p.getWateringInterval()).isBefore(NOW))
+                .count();
+        long intervals = plants.stream().map(Plant::getWateringInterval).distinct().count();
+
+        assertTrue(withBirthday > 600 && withBirthday < 800);
+        assertTrue(overdue > 100 && overdue < 400);
+        assertTrue(intervals > 3);
+        assertTrue(plants.stream().noneMatch(p -> p.getLastWatered().isAfter(NOW)));
+    }
+
+    @Test
+    public void png_isValid() throws Exception {
+        byte[] png = SyntheticPhotos.png(32, new Random(1));
+
+        assertEquals((byte) 0x89, png[0]);
+        assertEquals('P', png[1]);
+        // IHDR width and height
+        assertEquals(32, png[19]);
+        assertEquals(32, png[23]);
+    }
+}
@@ -0,0 +1,117 @@
+package gr.auth.androidproject.plants.domain;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PhotoFileStoreTest {
+
+    private static final byte[] PHOTO = {1, 2, 3, 4, 5};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private PhotoFileStore store;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "photos");
+        store = new PhotoFileStore(directory);
+    }
+
+    @Test
+    public void storedPhotosAreReadByHash() throws IOException {
+        String hash = store.write(new ByteArrayInputStream(PHOTO), -1, null);
+
+        assertEquals(PlantPhoto.hashOf(PHOTO), hash);
+        assertTrue(store.contains(hash));
+        assertEquals(PHOTO.length, store.size(hash));
+        try (InputStream in = store.open(hash)) {
+            assertArrayEquals(PHOTO, readAll(in));
+        }
+    }
+
+    @Test
+    public void equalPhotosAreKeptOnce() throws IOException {
+        store.put(PlantPhoto.of(PHOTO.clone()));
+        store.put(PlantPhoto.of(PHOTO.clone()));
+
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void writeStopsAfterTheArgumentSize() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        String hash = store.write(in, PHOTO.length, PlantPhoto.hashOf(PHOTO));
+
+        assertEquals(PHOTO.length, store.size(hash));
+        assertEquals(6, in.read());
+    }
+
+    @Test
+    public void failedWritesLeaveNothing() {
+        try {
+            store.write(new ByteArrayInputStream(PHOTO), -1, PlantPhoto.hashOf(new byte[]{9}));
+            fail();
+        } catch (IOException expected) {
+            // wrong hash
+        }
+        try {
+            store.write(new ByteArrayInputStream(PHOTO), PHOTO.length + 1, null);
+            fail();
+        } catch (IOException expected) {
+            // stream ended early
+        }
+
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void onlyOldUnreferencedPhotosAreDeleted() throws IOException {
+        String kept = store.write(new ByteArrayInputStream(PHOTO), -1, null);
+        String unused = store.write(new ByteArrayInputStream(new byte[]{9, 9}), -1, null);
+
+        assertEquals(0, store.deleteUnreferenced(Collections.singleton(kept), 0));
+        assertEquals(2, store.deleteUnreferenced(Collections.singleton(kept),
+                System.currentTimeMillis() + 1000));
+        assertTrue(store.contains(kept));
+        assertFalse(store.contains(unused));
+    }
+
+    @Test
+    public void deleteKeepsPhotosStoredSinceTheArgumentTime() throws IOException {
+        String hash = store.write(new ByteArrayInputStream(PHOTO), -1, null);
+
+        assertEquals(0, store.delete(hash, 0));
+        assertTrue(store.contains(hash));
+        assertEquals(PHOTO.length, store.delete(hash, System.currentTimeMillis() + 1000));
+        assertFalse(store.contains(hash));
+        assertEquals(0, store.delete(hash, System.currentTimeMillis() + 1000));
+    }
+
+    @Test(expected = IOException.class)
+    public void hashesThatAreNotFileNamesAreRejected() throws IOException {
+        store.open("../" + PlantPhoto.hashOf(PHOTO).substring(3));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] bytes = new byte[PHOTO.length];
+        int read = 0;
+        int count;
+        while (read < bytes.length && (count = in.read(bytes, read, bytes.length - read)) > 0) {
+            read += count;
+        }
+        assertEquals(-1, in.read());
+        return bytes;
+    }
+}
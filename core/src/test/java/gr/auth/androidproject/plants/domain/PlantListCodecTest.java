@@ -0,0 +1,71 @@
+package gr.auth.androidproject.plants.domain;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlantListCodecTest {
+
+    private static final PhotoSource NO_PHOTOS = hash -> new ByteArrayInputStream(new byte[0]);
+
+    @Test
+    public void roundTrip_keepsContentAndOrder() throws IOException {
+        String name = "\u03a6\u03af\u03ba\u03bf\u03c2 \ud83c\udf3f"; // non ASCII name
+        Plant withPhoto = new Plant(7, name, LocalDateTime.of(2020, 1, 2, 3, 4, 5, 6),
+                LocalDateTime.of(2021, 5, 14, 17, 59, 1, 123_456_789), Duration.ofHours(36),
+                PlantPhoto.stored(7, "abc123", 4096, NO_PHOTOS));
+        withPhoto.setSpeciesId(12);
+        Plant plain = new Plant(3, "Basil", null,
+                LocalDateTime.of(2021, 5, 13, 8, 0), Duration.ofDays(2).plusNanos(5), null);
+        List<Plant> plants = Arrays.asList(withPhoto, plain);
+
+        List<Plant> decoded = PlantListCodec.decode(encode(plants), NO_PHOTOS);
+
+        assertEquals(2, decoded.size());
+        for (int i = 0; i < plants.size(); i++) {
+            assertEquals(plants.get(i).getId(), decoded.get(i).getId());
+            assertTrue(plants.get(i).hasSameContent(decoded.get(i)));
+            assertEquals(plants.get(i).getSpeciesId(), decoded.get(i).getSpeciesId());
+            assertEquals(plants.get(i).getPhoto().map(PlantPhoto::getHash),
+                    decoded.get(i).getPhoto().map(PlantPhoto::getHash));
+            assertEquals(plants.get(i).getPhoto().map(PlantPhoto::getSize),
+                    decoded.get(i).getPhoto().map(PlantPhoto::getSize));
+        }
+        assertEquals(4096, decoded.get(0).getPhoto().get().getSize());
+        assertTrue(decoded.get(0).getPhoto().get().isStoredFor(7));
+        assertFalse(decoded.get(1).getPhoto().isPresent());
+        assertEquals(Integer.valueOf(12), decoded.get(0).getSpeciesId().orElse(null));
+        assertFalse(decoded.get(1).getSpeciesId().isPresent());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsTruncatedList() throws IOException {
+        Plant plant = new Plant(1, "Aloe", null, LocalDateTime.of(2021, 5, 13, 8, 0),
+                Duration.ofDays(7), null);
+        ByteBuffer buffer = encode(Arrays.asList(plant, plant));
+        buffer.limit(buffer.limit() - 3);
+
+        PlantListCodec.decode(buffer, NO_PHOTOS);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsOtherFiles() throws IOException {
+        PlantListCodec.decode(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}),
+                NO_PHOTOS);
+    }
+
+    private static ByteBuffer encode(List<Plant> plants) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlantListCodec.encode(plants, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+}
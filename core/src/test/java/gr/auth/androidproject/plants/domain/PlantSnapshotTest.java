@@ -0,0 +1,126 @@
+package gr.auth.androidproject.plants.domain;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static gr.auth.androidproject.plants.domain.TestPlants.plant;
+import static org.junit.Assert.*;
+
+public class PlantSnapshotTest {
+
+    @Test
+    public void build_sortsById() {
+        PlantSnapshot snapshot = PlantSnapshot.of(Arrays.asList(
+                plant(30, Duration.ZERO, Duration.ofDays(1)),
+                plant(10, Duration.ZERO, Duration.ofDays(2)),
+                plant(20, Duration.ZERO, Duration.ofDays(3))));
+
+        assertEquals(3, snapshot.size());
+        assertEquals(10, snapshot.id(0));
+        assertEquals(20, snapshot.id(1));
+        assertEquals(30, snapshot.id(2));
+        assertEquals(Duration.ofDays(3).toMillis(), snapshot.wateringInterval(1));
+        assertEquals(PlantSnapshot.NO_BIRTHDAY, snapshot.birthday(0));
+    }
+
+    @Test
+    public void indicesDueBefore_returnsOnlyDuePlants() {
+        PlantSnapshot snapshot = PlantSnapshot.of(Arrays.asList(
+                plant(1, Duration.ofDays(2), Duration.ofDays(1)), // overdue
+                plant(2, Duration.ZERO, Duration.ofDays(1)),
+                plant(3, Duration.ofHours(23), Duration.ofDays(1)))); // due in an hour
+
+        long now = PlantSnapshot.toEpochMillis(NOW);
+        assertArrayEquals(new int[]{0}, snapshot.indicesDueBefore(now));
+        assertArrayEquals(new int[]{0, 2},
+                snapshot.indicesDueBefore(now + Duration.ofHours(2).toMillis()));
+        assertEquals(2, snapshot.countDueBefore(now + Duration.ofHours(2).toMillis()));
+    }
+
+    @Test
+    public void indicesByUrgency_ordersByNextWatering() {
+        PlantSnapshot snapshot = PlantSnapshot.of(Arrays.asList(
+                plant(1, Duration.ZERO, Duration.ofDays(3)),
+                plant(2, Duration.ZERO, Duration.ofDays(1)),
+                plant(3, Duration.ZERO, Duration.ofDays(2)),
+                plant(4, Duration.ZERO, Duration.ofDays(1))));
+
+        assertArrayEquals(new int[]{1, 3, 2, 0}, snapshot.indicesByUrgency());
+    }
+
+    @Test
+    public void withPlant_addsAndReplaces() {
+        PlantSnapshot empty = PlantSnapshot.EMPTY;
+        PlantSnapshot one = empty.withPlant(plant(5, Duration.ZERO, Duration.ofDays(1)));
+        PlantSnapshot two = one.withPlant(plant(2, Duration.ZERO, Duration.ofDays(1)));
+        PlantSnapshot replaced = two.withPlant(plant(5, Duration.ZERO, Duration.ofDays(4)));
+
+        assertEquals(0, empty.size());
+        assertEquals(1, one.size());
+        assertEquals(2, two.id(0));
+        assertEquals(Duration.ofDays(1).toMillis(), two.wateringInterval(1));
+        assertEquals(Duration.ofDays(4).toMillis(), replaced.wateringInterval(1));
+    }
+
+    @Test
+    public void withoutPlant_removesOnlyThatPlant() {
+        PlantSnapshot snapshot = PlantSnapshot.of(Arrays.asList(
+                plant(1, Duration.ZERO, Duration.ofDays(1)),
+                plant(2, Duration.ZERO, Duration.ofDays(2))));
+
+        PlantSnapshot removed = snapshot.withoutPlant(1);
+        assertEquals(1, removed.size());
+        assertEquals(2, removed.id(0));
+        assertSame(removed, removed.withoutPlant(42));
+        assertEquals(2, snapshot.size());
+    }
+
+    /**
+     * Updates across several blocks give the same snapshot as building it again, and leave the
+     * snapshot they were applied to as it was
+     */
+    @Test
+    public void updatesMatchRebuiltSnapshot() {
+        int count = PlantSnapshot.BLOCK_SIZE * 3 + 10;
+        List<Plant> plants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            plants.add(plant(2 * i, Duration.ZERO, Duration.ofHours(i + 1)));
+        }
+        PlantSnapshot original = PlantSnapshot.of(plants);
+
+        Plant watered = plant(2 * 300, Duration.ofDays(1), Duration.ofDays(7));
+        Plant inserted = plant(2 * 100 + 1, Duration.ZERO, Duration.ofDays(9));
+        Plant appended = plant(2 * count, Duration.ZERO, Duration.ofDays(2));
+        PlantSnapshot updated = original.withPlant(watered)
+                .withPlant(inserted)
+                .withPlant(appended)
+                .withoutPlant(2 * 5);
+
+        plants.set(300, watered);
+        plants.add(inserted);
+        plants.add(appended);
+        plants.remove(5);
+        assertSnapshotsEqual(PlantSnapshot.of(plants), updated);
+        assertEquals(count, original.size());
+        assertEquals(Duration.ofHours(301).toMillis(), original.wateringInterval(300));
+        assertEquals(2 * 5, original.id(5));
+    }
+
+    private static void assertSnapshotsEqual(PlantSnapshot expected, PlantSnapshot actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.id(i), actual.id(i));
+            assertEquals(expected.lastWatered(i), actual.lastWatered(i));
+            assertEquals(expected.wateringInterval(i), actual.wateringInterval(i));
+            assertEquals(expected.nextWatering(i), actual.nextWatering(i));
+            assertEquals(expected.birthday(i), actual.birthday(i));
+            assertEquals(i, actual.indexOf(expected.id(i)));
+        }
+        assertArrayEquals(expected.indicesByUrgency(), actual.indicesByUrgency());
+    }
+}
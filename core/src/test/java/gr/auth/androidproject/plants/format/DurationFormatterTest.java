@@ -0,0 +1,36 @@
+package gr.auth.androidproject.plants.format;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class DurationFormatterTest {
+
+    private final DurationFormatter formatter = new DurationFormatter(
+            new String[]{"year", "month", "day", "hour", "minute"},
+            new String[]{"years", "months", "days", "hours", "minutes"});
+
+    @Test
+    public void format_omitsZeroUnits() {
+        assertEquals("1 day 5 minutes", formatter.format(Duration.ofDays(1).plusMinutes(5)));
+        assertEquals("2 hours", formatter.format(Duration.ofHours(2)));
+    }
+
+    @Test
+    public void format_dropsUnitsBelowMinimum() {
+        assertEquals("1 year 3 days",
+                formatter.format(Duration.ofDays(368).plusHours(5), TimespanUnits.DAYS));
+    }
+
+    @Test
+    public void format_zeroIsEmpty() {
+        assertEquals("", formatter.format(Duration.ofSeconds(30)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsMissingLabels() {
+        new DurationFormatter(new String[]{"year"}, new String[]{"years"});
+    }
+}
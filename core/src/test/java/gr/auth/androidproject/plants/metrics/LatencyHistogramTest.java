@@ -0,0 +1,45 @@
+package gr.auth.androidproject.plants.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverValuesWithinPrecision() {
+        for (long value = 0; value < 10_000_000; value = value * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long highest = LatencyHistogram.highestValueIn(bucket);
+            assertTrue(value <= highest);
+            assertTrue(highest - value <= Math.max(1, value * 4 / 100));
+            assertEquals(bucket, LatencyHistogram.bucketOf(highest));
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordMicros(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+        assertEquals(1000, histogram.getMaxMicros());
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 * 0.04);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990 * 0.04);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void reset_forgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5_000_000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getMaxMicros());
+    }
+}
@@ -0,0 +1,73 @@
+package gr.auth.androidproject.plants.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ListRenderMetricsTest {
+
+    @Test
+    public void recordFrame_countsSlowAndFrozenFrames() {
+        ListRenderMetrics metrics = new ListRenderMetrics();
+        metrics.recordFrame(millis(8));
+        metrics.recordFrame(millis(ListRenderMetrics.SLOW_FRAME_MILLIS));
+        metrics.recordFrame(millis(ListRenderMetrics.SLOW_FRAME_MILLIS) + 1);
+        metrics.recordFrame(millis(120));
+        metrics.recordFrame(millis(ListRenderMetrics.FROZEN_FRAME_MILLIS));
+        metrics.recordFrame(millis(ListRenderMetrics.FROZEN_FRAME_MILLIS) + 1);
+        metrics.recordFrame(millis(2000));
+
+        assertEquals(7, metrics.getFrames().getCount());
+        // frozen frames are not counted as slow too
+        assertEquals(3, metrics.getSlowFrames());
+        assertEquals(2, metrics.getFrozenFrames());
+    }
+
+    @Test
+    public void percentiles_areKeptPerMeasurement() {
+        ListRenderMetrics metrics = new ListRenderMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.recordFrame(millis(i));
+            metrics.recordBind(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        metrics.recordDecode(millis(3));
+
+        assertEquals(millis(50) / 1000, metrics.getFrames().getValueAtPercentile(50),
+                millis(50) / 1000 * 0.04);
+        assertEquals(95, metrics.getBind().getValueAtPercentile(95), 95 * 0.04);
+        assertEquals(100, metrics.getBind().getValueAtPercentile(100));
+        assertEquals(3000, metrics.getDecode().getMaxMicros());
+        assertEquals(0, metrics.getFormat().getCount());
+        assertEquals(84, metrics.getSlowFrames());
+    }
+
+    @Test
+    public void reset_forgetsFramesAndCounts() {
+        ListRenderMetrics metrics = new ListRenderMetrics();
+        metrics.recordFrame(millis(900));
+        metrics.recordFrame(millis(30));
+        metrics.recordBind(millis(1));
+        metrics.reset();
+
+        assertEquals(0, metrics.getFrames().getCount());
+        assertEquals(0, metrics.getSlowFrames());
+        assertEquals(0, metrics.getFrozenFrames());
+        assertEquals(0, metrics.getBind().getCount());
+    }
+
+    @Test
+    public void toJson_containsTheCounts() {
+        ListRenderMetrics metrics = new ListRenderMetrics();
+        metrics.recordFrame(millis(20));
+        metrics.recordFrame(millis(800));
+
+        String json = metrics.toJson();
+        assertTrue(json, json.contains("\"total\":2,\"slow\":1,\"frozen\":1"));
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,95 @@
+package gr.auth.androidproject.plants.species;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SpeciesCatalogTest {
+
+    private static SpeciesCatalog catalogOf(List<Species> species) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SpeciesCatalogWriter.write(species, out);
+        return new SpeciesCatalog(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static List<String> names(List<Species> species) {
+        return species.stream().map(Species::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void search_matchesPrefixIgnoringCase() throws IOException {
+        SpeciesCatalog catalog = catalogOf(Arrays.asList(
+                new Species(1, "Monstera deliciosa", Duration.ofDays(7)),
+                new Species(2, "Snake plant", Duration.ofDays(14)),
+                new Species(2, "Sansevieria", Duration.ofDays(14)),
+                new Species(3, "Money tree", Duration.ofDays(10)),
+                new Species(4, "\u00c9ch\u00e9veria", Duration.ofDays(12))));
+
+        assertEquals(5, catalog.size());
+        assertEquals(Arrays.asList("Money tree", "Monstera deliciosa"),
+                names(catalog.search("MON", 10)));
+        assertEquals(Arrays.asList("Money tree"), names(catalog.search("mon", 1)));
+        assertEquals(Arrays.asList("\u00c9ch\u00e9veria"), names(catalog.search("\u00e9ch", 10)));
+        assertTrue(catalog.search("x", 10).isEmpty());
+        assertTrue(catalog.search("  ", 10).isEmpty());
+
+        Species snake = catalog.search("snake", 10).get(0);
+        assertEquals(2, snake.getId());
+        assertEquals(Duration.ofDays(14), snake.getWateringInterval());
+    }
+
+    @Test
+    public void search_largeCatalog_agreesWithLinearScan() throws IOException {
+        Random random = new Random(46);
+        List<Species> species = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            char[] name = new char[3 + random.nextInt(10)];
+            for (int c = 0; c < name.length; c++) {
+                name[c] = (char) ('a' + random.nextInt(6));
+            }
+            species.add(new Species(i, new String(name), Duration.ofDays(1 + random.nextInt(30))));
+        }
+        SpeciesCatalog catalog = catalogOf(species);
+
+        for (String prefix : new String[]{"a", "bc", "fed", "abca", "ffff"}) {
+            List<String> expected = species.stream()
+                    .map(Species::getName)
+                    .filter(name -> name.startsWith(prefix))
+                    .sorted()
+                    .limit(20)
+                    .collect(Collectors.toList());
+            assertEquals(expected, names(catalog.search(prefix, 20)));
+        }
+    }
+
+    @Test
+    public void read_parsesSpeciesList() throws IOException {
+        String list = "# id,name,days\n" +
+                "\n" +
+                "7, Peace lily ,5\n" +
+                "8,Chinese evergreen, Aglaonema,9\n";
+
+        List<Species> species = SpeciesCatalogWriter.read(new BufferedReader(new StringReader(list)));
+
+        assertEquals(Arrays.asList("Peace lily", "Chinese evergreen, Aglaonema"), names(species));
+        assertEquals(8, species.get(1).getId());
+        assertEquals(Duration.ofDays(9), species.get(1).getWateringInterval());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws IOException {
+        new SpeciesCatalog(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}));
+    }
+}
@@ -0,0 +1,411 @@
+package gr.auth.androidproject.plants.sync;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import gr.auth.androidproject.plants.dataset.PlantDatasetGenerator;
+import gr.auth.androidproject.plants.domain.Plant;
+import gr.auth.androidproject.plants.domain.PlantPhoto;
+
+import static gr.auth.androidproject.plants.domain.TestPlants.NOW;
+import static gr.auth.androidproject.plants.domain.TestPlants.plant;
+import static gr.auth.androidproject.plants.domain.TestPlants.renamed;
+import static org.junit.Assert.*;
+
+public class SyncEngineTest {
+
+    private static final String DATABASE_THREAD = "database";
+
+    private final LocalSyncServer server = new LocalSyncServer();
+    private long clock = 1_000;
+
+    @Test
+    public void thousandsOfChangesReachEveryDevice() throws IOException {
+        Device phone = new Device("phone");
+        Device tablet = new Device("tablet");
+        List<Plant> plants = new PlantDatasetGenerator(41, NOW)
+                .setPhotoRatio(0.1)
+                .setPhotoSide(32)
+                .generate(3000);
+        List<String> syncIds = new ArrayList<>();
+        for (Plant plant : plants) {
+            syncIds.add(phone.add(plant));
+        }
+
+        SyncReport first = phone.sync();
+        assertEquals(3000, first.getPushed());
+        assertEquals(server.getPhotoCount(), first.getPhotosUploaded());
+        SyncReport pulled = tablet.sync();
+        assertEquals(3000, pulled.getPulled());
+        assertEquals(server.getPhotoCount(), pulled.getPhotosDownloaded());
+        assertSameContent(phone, tablet);
+
+        for (int i = 0; i < 500; i++) {
+            Plant plant = tablet.get(syncIds.get(i));
+            plant.setWateringInterval(Duration.ofDays(i % 9 + 1));
+            tablet.update(syncIds.get(i), plant);
+        }
+        for (int i = 500; i < 700; i++) {
+            tablet.remove(syncIds.get(i));
+        }
+        SyncReport delta = tablet.sync();
+        assertEquals(700, delta.getPushed());
+        assertEquals(0, delta.getPhotosUploaded());
+
+        SyncReport received = phone.sync();
+        assertEquals(700, received.getPulled());
+        assertEquals(0, received.getPhotosDownloaded());
+        assertSameContent(phone, tablet);
+        assertEquals(2800, phone.plants.size());
+        assertTrue("Delta should be much smaller than the first sync",
+                delta.getBytesSent() * 3 < first.getBytesSent());
+
+        SyncReport idle = phone.sync();
+        assertEquals(0, idle.getPushed());
+        assertEquals(0, idle.getPulled());
+        assertTrue(idle.getBytesSent() + idle.getBytesReceived() < 200);
+    }
+
+    @Test
+    public void laterChangeWinsConflicts() throws IOException {
+        Device phone = new Device("phone");
+        Device tablet = new Device("tablet");
+        Plant plant = plant("Fern", Duration.ofDays(3));
+        String syncId = phone.add(plant);
+        phone.sync();
+        tablet.sync();
+
+        phone.update(syncId, renamed(phone.get(syncId), "Phone fern"));
+        tablet.update(syncId, renamed(tablet.get(syncId), "Tablet fern"));
+        phone.sync();
+        SyncReport report = tablet.sync();
+        assertEquals(1, report.getConflicts());
+        assertEquals(1, report.getPushed());
+        phone.sync();
+        assertEquals("Tablet fern", phone.get(syncId).getName());
+        assertEquals("Tablet fern", tablet.get(syncId).getName());
+
+        // now the remote change is the later one and replaces the pending local change
+        phone.update(syncId, renamed(phone.get(syncId), "Old phone fern"));
+        tablet.update(syncId, renamed(tablet.get(syncId), "New tablet fern"));
+        tablet.sync();
+        report = phone.sync();
+        assertEquals(1, report.getConflicts());
+        assertEquals(0, report.getPushed());
+        assertEquals("New tablet fern", phone.get(syncId).getName());
+        assertTrue(phone.pending().isEmpty());
+
+        // a later update brings back a plant removed on another device
+        phone.remove(syncId);
+        tablet.update(syncId, renamed(tablet.get(syncId), "Kept fern"));
+        phone.sync();
+        tablet.sync();
+        phone.sync();
+        assertEquals("Kept fern", phone.get(syncId).getName());
+        assertSameContent(phone, tablet);
+    }
+
+    @Test
+    public void rejectedPushIsRetried() throws IOException {
+        Device phone = new Device("phone");
+        Device tablet = new Device("tablet");
+        String syncId = phone.add(plant("Cactus", Duration.ofDays(20)));
+        phone.sync();
+        tablet.sync();
+
+        phone.update(syncId, renamed(phone.get(syncId), "Phone cactus"));
+        tablet.update(syncId, renamed(tablet.get(syncId), "Tablet cactus"));
+
+        // the tablet pushes between the pull and the push of the phone
+        SyncServer racingServer = new ForwardingServer(server) {
+            boolean raced = false;
+
+            @Override
+            public byte[] push(byte[] request) throws IOException {
+                if (!raced) {
+                    raced = true;
+                    tablet.sync();
+                }
+                return super.push(request);
+            }
+        };
+        SyncReport report = phone.sync(racingServer);
+        assertEquals(2, report.getRounds());
+        assertEquals(0, report.getRejected());
+        assertEquals(1, report.getConflicts());
+
+        tablet.sync();
+        assertEquals("Tablet cactus", phone.get(syncId).getName());
+        assertSameContent(phone, tablet);
+    }
+
+    private static void assertSameContent(Device expected, Device actual) throws IOException {
+        assertEquals(expected.plants.keySet(), actual.plants.keySet());
+        for (String syncId : expected.plants.keySet()) {
+            Plant left = expected.get(syncId);
+            Plant right = actual.get(syncId);
+            assertEquals(left.getName(), right.getName());
+            assertEquals(left.getBirthday(), right.getBirthday());
+            assertEquals(left.getLastWatered(), right.getLastWatered());
+            assertEquals(left.getWateringInterval(), right.getWateringInterval());
+            assertEquals(left.getPhoto().map(PlantPhoto::getHash),
+                    right.getPhoto().map(PlantPhoto::getHash));
+        }
+    }
+
+    /**
+     * In memory {@link SyncLocalStore} that keeps the change log the way the plant database does
+     */
+    private class Device implements SyncLocalStore {
+        final String deviceId;
+        final TreeMap<String, Entry> plants = new TreeMap<>();
+        final TreeMap<String, Entry> tombstones = new TreeMap<>();
+        final Map<String, byte[]> photos = new HashMap<>();
+        long syncToken = 0;
+
+        Device(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        SyncReport sync() throws IOException {
+            return sync(server);
+        }
+
+        SyncReport sync(SyncServer server) throws IOException {
+            ExecutorService database =
+                    Executors.newSingleThreadExecutor(task -> new Thread(task, DATABASE_THREAD));
+            try {
+                SyncEngine engine = new SyncEngine(this, server);
+                engine.setBatchSize(256);
+                engine.setLocalExecutor(database);
+                return engine.sync();
+            } finally {
+                database.shutdown();
+            }
+        }
+
+        String add(Plant plant) throws IOException {
+            Entry entry = new Entry();
+            entry.localVersion = 1;
+            store(entry, plant);
+            String syncId = UUID.randomUUID().toString();
+            plants.put(syncId, entry);
+            return syncId;
+        }
+
+        void update(String syncId, Plant plant) throws IOException {
+            Entry entry = plants.get(syncId);
+            entry.localVersion++;
+            store(entry, plant);
+        }
+
+        void remove(String syncId) {
+            Entry entry = plants.remove(syncId);
+            entry.localVersion++;
+            entry.modifiedAt = ++clock;
+            tombstones.put(syncId, entry);
+        }
+
+        Plant get(String syncId) throws IOException {
+            Entry entry = plants.get(syncId);
+            Plant plant = entry.change.toPlant(-1);
+            if (entry.change.getPhotoHash().isPresent()) {
+                plant.setPhoto(PlantPhoto.of(photos.get(entry.change.getPhotoHash().get())));
+            }
+            return plant;
+        }
+
+        List<SyncChange> pending() {
+            return getPendingChanges((String) null, Integer.MAX_VALUE);
+        }
+
+        private void store(Entry entry, Plant plant) throws IOException {
+            entry.modifiedAt = ++clock;
+            if (plant.getPhoto().isPresent()) {
+                photos.put(plant.getPhoto().get().getHash(), plant.getPhoto().get().readBytes());
+            }
+            entry.change = SyncChange.upsert("", plant, 0, deviceId, 0, 0);
+        }
+
+        private SyncChange pendingChange(String syncId, Entry entry, boolean deleted) {
+            if (deleted) {
+                return SyncChange.tombstone(syncId, entry.modifiedAt, deviceId,
+                        entry.serverVersion, entry.localVersion);
+            }
+            return new SyncChange(syncId, false, entry.change.getName(),
+                    entry.change.getBirthday().orElse(null), entry.change.getLastWatered(),
+                    entry.change.getWateringInterval(), entry.change.getPhotoHash().orElse(null),
+                    entry.modifiedAt, deviceId, entry.serverVersion, entry.localVersion);
+        }
+
+        @Override
+        public String getDeviceId() {
+            return deviceId;
+        }
+
+        @Override
+        public long getSyncToken() {
+            return syncToken;
+        }
+
+        @Override
+        public List<SyncChange> getPendingChanges(String afterSyncId, int limit) {
+            TreeMap<String, SyncChange> pending = new TreeMap<>();
+            putPending(pending, plants, afterSyncId, false);
+            putPending(pending, tombstones, afterSyncId, true);
+            List<SyncChange> changes = new ArrayList<>(pending.values());
+            return changes.subList(0, Math.min(limit, changes.size()));
+        }
+
+        private void putPending(Map<String, SyncChange> pending, Map<String, Entry> entries,
+                                String afterSyncId, boolean deleted) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                if ((afterSyncId == null || entry.getKey().compareTo(afterSyncId) > 0)
+                        && value.localVersion != value.syncedVersion) {
+                    pending.put(entry.getKey(), pendingChange(entry.getKey(), value, deleted));
+                }
+            }
+        }
+
+        @Override
+        public Map<String, SyncChange> getPendingChanges(Collection<String> syncIds) {
+            Map<String, SyncChange> pending = new HashMap<>();
+            for (String syncId : syncIds) {
+                Entry entry = plants.get(syncId);
+                boolean deleted = entry == null;
+                if (deleted) {
+                    entry = tombstones.get(syncId);
+                }
+                if (entry != null && entry.localVersion != entry.syncedVersion) {
+                    pending.put(syncId, pendingChange(syncId, entry, deleted));
+                }
+            }
+            return pending;
+        }
+
+        @Override
+        public void markPushed(List<SyncChange> changes, long[] serverVersions) {
+            assertEquals(DATABASE_THREAD, Thread.currentThread().getName());
+            for (int i = 0; i < changes.size(); i++) {
+                if (serverVersions[i] == 0) continue;
+                SyncChange change = changes.get(i);
+                Entry entry = change.isDeleted()
+                        ? tombstones.get(change.getSyncId()) : plants.get(change.getSyncId());
+                if (entry == null) continue;
+                entry.serverVersion = serverVersions[i];
+                entry.syncedVersion = change.getLocalVersion();
+                if (change.isDeleted() && entry.syncedVersion == entry.localVersion) {
+                    tombstones.remove(change.getSyncId());
+                }
+            }
+        }
+
+        @Override
+        public void applyRemoteChanges(List<SyncChange> changes, Map<String, Long> rebased,
+                                       long syncToken) {
+            assertEquals(DATABASE_THREAD, Thread.currentThread().getName());
+            for (SyncChange change : changes) {
+                Entry entry = plants.get(change.getSyncId());
+                if (entry == null) {
+                    entry = tombstones.get(change.getSyncId());
+                }
+                if (entry != null && entry.serverVersion >= change.getServerVersion()) continue;
+
+                tombstones.remove(change.getSyncId());
+                if (change.isDeleted()) {
+                    plants.remove(change.getSyncId());
+                    continue;
+                }
+                assertTrue("Photos are stored before their changes are applied",
+                        change.getPhotoHash().map(photos::containsKey).orElse(true));
+                Entry applied = new Entry();
+                applied.change = change;
+                applied.modifiedAt = change.getModifiedAt();
+                applied.serverVersion = change.getServerVersion();
+                plants.put(change.getSyncId(), applied);
+            }
+            for (Map.Entry<String, Long> rebase : rebased.entrySet()) {
+                Entry entry = plants.get(rebase.getKey());
+                if (entry == null) {
+                    entry = tombstones.get(rebase.getKey());
+                }
+                entry.serverVersion = rebase.getValue();
+            }
+            this.syncToken = syncToken;
+        }
+
+        @Override
+        public boolean hasPhoto(String hash) {
+            return photos.containsKey(hash);
+        }
+
+        @Override
+        public void storePhoto(String hash, byte[] photo) {
+            photos.put(hash, photo);
+        }
+
+        @Override
+        public InputStream openPhoto(String hash) throws IOException {
+            byte[] photo = photos.get(hash);
+            if (photo == null) {
+                throw new IOException("No photo " + hash);
+            }
+            return new ByteArrayInputStream(photo);
+        }
+    }
+
+    private static class Entry {
+        SyncChange change;
+        long modifiedAt;
+        long localVersion;
+        long syncedVersion;
+        long serverVersion;
+    }
+
+    private static class ForwardingServer implements SyncServer {
+        private final SyncServer server;
+
+        ForwardingServer(SyncServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public byte[] push(byte[] request) throws IOException {
+            return server.push(request);
+        }
+
+        @Override
+        public byte[] pull(byte[] request) throws IOException {
+            return server.pull(request);
+        }
+
+        @Override
+        public byte[] findMissingPhotos(byte[] request) throws IOException {
+            return server.findMissingPhotos(request);
+        }
+
+        @Override
+        public void uploadPhoto(String hash, byte[] photo) throws IOException {
+            server.uploadPhoto(hash, photo);
+        }
+
+        @Override
+        public byte[] downloadPhoto(String hash) throws IOException {
+            return server.downloadPhoto(hash);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package gr.auth.androidproject.plants.domain;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * The clock and plants the tests of every module share.<br>
+ * </p>
+ * <p>
+ * Plants are watered relative to {@link #NOW} instead of the real clock, so what is due, and what
+ * the generated datasets contain, is the same on every run
+ * </p>
+ */
+public final class TestPlants {
+
+    public static final LocalDateTime NOW = LocalDateTime.of(2021, 5, 14, 17, 59);
+
+    private TestPlants() {
+    }
+
+    /**
+     * @return a new plant watered {@link #NOW}, with no birthday or photo
+     */
+    public static Plant plant(String name, Duration wateringInterval) {
+        return new Plant(name, null, NOW, wateringInterval, null);
+    }
+
+    /**
+     * @return a plant with the argument id watered {@link #NOW} every day, with no birthday
+     */
+    public static Plant plant(long id, String name, PlantPhoto photo) {
+        return new Plant(id, name, null, NOW, Duration.ofDays(1), photo);
+    }
+
+    /**
+     * @return a plant with the argument id named after it, watered the argument time before
+     * {@link #NOW}
+     */
+    public static Plant plant(long id, Duration sinceWatered, Duration wateringInterval) {
+        return new Plant(id, "plant " + id, null, NOW.minus(sinceWatered), wateringInterval,
+                null);
+    }
+
+    /**
+     * @return the argument plant, with its name changed
+     */
+    public static Plant renamed(Plant plant, String name) {
+        plant.setName(name);
+        return plant;
+    }
+}